@@ -0,0 +1,133 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The SHA-256 digests of downloaded files that were already verified.
+ * <p>
+ * Each digest is recorded along with the size and modification time of the file, so that a file that is
+ * reused by a later build can be trusted without hashing it again. Files whose size or modification time
+ * changed since they were verified must be hashed again.
+ * <p>
+ * The index is stored as a text file with one line per file: {@code <digest> <size> <mtime> <filename>}.
+ */
+final class DigestIndex
+{
+	/**
+	 * The file containing the index.
+	 */
+	private final Path file;
+	/**
+	 * A map from the name of each verified file to its size, modification time and digest.
+	 */
+	private final Map<String, String[]> nameToRecord = new TreeMap<>();
+
+	/**
+	 * Loads an index.
+	 *
+	 * @param file the file containing the index. The index is empty if the file does not exist.
+	 * @throws NullPointerException if {@code file} is null
+	 * @throws IOException          if an error occurs while reading the file
+	 */
+	DigestIndex(Path file) throws IOException
+	{
+		Preconditions.checkNotNull(file, "file may not be null");
+		this.file = file;
+		if (Files.notExists(file))
+			return;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+		{
+			// Filenames may contain spaces, so the name is whatever follows the third space
+			String[] tokens = line.split(" ", 4);
+			if (tokens.length != 4)
+				continue;
+			nameToRecord.put(tokens[3], new String[]{tokens[1], tokens[2], tokens[0]});
+		}
+	}
+
+	/**
+	 * @param path a file
+	 * @return the digest that {@code path} had when it was verified, or {@code null} if it was not verified
+	 * or changed since
+	 * @throws NullPointerException if {@code path} is null
+	 * @throws IOException          if an error occurs while reading the file's attributes
+	 */
+	String getVerifiedDigest(Path path) throws IOException
+	{
+		Preconditions.checkNotNull(path, "path may not be null");
+		String[] record = nameToRecord.get(path.getFileName().toString());
+		if (record == null || Files.notExists(path))
+			return null;
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		if (!record[0].equals(String.valueOf(attributes.size())) ||
+			!record[1].equals(String.valueOf(attributes.lastModifiedTime().toMillis())))
+		{
+			return null;
+		}
+		return record[2];
+	}
+
+	/**
+	 * Records that a file was verified, and saves the index.
+	 *
+	 * @param path   the file
+	 * @param digest the file's SHA-256 digest, in hexadecimal
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while reading the file's attributes or saving the index
+	 */
+	void put(Path path, String digest) throws IOException
+	{
+		Preconditions.checkNotNull(path, "path may not be null");
+		Preconditions.checkNotNull(digest, "digest may not be null");
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		nameToRecord.put(path.getFileName().toString(), new String[]{String.valueOf(attributes.size()),
+			String.valueOf(attributes.lastModifiedTime().toMillis()), digest});
+		save();
+	}
+
+	/**
+	 * Forgets about a file, and saves the index.
+	 *
+	 * @param path the file
+	 * @throws NullPointerException if {@code path} is null
+	 * @throws IOException          if an error occurs while saving the index
+	 */
+	void remove(Path path) throws IOException
+	{
+		Preconditions.checkNotNull(path, "path may not be null");
+		if (nameToRecord.remove(path.getFileName().toString()) != null)
+			save();
+	}
+
+	/**
+	 * Saves the index.
+	 *
+	 * @throws IOException if an error occurs while saving the index
+	 */
+	private void save() throws IOException
+	{
+		List<String> lines = new ArrayList<>(nameToRecord.size());
+		for (Entry<String, String[]> entry : nameToRecord.entrySet())
+		{
+			String[] record = entry.getValue();
+			lines.add(record[2] + " " + record[0] + " " + record[1] + " " + entry.getKey());
+		}
+		// Replace the index atomically so that an interrupted build cannot leave a truncated index behind
+		Files.createDirectories(file.getParent());
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temp, lines, StandardCharsets.UTF_8);
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
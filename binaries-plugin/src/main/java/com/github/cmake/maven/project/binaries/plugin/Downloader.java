@@ -0,0 +1,404 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.MoreFiles;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads files into a directory, and reuses the files that earlier builds downloaded into it.
+ * <p>
+ * Files with a known digest are verified while they are downloaded, and are reused without contacting the
+ * server as long as they still have the expected digest. Other files are revalidated using the {@code ETag}
+ * and {@code Last-Modified} headers of the previous download. Validators are recorded per URL, because mirrors
+ * may serve the same file with different validators, and only the validators of the URL that the file was
+ * last downloaded from are kept.
+ * <p>
+ * NOTE: This class is not thread-safe.
+ */
+final class Downloader
+{
+	/**
+	 * The name of the file that records the digests of verified downloads.
+	 */
+	static final String DIGEST_INDEX = "cmake-downloads.sha256";
+	/**
+	 * The name of the file that records the {@code ETag} and {@code Last-Modified} headers of downloads.
+	 */
+	static final String VALIDATORS = "cmake-downloads.validators";
+	/**
+	 * The suffix of the key of each {@code ETag} validator, which is prefixed by the URL of the file.
+	 */
+	private static final String ETAG_SUFFIX = ".etag";
+	/**
+	 * The suffix of the key of each {@code Last-Modified} validator, which is prefixed by the URL of the file.
+	 */
+	private static final String LAST_MODIFIED_SUFFIX = ".last-modified";
+	/**
+	 * The number of milliseconds to wait for a server to accept a connection or respond.
+	 */
+	private static final int TIMEOUT = 30_000;
+	/**
+	 * The number of milliseconds to wait for a mirror to respond when measuring its latency.
+	 */
+	private static final int PROBE_TIMEOUT = 5000;
+	/**
+	 * The directory to download files into.
+	 */
+	private final Path directory;
+	private final ProvisioningMetrics metrics;
+	private final Log log;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory the directory to download files into
+	 * @param metrics   the metrics to record downloads and retries in
+	 * @param log       the logger
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	Downloader(Path directory, ProvisioningMetrics metrics, Log log)
+	{
+		Preconditions.checkNotNull(directory, "directory may not be null");
+		Preconditions.checkNotNull(metrics, "metrics may not be null");
+		Preconditions.checkNotNull(log, "log may not be null");
+		this.directory = directory;
+		this.metrics = metrics;
+		this.log = log;
+	}
+
+	/**
+	 * Sorts mirrors by the time it takes them to respond to a request for a file. Mirrors that do not have the
+	 * file are moved to the end of the list, in case the file appears on them by the time they are tried.
+	 *
+	 * @param releaseUrls the URL of the release on each mirror, ending with a slash, in order of preference
+	 * @param filename    the filename of a file in the release
+	 * @return the sorted URLs
+	 * @throws NullPointerException  if any of the arguments are null
+	 * @throws URISyntaxException    if a URL is invalid
+	 * @throws MalformedURLException if a URL is invalid
+	 */
+	List<String> sortByLatency(List<String> releaseUrls, String filename)
+		throws URISyntaxException, MalformedURLException
+	{
+		Preconditions.checkNotNull(releaseUrls, "releaseUrls may not be null");
+		Preconditions.checkNotNull(filename, "filename may not be null");
+		if (releaseUrls.size() <= 1)
+			return releaseUrls;
+		Map<String, Long> urlToLatency = new HashMap<>();
+		for (String releaseUrl : releaseUrls)
+		{
+			URL url = new URI(releaseUrl + filename).toURL();
+			long start = System.nanoTime();
+			boolean found;
+			try
+			{
+				URLConnection connection = url.openConnection();
+				if (connection instanceof HttpURLConnection)
+				{
+					HttpURLConnection http = (HttpURLConnection) connection;
+					http.setRequestMethod("HEAD");
+					http.setConnectTimeout(PROBE_TIMEOUT);
+					http.setReadTimeout(PROBE_TIMEOUT);
+					int status = http.getResponseCode();
+					drain(http);
+					found = status < HttpURLConnection.HTTP_BAD_REQUEST;
+				}
+				else
+				{
+					connection.connect();
+					connection.getInputStream().close();
+					found = true;
+				}
+			}
+			catch (IOException e)
+			{
+				found = false;
+			}
+			long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if (found)
+			{
+				urlToLatency.put(releaseUrl, latency);
+				if (log.isInfoEnabled())
+					log.info("Mirror " + releaseUrl + " responded in " + latency + " ms");
+			}
+			else
+			{
+				urlToLatency.put(releaseUrl, Long.MAX_VALUE);
+				log.warn("Mirror " + releaseUrl + " does not provide " + filename);
+			}
+		}
+		List<String> result = new ArrayList<>(releaseUrls);
+		// The sort is stable, so mirrors with the same latency retain their order of preference
+		result.sort(Comparator.comparing(urlToLatency::get));
+		return result;
+	}
+
+	/**
+	 * Downloads a file. The file is downloaded into a temporary file that only replaces the target once it is
+	 * complete, so a download that was interrupted is never mistaken for a complete file.
+	 * <p>
+	 * Files that can be verified are reused without contacting the server. Other files that were downloaded
+	 * before are revalidated using {@code If-None-Match} and {@code If-Modified-Since}.
+	 *
+	 * @param urls           the locations of the file, in the order that they should be tried
+	 * @param expectedDigest the expected SHA-256 digest of the file, in hexadecimal ({@code null} if the
+	 *                       file cannot be verified)
+	 * @return the path of the downloaded file
+	 * @throws NullPointerException     if {@code urls} is null
+	 * @throws IllegalArgumentException if {@code urls} is empty
+	 * @throws IOException              if the file could not be downloaded from any of the locations
+	 */
+	Path download(List<URL> urls, String expectedDigest) throws IOException
+	{
+		Preconditions.checkNotNull(urls, "urls may not be null");
+		Preconditions.checkArgument(!urls.isEmpty(), "urls may not be empty");
+		String filename = new File(urls.get(0).getPath()).getName();
+		Path result = directory.resolve(filename);
+		DigestIndex index = new DigestIndex(directory.resolve(DIGEST_INDEX));
+		boolean cached = Files.exists(result);
+		if (cached && expectedDigest != null)
+		{
+			if (isVerified(result, expectedDigest, index))
+				return result;
+			log.warn(result + " is corrupt or incomplete. Downloading it again.");
+			metrics.addRetry();
+			index.remove(result);
+			Files.delete(result);
+			cached = false;
+		}
+		Files.createDirectories(result.getParent());
+		Path validatorsFile = directory.resolve(VALIDATORS);
+		Properties validators = new Properties();
+		if (Files.exists(validatorsFile))
+		{
+			try (InputStream in = Files.newInputStream(validatorsFile))
+			{
+				validators.load(in);
+			}
+		}
+		IOException failure = null;
+		for (URL url : urls)
+		{
+			try
+			{
+				String actualDigest = fetch(url, result, cached, expectedDigest, validators);
+				if (actualDigest != null)
+				{
+					try (OutputStream out = Files.newOutputStream(validatorsFile))
+					{
+						validators.store(out, null);
+					}
+					if (expectedDigest != null)
+						index.put(result, actualDigest);
+				}
+				return result;
+			}
+			catch (IOException e)
+			{
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+				if (urls.size() > 1)
+					log.warn("Could not download " + url + ": " + e.getMessage());
+				metrics.addRetry();
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Downloads a file from a single location.
+	 *
+	 * @param url            the location of the file
+	 * @param target         the path to download the file to
+	 * @param revalidate     {@code true} if {@code target} was downloaded before and should only be downloaded
+	 *                       again if it changed
+	 * @param expectedDigest the expected SHA-256 digest of the file, in hexadecimal ({@code null} if the
+	 *                       file cannot be verified)
+	 * @param validators     the {@code ETag} and {@code Last-Modified} headers of previous downloads, which
+	 *                       are updated by this method
+	 * @return the SHA-256 digest of the file, or {@code null} if {@code target} did not change
+	 * @throws IOException if an error occurs downloading the file, or its digest does not match
+	 */
+	private String fetch(URL url, Path target, boolean revalidate, String expectedDigest,
+		Properties validators) throws IOException
+	{
+		String filename = target.getFileName().toString();
+		String etagKey = url + ETAG_SUFFIX;
+		String lastModifiedKey = url + LAST_MODIFIED_SUFFIX;
+		long start = System.nanoTime();
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		// The connection is not disconnected, so that subsequent downloads from the same server can reuse it
+		HttpURLConnection http = null;
+		if (connection instanceof HttpURLConnection)
+		{
+			http = (HttpURLConnection) connection;
+			if (revalidate)
+			{
+				String etag = validators.getProperty(etagKey);
+				if (etag != null)
+					http.setRequestProperty("If-None-Match", etag);
+				String lastModified = validators.getProperty(lastModifiedKey);
+				if (lastModified != null)
+					http.setRequestProperty("If-Modified-Since", lastModified);
+			}
+			int status = http.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED)
+			{
+				drain(http);
+				if (log.isInfoEnabled())
+					log.info(url + " was not modified since it was downloaded");
+				return null;
+			}
+			if (status >= HttpURLConnection.HTTP_BAD_REQUEST)
+			{
+				drain(http);
+				throw new IOException(url + " returned HTTP " + status + " " + http.getResponseMessage());
+			}
+		}
+		else
+			connection.connect();
+		long latency = System.nanoTime() - start;
+		if (log.isInfoEnabled())
+			log.info("Downloading: " + url);
+
+		Path part = target.resolveSibling(filename + ".part");
+		String actualDigest;
+		long bytes;
+		// Hash the bytes as they are written instead of reading the file again
+		try (HashingInputStream in = new HashingInputStream(Hashing.sha256(),
+			new BufferedInputStream(connection.getInputStream())))
+		{
+			bytes = Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+			actualDigest = in.hash().toString();
+		}
+		if (expectedDigest != null && !actualDigest.equals(expectedDigest))
+		{
+			Files.delete(part);
+			throw new IOException("The SHA-256 digest of " + url + " is " + actualDigest + " but " +
+				expectedDigest + " was expected");
+		}
+		Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		long elapsed = System.nanoTime() - start;
+		metrics.addDownload(url.toString(), bytes, latency, elapsed);
+		if (log.isInfoEnabled())
+		{
+			double seconds = elapsed / 1_000_000_000.0;
+			double megabytes = bytes / (1024.0 * 1024);
+			String source;
+			if (url.getHost().isEmpty())
+				source = url.toString();
+			else
+				source = url.getHost();
+			log.info(String.format(Locale.ENGLISH, "Downloaded %.1f MB from %s in %.2fs (latency: %d ms, " +
+				"throughput: %.1f MB/s)", megabytes, source, seconds, TimeUnit.NANOSECONDS.toMillis(latency),
+				megabytes / Math.max(seconds, 0.001)));
+		}
+
+		// The validators of other URLs describe the file that was replaced
+		for (String key : validators.stringPropertyNames())
+		{
+			String validatorUrl;
+			if (key.endsWith(ETAG_SUFFIX))
+				validatorUrl = key.substring(0, key.length() - ETAG_SUFFIX.length());
+			else if (key.endsWith(LAST_MODIFIED_SUFFIX))
+				validatorUrl = key.substring(0, key.length() - LAST_MODIFIED_SUFFIX.length());
+			else
+				continue;
+			if (validatorUrl.endsWith("/" + filename))
+				validators.remove(key);
+		}
+		if (http != null)
+		{
+			String etag = http.getHeaderField("ETag");
+			if (etag != null)
+				validators.setProperty(etagKey, etag);
+			String lastModified = http.getHeaderField("Last-Modified");
+			if (lastModified != null)
+				validators.setProperty(lastModifiedKey, lastModified);
+		}
+		return actualDigest;
+	}
+
+	/**
+	 * Reads the remainder of a response, so that its connection can be reused.
+	 *
+	 * @param connection the connection
+	 */
+	static void drain(HttpURLConnection connection)
+	{
+		InputStream in;
+		try
+		{
+			in = connection.getInputStream();
+		}
+		catch (IOException e)
+		{
+			in = connection.getErrorStream();
+		}
+		if (in == null)
+			return;
+		try (InputStream body = in)
+		{
+			byte[] buffer = new byte[1024];
+			while (body.read(buffer) != -1)
+			{
+				// Discard the body
+			}
+		}
+		catch (IOException ignored)
+		{
+			// The connection will not be reused
+		}
+	}
+
+	/**
+	 * Indicates if a file that was downloaded by a previous build has the expected digest. Files that were
+	 * verified before and did not change since are not hashed again.
+	 *
+	 * @param path           the file
+	 * @param expectedDigest the expected SHA-256 digest of the file, in hexadecimal
+	 * @param index          the digests of verified files
+	 * @return {@code true} if the file has the expected digest
+	 * @throws IOException if an error occurs while reading the file or updating the index
+	 */
+	private static boolean isVerified(Path path, String expectedDigest, DigestIndex index) throws IOException
+	{
+		String verifiedDigest = index.getVerifiedDigest(path);
+		if (verifiedDigest != null)
+			return verifiedDigest.equals(expectedDigest);
+		String actualDigest = MoreFiles.asByteSource(path).hash(Hashing.sha256()).toString();
+		if (!actualDigest.equals(expectedDigest))
+			return false;
+		index.put(path, actualDigest);
+		return true;
+	}
+}
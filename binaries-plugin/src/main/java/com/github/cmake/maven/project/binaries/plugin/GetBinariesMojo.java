@@ -1,7 +1,12 @@
 package com.github.cmake.maven.project.binaries.plugin;
 
+import com.github.cmake.maven.project.common.Metrics;
 import com.github.cmake.maven.project.common.Platform;
+import com.github.cmake.maven.project.common.Tracer;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import com.github.cmake.maven.project.common.UnixModes;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -13,22 +18,26 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 import javax.inject.Inject;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
@@ -47,7 +56,13 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -55,6 +70,23 @@ import java.util.regex.Pattern;
 
 /**
  * Downloads and installs the CMake binaries into the local Maven repository.
+ * <p>
+ * A pinned release of ninja is installed next to the cmake executables, so that projects can use the Ninja
+ * generator on machines that do not have ninja installed.
+ * <p>
+ * The cmake archive is verified against the SHA-256 digests that Kitware publishes with each release. The
+ * digest is computed while the archive is downloaded, and archives that were verified by a previous build are
+ * trusted as long as their size and modification time did not change.
+ * <p>
+ * cmake and ninja can be downloaded from lists of mirrors (e.g. an internal artifact mirror or a local
+ * directory), which are tried in order of increasing latency.
+ * <p>
+ * The binaries are extracted into a staging directory that replaces the binaries directory once it is
+ * complete. A manifest in the binaries directory records the versions that it contains, so that a version
+ * bump or an interrupted build is detected without walking the directory.
+ * <p>
+ * The bytes transferred, throughput and time spent downloading, decompressing, writing, normalizing and
+ * deleting are logged and written to {@code target/cmake-metrics/get-binaries.json}.
  *
  * @author Gili Tzabari
  */
@@ -65,18 +97,79 @@ public class GetBinariesMojo extends AbstractMojo
 	 * The maximum number of times to retry deleting files.
 	 */
 	private static final int MAX_RETRIES = 30;
+	/**
+	 * The version of ninja to bundle with the cmake binaries.
+	 */
+	private static final String NINJA_VERSION = "1.12.1";
+	/**
+	 * A map from the download suffix of each ninja release archive to its SHA-256 digest. ninja does not
+	 * publish digests for its releases, so the digests of {@link #NINJA_VERSION} are pinned here and must be
+	 * updated along with it. Archives that are not listed must be pinned using {@link #ninjaDigest}.
+	 */
+	private static final Map<String, String> NINJA_DIGESTS = ImmutableMap.<String, String>builder().
+		put("linux.zip", "6f98805688d19672bd699fbbfa2c2cf0fc054ac3df1f0e6a47664d963d530255").
+		put("linux-aarch64.zip", "5c25c6570b0155e95fce5918cb95f1ad9870df5768653afe128db822301a05a1").
+		put("mac.zip", "89a287444b5b3e98f88a945afa50ce937b8ffd1dcc59c555ad9b1baf855298c9").
+		put("win.zip", "f550fec705b6d6ff58f2db3c374c2277a37691678d6aba463adcbb129108467a").
+		build();
+	/**
+	 * The name of the file, in the binaries directory, that describes the binaries that it contains.
+	 */
+	private static final String MANIFEST = "cmake-binaries.properties";
+	/**
+	 * The mirror that is used if none are configured.
+	 */
+	private static final String DEFAULT_MIRROR = "https://github.com/Kitware/CMake/releases/download/";
+	/**
+	 * The ninja mirror that is used if none are configured.
+	 */
+	private static final String DEFAULT_NINJA_MIRROR =
+		"https://github.com/ninja-build/ninja/releases/download/";
+	/**
+	 * The location of {@code cmake-<version>-SHA-256.txt}, which lists the SHA-256 digests of the cmake
+	 * archives. This may be the path of a local file (e.g. a copy from an internal mirror) or a URL. By
+	 * default, the file is downloaded from the cmake release.
+	 */
+	@Parameter(property = "cmake.checksums")
+	private String checksums;
+	/**
+	 * The base URLs to download cmake releases from, in order of preference. Each release is expected at
+	 * {@code <mirror>/v<version>/}, the way the releases are laid out on GitHub. {@code file://} URLs refer to
+	 * local copies. If more than one mirror is listed, they are tried in order of increasing latency and the
+	 * next one is used if a download fails. By default, cmake is downloaded from GitHub.
+	 */
+	@Parameter(property = "cmake.mirrors")
+	private List<String> mirrors;
+	/**
+	 * The base URLs to download ninja releases from, in order of preference. Each release is expected at
+	 * {@code <mirror>/v<version>/}, the way the releases are laid out on GitHub. The mirrors are tried the
+	 * same way as {@link #mirrors}. By default, ninja is downloaded from GitHub.
+	 */
+	@Parameter(property = "cmake.ninjaMirrors")
+	private List<String> ninjaMirrors;
+	/**
+	 * The SHA-256 digest of the ninja archive for this platform, in hexadecimal. By default, the digest that
+	 * the plugin pins for the platform is used. The build fails if neither is available, because ninja is
+	 * never installed without verifying it.
+	 */
+	@Parameter(property = "cmake.ninjaDigest")
+	private String ninjaDigest;
 	private final MavenProject project;
+	private final MavenSession session;
 	private final Platform platform = Platform.detected();
+	private final ProvisioningMetrics metrics = new ProvisioningMetrics();
 
 	/**
 	 * Creates a new instance.
 	 *
 	 * @param project an instance of {@code MavenProject}
+	 * @param session an instance of {@code MavenSession}
 	 */
 	@Inject
-	public GetBinariesMojo(MavenProject project)
+	public GetBinariesMojo(MavenProject project, MavenSession session)
 	{
 		this.project = project;
+		this.session = session;
 	}
 
 	@Override
@@ -94,19 +187,93 @@ public class GetBinariesMojo extends AbstractMojo
 
 		String cmakeVersion = getCMakeVersion(project.getVersion());
 		final Path target = Paths.get(project.getBuild().getDirectory(), "dependency/cmake");
-		try
+		Tracer tracer = new Tracer(session, project, "cmake-binaries:get-binaries", log);
+		try (Span goalSpan = tracer.start("cmake-binaries:get-binaries"))
 		{
-			if (Files.exists(target.resolve("bin")))
+			Properties expected = new Properties();
+			expected.setProperty("version", cmakeVersion);
+			expected.setProperty("classifier", platform.getClassifier());
+			expected.setProperty("ninjaVersion", NINJA_VERSION);
+			if (isUpToDate(target, expected))
+			{
+				log.debug(target + " is up to date");
 				return;
-			deleteRecursively(target);
+			}
+			// Fail before downloading anything if ninja cannot be verified
+			String ninjaFilename = "ninja-" + platform.getNinjaDownloadSuffix();
+			String expectedNinjaDigest = getNinjaDigest(ninjaFilename);
+
+			// Build the new tree next to the old one, so that an interrupted build never leaves a partial tree
+			// behind that looks complete
+			Path staging = target.resolveSibling(target.getFileName() + ".staging");
+			deleteRecursively(staging);
 
 			// Directories are not normalized, begin by unpacking the binaries.
-			Path archive = download(new URI("https://github.com/Kitware/CMake/releases/download/v" +
-				cmakeVersion + "/cmake-" + cmakeVersion + "-" + suffix).toURL());
+			String filename = "cmake-" + cmakeVersion + "-" + suffix;
+			List<String> releaseUrls;
+			try (Span span = tracer.start("select mirror"))
+			{
+				releaseUrls = sortByLatency(getReleaseUrls(mirrors, DEFAULT_MIRROR, cmakeVersion), filename);
+			}
+			String digest;
+			try (Span span = tracer.start("download checksums"))
+			{
+				digest = getExpectedDigest(releaseUrls, cmakeVersion, filename);
+			}
+			Path archive;
+			try (Span span = tracer.start("download"))
+			{
+				archive = download(toUrls(releaseUrls, filename), digest);
+			}
+			if (log.isInfoEnabled())
+				log.info("Extracting " + archive + " to " + staging);
+			try (Span span = tracer.start("extract"))
+			{
+				extract(archive, staging);
+			}
+			try (Span span = tracer.start("normalize directories"))
+			{
+				normalizeDirectories(staging);
+			}
+
+			Path ninja = staging.resolve("bin").resolve("ninja" + platform.getExecutableSuffix());
+			List<String> ninjaReleaseUrls;
+			try (Span span = tracer.start("select ninja mirror"))
+			{
+				ninjaReleaseUrls = sortByLatency(getReleaseUrls(ninjaMirrors, DEFAULT_NINJA_MIRROR,
+					NINJA_VERSION), ninjaFilename);
+			}
+			try (Span span = tracer.start("download ninja"))
+			{
+				archive = download(toUrls(ninjaReleaseUrls, ninjaFilename), expectedNinjaDigest);
+			}
 			if (log.isInfoEnabled())
-				log.info("Extracting " + archive + " to " + target);
-			extract(archive, target);
-			normalizeDirectories(target);
+				log.info("Extracting " + archive + " to " + ninja.getParent());
+			try (Span span = tracer.start("extract ninja"))
+			{
+				extract(archive, ninja.getParent());
+			}
+			if (Files.notExists(ninja))
+				throw new IOException("Could not find " + ninja.getFileName() + " in: " + archive);
+			// The archive does not necessarily record the file mode
+			if (!ninja.toFile().setExecutable(true, false))
+				throw new IOException("Could not make " + ninja + " executable");
+
+			try (Span span = tracer.start("publish"))
+			{
+				Properties manifest = new Properties();
+				manifest.putAll(expected);
+				manifest.setProperty("digest", digest);
+				manifest.setProperty("fileCount", String.valueOf(countFiles(staging)));
+				try (OutputStream out = Files.newOutputStream(staging.resolve(MANIFEST)))
+				{
+					manifest.store(out, null);
+				}
+				publish(staging, target);
+			}
+			metrics.log(log);
+			Path metricsDirectory = Metrics.getDirectory(project.getBuild().getDirectory());
+			Metrics.write(metricsDirectory.resolve("get-binaries.json"), metrics.toMetrics());
 		}
 		catch (IOException | URISyntaxException e)
 		{
@@ -114,6 +281,85 @@ public class GetBinariesMojo extends AbstractMojo
 		}
 	}
 
+	/**
+	 * Indicates if a binaries directory was provisioned for the expected versions. Only the manifest is read,
+	 * so the check takes the same amount of time regardless of the size of the directory.
+	 *
+	 * @param target   the binaries directory
+	 * @param expected the properties that the manifest must contain
+	 * @return {@code true} if the directory is complete and matches {@code expected}
+	 * @throws IOException if an error occurs while reading the manifest
+	 */
+	private boolean isUpToDate(Path target, Properties expected) throws IOException
+	{
+		Path manifestFile = target.resolve(MANIFEST);
+		if (Files.notExists(manifestFile))
+		{
+			if (Files.exists(target))
+				getLog().info(target + " does not contain a manifest. Provisioning the binaries again.");
+			return false;
+		}
+		Properties manifest = new Properties();
+		try (InputStream in = Files.newInputStream(manifestFile))
+		{
+			manifest.load(in);
+		}
+		for (String key : expected.stringPropertyNames())
+		{
+			String actual = manifest.getProperty(key);
+			if (!expected.getProperty(key).equals(actual))
+			{
+				Log log = getLog();
+				if (log.isInfoEnabled())
+				{
+					log.info(target + " contains " + key + " " + actual + " instead of " +
+						expected.getProperty(key) + ". Provisioning the binaries again.");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param directory a directory
+	 * @return the number of files in the directory, including its subdirectories
+	 * @throws IOException if an error occurs while walking the directory
+	 */
+	private static long countFiles(Path directory) throws IOException
+	{
+		long[] result = new long[1];
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+			{
+				++result[0];
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return result[0];
+	}
+
+	/**
+	 * Replaces a binaries directory with a staging directory. Each step is an atomic rename, so the binaries
+	 * directory either contains the old tree, the new tree or does not exist, in which case the next build
+	 * provisions it again.
+	 *
+	 * @param staging the staging directory
+	 * @param target  the binaries directory
+	 * @throws IOException if an error occurs while replacing the directory
+	 */
+	private void publish(Path staging, Path target) throws IOException
+	{
+		Path old = target.resolveSibling(target.getFileName() + ".old");
+		deleteRecursively(old);
+		if (Files.exists(target))
+			Files.move(target, old, StandardCopyOption.ATOMIC_MOVE);
+		Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+		deleteRecursively(old);
+	}
+
 	/**
 	 * Returns the cmake version associated with the project.
 	 *
@@ -135,47 +381,130 @@ public class GetBinariesMojo extends AbstractMojo
 	}
 
 	/**
-	 * Downloads a file.
+	 * @param mirrors       the configured mirrors ({@code null} or empty to use {@code defaultMirror})
+	 * @param defaultMirror the mirror that is used if none are configured
+	 * @param version       the version of the release
+	 * @return the URL of the release on each mirror, ending with a slash, in order of preference
+	 */
+	private static List<String> getReleaseUrls(List<String> mirrors, String defaultMirror, String version)
+	{
+		List<String> result = new ArrayList<>();
+		if (mirrors == null || mirrors.isEmpty())
+			result.add(defaultMirror + "v" + version + "/");
+		else
+		{
+			for (String mirror : mirrors)
+			{
+				mirror = mirror.trim();
+				if (mirror.isEmpty())
+					continue;
+				if (!mirror.endsWith("/"))
+					mirror += "/";
+				result.add(mirror + "v" + version + "/");
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param baseUrls URLs ending with a slash
+	 * @param filename a filename
+	 * @return the URL of the file relative to each base URL
+	 * @throws URISyntaxException    if a URL is invalid
+	 * @throws MalformedURLException if a URL is invalid
+	 */
+	private static List<URL> toUrls(List<String> baseUrls, String filename)
+		throws URISyntaxException, MalformedURLException
+	{
+		List<URL> result = new ArrayList<>(baseUrls.size());
+		for (String baseUrl : baseUrls)
+			result.add(new URI(baseUrl + filename).toURL());
+		return result;
+	}
+
+	/**
+	 * Sorts mirrors by latency.
+	 *
+	 * @param releaseUrls the URL of the release on each mirror, ending with a slash, in order of preference
+	 * @param filename    the filename of a file in the release
+	 * @return the sorted URLs
+	 * @throws URISyntaxException    if a URL is invalid
+	 * @throws MalformedURLException if a URL is invalid
+	 * @see Downloader#sortByLatency(List, String)
+	 */
+	private List<String> sortByLatency(List<String> releaseUrls, String filename)
+		throws URISyntaxException, MalformedURLException
+	{
+		return new Downloader(Paths.get(project.getBuild().getDirectory()), metrics, getLog()).
+			sortByLatency(releaseUrls, filename);
+	}
+
+	/**
+	 * Returns the digest of a cmake archive, as listed in {@code cmake-<version>-SHA-256.txt}.
+	 *
+	 * @param releaseUrls  the URL of the cmake release on each mirror, ending with a slash
+	 * @param cmakeVersion the version of cmake
+	 * @param filename     the filename of the archive
+	 * @return the SHA-256 digest of the archive, in hexadecimal
+	 * @throws IOException            if the archive is not listed, or an error occurs while reading the list
+	 * @throws URISyntaxException     if {@link #checksums} is not a valid path or URL
+	 * @throws MojoExecutionException if an error occurs while downloading the list
+	 */
+	private String getExpectedDigest(List<String> releaseUrls, String cmakeVersion, String filename)
+		throws IOException, URISyntaxException, MojoExecutionException
+	{
+		Path list;
+		if (checksums == null)
+			list = download(toUrls(releaseUrls, "cmake-" + cmakeVersion + "-SHA-256.txt"), null);
+		else if (Files.exists(Paths.get(checksums)))
+			list = Paths.get(checksums);
+		else
+			list = download(Collections.singletonList(new URI(checksums).toURL()), null);
+		List<String> lines = Files.readAllLines(list, StandardCharsets.UTF_8);
+		for (String line : lines)
+		{
+			// Each line contains "<digest>  <filename>"
+			String[] tokens = line.trim().split("\\s+", 2);
+			if (tokens.length == 2 && tokens[1].equals(filename))
+				return tokens[0].toLowerCase(Locale.ROOT);
+		}
+		throw new IOException(list + " does not list " + filename);
+	}
+
+	/**
+	 * @param filename the filename of the ninja archive for this platform
+	 * @return the SHA-256 digest of the archive, in hexadecimal
+	 * @throws MojoExecutionException if the digest of the archive is unknown
+	 */
+	private String getNinjaDigest(String filename) throws MojoExecutionException
+	{
+		if (ninjaDigest != null && !ninjaDigest.trim().isEmpty())
+			return ninjaDigest.trim().toLowerCase(Locale.ROOT);
+		String result = NINJA_DIGESTS.get(platform.getNinjaDownloadSuffix());
+		if (result == null)
+		{
+			throw new MojoExecutionException("The digest of " + filename + " " + NINJA_VERSION + " is not " +
+				"pinned. Set ninjaDigest (-Dcmake.ninjaDigest) to its SHA-256 digest.");
+		}
+		return result;
+	}
+
+	/**
+	 * Downloads a file into the build directory.
 	 *
-	 * @param url the file to download
+	 * @param urls           the locations of the file, in the order that they should be tried
+	 * @param expectedDigest the expected SHA-256 digest of the file, in hexadecimal ({@code null} if the
+	 *                       file cannot be verified)
 	 * @return the path of the downloaded file
-	 * @throws MojoExecutionException if an error occurs downloading the file
+	 * @throws MojoExecutionException if the file could not be downloaded from any of the locations
+	 * @see Downloader#download(List, String)
 	 */
-	private Path download(URL url) throws MojoExecutionException
+	private Path download(List<URL> urls, String expectedDigest) throws MojoExecutionException
 	{
-		String filename = new File(url.getPath()).getName();
-		String buildDirectory = project.getBuild().getDirectory();
-		Path result = Paths.get(buildDirectory, filename);
 		try
 		{
-			if (Files.notExists(result))
-			{
-				Log log = getLog();
-				if (log.isInfoEnabled())
-					log.info("Downloading: " + url);
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-				try (BufferedInputStream in = new BufferedInputStream(connection.getInputStream()))
-				{
-					Files.createDirectories(Paths.get(buildDirectory));
-					try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(result)))
-					{
-						byte[] buffer = new byte[10 * 1024];
-						while (true)
-						{
-							int count = in.read(buffer);
-							if (count == -1)
-								break;
-							out.write(buffer, 0, count);
-						}
-					}
-				}
-				finally
-				{
-					connection.disconnect();
-				}
-			}
-			return result;
+			return new Downloader(Paths.get(project.getBuild().getDirectory()), metrics, getLog()).
+				download(urls, expectedDigest);
 		}
 		catch (IOException e)
 		{
@@ -192,6 +521,11 @@ public class GetBinariesMojo extends AbstractMojo
 	 */
 	private void extract(Path source, Path target) throws IOException
 	{
+		if (MappedArchive.isSupported(source))
+		{
+			MappedArchive.extract(source, target, metrics);
+			return;
+		}
 		ByteBuffer buffer = ByteBuffer.allocate(10 * 1024);
 		try
 		{
@@ -269,25 +603,16 @@ public class GetBinariesMojo extends AbstractMojo
 						StandardOpenOption.TRUNCATE_EXISTING,
 						StandardOpenOption.WRITE), attributes))
 				{
-					while (true)
-					{
-						int count = reader.read(buffer);
-						if (count == -1)
-							break;
-						buffer.flip();
-						do
-						{
-							out.write(buffer);
-						}
-						while (buffer.hasRemaining());
-						buffer.clear();
-					}
+					copy(reader, out, buffer);
 				}
+				metrics.addEntry();
 			}
 
 			// Copy extracted files from tempDir to target.
 			// Can't use Files.move() because tempDir might reside on a different drive than target
+			long start = System.nanoTime();
 			copyDirectory(tempDir, target);
+			metrics.addWriteTime(System.nanoTime() - start);
 			deleteRecursively(tempDir);
 		}
 		catch (ArchiveException e)
@@ -296,6 +621,36 @@ public class GetBinariesMojo extends AbstractMojo
 		}
 	}
 
+	/**
+	 * Copies the decompressed contents of a stream to a file, measuring the time spent decompressing and
+	 * writing separately.
+	 *
+	 * @param reader the stream to read from
+	 * @param out    the file to write to
+	 * @param buffer the buffer used to transfer data from {@code reader} to {@code out}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void copy(ReadableByteChannel reader, SeekableByteChannel out, ByteBuffer buffer) throws IOException
+	{
+		while (true)
+		{
+			long start = System.nanoTime();
+			int count = reader.read(buffer);
+			long read = System.nanoTime();
+			metrics.addDecompressTime(read - start);
+			if (count == -1)
+				break;
+			buffer.flip();
+			do
+			{
+				out.write(buffer);
+			}
+			while (buffer.hasRemaining());
+			buffer.clear();
+			metrics.addWrite(count, System.nanoTime() - read);
+		}
+	}
+
 	/**
 	 * Copies a directory.
 	 * <p>
@@ -366,19 +721,7 @@ public class GetBinariesMojo extends AbstractMojo
 					StandardOpenOption.TRUNCATE_EXISTING,
 					StandardOpenOption.WRITE)))
 			{
-				while (true)
-				{
-					int count = reader.read(buffer);
-					if (count == -1)
-						break;
-					buffer.flip();
-					do
-					{
-						out.write(buffer);
-					}
-					while (buffer.hasRemaining());
-					buffer.clear();
-				}
+				copy(reader, out, buffer);
 			}
 			if (!nextExtension.isEmpty())
 			{
@@ -401,8 +744,7 @@ public class GetBinariesMojo extends AbstractMojo
 	 * Converts an integer mode to a set of PosixFilePermissions.
 	 *
 	 * @param entry the archive entry
-	 * @return the PosixFilePermissions, or null if the default permissions should be used
-	 * @see <a href="https://stackoverflow.com/a/9445853/14731">https://stackoverflow.com/a/9445853/14731</a>
+	 * @return the PosixFilePermissions
 	 */
 	private Set<PosixFilePermission> getPosixPermissions(ArchiveEntry entry)
 	{
@@ -427,30 +769,7 @@ public class GetBinariesMojo extends AbstractMojo
 			throw new IllegalArgumentException(entry.getClass().getName() +
 				" does not support POSIX permissions");
 		}
-		StringBuilder result = new StringBuilder(9);
-
-		// Extract digits from left to right
-		//
-		// REFERENCE: https://stackoverflow.com/questions/203854/how-to-get-the-nth-digit-of-an-integer-with-bit-wise-operations
-		for (int i = 3; i >= 1; --i)
-		{
-			// Octal is base-8
-			mode %= (int) Math.pow(8, i);
-			int digit = (int) (mode / Math.pow(8, i - 1));
-			if ((digit & 0x04) != 0)
-				result.append("r");
-			else
-				result.append("-");
-			if ((digit & 0x02) != 0)
-				result.append("w");
-			else
-				result.append("-");
-			if ((digit & 0x01) != 0)
-				result.append("x");
-			else
-				result.append("-");
-		}
-		return PosixFilePermissions.fromString(result.toString());
+		return UnixModes.toPermissions(mode);
 	}
 
 	/**
@@ -480,6 +799,7 @@ public class GetBinariesMojo extends AbstractMojo
 	 */
 	private void normalizeDirectories(final Path source) throws IOException
 	{
+		long start = System.nanoTime();
 		final Path[] topDirectory = new Path[1];
 		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
 		{
@@ -526,6 +846,7 @@ public class GetBinariesMojo extends AbstractMojo
 				return FileVisitResult.SKIP_SUBTREE;
 			}
 		});
+		metrics.addNormalizeTime(System.nanoTime() - start);
 		deleteRecursively(topDirectory[0]);
 	}
 
@@ -542,6 +863,7 @@ public class GetBinariesMojo extends AbstractMojo
 		// BUG: http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=7148952
 		if (Files.notExists(path))
 			return;
+		long start = System.nanoTime();
 		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
 		{
 			@Override
@@ -592,5 +914,6 @@ public class GetBinariesMojo extends AbstractMojo
 				return super.postVisitDirectory(dir, t);
 			}
 		});
+		metrics.addDeleteTime(System.nanoTime() - start);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import com.github.cmake.maven.project.common.Archives;
+import com.github.cmake.maven.project.common.UnixModes;
+import com.google.common.base.Preconditions;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Extracts zip and uncompressed tar archives without streaming them.
+ * <p>
+ * Tar archives are mapped into memory and only their headers are parsed. The contents of each file are
+ * handed to {@code FileChannel.write()} as a slice of the mapped archive, so they are not copied through heap
+ * buffers on their way to the disk. Zip archives are extracted by {@link Archives#extractZip}.
+ * <p>
+ * Tar archives larger than 2 GiB cannot be mapped into a single buffer and must be extracted as streams.
+ */
+final class MappedArchive
+{
+	/**
+	 * Prevent construction.
+	 */
+	private MappedArchive()
+	{
+	}
+
+	/**
+	 * @param archive an archive
+	 * @return {@code true} if {@link #extract(Path, Path, ProvisioningMetrics)} supports the archive
+	 * @throws NullPointerException if {@code archive} is null
+	 * @throws IOException          if an error occurs while reading the archive's size
+	 */
+	static boolean isSupported(Path archive) throws IOException
+	{
+		Preconditions.checkNotNull(archive, "archive may not be null");
+		String filename = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+		if (filename.endsWith(".zip") || filename.endsWith(".jar"))
+			return true;
+		return filename.endsWith(".tar") && Files.size(archive) <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param archive an archive
+	 * @return {@code true} if the archive is a tar
+	 */
+	private static boolean isTar(Path archive)
+	{
+		return archive.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tar");
+	}
+
+	/**
+	 * Extracts an archive into a directory. Files that the directory already contains are replaced.
+	 *
+	 * @param archive the archive
+	 * @param target  the directory to extract into
+	 * @param metrics the metrics to update
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if the archive is not {@link #isSupported(Path) supported}
+	 * @throws IOException              if an error occurs while extracting the archive, or an entry refers to
+	 *                                  a path outside of {@code target}
+	 */
+	static void extract(Path archive, Path target, ProvisioningMetrics metrics) throws IOException
+	{
+		Preconditions.checkNotNull(target, "target may not be null");
+		Preconditions.checkNotNull(metrics, "metrics may not be null");
+		Preconditions.checkArgument(isSupported(archive), "archive is not supported: %s", archive);
+		if (!isTar(archive))
+		{
+			Archives.extractZip(archive, target, new Archives.Listener()
+			{
+				@Override
+				public void onEntry()
+				{
+					metrics.addEntry();
+				}
+
+				@Override
+				public void onCopy(long bytes, long nanos)
+				{
+					metrics.addWrite(bytes, nanos);
+				}
+
+				@Override
+				public void onInflate(long bytes, long nanos)
+				{
+					metrics.addDecompressTime(nanos);
+					metrics.addWrite(bytes, 0);
+				}
+			});
+			return;
+		}
+		Path root = target.toAbsolutePath().normalize();
+		Files.createDirectories(root);
+		try (FileChannel in = FileChannel.open(archive, StandardOpenOption.READ))
+		{
+			MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			extractTar(archive, buffer, root, metrics);
+		}
+	}
+
+	/**
+	 * @param archive the archive
+	 * @param buffer  the contents of the archive
+	 * @param root    the directory to extract into
+	 * @param metrics the metrics to update
+	 * @throws IOException if an error occurs while extracting the archive
+	 */
+	private static void extractTar(Path archive, ByteBuffer buffer, Path root, ProvisioningMetrics metrics)
+		throws IOException
+	{
+		boolean posix = Archives.isPosix();
+		try (TarFile tar = new TarFile(archive))
+		{
+			for (TarArchiveEntry entry : tar.getEntries())
+			{
+				Path path = Archives.resolve(root, entry.getName());
+				metrics.addEntry();
+				if (entry.isDirectory())
+				{
+					Files.createDirectories(path);
+					if (posix)
+						Files.setPosixFilePermissions(path, UnixModes.toPermissions(entry.getMode()));
+					continue;
+				}
+				Files.createDirectories(path.getParent());
+				if (entry.isSymbolicLink())
+				{
+					Archives.createSymbolicLink(root, path, entry.getLinkName());
+					continue;
+				}
+				if (entry.isLink())
+				{
+					Files.deleteIfExists(path);
+					Files.createLink(path, Archives.resolve(root, entry.getLinkName()));
+					continue;
+				}
+				if (!entry.isFile())
+					continue;
+				if (entry.isSparse())
+				{
+					// The data of sparse files is not stored contiguously
+					long start = System.nanoTime();
+					long bytes;
+					try (InputStream data = tar.getInputStream(entry))
+					{
+						bytes = Files.copy(data, path, StandardCopyOption.REPLACE_EXISTING);
+					}
+					metrics.addWrite(bytes, System.nanoTime() - start);
+				}
+				else
+					write(slice(buffer, entry.getDataOffset(), entry.getSize()), path, metrics);
+				if (posix)
+					Files.setPosixFilePermissions(path, UnixModes.toPermissions(entry.getMode()));
+			}
+		}
+	}
+
+	/**
+	 * @param buffer   the contents of an archive
+	 * @param position the position of the first byte of the slice
+	 * @param size     the number of bytes in the slice
+	 * @return a buffer that shares its contents with {@code buffer}
+	 * @throws IOException if the slice ends after the end of the archive
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, long position, long size) throws IOException
+	{
+		if (position < 0 || size < 0 || position + size > buffer.capacity())
+		{
+			throw new IOException("Entry at " + position + " with size " + size + " ends after the end of " +
+				"the archive (" + buffer.capacity() + " bytes)");
+		}
+		ByteBuffer result = buffer.duplicate();
+		result.position((int) position);
+		result.limit((int) (position + size));
+		return result.slice();
+	}
+
+	/**
+	 * Writes a buffer to a file.
+	 *
+	 * @param data    the contents of the file
+	 * @param path    the file
+	 * @param metrics the metrics to update
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	private static void write(ByteBuffer data, Path path, ProvisioningMetrics metrics) throws IOException
+	{
+		long start = System.nanoTime();
+		// Replace links instead of writing through them
+		if (Files.isSymbolicLink(path))
+			Files.delete(path);
+		long bytes = data.remaining();
+		try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			while (data.hasRemaining())
+				out.write(data);
+		}
+		metrics.addWrite(bytes, System.nanoTime() - start);
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import com.google.common.base.Preconditions;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures where the time that it takes to provision the binaries goes, so that slow agents can be
+ * diagnosed as network-bound (download), CPU-bound (decompress) or disk-bound (write, normalize, delete).
+ * <p>
+ * NOTE: This class is not thread-safe.
+ */
+final class ProvisioningMetrics
+{
+	/**
+	 * The metrics of each file that was downloaded.
+	 */
+	private final List<Map<String, Object>> downloads = new ArrayList<>();
+	/**
+	 * The number of bytes that were downloaded.
+	 */
+	private long bytesDownloaded;
+	/**
+	 * The number of downloads that failed and were retried, from the same or another mirror.
+	 */
+	private int retries;
+	/**
+	 * The number of archive entries that were extracted.
+	 */
+	private long entries;
+	/**
+	 * The number of bytes that were written while extracting archives.
+	 */
+	private long bytesWritten;
+	private long downloadNanos;
+	private long decompressNanos;
+	private long writeNanos;
+	private long normalizeNanos;
+	private long deleteNanos;
+
+	/**
+	 * Records a download.
+	 *
+	 * @param url             the location of the file
+	 * @param bytes           the size of the file
+	 * @param timeToFirstByte the number of nanoseconds between sending the request and receiving the response
+	 * @param nanos           the number of nanoseconds that the download took, including
+	 *                        {@code timeToFirstByte}
+	 * @throws NullPointerException if {@code url} is null
+	 */
+	void addDownload(String url, long bytes, long timeToFirstByte, long nanos)
+	{
+		Preconditions.checkNotNull(url, "url may not be null");
+		bytesDownloaded += bytes;
+		downloadNanos += nanos;
+		Map<String, Object> download = new LinkedHashMap<>();
+		download.put("url", url);
+		download.put("bytes", bytes);
+		download.put("timeToFirstByteMillis", timeToFirstByte / 1_000_000);
+		download.put("seconds", toSeconds(nanos));
+		download.put("megabytesPerSecond", getMegabytesPerSecond(bytes, nanos));
+		downloads.add(download);
+	}
+
+	/**
+	 * Records a download that failed and will be retried.
+	 */
+	void addRetry()
+	{
+		++retries;
+	}
+
+	/**
+	 * Records an archive entry that was extracted.
+	 */
+	void addEntry()
+	{
+		++entries;
+	}
+
+	/**
+	 * @param nanos the number of nanoseconds spent reading decompressed data
+	 */
+	void addDecompressTime(long nanos)
+	{
+		decompressNanos += nanos;
+	}
+
+	/**
+	 * @param bytes the number of bytes that were written
+	 * @param nanos the number of nanoseconds spent writing them
+	 */
+	void addWrite(long bytes, long nanos)
+	{
+		bytesWritten += bytes;
+		writeNanos += nanos;
+	}
+
+	/**
+	 * @param nanos the number of nanoseconds spent copying extracted files into place
+	 */
+	void addWriteTime(long nanos)
+	{
+		writeNanos += nanos;
+	}
+
+	/**
+	 * @param nanos the number of nanoseconds spent normalizing the directory structure
+	 */
+	void addNormalizeTime(long nanos)
+	{
+		normalizeNanos += nanos;
+	}
+
+	/**
+	 * @param nanos the number of nanoseconds spent deleting files
+	 */
+	void addDeleteTime(long nanos)
+	{
+		deleteNanos += nanos;
+	}
+
+	/**
+	 * @return the metrics, in a form that can be serialized to JSON
+	 */
+	Map<String, Object> toMetrics()
+	{
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("bytesDownloaded", bytesDownloaded);
+		result.put("downloadMegabytesPerSecond", getMegabytesPerSecond(bytesDownloaded, downloadNanos));
+		result.put("retries", retries);
+		result.put("downloads", downloads);
+		result.put("entriesExtracted", entries);
+		result.put("bytesWritten", bytesWritten);
+		Map<String, Object> seconds = new LinkedHashMap<>();
+		seconds.put("download", toSeconds(downloadNanos));
+		seconds.put("decompress", toSeconds(decompressNanos));
+		seconds.put("write", toSeconds(writeNanos));
+		seconds.put("normalize", toSeconds(normalizeNanos));
+		seconds.put("delete", toSeconds(deleteNanos));
+		result.put("seconds", seconds);
+		return result;
+	}
+
+	/**
+	 * Logs a summary of the metrics.
+	 *
+	 * @param log the log to write to
+	 * @throws NullPointerException if {@code log} is null
+	 */
+	void log(Log log)
+	{
+		Preconditions.checkNotNull(log, "log may not be null");
+		if (!log.isInfoEnabled())
+			return;
+		log.info(String.format(Locale.ENGLISH, "Downloaded %.1f MB in %d files (%.1f MB/s, %d retries)",
+			bytesDownloaded / (1024.0 * 1024), downloads.size(),
+			getMegabytesPerSecond(bytesDownloaded, downloadNanos), retries));
+		log.info(String.format(Locale.ENGLISH, "Extracted %d entries, %.1f MB written", entries,
+			bytesWritten / (1024.0 * 1024)));
+		log.info(String.format(Locale.ENGLISH, "Time spent: download %.2fs, decompress %.2fs, write %.2fs, " +
+			"normalize %.2fs, delete %.2fs", toSeconds(downloadNanos), toSeconds(decompressNanos),
+			toSeconds(writeNanos), toSeconds(normalizeNanos), toSeconds(deleteNanos)));
+	}
+
+	/**
+	 * @param nanos a number of nanoseconds
+	 * @return the number of seconds
+	 */
+	private static double toSeconds(long nanos)
+	{
+		return nanos / 1_000_000_000.0;
+	}
+
+	/**
+	 * @param bytes a number of bytes
+	 * @param nanos the number of nanoseconds it took to transfer them
+	 * @return the throughput in megabytes per second ({@code 0} if {@code nanos} is zero)
+	 */
+	private static double getMegabytesPerSecond(long bytes, long nanos)
+	{
+		if (nanos == 0)
+			return 0;
+		return bytes / (1024.0 * 1024) / toSeconds(nanos);
+	}
+}
@@ -0,0 +1,52 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class DigestIndexTest
+{
+	private static final String DIGEST = "6f98805688d19672bd699fbbfa2c2cf0fc054ac3df1f0e6a47664d963d530255";
+
+	@TempDir
+	Path temp;
+
+	@Test
+	public void putAndReload() throws IOException
+	{
+		Path indexFile = temp.resolve("target").resolve("cmake-downloads.sha256");
+		Path archive = Files.write(temp.resolve("cmake 3.31.5.zip"), "archive".getBytes(
+			StandardCharsets.UTF_8));
+		DigestIndex index = new DigestIndex(indexFile);
+		assertNull(index.getVerifiedDigest(archive));
+		index.put(archive, DIGEST);
+
+		// Filenames may contain spaces
+		assertEquals(DIGEST, new DigestIndex(indexFile).getVerifiedDigest(archive));
+
+		index.remove(archive);
+		assertNull(new DigestIndex(indexFile).getVerifiedDigest(archive));
+	}
+
+	@Test
+	public void modifiedFile() throws IOException
+	{
+		Path indexFile = temp.resolve("cmake-downloads.sha256");
+		Path archive = Files.write(temp.resolve("ninja-linux.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+		DigestIndex index = new DigestIndex(indexFile);
+		index.put(archive, DIGEST);
+
+		Files.write(archive, "modified".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		assertNull(new DigestIndex(indexFile).getVerifiedDigest(archive));
+		Files.delete(archive);
+		assertNull(new DigestIndex(indexFile).getVerifiedDigest(archive));
+	}
+}
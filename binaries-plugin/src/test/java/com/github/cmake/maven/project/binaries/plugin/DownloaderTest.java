@@ -0,0 +1,262 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import com.google.common.hash.Hashing;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class DownloaderTest
+{
+	private static final byte[] CONTENT = "cmake archive".getBytes(StandardCharsets.UTF_8);
+	private static final String DIGEST = Hashing.sha256().hashBytes(CONTENT).toString();
+
+	@TempDir
+	Path temp;
+
+	@Test
+	public void reuseVerifiedDownload() throws IOException
+	{
+		Path source = writeMirror();
+		Path target = temp.resolve("target");
+		ProvisioningMetrics metrics = new ProvisioningMetrics();
+		Downloader downloader = new Downloader(target, metrics, new SystemStreamLog());
+		List<URL> urls = Collections.singletonList(source.toUri().toURL());
+
+		Path archive = downloader.download(urls, DIGEST);
+		assertArrayEquals(CONTENT, Files.readAllBytes(archive));
+		DigestIndex index = new DigestIndex(target.resolve(Downloader.DIGEST_INDEX));
+		assertEquals(DIGEST, index.getVerifiedDigest(archive));
+
+		// The verified archive is reused without contacting the mirror
+		Files.delete(source);
+		assertEquals(archive, downloader.download(urls, DIGEST));
+		assertEquals(0, metrics.toMetrics().get("retries"));
+	}
+
+	@Test
+	public void digestMismatch() throws IOException
+	{
+		Path source = writeMirror();
+		Path target = temp.resolve("target");
+		Downloader downloader = new Downloader(target, new ProvisioningMetrics(), new SystemStreamLog());
+		String wrongDigest = Hashing.sha256().hashBytes(new byte[0]).toString();
+
+		IOException e = assertThrows(IOException.class, () -> downloader.download(
+			Collections.singletonList(source.toUri().toURL()), wrongDigest));
+		assertEquals("The SHA-256 digest of " + source.toUri().toURL() + " is " + DIGEST + " but " +
+			wrongDigest + " was expected", e.getMessage());
+		// Neither the mismatched file nor the partial download are left behind
+		assertFalse(Files.exists(target.resolve("cmake.zip")));
+		assertFalse(Files.exists(target.resolve("cmake.zip.part")));
+	}
+
+	@Test
+	public void fetchCorruptArchiveAgain() throws IOException
+	{
+		Path source = writeMirror();
+		Path target = temp.resolve("target");
+		ProvisioningMetrics metrics = new ProvisioningMetrics();
+		Downloader downloader = new Downloader(target, metrics, new SystemStreamLog());
+		List<URL> urls = Collections.singletonList(source.toUri().toURL());
+		Path archive = downloader.download(urls, DIGEST);
+
+		// An earlier build was interrupted while writing the archive
+		Files.write(archive, "cmake".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloader.download(urls, DIGEST)));
+		assertEquals(1, metrics.toMetrics().get("retries"));
+
+		// An archive that was never recorded in the index is hashed instead of trusted
+		Files.delete(target.resolve(Downloader.DIGEST_INDEX));
+		Files.write(archive, new byte[CONTENT.length]);
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloader.download(urls, DIGEST)));
+		assertEquals(2, metrics.toMetrics().get("retries"));
+	}
+
+	@Test
+	public void sortMirrorsByLatency() throws Exception
+	{
+		HttpServer server = startServer(new ArrayList<>());
+		try
+		{
+			writeMirror();
+			String missing = getUrl(server, "/missing/");
+			String local = temp.resolve("mirror").toUri().toString();
+			Downloader downloader = new Downloader(temp.resolve("target"), new ProvisioningMetrics(),
+				new SystemStreamLog());
+			assertEquals(Arrays.asList(local, missing), downloader.sortByLatency(Arrays.asList(missing, local),
+				"cmake.zip"));
+		}
+		finally
+		{
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void fallBackToNextMirror() throws IOException
+	{
+		HttpServer server = startServer(new ArrayList<>());
+		try
+		{
+			Path source = writeMirror();
+			ProvisioningMetrics metrics = new ProvisioningMetrics();
+			Downloader downloader = new Downloader(temp.resolve("target"), metrics, new SystemStreamLog());
+
+			// The first mirror does not have the file, the second one serves a corrupt copy
+			List<URL> urls = Arrays.asList(new URL(getUrl(server, "/missing/cmake.zip")),
+				new URL(getUrl(server, "/corrupt/cmake.zip")), source.toUri().toURL());
+			assertArrayEquals(CONTENT, Files.readAllBytes(downloader.download(urls, DIGEST)));
+			assertEquals(2, metrics.toMetrics().get("retries"));
+		}
+		finally
+		{
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void revalidatePerMirror() throws IOException
+	{
+		List<String> ifNoneMatch = new ArrayList<>();
+		HttpServer server = startServer(ifNoneMatch);
+		try
+		{
+			Path target = temp.resolve("target");
+			Downloader downloader = new Downloader(target, new ProvisioningMetrics(), new SystemStreamLog());
+			List<URL> first = Collections.singletonList(new URL(getUrl(server, "/first/cmake.zip")));
+			List<URL> second = Collections.singletonList(new URL(getUrl(server, "/second/cmake.zip")));
+
+			downloader.download(first, null);
+			// The server replies 304 Not Modified
+			downloader.download(first, null);
+			assertEquals(Arrays.asList(null, "\"/first/\""), ifNoneMatch);
+
+			// The validators of one mirror are never sent to another
+			downloader.download(second, null);
+			assertEquals("\"/second/\"", getValidators(target).getProperty(second.get(0) + ".etag"));
+			assertNull(getValidators(target).getProperty(first.get(0) + ".etag"));
+			downloader.download(first, null);
+			assertEquals(Arrays.asList(null, "\"/first/\"", null, null), ifNoneMatch);
+			assertArrayEquals(CONTENT, Files.readAllBytes(target.resolve("cmake.zip")));
+		}
+		finally
+		{
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Starts a server that serves {@code /<mirror>/cmake.zip} with the ETag {@code "/<mirror>/"}. The mirror
+	 * {@code /missing/} returns 404 and {@code /corrupt/} serves a file with the wrong digest.
+	 *
+	 * @param ifNoneMatch the {@code If-None-Match} header of each request that is not {@code HEAD}
+	 * @return the server
+	 * @throws IOException if the server cannot be started
+	 */
+	private static HttpServer startServer(List<String> ifNoneMatch) throws IOException
+	{
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange ->
+		{
+			try (InputStream ignored = exchange.getRequestBody())
+			{
+				String path = exchange.getRequestURI().getPath();
+				String mirror = path.substring(0, path.lastIndexOf('/') + 1);
+				String etag = "\"" + mirror + "\"";
+				String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+				if (!exchange.getRequestMethod().equals("HEAD"))
+					ifNoneMatch.add(condition);
+				if (mirror.equals("/missing/"))
+				{
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				if (etag.equals(condition))
+				{
+					exchange.sendResponseHeaders(304, -1);
+					return;
+				}
+				byte[] body;
+				if (mirror.equals("/corrupt/"))
+					body = "corrupt".getBytes(StandardCharsets.UTF_8);
+				else
+					body = CONTENT;
+				exchange.getResponseHeaders().set("ETag", etag);
+				if (exchange.getRequestMethod().equals("HEAD"))
+				{
+					exchange.sendResponseHeaders(200, -1);
+					return;
+				}
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody())
+				{
+					out.write(body);
+				}
+			}
+			finally
+			{
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * @param server a server
+	 * @param path   an absolute path
+	 * @return the URL of the path on the server
+	 */
+	private static String getUrl(HttpServer server, String path)
+	{
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + path;
+	}
+
+	/**
+	 * @param target the directory that files are downloaded into
+	 * @return the validators of the downloads
+	 * @throws IOException if an error occurs while reading the validators
+	 */
+	private static Properties getValidators(Path target) throws IOException
+	{
+		Properties result = new Properties();
+		try (InputStream in = Files.newInputStream(target.resolve(Downloader.VALIDATORS)))
+		{
+			result.load(in);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the archive on a local mirror
+	 * @throws IOException if an error occurs while writing the archive
+	 */
+	private Path writeMirror() throws IOException
+	{
+		Path mirror = Files.createDirectories(temp.resolve("mirror"));
+		return Files.write(mirror.resolve("cmake.zip"), CONTENT);
+	}
+}
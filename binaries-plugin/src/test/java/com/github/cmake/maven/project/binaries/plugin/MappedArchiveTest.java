@@ -0,0 +1,397 @@
+package com.github.cmake.maven.project.binaries.plugin;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class MappedArchiveTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void tarAndZip() throws IOException
+	{
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("cmake-3.31.5-linux-x86_64/bin/cmake",
+			"#!/bin/sh\necho cmake\n".getBytes(StandardCharsets.UTF_8));
+		// Longer than the 100 characters that a plain tar header can hold
+		StringBuilder longName = new StringBuilder("cmake-3.31.5-linux-x86_64/share/cmake/Modules");
+		while (longName.length() < 150)
+			longName.append("/Internal");
+		longName.append("/FindFoo.cmake");
+		files.put(longName.toString(), "set(FOO_FOUND TRUE)\n".getBytes(StandardCharsets.UTF_8));
+
+		Path tar = temp.resolve("binaries.tar");
+		try (OutputStream out = Files.newOutputStream(tar))
+		{
+			writeTar(out, files);
+		}
+		Path storedZip = temp.resolve("stored.zip");
+		writeZip(storedZip, files, ZipEntry.STORED);
+		Path deflatedZip = temp.resolve("deflated.zip");
+		writeZip(deflatedZip, files, ZipEntry.DEFLATED);
+		for (Path archive : new Path[]{tar, storedZip, deflatedZip})
+		{
+			assertTrue(MappedArchive.isSupported(archive));
+			Path target = temp.resolve("extracted-" + archive.getFileName());
+			MappedArchive.extract(archive, target, new ProvisioningMetrics());
+			for (Entry<String, byte[]> entry : files.entrySet())
+			{
+				assertArrayEquals(entry.getValue(), Files.readAllBytes(target.resolve(entry.getKey())),
+					archive + ": " + entry.getKey());
+			}
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+			{
+				assertTrue(Files.isExecutable(target.resolve("cmake-3.31.5-linux-x86_64/bin/cmake")));
+				assertFalse(Files.isExecutable(target.resolve(longName.toString())));
+			}
+		}
+		assertFalse(MappedArchive.isSupported(temp.resolve("binaries.tar.gz")));
+	}
+
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	public void symbolicLinks() throws IOException
+	{
+		Path outside = temp.resolve("outside");
+		Files.createDirectories(outside);
+		byte[] contents = "malicious".getBytes(StandardCharsets.UTF_8);
+
+		// A link to an absolute path
+		Path zip = temp.resolve("absolute.zip");
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(zip))
+		{
+			putZipLink(out, "lib", outside.toString());
+			putZipFile(out, "lib/x", contents);
+		}
+		assertThrows(IOException.class, () -> MappedArchive.extract(zip, temp.resolve("zip"),
+			new ProvisioningMetrics()));
+
+		// A relative link that leaves the target directory
+		Path relative = temp.resolve("relative.tar");
+		try (TarArchiveOutputStream out = new TarArchiveOutputStream(Files.newOutputStream(relative)))
+		{
+			putTarLink(out, "lib", "../outside");
+			putTarFile(out, "lib/x", contents);
+		}
+		assertThrows(IOException.class, () -> MappedArchive.extract(relative, temp.resolve("relative"),
+			new ProvisioningMetrics()));
+
+		// A link inside the target directory, followed by an entry that is written through it
+		Path through = temp.resolve("through.tar");
+		try (TarArchiveOutputStream out = new TarArchiveOutputStream(Files.newOutputStream(through)))
+		{
+			putTarFile(out, "dir/y", contents);
+			putTarLink(out, "lib", "dir");
+			putTarFile(out, "lib/x", contents);
+		}
+		assertThrows(IOException.class, () -> MappedArchive.extract(through, temp.resolve("through"),
+			new ProvisioningMetrics()));
+		assertFalse(Files.exists(outside.resolve("x")));
+		assertFalse(Files.exists(temp.resolve("through/dir/x")));
+
+		// Links that stay inside the target directory are extracted
+		Path valid = temp.resolve("valid.zip");
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(valid))
+		{
+			putZipFile(out, "bin/cmake-3.31", contents);
+			putZipLink(out, "bin/cmake", "cmake-3.31");
+		}
+		Path target = temp.resolve("valid");
+		MappedArchive.extract(valid, target, new ProvisioningMetrics());
+		assertTrue(Files.isSymbolicLink(target.resolve("bin/cmake")));
+		assertArrayEquals(contents, Files.readAllBytes(target.resolve("bin/cmake")));
+	}
+
+	/**
+	 * Compares the time it takes to extract a tree the size of a cmake distribution using
+	 * {@code MappedArchive} and using streams, the way that archives were extracted before. Run using
+	 * {@code mvn test -Dtest=MappedArchiveTest -Dbenchmark=true}. The size of the tree can be set using
+	 * {@code -Dbenchmark.megabytes} (100 by default).
+	 *
+	 * @throws IOException      if an error occurs while writing or extracting the archives
+	 * @throws ArchiveException if an error occurs while reading the archives
+	 */
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	public void benchmark() throws IOException, ArchiveException
+	{
+		int megabytes = Integer.getInteger("benchmark.megabytes", 100);
+		Map<String, byte[]> files = generateTree(megabytes * 1024L * 1024);
+		Path tar = temp.resolve("binaries.tar");
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tar)))
+		{
+			writeTar(out, files);
+		}
+		Path zip = temp.resolve("binaries.zip");
+		writeZip(zip, files, ZipEntry.STORED);
+		files.clear();
+
+		System.out.printf(Locale.ENGLISH, "%-24s %12s %12s%n", "Format", "Stream (s)", "Mapped (s)");
+		for (Path archive : new Path[]{tar, zip})
+		{
+			long stream = time(target -> extractStream(archive, target));
+			long mapped = time(target -> MappedArchive.extract(archive, target, new ProvisioningMetrics()));
+			System.out.printf(Locale.ENGLISH, "%-24s %12.3f %12.3f%n", archive.getFileName(),
+				stream / 1_000_000_000.0, mapped / 1_000_000_000.0);
+		}
+	}
+
+	/**
+	 * Extracts an archive three times.
+	 *
+	 * @param extractor extracts the archive
+	 * @return the fastest time, in nanoseconds
+	 * @throws IOException      if an error occurs while extracting the archive
+	 * @throws ArchiveException if an error occurs while reading the archive
+	 */
+	private long time(Extractor extractor) throws IOException, ArchiveException
+	{
+		long result = Long.MAX_VALUE;
+		for (int i = 0; i < 3; ++i)
+		{
+			Path target = Files.createTempDirectory(temp, "extract");
+			long start = System.nanoTime();
+			extractor.extract(target);
+			result = Math.min(result, System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Extracts an archive the way {@code GetBinariesMojo} does when the archive cannot be mapped.
+	 *
+	 * @param archive the archive
+	 * @param target  the directory to extract into
+	 * @throws IOException      if an error occurs while extracting the archive
+	 * @throws ArchiveException if an error occurs while reading the archive
+	 */
+	private static void extractStream(Path archive, Path target) throws IOException, ArchiveException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(10 * 1024);
+		try (ArchiveInputStream<ArchiveEntry> in = new ArchiveStreamFactory().createArchiveInputStream(
+			new BufferedInputStream(Files.newInputStream(archive))))
+		{
+			ReadableByteChannel reader = Channels.newChannel(in);
+			while (true)
+			{
+				ArchiveEntry entry = in.getNextEntry();
+				if (entry == null)
+					break;
+				Path path = target.resolve(entry.getName());
+				Files.createDirectories(path.getParent());
+				try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE))
+				{
+					while (reader.read(buffer) != -1)
+					{
+						buffer.flip();
+						while (buffer.hasRemaining())
+							out.write(buffer);
+						buffer.clear();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generates a tree that resembles a cmake distribution: a few large executables and many small scripts.
+	 *
+	 * @param size the total size of the files
+	 * @return a map from the path of each file to its contents
+	 */
+	private static Map<String, byte[]> generateTree(long size)
+	{
+		Random random = new Random(0);
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		long remaining = size;
+		for (int i = 0; remaining > 0; ++i)
+		{
+			byte[] contents;
+			String name;
+			if (i < 8)
+			{
+				contents = new byte[(int) Math.min(remaining, size * 3 / 4 / 8)];
+				name = "bin/tool-" + i;
+			}
+			else
+			{
+				contents = new byte[(int) Math.min(remaining, 4096 + random.nextInt(32 * 1024))];
+				name = "share/cmake/Modules/Module" + i + ".cmake";
+			}
+			random.nextBytes(contents);
+			result.put(name, contents);
+			remaining -= contents.length;
+		}
+		return result;
+	}
+
+	/**
+	 * @param out   the stream to write the tar to
+	 * @param files a map from the path of each file to its contents
+	 * @throws IOException if an error occurs while writing the tar
+	 */
+	private static void writeTar(OutputStream out, Map<String, byte[]> files) throws IOException
+	{
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out))
+		{
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			for (Entry<String, byte[]> file : files.entrySet())
+			{
+				TarArchiveEntry entry = new TarArchiveEntry(file.getKey());
+				entry.setSize(file.getValue().length);
+				entry.setMode(getMode(file.getKey()));
+				tar.putArchiveEntry(entry);
+				tar.write(file.getValue());
+				tar.closeArchiveEntry();
+			}
+		}
+	}
+
+	/**
+	 * @param zip    the zip to write
+	 * @param files  a map from the path of each file to its contents
+	 * @param method the compression method of the entries
+	 * @throws IOException if an error occurs while writing the zip
+	 */
+	private static void writeZip(Path zip, Map<String, byte[]> files, int method) throws IOException
+	{
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(zip))
+		{
+			for (Entry<String, byte[]> file : files.entrySet())
+			{
+				ZipArchiveEntry entry = new ZipArchiveEntry(file.getKey());
+				entry.setMethod(method);
+				entry.setUnixMode(getMode(file.getKey()));
+				out.putArchiveEntry(entry);
+				out.write(file.getValue());
+				out.closeArchiveEntry();
+			}
+		}
+	}
+
+	/**
+	 * @param out      the zip to write to
+	 * @param name     the name of the link
+	 * @param linkName the target of the link
+	 * @throws IOException if an error occurs while writing the zip
+	 */
+	private static void putZipLink(ZipArchiveOutputStream out, String name, String linkName) throws IOException
+	{
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setUnixMode(0120777);
+		out.putArchiveEntry(entry);
+		out.write(linkName.getBytes(StandardCharsets.UTF_8));
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * @param out      the zip to write to
+	 * @param name     the name of the file
+	 * @param contents the contents of the file
+	 * @throws IOException if an error occurs while writing the zip
+	 */
+	private static void putZipFile(ZipArchiveOutputStream out, String name, byte[] contents) throws IOException
+	{
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setUnixMode(0644);
+		out.putArchiveEntry(entry);
+		out.write(contents);
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * @param out      the tar to write to
+	 * @param name     the name of the link
+	 * @param linkName the target of the link
+	 * @throws IOException if an error occurs while writing the tar
+	 */
+	private static void putTarLink(TarArchiveOutputStream out, String name, String linkName) throws IOException
+	{
+		TarArchiveEntry entry = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
+		entry.setLinkName(linkName);
+		out.putArchiveEntry(entry);
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * @param out      the tar to write to
+	 * @param name     the name of the file
+	 * @param contents the contents of the file
+	 * @throws IOException if an error occurs while writing the tar
+	 */
+	private static void putTarFile(TarArchiveOutputStream out, String name, byte[] contents) throws IOException
+	{
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setSize(contents.length);
+		entry.setMode(0644);
+		out.putArchiveEntry(entry);
+		out.write(contents);
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * @param path the path of a file
+	 * @return the Unix mode of the file
+	 */
+	private static int getMode(String path)
+	{
+		if (path.contains("/bin/") || path.startsWith("bin/"))
+			return 0755;
+		return 0644;
+	}
+
+	/**
+	 * Extracts an archive.
+	 */
+	@FunctionalInterface
+	private interface Extractor
+	{
+		/**
+		 * @param target the directory to extract into
+		 * @throws IOException      if an error occurs while extracting the archive
+		 * @throws ArchiveException if an error occurs while reading the archive
+		 */
+		void extract(Path target) throws IOException, ArchiveException;
+	}
+}
@@ -0,0 +1,262 @@
+package com.github.cmake.maven.project.common;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+
+/**
+ * Helper functions for extracting archives.
+ */
+public final class Archives
+{
+	/**
+	 * Prevent construction.
+	 */
+	private Archives()
+	{
+	}
+
+	/**
+	 * Extracts a zip archive into a directory. Files that the directory already contains are replaced.
+	 * <p>
+	 * The contents of each entry that is stored without compression are copied straight from the archive into
+	 * its file using {@code FileChannel.transferTo()}, which lets the operating system copy the data without
+	 * passing it through the Java heap. Compressed entries are inflated instead. If the archiver did not
+	 * record the Unix mode of a file, files in {@code bin/} directories are made executable.
+	 *
+	 * @param zip      the archive
+	 * @param target   the directory to extract into
+	 * @param listener the listener to notify about each entry
+	 * @return the number of bytes that were written
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while extracting the archive, or an entry refers to a
+	 *                              path outside of {@code target}
+	 */
+	public static long extractZip(Path zip, Path target, Listener listener) throws IOException
+	{
+		if (zip == null)
+			throw new NullPointerException("zip may not be null");
+		if (target == null)
+			throw new NullPointerException("target may not be null");
+		if (listener == null)
+			throw new NullPointerException("listener may not be null");
+		Path root = target.toAbsolutePath().normalize();
+		Files.createDirectories(root);
+		boolean posix = isPosix();
+		long result = 0;
+		try (ZipFile archive = ZipFile.builder().setPath(zip).get();
+		     FileChannel in = FileChannel.open(zip, StandardOpenOption.READ))
+		{
+			// Reading the entries in the order they are stored avoids seeking back and forth
+			Enumeration<ZipArchiveEntry> entries = archive.getEntriesInPhysicalOrder();
+			while (entries.hasMoreElements())
+			{
+				ZipArchiveEntry entry = entries.nextElement();
+				Path path = resolve(root, entry.getName());
+				listener.onEntry();
+				if (entry.isDirectory())
+				{
+					Files.createDirectories(path);
+					continue;
+				}
+				Files.createDirectories(path.getParent());
+				if (entry.isUnixSymlink())
+				{
+					createSymbolicLink(root, path, archive.getUnixSymlink(entry));
+					continue;
+				}
+				long start = System.nanoTime();
+				if (entry.getMethod() == ZipMethod.STORED.getCode())
+				{
+					// Replace links instead of writing through them
+					if (Files.isSymbolicLink(path))
+						Files.delete(path);
+					try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+					{
+						transfer(in, entry.getDataOffset(), entry.getSize(), out);
+					}
+					result += entry.getSize();
+					listener.onCopy(entry.getSize(), System.nanoTime() - start);
+				}
+				else
+				{
+					long bytes;
+					try (InputStream data = archive.getInputStream(entry))
+					{
+						bytes = Files.copy(data, path, StandardCopyOption.REPLACE_EXISTING);
+					}
+					result += bytes;
+					listener.onInflate(bytes, System.nanoTime() - start);
+				}
+				if (posix)
+					setPermissions(path, entry.getUnixMode());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the path that an archive entry is extracted to.
+	 *
+	 * @param root the absolute, normalized directory that the archive is extracted into
+	 * @param name the name of the entry
+	 * @return the path that the entry is extracted to
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if the entry refers to a path outside of {@code root}, or to a path inside
+	 *                              a symbolic link that was already extracted
+	 */
+	public static Path resolve(Path root, String name) throws IOException
+	{
+		if (root == null)
+			throw new NullPointerException("root may not be null");
+		if (name == null)
+			throw new NullPointerException("name may not be null");
+		Path result = root.resolve(name).normalize();
+		if (!result.startsWith(root))
+			throw new IOException("Entry is outside of " + root + ": " + name);
+		// A link that an earlier entry created (e.g. "lib -> /usr") would redirect the entry (e.g. "lib/x")
+		// outside of the root
+		for (Path parent = result.getParent(); parent != null && parent.startsWith(root) &&
+			!parent.equals(root); parent = parent.getParent())
+		{
+			if (Files.isSymbolicLink(parent))
+				throw new IOException("Entry is inside the symbolic link " + parent + ": " + name);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a symbolic link that an archive entry describes, replacing any file that the path already
+	 * contains.
+	 *
+	 * @param root   the absolute, normalized directory that the archive is extracted into
+	 * @param link   the path of the link
+	 * @param target the target of the link, as stored in the archive
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while creating the link, or the target is absolute or
+	 *                              outside of {@code root}
+	 */
+	public static void createSymbolicLink(Path root, Path link, String target) throws IOException
+	{
+		if (root == null)
+			throw new NullPointerException("root may not be null");
+		if (link == null)
+			throw new NullPointerException("link may not be null");
+		if (target == null)
+			throw new NullPointerException("target may not be null");
+		Path relative = Paths.get(target);
+		if (relative.getRoot() != null || !link.getParent().resolve(relative).normalize().startsWith(root))
+			throw new IOException("Symbolic link " + link + " points outside of " + root + ": " + target);
+		Files.deleteIfExists(link);
+		Files.createSymbolicLink(link, relative);
+		// The target may be reached through other links, which the check above treats as directories
+		if (Files.exists(link) && !link.toRealPath().startsWith(root.toRealPath()))
+		{
+			Files.delete(link);
+			throw new IOException("Symbolic link " + link + " points outside of " + root + ": " + target);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the file system supports POSIX permissions
+	 */
+	public static boolean isPosix()
+	{
+		return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+	}
+
+	/**
+	 * Copies bytes from one channel to another.
+	 *
+	 * @param in       the channel to read from
+	 * @param position the position of the first byte to copy
+	 * @param count    the number of bytes to copy
+	 * @param out      the channel to write to
+	 * @throws IOException if an error occurs while copying the bytes, or {@code in} ends prematurely
+	 */
+	private static void transfer(FileChannel in, long position, long count, FileChannel out)
+		throws IOException
+	{
+		while (count > 0)
+		{
+			// transferTo() may copy fewer bytes than requested
+			long transferred = in.transferTo(position, count, out);
+			if (transferred <= 0)
+			{
+				throw new EOFException("Unexpected end of file at " + position + ". Missing " + count +
+					" bytes.");
+			}
+			position += transferred;
+			count -= transferred;
+		}
+	}
+
+	/**
+	 * Applies the Unix file mode of an entry to the file that it was extracted to.
+	 *
+	 * @param path the file
+	 * @param mode the Unix file mode of the entry ({@code 0} if the archiver did not record it)
+	 * @throws IOException if an error occurs while setting the permissions
+	 */
+	private static void setPermissions(Path path, int mode) throws IOException
+	{
+		if (mode == 0)
+		{
+			// The archiver did not record the mode. Executables are expected to be in bin/.
+			Path parent = path.getParent();
+			if (parent != null && parent.getFileName().toString().equals("bin") &&
+				!path.toFile().setExecutable(true, false))
+			{
+				throw new IOException("Could not make " + path + " executable");
+			}
+			return;
+		}
+		Files.setPosixFilePermissions(path, UnixModes.toPermissions(mode));
+	}
+
+	/**
+	 * Receives the progress of an extraction.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Invoked before an entry is extracted.
+		 */
+		default void onEntry()
+		{
+		}
+
+		/**
+		 * Invoked after the contents of an entry that is stored without compression were copied.
+		 *
+		 * @param bytes the number of bytes that were written
+		 * @param nanos the time it took to copy the contents, in nanoseconds
+		 */
+		default void onCopy(long bytes, long nanos)
+		{
+		}
+
+		/**
+		 * Invoked after the contents of a compressed entry were inflated.
+		 *
+		 * @param bytes the number of bytes that were written
+		 * @param nanos the time it took to inflate and write the contents, in nanoseconds
+		 */
+		default void onInflate(long bytes, long nanos)
+		{
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.github.cmake.maven.project.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Helper functions for writing build metrics.
+ */
+public final class Metrics
+{
+	/**
+	 * The name of the directory, relative to the build directory, that metrics are written to.
+	 */
+	public static final String DIRECTORY_NAME = "cmake-metrics";
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	/**
+	 * @return the {@code ObjectMapper} used to read and write metrics
+	 */
+	public static ObjectMapper getMapper()
+	{
+		return MAPPER;
+	}
+
+	/**
+	 * Returns the directory that metrics are written to.
+	 *
+	 * @param buildDirectory the project's build directory
+	 * @return the directory that metrics are written to
+	 */
+	public static Path getDirectory(String buildDirectory)
+	{
+		return Paths.get(buildDirectory, DIRECTORY_NAME);
+	}
+
+	/**
+	 * Writes metrics to a JSON file. The file is replaced atomically so readers never observe a partially
+	 * written file.
+	 *
+	 * @param file  the file to write to
+	 * @param value the value to serialize
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void write(Path file, Object value) throws IOException
+	{
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try
+		{
+			MAPPER.writeValue(temp.toFile(), value);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Returns the value at a percentile using the nearest-rank method.
+	 *
+	 * @param sortedValues values sorted in ascending order
+	 * @param percentile   a percentile in the range {@code (0, 100]}
+	 * @return the value at the percentile, or {@code 0} if {@code sortedValues} is empty
+	 * @throws IllegalArgumentException if {@code percentile} is out of range
+	 */
+	public static double percentile(List<Double> sortedValues, double percentile)
+	{
+		if (percentile <= 0 || percentile > 100)
+			throw new IllegalArgumentException("percentile must be in the range (0, 100]: " + percentile);
+		if (sortedValues.isEmpty())
+			return 0;
+		int rank = (int) Math.ceil(percentile / 100 * sortedValues.size());
+		return sortedValues.get(Math.max(rank, 1) - 1);
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private Metrics()
+	{
+	}
+}
@@ -69,19 +69,48 @@ public final class Mojos
 	 */
 	public static int waitFor(ProcessBuilder processBuilder, Log log)
 		throws IOException, InterruptedException
+	{
+		return waitFor(processBuilder, log, null);
+	}
+
+	/**
+	 * Launches and waits for a process to complete, sampling the resources consumed by the process and its
+	 * descendants.
+	 *
+	 * @param processBuilder the process builder
+	 * @param log            the Maven log
+	 * @param sampler        the sampler to start once the process has launched ({@code null} if the process
+	 *                       should not be sampled)
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	public static int waitFor(ProcessBuilder processBuilder, Log log, ProcessTreeSampler sampler)
+		throws IOException, InterruptedException
 	{
 		Process process = processBuilder.redirectErrorStream(true).start();
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream())))
+		if (sampler != null)
+			sampler.start(process);
+		int result;
+		try
 		{
-			while (true)
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream())))
 			{
-				String line = in.readLine();
-				if (line == null)
-					break;
-				log.info(line);
+				while (true)
+				{
+					String line = in.readLine();
+					if (line == null)
+						break;
+					log.info(line);
+				}
 			}
+			result = process.waitFor();
+		}
+		finally
+		{
+			if (sampler != null)
+				sampler.stop();
 		}
-		int result = process.waitFor();
 		if (result != 0)
 		{
 			log.warn("Command: " + processBuilder.command());
@@ -235,6 +235,44 @@ public final class Platform
 		}
 	}
 
+	/**
+	 * Returns the suffix to append to the ninja download filename.
+	 *
+	 * @return the suffix to append to the ninja download filename
+	 * @throws UnsupportedOperationException if <a href="https://github.com/ninja-build/ninja/releases">ninja's
+	 *                                       releases</a> do not provide binaries for this platform
+	 */
+	public String getNinjaDownloadSuffix()
+	{
+		switch (operatingSystem)
+		{
+			case LINUX:
+				switch (architecture)
+				{
+					case X86_64:
+						return "linux.zip";
+					case ARM_64:
+						return "linux-aarch64.zip";
+					default:
+						throw new UnsupportedOperationException("Unsupported platform: " + getName());
+				}
+			case MAC:
+				return "mac.zip";
+			case WINDOWS:
+				switch (architecture)
+				{
+					case X86_64:
+						return "win.zip";
+					case ARM_64:
+						return "winarm64.zip";
+					default:
+						throw new UnsupportedOperationException("Unsupported platform: " + getName());
+				}
+			default:
+				throw new UnsupportedOperationException("Unsupported platform: " + getName());
+		}
+	}
+
 	/**
 	 * Indicates if the operating system supports POSIX attributes.
 	 *
@@ -0,0 +1,387 @@
+package com.github.cmake.maven.project.common;
+
+import com.github.cmake.maven.project.common.Platform.OperatingSystem;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically samples the resources consumed by a process and its descendants.
+ * <p>
+ * Sampling is only supported on Linux, where it reads {@code /proc}. On other platforms the statistics
+ * only contain the wall-clock time.
+ * <p>
+ * The CPU time of the tree is the sum of {@code utime + stime + cutime + cstime} across the live processes
+ * of the tree. Because a process' {@code cutime/cstime} absorb the time of the children that it waited
+ * for, short-lived compiler invocations are accounted for even if no sample observed them. The time that
+ * the root process itself consumed after the last sample is not counted, so the CPU time is a lower bound
+ * that is accurate to within one interval. The JVM's own {@code cutime/cstime} are not used, because they
+ * include every child process that the JVM reaped, such as processes that other threads or modules ran
+ * concurrently. The number of processes only counts processes that were observed by a sample and is
+ * therefore a lower bound as well.
+ */
+public final class ProcessTreeSampler
+{
+	/**
+	 * The number of clock ticks per second used by {@code /proc/<pid>/stat} ({@code USER_HZ}). Linux fixes
+	 * this value at 100 on all architectures.
+	 */
+	private static final double TICKS_PER_SECOND = 100;
+	private static final Path PROC = Paths.get("/proc");
+	private final long intervalMillis;
+	private final boolean supported = Platform.detected().operatingSystem == OperatingSystem.LINUX &&
+		Files.isDirectory(PROC);
+	private final Object lock = new Object();
+	private Thread thread;
+	private long rootPid = -1;
+	private long startNanos;
+	private long maxTotalUserTicks;
+	private long maxTotalSystemTicks;
+	private long peakRssKb;
+	private final Set<String> processesSeen = new HashSet<>();
+	private ProcessTreeStatistics statistics;
+
+	/**
+	 * Creates a sampler that takes a sample every 100 milliseconds.
+	 */
+	public ProcessTreeSampler()
+	{
+		this(100);
+	}
+
+	/**
+	 * Creates a new sampler.
+	 *
+	 * @param intervalMillis the number of milliseconds between samples
+	 * @throws IllegalArgumentException if {@code intervalMillis} is not positive
+	 */
+	public ProcessTreeSampler(long intervalMillis)
+	{
+		if (intervalMillis <= 0)
+			throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * Starts sampling a process.
+	 *
+	 * @param process the process to sample
+	 * @throws NullPointerException  if {@code process} is null
+	 * @throws IllegalStateException if the sampler was already started
+	 */
+	public void start(Process process)
+	{
+		if (process == null)
+			throw new NullPointerException("process may not be null");
+		synchronized (lock)
+		{
+			if (thread != null || statistics != null)
+				throw new IllegalStateException("The sampler was already started");
+			startNanos = System.nanoTime();
+			if (!supported)
+				return;
+			rootPid = getPid(process);
+			if (rootPid == -1)
+				return;
+			thread = new Thread(this::run, "cmake-process-sampler-" + rootPid);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops sampling. This method should be invoked after the process has terminated.
+	 *
+	 * @return the resources consumed by the process tree
+	 * @throws IllegalStateException if the sampler was never started
+	 */
+	public ProcessTreeStatistics stop()
+	{
+		Thread sampler;
+		synchronized (lock)
+		{
+			if (statistics != null)
+				return statistics;
+			if (startNanos == 0)
+				throw new IllegalStateException("The sampler was never started");
+			sampler = thread;
+		}
+		if (sampler != null)
+		{
+			sampler.interrupt();
+			try
+			{
+				sampler.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		double wallTime = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+		synchronized (lock)
+		{
+			if (sampler == null)
+			{
+				statistics = new ProcessTreeStatistics(false, wallTime, 0, 0, 0, 0);
+				return statistics;
+			}
+			statistics = new ProcessTreeStatistics(true, wallTime, maxTotalUserTicks / TICKS_PER_SECOND,
+				maxTotalSystemTicks / TICKS_PER_SECOND, peakRssKb, processesSeen.size());
+			return statistics;
+		}
+	}
+
+	/**
+	 * @return the statistics collected by the sampler, or {@code null} if it has not been stopped
+	 */
+	public ProcessTreeStatistics getStatistics()
+	{
+		synchronized (lock)
+		{
+			return statistics;
+		}
+	}
+
+	/**
+	 * Takes samples until the thread is interrupted.
+	 */
+	private void run()
+	{
+		while (!Thread.currentThread().isInterrupted())
+		{
+			sample();
+			try
+			{
+				TimeUnit.MILLISECONDS.sleep(intervalMillis);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Takes a single sample of the process tree.
+	 */
+	private void sample()
+	{
+		Map<Long, List<ProcessStat>> children = new HashMap<>();
+		ProcessStat root = null;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(PROC))
+		{
+			for (Path entry : entries)
+			{
+				String name = entry.getFileName().toString();
+				if (!isNumeric(name))
+					continue;
+				ProcessStat stat = ProcessStat.read(entry);
+				if (stat == null)
+					continue;
+				if (stat.pid == rootPid)
+					root = stat;
+				children.computeIfAbsent(stat.parentPid, key -> new ArrayList<>()).add(stat);
+			}
+		}
+		catch (IOException e)
+		{
+			// The process table is unavailable; skip this sample
+			return;
+		}
+		if (root == null)
+			return;
+
+		long userTicks = 0;
+		long systemTicks = 0;
+		long rssKb = 0;
+		List<ProcessStat> tree = new ArrayList<>();
+		Deque<ProcessStat> pending = new ArrayDeque<>();
+		pending.add(root);
+		while (!pending.isEmpty())
+		{
+			ProcessStat stat = pending.removeFirst();
+			tree.add(stat);
+			userTicks += stat.userTicks + stat.childUserTicks;
+			systemTicks += stat.systemTicks + stat.childSystemTicks;
+			List<ProcessStat> descendants = children.get(stat.pid);
+			if (descendants != null)
+				pending.addAll(descendants);
+		}
+		// Resident set size is only read for processes in the tree because it requires another file
+		for (ProcessStat stat : tree)
+			rssKb += readRssKb(stat.pid);
+
+		synchronized (lock)
+		{
+			if (userTicks + systemTicks > maxTotalUserTicks + maxTotalSystemTicks)
+			{
+				maxTotalUserTicks = userTicks;
+				maxTotalSystemTicks = systemTicks;
+			}
+			peakRssKb = Math.max(peakRssKb, rssKb);
+			for (ProcessStat stat : tree)
+				processesSeen.add(stat.pid + "@" + stat.startTime);
+		}
+	}
+
+	/**
+	 * @param pid a process ID
+	 * @return the resident set size of the process, in kilobytes, or {@code 0} if it is unavailable
+	 */
+	private static long readRssKb(long pid)
+	{
+		try
+		{
+			for (String line : Files.readAllLines(PROC.resolve(Long.toString(pid)).resolve("status"),
+				StandardCharsets.UTF_8))
+			{
+				if (!line.startsWith("VmRSS:"))
+					continue;
+				String value = line.substring("VmRSS:".length()).trim();
+				int space = value.indexOf(' ');
+				if (space != -1)
+					value = value.substring(0, space);
+				return Long.parseLong(value);
+			}
+		}
+		catch (IOException | NumberFormatException e)
+		{
+			// The process exited
+		}
+		return 0;
+	}
+
+	/**
+	 * @param value a string
+	 * @return {@code true} if the string only contains digits
+	 */
+	private static boolean isNumeric(String value)
+	{
+		if (value.isEmpty())
+			return false;
+		for (int i = 0; i < value.length(); ++i)
+			if (!Character.isDigit(value.charAt(i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the ID of a process.
+	 *
+	 * @param process a process
+	 * @return the ID of the process, or {@code -1} if it is unavailable
+	 */
+	public static long getPid(Process process)
+	{
+		try
+		{
+			// Java 9+
+			Method pid = Process.class.getMethod("pid");
+			return (long) pid.invoke(process);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			// Java 8
+			try
+			{
+				Field pid = process.getClass().getDeclaredField("pid");
+				pid.setAccessible(true);
+				return pid.getInt(process);
+			}
+			catch (ReflectiveOperationException | RuntimeException unused)
+			{
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * The fields of {@code /proc/<pid>/stat} that the sampler uses.
+	 */
+	private static final class ProcessStat
+	{
+		final long pid;
+		final long parentPid;
+		final long userTicks;
+		final long systemTicks;
+		final long childUserTicks;
+		final long childSystemTicks;
+		final long startTime;
+
+		/**
+		 * @param directory the {@code /proc/<pid>} directory of a process
+		 * @return {@code null} if the process exited
+		 */
+		static ProcessStat read(Path directory)
+		{
+			String stat;
+			try
+			{
+				stat = new String(Files.readAllBytes(directory.resolve("stat")), StandardCharsets.UTF_8);
+			}
+			catch (IOException e)
+			{
+				return null;
+			}
+			// The command name is parenthesized and may contain spaces or parentheses
+			int nameEnd = stat.lastIndexOf(')');
+			int nameStart = stat.indexOf('(');
+			if (nameStart == -1 || nameEnd == -1)
+				return null;
+			String[] fields = stat.substring(nameEnd + 2).trim().split(" ");
+			// fields[0] is field 3 (state) of proc(5)
+			if (fields.length < 20)
+				return null;
+			try
+			{
+				long pid = Long.parseLong(stat.substring(0, nameStart).trim());
+				return new ProcessStat(pid, Long.parseLong(fields[1]), Long.parseLong(fields[11]),
+					Long.parseLong(fields[12]), Long.parseLong(fields[13]), Long.parseLong(fields[14]),
+					Long.parseLong(fields[19]));
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param pid              the process ID
+		 * @param parentPid        the parent's process ID
+		 * @param userTicks        the user time of the process
+		 * @param systemTicks      the system time of the process
+		 * @param childUserTicks   the user time of the children that the process waited for
+		 * @param childSystemTicks the system time of the children that the process waited for
+		 * @param startTime        the time the process started after system boot, in ticks
+		 */
+		private ProcessStat(long pid, long parentPid, long userTicks, long systemTicks, long childUserTicks,
+			long childSystemTicks, long startTime)
+		{
+			this.pid = pid;
+			this.parentPid = parentPid;
+			this.userTicks = userTicks;
+			this.systemTicks = systemTicks;
+			this.childUserTicks = childUserTicks;
+			this.childSystemTicks = childSystemTicks;
+			this.startTime = startTime;
+		}
+	}
+}
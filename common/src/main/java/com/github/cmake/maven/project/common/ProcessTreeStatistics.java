@@ -0,0 +1,79 @@
+package com.github.cmake.maven.project.common;
+
+import java.util.Locale;
+
+/**
+ * The resources consumed by a process and its descendants.
+ */
+public final class ProcessTreeStatistics
+{
+	/**
+	 * {@code false} if only the wall-clock time could be measured on this platform.
+	 */
+	public final boolean sampled;
+	/**
+	 * The wall-clock time of the process, in seconds.
+	 */
+	public final double wallTime;
+	/**
+	 * The user CPU time of the process tree, in seconds.
+	 */
+	public final double userTime;
+	/**
+	 * The system CPU time of the process tree, in seconds.
+	 */
+	public final double systemTime;
+	/**
+	 * The peak aggregate resident set size of the process tree, in kilobytes.
+	 */
+	public final long peakRssKb;
+	/**
+	 * The number of distinct processes that were observed in the tree.
+	 */
+	public final int processes;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param sampled    {@code false} if only the wall-clock time could be measured on this platform
+	 * @param wallTime   the wall-clock time of the process, in seconds
+	 * @param userTime   the user CPU time of the process tree, in seconds
+	 * @param systemTime the system CPU time of the process tree, in seconds
+	 * @param peakRssKb  the peak aggregate resident set size of the process tree, in kilobytes
+	 * @param processes  the number of distinct processes that were observed in the tree
+	 */
+	ProcessTreeStatistics(boolean sampled, double wallTime, double userTime, double systemTime, long peakRssKb,
+		int processes)
+	{
+		this.sampled = sampled;
+		this.wallTime = wallTime;
+		this.userTime = userTime;
+		this.systemTime = systemTime;
+		this.peakRssKb = peakRssKb;
+		this.processes = processes;
+	}
+
+	/**
+	 * Returns the average number of CPU cores that were busy while the process ran. A value close to the
+	 * number of available cores indicates a CPU-bound process; a value well below {@code 1} indicates a
+	 * process that spent most of its time waiting (typically on I/O).
+	 *
+	 * @return the total CPU time divided by the wall-clock time
+	 */
+	public double getCpuUtilization()
+	{
+		if (wallTime <= 0)
+			return 0;
+		return (userTime + systemTime) / wallTime;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (!sampled)
+			return String.format(Locale.ENGLISH, "wall %.3fs", wallTime);
+		return String.format(Locale.ENGLISH, "wall %.3fs, CPU %.3fs (user %.3fs, sys %.3fs, %.2f cores busy), " +
+				"peak RSS %.1f MiB, %d processes observed", wallTime, userTime + systemTime, userTime, systemTime,
+			getCpuUtilization(), peakRssKb / 1024.0, processes);
+	}
+}
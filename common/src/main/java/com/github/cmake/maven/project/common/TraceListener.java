@@ -0,0 +1,249 @@
+package com.github.cmake.maven.project.common;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Writes the trace of the entire reactor and logs a summary table when the Maven session ends. All other
+ * events are forwarded to the listener that was installed before it.
+ */
+final class TraceListener implements ExecutionListener
+{
+	private final ExecutionListener delegate;
+	private final List<Map<String, Object>> events;
+	private final Path reactorTrace;
+	private final Log log;
+
+	/**
+	 * Creates a new listener.
+	 *
+	 * @param delegate     the listener to forward events to ({@code null} if there is none)
+	 * @param events       the trace events of the session
+	 * @param reactorTrace the file to write the trace of the entire reactor to
+	 * @param log          the logger to write the summary to
+	 * @throws AssertionError if {@code events}, {@code reactorTrace} or {@code log} are null
+	 */
+	TraceListener(ExecutionListener delegate, List<Map<String, Object>> events, Path reactorTrace, Log log)
+	{
+		assert (events != null) : "events may not be null";
+		assert (reactorTrace != null) : "reactorTrace may not be null";
+		assert (log != null) : "log may not be null";
+		this.delegate = delegate;
+		this.events = events;
+		this.reactorTrace = reactorTrace;
+		this.log = log;
+	}
+
+	@Override
+	public void sessionEnded(ExecutionEvent event)
+	{
+		// Log the summary before the delegate prints the build result
+		List<Map<String, Object>> snapshot;
+		synchronized (events)
+		{
+			snapshot = new ArrayList<>(events);
+		}
+		if (!snapshot.isEmpty())
+		{
+			Map<Integer, String> processIds = new TreeMap<>();
+			for (Map<String, Object> traceEvent : snapshot)
+				processIds.put((Integer) traceEvent.get("pid"), (String) getArgs(traceEvent).get("module"));
+			try
+			{
+				Metrics.write(reactorTrace, Tracer.toChromeTrace(snapshot, processIds));
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not write " + reactorTrace, e);
+			}
+			if (log.isInfoEnabled())
+				logSummary(snapshot);
+		}
+		if (delegate != null)
+			delegate.sessionEnded(event);
+	}
+
+	/**
+	 * Logs the time spent in each module and in each phase across the reactor.
+	 *
+	 * @param snapshot the trace events
+	 */
+	private void logSummary(List<Map<String, Object>> snapshot)
+	{
+		// Sorting by path lists each phase before the phases nested inside it
+		Map<String, long[]> pathToTotal = new TreeMap<>();
+		Map<String, long[]> moduleToTotal = new TreeMap<>();
+		for (Map<String, Object> traceEvent : snapshot)
+		{
+			Map<String, Object> args = getArgs(traceEvent);
+			long duration = ((Number) traceEvent.get("dur")).longValue();
+			// [0] = count, [1] = microseconds
+			long[] total = pathToTotal.computeIfAbsent((String) args.get("path"), key -> new long[2]);
+			++total[0];
+			total[1] += duration;
+			if (((Number) args.get("depth")).intValue() == 0)
+			{
+				total = moduleToTotal.computeIfAbsent((String) args.get("module"), key -> new long[2]);
+				++total[0];
+				total[1] += duration;
+			}
+		}
+
+		log.info("------------------------------------------------------------------------");
+		log.info("CMake time by module:");
+		for (Entry<String, long[]> entry : moduleToTotal.entrySet())
+			log.info(formatRow(entry.getKey(), entry.getValue()));
+		log.info("CMake time by phase:");
+		for (Entry<String, long[]> entry : pathToTotal.entrySet())
+		{
+			String[] names = entry.getKey().split(Tracer.PATH_SEPARATOR, -1);
+			StringBuilder indentedName = new StringBuilder();
+			for (int i = 1; i < names.length; ++i)
+				indentedName.append("  ");
+			indentedName.append(names[names.length - 1]);
+			log.info(formatRow(indentedName.toString(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * @param name  the name of the row
+	 * @param total the number of occurrences and the total time in microseconds
+	 * @return the formatted row
+	 */
+	private static String formatRow(String name, long[] total)
+	{
+		return String.format(Locale.ENGLISH, "  %-48s %5dx %11.3fs", name, total[0], total[1] / 1_000_000.0);
+	}
+
+	/**
+	 * @param traceEvent a trace event
+	 * @return the arguments of the event
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> getArgs(Map<String, Object> traceEvent)
+	{
+		return (Map<String, Object>) traceEvent.get("args");
+	}
+
+	@Override
+	public void projectDiscoveryStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.projectDiscoveryStarted(event);
+	}
+
+	@Override
+	public void sessionStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.sessionStarted(event);
+	}
+
+	@Override
+	public void projectSkipped(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.projectSkipped(event);
+	}
+
+	@Override
+	public void projectStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.projectStarted(event);
+	}
+
+	@Override
+	public void projectSucceeded(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.projectSucceeded(event);
+	}
+
+	@Override
+	public void projectFailed(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.projectFailed(event);
+	}
+
+	@Override
+	public void mojoSkipped(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.mojoSkipped(event);
+	}
+
+	@Override
+	public void mojoStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.mojoStarted(event);
+	}
+
+	@Override
+	public void mojoSucceeded(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.mojoSucceeded(event);
+	}
+
+	@Override
+	public void mojoFailed(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.mojoFailed(event);
+	}
+
+	@Override
+	public void forkStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkStarted(event);
+	}
+
+	@Override
+	public void forkSucceeded(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkSucceeded(event);
+	}
+
+	@Override
+	public void forkFailed(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkFailed(event);
+	}
+
+	@Override
+	public void forkedProjectStarted(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkedProjectStarted(event);
+	}
+
+	@Override
+	public void forkedProjectSucceeded(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkedProjectSucceeded(event);
+	}
+
+	@Override
+	public void forkedProjectFailed(ExecutionEvent event)
+	{
+		if (delegate != null)
+			delegate.forkedProjectFailed(event);
+	}
+}
@@ -0,0 +1,292 @@
+package com.github.cmake.maven.project.common;
+
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times the phases of a mojo execution.
+ * <p>
+ * Phases are recorded as Chrome trace events. Phases that are started while another phase is open are
+ * nested inside it. When the outermost phase of a mojo ends, the events of the current module are written
+ * to {@code target/cmake-metrics/trace.json}. When the Maven session ends, the events of all modules are
+ * written to {@code cmake-metrics/reactor-trace.json} in the build directory of the top-level project and
+ * a summary table is logged.
+ * <p>
+ * The cmake-maven-plugin and cmake-binaries-plugin are loaded by different class loaders, so each one has
+ * its own copy of this class. Events are therefore shared through the session using JDK types only.
+ *
+ * @see <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Trace
+ * Event Format</a>
+ */
+public final class Tracer
+{
+	/**
+	 * The session data key of the list of trace events.
+	 */
+	private static final String EVENTS_KEY = Tracer.class.getName() + ".events";
+	/**
+	 * The session data key of the {@link System#nanoTime()} that event timestamps are relative to.
+	 */
+	private static final String ORIGIN_KEY = Tracer.class.getName() + ".origin";
+	/**
+	 * The session data key that is set once the end-of-session listener is installed.
+	 */
+	private static final String LISTENER_KEY = Tracer.class.getName() + ".listener";
+	/**
+	 * Separates the names of nested phases.
+	 */
+	static final String PATH_SEPARATOR = " > ";
+	private final MavenProject project;
+	private final String goal;
+	private final Log log;
+	private final List<Map<String, Object>> events;
+	private final long origin;
+	private final int processId;
+	private final Deque<Span> openSpans = new ArrayDeque<>();
+	/**
+	 * A map from the path of each phase that ended to its total duration in microseconds.
+	 */
+	private final Map<String, Long> pathToDuration = new LinkedHashMap<>();
+
+	/**
+	 * Creates a tracer for a mojo execution.
+	 *
+	 * @param session the Maven session
+	 * @param project the project that the mojo is running on
+	 * @param goal    the goal that is running (e.g. {@code cmake:compile})
+	 * @param log     the mojo's logger
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	@SuppressWarnings("unchecked")
+	public Tracer(MavenSession session, MavenProject project, String goal, Log log)
+	{
+		if (session == null)
+			throw new NullPointerException("session may not be null");
+		if (project == null)
+			throw new NullPointerException("project may not be null");
+		if (goal == null)
+			throw new NullPointerException("goal may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		this.project = project;
+		this.goal = goal;
+		this.log = log;
+
+		SessionData data = session.getRepositorySession().getData();
+		data.set(EVENTS_KEY, null, Collections.synchronizedList(new ArrayList<>()));
+		this.events = (List<Map<String, Object>>) data.get(EVENTS_KEY);
+		data.set(ORIGIN_KEY, null, System.nanoTime());
+		this.origin = (Long) data.get(ORIGIN_KEY);
+		this.processId = Math.max(0, session.getProjects().indexOf(project));
+		if (data.set(LISTENER_KEY, null, Boolean.TRUE))
+			installListener(session);
+	}
+
+	/**
+	 * Logs the summary when the session ends.
+	 *
+	 * @param session the Maven session
+	 */
+	private void installListener(MavenSession session)
+	{
+		// Maven looks up the listener each time it fires an event, so the listener can be replaced after the
+		// build has started.
+		MavenExecutionRequest request = session.getRequest();
+		ExecutionListener delegate = request.getExecutionListener();
+		Path reactorTrace = Metrics.getDirectory(session.getTopLevelProject().getBuild().getDirectory()).
+			resolve("reactor-trace.json");
+		request.setExecutionListener(new TraceListener(delegate, events, reactorTrace, log));
+	}
+
+	/**
+	 * Starts a phase. Phases must be closed in the reverse order that they were started.
+	 *
+	 * @param name the name of the phase
+	 * @return the phase
+	 */
+	public Span start(String name)
+	{
+		String path;
+		if (openSpans.isEmpty())
+			path = name;
+		else
+			path = openSpans.peek().path + PATH_SEPARATOR + name;
+		Span span = new Span(name, path, openSpans.size(), now());
+		openSpans.push(span);
+		return span;
+	}
+
+	/**
+	 * @return the goal that is running (e.g. {@code cmake:compile})
+	 */
+	public String getGoal()
+	{
+		return goal;
+	}
+
+	/**
+	 * Returns the duration of each phase of this mojo that ended. Phases with the same path that ran more than
+	 * once are summed.
+	 *
+	 * @return a map from the path of each phase (e.g. {@code cmake:compile > build}) to its duration in
+	 * microseconds, in the order that the phases ended
+	 */
+	public Map<String, Long> getDurations()
+	{
+		return Collections.unmodifiableMap(pathToDuration);
+	}
+
+	/**
+	 * @return the current time in microseconds relative to the start of the first trace
+	 */
+	private long now()
+	{
+		return (System.nanoTime() - origin) / 1000;
+	}
+
+	/**
+	 * Records a phase that has ended.
+	 *
+	 * @param span the phase
+	 */
+	private void end(Span span)
+	{
+		long end = now();
+		// Ending a phase also ends any nested phases that were left open
+		while (!openSpans.isEmpty())
+		{
+			Span top = openSpans.pop();
+			top.closed = true;
+			record(top, end);
+			if (top == span)
+				break;
+		}
+		if (span.depth == 0)
+			writeModuleTrace();
+	}
+
+	/**
+	 * Records the trace event of a phase.
+	 *
+	 * @param span the phase
+	 * @param end  the time that the phase ended in microseconds
+	 */
+	private void record(Span span, long end)
+	{
+		Map<String, Object> event = new LinkedHashMap<>();
+		event.put("name", span.name);
+		event.put("cat", goal);
+		event.put("ph", "X");
+		event.put("ts", span.start);
+		event.put("dur", end - span.start);
+		event.put("pid", processId);
+		event.put("tid", Thread.currentThread().getId());
+		Map<String, Object> args = new LinkedHashMap<>();
+		args.put("module", project.getArtifactId());
+		args.put("goal", goal);
+		args.put("depth", span.depth);
+		args.put("path", span.path);
+		event.put("args", args);
+		events.add(event);
+		pathToDuration.merge(span.path, end - span.start, Long::sum);
+	}
+
+	/**
+	 * Writes the events of the current module to {@code target/cmake-metrics/trace.json}.
+	 */
+	private void writeModuleTrace()
+	{
+		String module = project.getArtifactId();
+		List<Map<String, Object>> moduleEvents = new ArrayList<>();
+		synchronized (events)
+		{
+			for (Map<String, Object> event : events)
+				if (event.get("pid").equals(processId))
+					moduleEvents.add(event);
+		}
+		Path file = Metrics.getDirectory(project.getBuild().getDirectory()).resolve("trace.json");
+		try
+		{
+			Metrics.write(file, toChromeTrace(moduleEvents, Collections.singletonMap(processId, module)));
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not write " + file, e);
+		}
+	}
+
+	/**
+	 * @param events     trace events
+	 * @param processIds a map from each process ID to the name of its module
+	 * @return the events in the Chrome trace-event format
+	 */
+	static Map<String, Object> toChromeTrace(List<Map<String, Object>> events, Map<Integer, String> processIds)
+	{
+		List<Map<String, Object>> traceEvents = new ArrayList<>(events.size() + processIds.size());
+		for (Map.Entry<Integer, String> entry : processIds.entrySet())
+		{
+			// Chrome labels each process using its "process_name" metadata
+			Map<String, Object> metadata = new LinkedHashMap<>();
+			metadata.put("name", "process_name");
+			metadata.put("ph", "M");
+			metadata.put("pid", entry.getKey());
+			metadata.put("args", Collections.singletonMap("name", entry.getValue()));
+			traceEvents.add(metadata);
+		}
+		traceEvents.addAll(events);
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("traceEvents", traceEvents);
+		result.put("displayTimeUnit", "ms");
+		return result;
+	}
+
+	/**
+	 * A phase of a mojo execution.
+	 */
+	public final class Span implements AutoCloseable
+	{
+		private final String name;
+		private final String path;
+		private final int depth;
+		private final long start;
+		private boolean closed;
+
+		/**
+		 * @param name  the name of the phase
+		 * @param path  the names of the enclosing phases and this phase
+		 * @param depth the number of enclosing phases
+		 * @param start the start time in microseconds
+		 */
+		private Span(String name, String path, int depth, long start)
+		{
+			this.name = name;
+			this.path = path;
+			this.depth = depth;
+			this.start = start;
+		}
+
+		/**
+		 * Ends the phase. Subsequent invocations have no effect.
+		 */
+		@Override
+		public void close()
+		{
+			if (!closed)
+				end(this);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.github.cmake.maven.project.common;
+
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Helper functions for Unix file modes.
+ */
+public final class UnixModes
+{
+	/**
+	 * The permissions that correspond to each bit of a Unix file mode, from the most significant bit.
+	 */
+	private static final PosixFilePermission[] PERMISSIONS =
+		{
+			PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
+			PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE,
+			PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.OTHERS_READ,
+			PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE
+		};
+
+	/**
+	 * Prevent construction.
+	 */
+	private UnixModes()
+	{
+	}
+
+	/**
+	 * Converts a Unix file mode to a set of permissions. Bits other than the permission bits (e.g. the file
+	 * type, setuid or sticky bits) are ignored.
+	 *
+	 * @param mode a Unix file mode (e.g. {@code 0100755})
+	 * @return the permissions of the mode
+	 */
+	public static Set<PosixFilePermission> toPermissions(int mode)
+	{
+		Set<PosixFilePermission> result = EnumSet.noneOf(PosixFilePermission.class);
+		for (int i = 0; i < PERMISSIONS.length; ++i)
+			if ((mode & (1 << (PERMISSIONS.length - 1 - i))) != 0)
+				result.add(PERMISSIONS[i]);
+		return result;
+	}
+}
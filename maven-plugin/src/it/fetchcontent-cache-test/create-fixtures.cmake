@@ -0,0 +1,40 @@
+# Creates a tarball and a bare git repository that each contain a library, and records the digest of the
+# tarball and the commit of the repository in ${fixturesFile}.
+find_package(Git REQUIRED)
+file(REMOVE_RECURSE "${fixtures}")
+foreach(name IN ITEMS greeting farewell)
+	set(source "${fixtures}/${name}")
+	file(WRITE "${source}/CMakeLists.txt" "cmake_minimum_required(VERSION 3.24)\n"
+		"project(${name} C)\n"
+		"add_library(${name} STATIC ${name}.c)\n"
+		"target_include_directories(${name} PUBLIC \${CMAKE_CURRENT_SOURCE_DIR})\n")
+	file(WRITE "${source}/${name}.h" "const char* ${name}(void);\n")
+	file(WRITE "${source}/${name}.c" "#include \"${name}.h\"\n\n"
+		"const char* ${name}(void)\n{\n  return \"${name}\";\n}\n")
+endforeach()
+
+execute_process(COMMAND "${CMAKE_COMMAND}" -E tar czf greeting.tar.gz greeting
+	WORKING_DIRECTORY "${fixtures}"
+	COMMAND_ERROR_IS_FATAL ANY)
+file(SHA256 "${fixtures}/greeting.tar.gz" greetingHash)
+
+set(git "${GIT_EXECUTABLE}" -c user.name=cmake-maven-plugin -c user.email=test@example.com)
+execute_process(COMMAND ${git} init -q
+	WORKING_DIRECTORY "${fixtures}/farewell"
+	COMMAND_ERROR_IS_FATAL ANY)
+execute_process(COMMAND ${git} add -A
+	WORKING_DIRECTORY "${fixtures}/farewell"
+	COMMAND_ERROR_IS_FATAL ANY)
+execute_process(COMMAND ${git} commit -q -m "Initial commit"
+	WORKING_DIRECTORY "${fixtures}/farewell"
+	COMMAND_ERROR_IS_FATAL ANY)
+execute_process(COMMAND ${git} rev-parse HEAD
+	WORKING_DIRECTORY "${fixtures}/farewell"
+	OUTPUT_VARIABLE farewellTag
+	OUTPUT_STRIP_TRAILING_WHITESPACE
+	COMMAND_ERROR_IS_FATAL ANY)
+execute_process(COMMAND ${git} clone -q --bare farewell farewell.git
+	WORKING_DIRECTORY "${fixtures}"
+	COMMAND_ERROR_IS_FATAL ANY)
+
+file(WRITE "${fixturesFile}" "set(greetingHash ${greetingHash})\nset(farewellTag ${farewellTag})\n")
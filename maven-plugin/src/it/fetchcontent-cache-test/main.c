@@ -0,0 +1,9 @@
+#include <stdio.h>
+#include "greeting.h"
+#include "farewell.h"
+
+int main()
+{
+  printf("%s, %s\n", greeting(), farewell());
+  return 0;
+}
@@ -0,0 +1,125 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Archives;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Extracts the platform-specific cmake binaries jar.
+ * <p>
+ * The binaries are packaged without compression, so {@link Archives#extractZip} copies the contents of each
+ * entry straight from the jar into its file. Entries that are compressed (e.g. jars that were packaged by
+ * older versions of the plugin) are inflated instead. A marker next to the directory records which jar was
+ * extracted, so that the jar is only extracted again if it changes.
+ */
+public final class BinariesArchive
+{
+	/**
+	 * Prevent construction.
+	 */
+	private BinariesArchive()
+	{
+	}
+
+	/**
+	 * @param jar    the jar
+	 * @param target the directory that the jar is extracted into
+	 * @return {@code true} if the jar was completely extracted into the directory and did not change since
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while reading the jar's attributes
+	 */
+	public static boolean isExtracted(Path jar, Path target) throws IOException
+	{
+		if (jar == null)
+			throw new NullPointerException("jar may not be null");
+		if (target == null)
+			throw new NullPointerException("target may not be null");
+		Path marker = getMarker(target);
+		return Files.exists(marker) && Files.isDirectory(target) &&
+			new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).equals(getFingerprint(jar));
+	}
+
+	/**
+	 * Extracts a jar into a directory, replacing any files that the directory already contains.
+	 *
+	 * @param jar    the jar
+	 * @param target the directory to extract into
+	 * @return the number of bytes that were written
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while extracting the jar, or an entry refers to a path
+	 *                              outside of {@code target}
+	 */
+	public static long extract(Path jar, Path target) throws IOException
+	{
+		if (jar == null)
+			throw new NullPointerException("jar may not be null");
+		if (target == null)
+			throw new NullPointerException("target may not be null");
+		Path root = target.toAbsolutePath().normalize();
+		Path marker = getMarker(root);
+		Files.deleteIfExists(marker);
+		deleteRecursively(root);
+		Files.createDirectories(root);
+		long result = Archives.extractZip(jar, root, new Archives.Listener()
+		{
+		});
+		Files.write(marker, getFingerprint(jar).getBytes(StandardCharsets.UTF_8));
+		return result;
+	}
+
+	/**
+	 * @param target the directory that a jar is extracted into
+	 * @return the file that is written after the jar was completely extracted
+	 */
+	private static Path getMarker(Path target)
+	{
+		return target.resolveSibling(target.getFileName() + ".extracted");
+	}
+
+	/**
+	 * @param jar a jar
+	 * @return a string that changes if the jar is replaced or modified
+	 * @throws IOException if an error occurs while reading the jar's attributes
+	 */
+	private static String getFingerprint(Path jar) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+	}
+
+	/**
+	 * Deletes a path recursively.
+	 *
+	 * @param path the path to delete
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void deleteRecursively(Path path) throws IOException
+	{
+		if (Files.notExists(path))
+			return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				Files.deleteIfExists(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+			{
+				if (e != null)
+					throw e;
+				Files.deleteIfExists(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,278 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Platform;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A history of the phase durations of the {@code generate}, {@code compile} and {@code test} goals.
+ * <p>
+ * The history is stored outside the build directory, so that it survives {@code mvn clean}. Each
+ * execution is appended to the file as a single line of JSON and existing lines are never rewritten, so
+ * an interrupted build can at most leave a truncated last line behind. Such lines are skipped when the
+ * history is read.
+ */
+public final class BuildHistory
+{
+	/**
+	 * The name of the count of Ninja edges that were rebuilt.
+	 */
+	public static final String REBUILT_EDGES = "rebuiltEdges";
+	/**
+	 * The name of the count of tests that ran.
+	 */
+	public static final String TESTS_RUN = "testsRun";
+	/**
+	 * Writes each execution on a single line.
+	 */
+	private static final ObjectWriter WRITER = Metrics.getMapper().writer().
+		without(SerializationFeature.INDENT_OUTPUT);
+
+	/**
+	 * Prevent construction.
+	 */
+	private BuildHistory()
+	{
+	}
+
+	/**
+	 * Appends an execution to a history file.
+	 *
+	 * @param file      the history file
+	 * @param execution the execution
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while writing to the file
+	 */
+	public static void append(Path file, Execution execution) throws IOException
+	{
+		if (file == null)
+			throw new NullPointerException("file may not be null");
+		if (execution == null)
+			throw new NullPointerException("execution may not be null");
+		ByteBuffer line = ByteBuffer.wrap((execution.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.APPEND);
+		     FileLock ignored = out.lock())
+		{
+			// The lock prevents the lines of concurrent builds of the same project from interleaving
+			while (line.hasRemaining())
+				out.write(line);
+		}
+	}
+
+	/**
+	 * Reads the executions in a history file.
+	 *
+	 * @param file the history file
+	 * @return the executions, oldest first (empty if the file does not exist)
+	 * @throws NullPointerException if {@code file} is null
+	 * @throws IOException          if an error occurs while reading the file
+	 */
+	public static List<Execution> read(Path file) throws IOException
+	{
+		if (file == null)
+			throw new NullPointerException("file may not be null");
+		if (Files.notExists(file))
+			return Collections.emptyList();
+		List<Execution> result = new ArrayList<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			while (true)
+			{
+				String line = in.readLine();
+				if (line == null)
+					break;
+				if (line.trim().isEmpty())
+					continue;
+				Execution execution = Execution.fromJson(line);
+				if (execution != null)
+					result.add(execution);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a description of the current host. Durations are only comparable between executions that ran
+	 * on hosts with the same description.
+	 *
+	 * @return the platform classifier, the number of processors and the amount of physical memory (e.g.
+	 * {@code linux-x86_64, 16 cores, 64 GB})
+	 */
+	@SuppressWarnings("deprecation")
+	public static String getHostFingerprint()
+	{
+		StringBuilder result = new StringBuilder();
+		result.append(Platform.detected().getClassifier()).append(", ").
+			append(Runtime.getRuntime().availableProcessors()).append(" cores");
+		OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+		if (bean instanceof com.sun.management.OperatingSystemMXBean)
+		{
+			// getTotalPhysicalMemorySize() is deprecated since Java 14, but its replacement getTotalMemorySize()
+			// does not exist in Java 8
+			long bytes = ((com.sun.management.OperatingSystemMXBean) bean).getTotalPhysicalMemorySize();
+			// The kernel reserves part of the memory, so the exact size varies between hosts of the same type
+			result.append(String.format(Locale.ENGLISH, ", %d GB", Math.round(bytes / (1024.0 * 1024 * 1024))));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A single execution of a goal.
+	 */
+	public static final class Execution
+	{
+		/**
+		 * The time that the execution ended, in milliseconds since the epoch.
+		 */
+		public final long time;
+		/**
+		 * The artifactId of the module.
+		 */
+		public final String module;
+		/**
+		 * The goal (e.g. {@code cmake:compile}).
+		 */
+		public final String goal;
+		/**
+		 * {@code true} if the process that the goal launched succeeded.
+		 */
+		public final boolean succeeded;
+		/**
+		 * The {@link #getHostFingerprint() fingerprint} of the host that the goal ran on.
+		 */
+		public final String host;
+		/**
+		 * A map from the path of each phase (e.g. {@code cmake:compile > build}) to its duration in
+		 * milliseconds.
+		 */
+		public final Map<String, Long> durations;
+		/**
+		 * A map from the name of each quantity of work (e.g. {@link #REBUILT_EDGES}) to its value.
+		 */
+		public final Map<String, Long> counts;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param time      the time that the execution ended, in milliseconds since the epoch
+		 * @param module    the artifactId of the module
+		 * @param goal      the goal
+		 * @param succeeded {@code true} if the process that the goal launched succeeded
+		 * @param host      the fingerprint of the host that the goal ran on
+		 * @param durations a map from the path of each phase to its duration in milliseconds
+		 * @param counts    a map from the name of each quantity of work to its value
+		 * @throws NullPointerException if any of the arguments are null
+		 */
+		public Execution(long time, String module, String goal, boolean succeeded, String host,
+			Map<String, Long> durations, Map<String, Long> counts)
+		{
+			if (module == null)
+				throw new NullPointerException("module may not be null");
+			if (goal == null)
+				throw new NullPointerException("goal may not be null");
+			if (host == null)
+				throw new NullPointerException("host may not be null");
+			if (durations == null)
+				throw new NullPointerException("durations may not be null");
+			if (counts == null)
+				throw new NullPointerException("counts may not be null");
+			this.time = time;
+			this.module = module;
+			this.goal = goal;
+			this.succeeded = succeeded;
+			this.host = host;
+			this.durations = Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+			this.counts = Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+		}
+
+		/**
+		 * @return the execution as a single line of JSON
+		 * @throws JsonProcessingException if the execution cannot be serialized
+		 */
+		private String toJson() throws JsonProcessingException
+		{
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("time", time);
+			result.put("module", module);
+			result.put("goal", goal);
+			result.put("succeeded", succeeded);
+			result.put("host", host);
+			result.put("durations", durations);
+			result.put("counts", counts);
+			return WRITER.writeValueAsString(result);
+		}
+
+		/**
+		 * @param line a line of the history file
+		 * @return {@code null} if the line is not a valid execution
+		 */
+		private static Execution fromJson(String line)
+		{
+			JsonNode root;
+			try
+			{
+				root = Metrics.getMapper().readTree(line);
+			}
+			catch (IOException e)
+			{
+				return null;
+			}
+			if (root == null || !root.path("time").isNumber() || !root.path("module").isTextual() ||
+				!root.path("goal").isTextual() || !root.path("host").isTextual())
+			{
+				return null;
+			}
+			return new Execution(root.get("time").asLong(), root.get("module").asText(),
+				root.get("goal").asText(), root.path("succeeded").asBoolean(), root.get("host").asText(),
+				toLongs(root.path("durations")), toLongs(root.path("counts")));
+		}
+
+		/**
+		 * @param node a JSON object
+		 * @return a map from the name of each numeric field of {@code node} to its value
+		 */
+		private static Map<String, Long> toLongs(JsonNode node)
+		{
+			Map<String, Long> result = new LinkedHashMap<>();
+			Iterator<Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext())
+			{
+				Entry<String, JsonNode> field = fields.next();
+				if (field.getValue().isNumber())
+					result.put(field.getKey(), field.getValue().asLong());
+			}
+			return result;
+		}
+
+		@Override
+		public String toString()
+		{
+			return goal + " of " + module + " at " + time + ": " + durations;
+		}
+	}
+}
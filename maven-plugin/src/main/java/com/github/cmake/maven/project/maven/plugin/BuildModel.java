@@ -0,0 +1,250 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What cmake reported about a build directory through the File API: its targets ({@code codemodel-v2}),
+ * cache ({@code cache-v2}), compilers ({@code toolchains-v1}) and inputs ({@code cmakeFiles-v1}).
+ * <p>
+ * Models are shared by all goals of a Maven session, so that a build directory's replies are parsed at most
+ * once per configure step. Each reply is only read when it is first requested.
+ */
+public final class BuildModel
+{
+	/**
+	 * The session data key of the map from each build directory to its model.
+	 */
+	private static final String MODELS_KEY = BuildModel.class.getName() + ".models";
+	/**
+	 * The build directory.
+	 */
+	public final Path buildDirectory;
+	/**
+	 * The reply index that the model was read from.
+	 */
+	private final Path index;
+	/**
+	 * A map from the kind of each object that cmake replied with to the file that contains it.
+	 */
+	private final Map<String, Path> replies;
+	/**
+	 * A map from the name of each build configuration that was read to its code model.
+	 */
+	private final Map<String, CodeModel> configToCodeModel = new HashMap<>();
+	/**
+	 * The cache ({@code null} until first used).
+	 */
+	private CMakeCache cache;
+	/**
+	 * The toolchains ({@code null} until first used).
+	 */
+	private List<Toolchain> toolchains;
+	/**
+	 * The project's CMake inputs ({@code null} until first used).
+	 */
+	private List<Path> cmakeInputs;
+
+	/**
+	 * Returns the model of a build directory, reusing the model of an earlier goal if cmake has not
+	 * reconfigured the build directory since.
+	 *
+	 * @param session        the Maven session
+	 * @param buildDirectory the build directory
+	 * @return {@code null} if cmake did not write any replies (e.g. because the project was never configured
+	 * using the {@code generate} goal)
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while reading the reply index
+	 */
+	@SuppressWarnings("unchecked")
+	public static BuildModel get(MavenSession session, Path buildDirectory) throws IOException
+	{
+		if (session == null)
+			throw new NullPointerException("session may not be null");
+		if (buildDirectory == null)
+			throw new NullPointerException("buildDirectory may not be null");
+		Path directory = buildDirectory.toAbsolutePath().normalize();
+		Path index = FileApi.getLatestIndex(directory);
+		if (index == null)
+			return null;
+
+		SessionData data = session.getRepositorySession().getData();
+		data.set(MODELS_KEY, null, new ConcurrentHashMap<>());
+		Map<Path, Object> directoryToModel = (Map<Path, Object>) data.get(MODELS_KEY);
+		// A different version of the plugin may have stored a model that this class loader cannot use
+		Object cached = directoryToModel.get(directory);
+		if (cached instanceof BuildModel && ((BuildModel) cached).index.equals(index))
+			return (BuildModel) cached;
+		BuildModel model = new BuildModel(directory, index, FileApi.getReplies(index));
+		directoryToModel.put(directory, model);
+		return model;
+	}
+
+	/**
+	 * @param buildDirectory the build directory
+	 * @param index          the reply index that the model was read from
+	 * @param replies        a map from the kind of each object that cmake replied with to the file that
+	 *                       contains it
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	private BuildModel(Path buildDirectory, Path index, Map<String, Path> replies)
+	{
+		assert (buildDirectory != null) : "buildDirectory may not be null";
+		assert (index != null) : "index may not be null";
+		assert (replies != null) : "replies may not be null";
+		this.buildDirectory = buildDirectory;
+		this.index = index;
+		this.replies = replies;
+	}
+
+	/**
+	 * @param config the build configuration ({@code null} for the first configuration, which is the only
+	 *               configuration of single-config generators)
+	 * @return {@code null} if cmake did not write a code model
+	 * @throws IOException if an error occurs while reading the code model, or it does not contain
+	 *                     {@code config}
+	 */
+	public synchronized CodeModel getCodeModel(String config) throws IOException
+	{
+		Path reply = replies.get(FileApi.CODEMODEL);
+		if (reply == null)
+			return null;
+		CodeModel codeModel = configToCodeModel.get(config);
+		if (codeModel == null)
+		{
+			codeModel = CodeModel.read(reply, config);
+			configToCodeModel.put(config, codeModel);
+		}
+		return codeModel;
+	}
+
+	/**
+	 * @return {@code null} if cmake did not write the cache object
+	 * @throws IOException if an error occurs while reading the cache
+	 */
+	public synchronized CMakeCache getCache() throws IOException
+	{
+		if (cache == null)
+		{
+			Path reply = replies.get(FileApi.CACHE);
+			if (reply == null)
+				return null;
+			cache = CMakeCache.readReply(reply);
+		}
+		return cache;
+	}
+
+	/**
+	 * @return the compiler of each enabled language (empty if cmake did not write the toolchains object)
+	 * @throws IOException if an error occurs while reading the toolchains
+	 */
+	public synchronized List<Toolchain> getToolchains() throws IOException
+	{
+		if (toolchains == null)
+		{
+			Path reply = replies.get(FileApi.TOOLCHAINS);
+			if (reply == null)
+				return Collections.emptyList();
+			JsonNode root = Metrics.getMapper().readTree(reply.toFile());
+			List<Toolchain> result = new ArrayList<>();
+			for (JsonNode toolchain : root.path("toolchains"))
+			{
+				JsonNode compiler = toolchain.path("compiler");
+				result.add(new Toolchain(toolchain.path("language").asText(), compiler.path("id").asText(),
+					compiler.path("version").asText(), compiler.path("path").asText()));
+			}
+			toolchains = Collections.unmodifiableList(result);
+		}
+		return toolchains;
+	}
+
+	/**
+	 * Returns the files that cmake read while configuring the project, excluding files that are part of
+	 * cmake itself and files that the project generated. Modifying any of these files causes cmake to
+	 * reconfigure the project.
+	 *
+	 * @return {@code null} if cmake did not write the cmakeFiles object
+	 * @throws IOException if an error occurs while reading the object
+	 */
+	public synchronized List<Path> getCMakeInputs() throws IOException
+	{
+		if (cmakeInputs == null)
+		{
+			Path reply = replies.get(FileApi.CMAKE_FILES);
+			if (reply == null)
+				return null;
+			JsonNode root = Metrics.getMapper().readTree(reply.toFile());
+			// Relative paths are relative to the top-level source directory
+			Path sourceDirectory = Paths.get(root.path("paths").path("source").asText());
+			List<Path> result = new ArrayList<>();
+			for (JsonNode input : root.path("inputs"))
+			{
+				if (input.path("isCMake").asBoolean() || input.path("isGenerated").asBoolean())
+					continue;
+				result.add(sourceDirectory.resolve(input.path("path").asText()).normalize());
+			}
+			cmakeInputs = Collections.unmodifiableList(result);
+		}
+		return cmakeInputs;
+	}
+
+	/**
+	 * The compiler of a language.
+	 */
+	public static final class Toolchain
+	{
+		/**
+		 * The language (e.g. {@code C}, {@code CXX}).
+		 */
+		public final String language;
+		/**
+		 * The compiler identification (e.g. {@code GNU}, {@code Clang}, {@code MSVC}; empty if unknown).
+		 */
+		public final String compilerId;
+		/**
+		 * The version of the compiler (empty if unknown).
+		 */
+		public final String compilerVersion;
+		/**
+		 * The path of the compiler (empty if unknown).
+		 */
+		public final String compilerPath;
+
+		/**
+		 * @param language        the language
+		 * @param compilerId      the compiler identification
+		 * @param compilerVersion the version of the compiler
+		 * @param compilerPath    the path of the compiler
+		 * @throws AssertionError if any of the arguments are null
+		 */
+		private Toolchain(String language, String compilerId, String compilerVersion, String compilerPath)
+		{
+			assert (language != null) : "language may not be null";
+			assert (compilerId != null) : "compilerId may not be null";
+			assert (compilerVersion != null) : "compilerVersion may not be null";
+			assert (compilerPath != null) : "compilerPath may not be null";
+			this.language = language;
+			this.compilerId = compilerId;
+			this.compilerVersion = compilerVersion;
+			this.compilerPath = compilerPath;
+		}
+
+		@Override
+		public String toString()
+		{
+			return language + ": " + compilerId + " " + compilerVersion + " (" + compilerPath + ")";
+		}
+	}
+}
@@ -0,0 +1,532 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import com.github.cmake.maven.project.maven.plugin.CodeModel.Target;
+import com.github.cmake.maven.project.maven.plugin.TestPlan.Batch;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Goal which configures, builds and tests a project in a single execution.
+ * <p>
+ * After configuring the project, the goal reads the targets and their dependencies from the File API
+ * code model, and the tests from {@code ctest --show-only=json-v1}. Targets are built in dependency order,
+ * and each batch of tests runs as soon as the targets it needs are built, while the build continues with
+ * the next targets. Requires CMake 3.21 or newer.
+ */
+@Mojo(name = "build", defaultPhase = LifecyclePhase.TEST)
+public class BuildMojo extends CmakeMojo
+{
+	/**
+	 * The directory containing CMakeLists.txt.
+	 */
+	@Parameter(required = true)
+	private File sourcePath;
+	/**
+	 * The output directory.
+	 */
+	@Parameter(required = true)
+	private File targetPath;
+	/**
+	 * The makefile generator to use.
+	 */
+	@Parameter
+	private String generator;
+	/**
+	 * The build configuration (e.g. {@code Debug}, {@code Release}).
+	 */
+	@Parameter
+	private String config;
+	/**
+	 * The maximum number of concurrent build jobs ({@code 0} for the number of processors).
+	 */
+	@Parameter(property = "cmake.parallelism", defaultValue = "0")
+	private int parallelism;
+	/**
+	 * The number of tests that run concurrently with the build ({@code 0} for a quarter of
+	 * {@link #parallelism}). The build uses the remaining jobs while tests are running. Tests that run after
+	 * the build has finished use {@link #parallelism}.
+	 */
+	@Parameter(property = "cmake.testParallelism", defaultValue = "0")
+	private int testParallelism;
+	/**
+	 * Value that lets Maven tests fail without causing the build to fail.
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean ignoreTestFailure;
+	/**
+	 * Maven tests value that indicates just the ctest tests are to be skipped.
+	 */
+	@Parameter(property = "ctest.skip.tests", defaultValue = "false")
+	private boolean ctestSkip;
+	/**
+	 * Standard Maven tests value that indicates all tests are to be skipped.
+	 */
+	@Parameter(property = "maven.test.skip", defaultValue = "false")
+	private boolean skipTests;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public BuildMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		boolean succeeded = false;
+		try (Span goalSpan = startTracing("build"))
+		{
+			if (!sourcePath.exists())
+				throw new MojoExecutionException("sourcePath does not exist: " + sourcePath.getAbsolutePath());
+			if (!targetPath.exists() && !targetPath.mkdirs())
+				throw new MojoExecutionException("Cannot create " + targetPath.getAbsolutePath());
+
+			downloadBinariesIfNecessary();
+
+			ProcessBuilder environment = new ProcessBuilder();
+			overrideEnvironmentVariables(environment);
+			String cmakePath = getBinaryPath("cmake", environment).toString();
+			boolean runTests = !skipTests && !ctestSkip;
+			String ctestPath = null;
+			if (runTests)
+				ctestPath = getBinaryPath("ctest", environment).toString();
+			if (!isCMakeAtLeast(environment, 3, 21))
+				throw new MojoExecutionException("The build goal requires CMake 3.21 or newer");
+
+			int budget = parallelism;
+			if (budget <= 0)
+				budget = Runtime.getRuntime().availableProcessors();
+			int overlappingTestJobs = testParallelism;
+			if (overlappingTestJobs <= 0)
+				overlappingTestJobs = Math.max(1, budget / 4);
+
+			Path buildDirectory = targetPath.toPath().toAbsolutePath();
+			configure(cmakePath);
+
+			TestPlan plan = null;
+			if (runTests)
+			{
+				try (Span span = trace("plan tests"))
+				{
+					plan = planTests(buildDirectory, ctestPath);
+				}
+			}
+			Results results = new Results();
+			if (plan == null)
+			{
+				try (Span span = trace("build"))
+				{
+					build(cmakePath, Collections.emptySet(), budget, results);
+				}
+				results.buildEnd = System.nanoTime();
+				if (runTests && !results.buildFailed)
+				{
+					try (Span span = trace("test"))
+					{
+						results.add(runTests(ctestPath, null, 0, budget));
+					}
+				}
+			}
+			else
+			{
+				try (Span span = trace("build and test"))
+				{
+					buildAndTest(plan, cmakePath, ctestPath, budget, overlappingTestJobs, results);
+				}
+			}
+			results.log(getLog());
+			Metrics.write(Metrics.getDirectory(getBuildDirectory()).resolve("build.json"), results.toMetrics());
+
+			if (results.buildFailed)
+				throw new MojoExecutionException("Build failed");
+			if (results.testsFailed)
+			{
+				if (ignoreTestFailure)
+					getLog().warn("Ignoring test failures");
+				else
+					throw new MojoExecutionException("Test failure");
+			}
+			succeeded = !results.testsFailed;
+		}
+		catch (InterruptedException | IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+		finally
+		{
+			recordHistory(succeeded, Collections.emptyMap());
+		}
+	}
+
+	/**
+	 * Configures the project the same way as the {@code generate} goal.
+	 *
+	 * @param cmakePath the path of the cmake executable
+	 * @throws MojoExecutionException if cmake fails
+	 * @throws IOException            if an error occurs while running cmake
+	 * @throws InterruptedException   if the thread was interrupted
+	 */
+	private void configure(String cmakePath) throws MojoExecutionException, IOException, InterruptedException
+	{
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(targetPath);
+		overrideEnvironmentVariables(processBuilder);
+		processBuilder.command().add(cmakePath);
+		if (config != null)
+			processBuilder.command().add("-DCMAKE_BUILD_TYPE=" + config);
+		int returnCode = configure(processBuilder, sourcePath, generator, "build-configure");
+		if (returnCode != 0)
+			throw new MojoExecutionException("Return code: " + returnCode);
+	}
+
+	/**
+	 * Maps the project's tests to the targets they need.
+	 *
+	 * @param buildDirectory the build directory
+	 * @param ctestPath      the path of the ctest executable
+	 * @return {@code null} if the code model or the list of tests is unavailable, in which case the project
+	 * should be built before running all tests
+	 * @throws IOException          if an error occurs while reading the code model or running ctest
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private TestPlan planTests(Path buildDirectory, String ctestPath) throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		BuildModel model = getBuildModel(buildDirectory);
+		CodeModel codeModel = null;
+		if (model != null)
+			codeModel = model.getCodeModel(config);
+		if (codeModel == null)
+		{
+			log.warn("cmake did not write a code model. Running tests after the build.");
+			return null;
+		}
+
+		JsonNode ctestInfo = listTests(targetPath, ctestPath, config);
+		if (ctestInfo == null)
+		{
+			log.warn("Running tests after the build.");
+			return null;
+		}
+		TestPlan plan = TestPlan.create(codeModel, ctestInfo);
+		if (log.isDebugEnabled())
+		{
+			for (Batch batch : plan.batches)
+				log.debug("Test batch: " + batch);
+		}
+		return plan;
+	}
+
+	/**
+	 * Builds targets in dependency order, running each batch of tests once the targets it needs are built.
+	 *
+	 * @param plan                the test plan
+	 * @param cmakePath           the path of the cmake executable
+	 * @param ctestPath           the path of the ctest executable
+	 * @param budget              the number of concurrent jobs
+	 * @param overlappingTestJobs the number of concurrent tests while the build is running, which are
+	 *                            subtracted from the build jobs while a test batch may be running
+	 * @param results             the results to update
+	 * @throws IOException          if an error occurs while running cmake or ctest
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private void buildAndTest(TestPlan plan, String cmakePath, String ctestPath, int budget,
+		int overlappingTestJobs, Results results) throws IOException, InterruptedException
+	{
+		// ctest records its state in Testing/Temporary, so only one batch may run at a time
+		ExecutorService testExecutor = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "cmake-test-batches");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<Map<String, Object>>> testResults = new ArrayList<>();
+		try
+		{
+			// Builds that may overlap with a test batch leave its jobs free, so that the goal does not use more
+			// than the budget
+			int overlappingBuildJobs = Math.max(1, budget - overlappingTestJobs);
+			Set<Target> built = new HashSet<>();
+			for (int i = 0; i < plan.batches.size(); ++i)
+			{
+				Batch batch = plan.batches.get(i);
+				boolean lastBatch = batch.targets.isEmpty();
+				int buildJobs;
+				if (testResults.isEmpty())
+					buildJobs = budget;
+				else
+					buildJobs = overlappingBuildJobs;
+				if (lastBatch)
+				{
+					// Build the remainder of the project
+					if (!build(cmakePath, Collections.emptySet(), buildJobs, results))
+						break;
+					built = null;
+				}
+				else if (!built.containsAll(batch.targets))
+				{
+					if (!build(cmakePath, batch.targets, buildJobs, results))
+						break;
+					built.addAll(batch.closure);
+				}
+				int batchIndex = i;
+				int jobs;
+				if (lastBatch)
+					jobs = budget;
+				else
+					jobs = overlappingTestJobs;
+				testResults.add(testExecutor.submit(() -> runTests(ctestPath, batch, batchIndex, jobs)));
+			}
+			// Build the targets that are not needed by any test
+			if (!results.buildFailed && built != null)
+				build(cmakePath, Collections.emptySet(), overlappingBuildJobs, results);
+			results.buildEnd = System.nanoTime();
+
+			for (Future<Map<String, Object>> future : testResults)
+				results.add(await(future));
+		}
+		finally
+		{
+			testExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Builds targets.
+	 *
+	 * @param cmakePath the path of the cmake executable
+	 * @param targets   the targets to build (empty to build the default target)
+	 * @param jobs      the number of concurrent build jobs
+	 * @param results   the results to update
+	 * @return {@code false} if the build failed
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private boolean build(String cmakePath, Set<Target> targets, int jobs, Results results)
+		throws IOException, InterruptedException
+	{
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(targetPath);
+		overrideEnvironmentVariables(processBuilder);
+		Collections.addAll(processBuilder.command(), cmakePath, "--build", targetPath.getAbsolutePath(),
+			"--parallel", String.valueOf(jobs));
+		if (!targets.isEmpty())
+		{
+			processBuilder.command().add("--target");
+			for (Target target : targets)
+				processBuilder.command().add(target.name);
+		}
+		if (config != null)
+			Collections.addAll(processBuilder.command(), "--config", config);
+		Log log = getLog();
+		if (log.isInfoEnabled())
+		{
+			if (targets.isEmpty())
+				log.info("Building the remaining targets");
+			else
+				log.info("Building " + targets);
+		}
+		long start = System.nanoTime();
+		int exitCode = waitFor(processBuilder, "build-" + results.builds.size(), log);
+		Map<String, Object> result = new LinkedHashMap<>();
+		List<String> targetNames = new ArrayList<>();
+		for (Target target : targets)
+			targetNames.add(target.name);
+		result.put("targets", targetNames);
+		result.put("startSeconds", results.getOffsetSeconds(start));
+		result.put("seconds", (System.nanoTime() - start) / 1_000_000_000.0);
+		result.put("exitCode", exitCode);
+		results.builds.add(result);
+		if (exitCode != 0)
+		{
+			results.buildFailed = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs a batch of tests.
+	 *
+	 * @param ctestPath  the path of the ctest executable
+	 * @param batch      the batch ({@code null} to run all tests)
+	 * @param batchIndex the index of the batch
+	 * @param jobs       the number of concurrent tests
+	 * @return the result of the batch
+	 * @throws IOException          if an error occurs while running ctest
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private Map<String, Object> runTests(String ctestPath, Batch batch, int batchIndex, int jobs)
+		throws IOException, InterruptedException
+	{
+		String name = "test-batch-" + batchIndex;
+		Path junit = new File(getBuildDirectory(), "surefire-reports").toPath().
+			resolve("TEST-ctest-" + name + ".xml").toAbsolutePath();
+		Files.createDirectories(junit.getParent());
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(targetPath);
+		overrideEnvironmentVariables(processBuilder);
+		Collections.addAll(processBuilder.command(), ctestPath, "--output-on-failure", "--parallel",
+			String.valueOf(jobs), "--output-junit", junit.toString());
+		if (config != null)
+			Collections.addAll(processBuilder.command(), "--build-config", config);
+		if (batch != null)
+			Collections.addAll(processBuilder.command(), "--tests-regex", batch.getTestRegex());
+
+		Path logFile = Metrics.getDirectory(getBuildDirectory()).resolve("build").resolve(name + ".log");
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("name", name);
+		if (batch != null)
+		{
+			List<String> targetNames = new ArrayList<>();
+			for (Target target : batch.targets)
+				targetNames.add(target.name);
+			result.put("targets", targetNames);
+			result.put("tests", batch.tests);
+		}
+		result.put("junit", junit.toString());
+		result.put("log", logFile.toAbsolutePath().toString());
+		try (PrefixedLog log = new PrefixedLog(getLog(), name, logFile))
+		{
+			if (log.isDebugEnabled())
+				log.debug("Command-line: " + processBuilder.command());
+			long start = System.nanoTime();
+			int exitCode = waitFor(processBuilder, name, log);
+			result.put("startNanos", start);
+			result.put("seconds", (System.nanoTime() - start) / 1_000_000_000.0);
+			result.put("exitCode", exitCode);
+		}
+		return result;
+	}
+
+	/**
+	 * The outcome of the build and test batches.
+	 */
+	private static final class Results
+	{
+		/**
+		 * The time that the goal started, in nanoseconds.
+		 */
+		private final long start = System.nanoTime();
+		/**
+		 * The time that the last build invocation ended, in nanoseconds.
+		 */
+		public long buildEnd;
+		public final List<Map<String, Object>> builds = new ArrayList<>();
+		public final List<Map<String, Object>> tests = new ArrayList<>();
+		public boolean buildFailed;
+		public boolean testsFailed;
+
+		/**
+		 * @param nanos a time returned by {@link System#nanoTime()}
+		 * @return the number of seconds between the start of the goal and {@code nanos}
+		 */
+		public double getOffsetSeconds(long nanos)
+		{
+			return (nanos - start) / 1_000_000_000.0;
+		}
+
+		/**
+		 * Adds the result of a test batch.
+		 *
+		 * @param result the result
+		 */
+		public void add(Map<String, Object> result)
+		{
+			long testStart = (Long) result.remove("startNanos");
+			result.put("startSeconds", getOffsetSeconds(testStart));
+			result.put("overlappedBuild", testStart < buildEnd);
+			if ((Integer) result.get("exitCode") != 0)
+				testsFailed = true;
+			tests.add(result);
+		}
+
+		/**
+		 * @return the number of seconds of test execution that overlapped with the build
+		 */
+		private double getOverlappedSeconds()
+		{
+			double buildEndSeconds = getOffsetSeconds(buildEnd);
+			double result = 0;
+			for (Map<String, Object> test : tests)
+			{
+				double testStart = (Double) test.get("startSeconds");
+				double testEnd = testStart + (Double) test.get("seconds");
+				result += Math.max(0, Math.min(testEnd, buildEndSeconds) - testStart);
+			}
+			return result;
+		}
+
+		/**
+		 * Logs a summary of the results.
+		 *
+		 * @param log the log to write to
+		 */
+		public void log(Log log)
+		{
+			if (!log.isInfoEnabled())
+				return;
+			double buildSeconds = 0;
+			for (Map<String, Object> build : builds)
+				buildSeconds += (Double) build.get("seconds");
+			double testSeconds = 0;
+			int failedBatches = 0;
+			for (Map<String, Object> test : tests)
+			{
+				testSeconds += (Double) test.get("seconds");
+				if ((Integer) test.get("exitCode") != 0)
+				{
+					++failedBatches;
+					log.warn(test.get("name") + " failed, see " + test.get("log"));
+				}
+			}
+			log.info(String.format(Locale.ENGLISH, "%d build invocations took %.3fs; %d test batches took " +
+				"%.3fs, of which %.3fs overlapped with the build. %d test batches failed.", builds.size(),
+				buildSeconds, tests.size(), testSeconds, getOverlappedSeconds(), failedBatches));
+		}
+
+		/**
+		 * @return the metrics that are written to {@code build.json}
+		 */
+		public Map<String, Object> toMetrics()
+		{
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("totalSeconds", getOffsetSeconds(System.nanoTime()));
+			result.put("overlappedTestSeconds", getOverlappedSeconds());
+			result.put("builds", builds);
+			result.put("testBatches", tests);
+			return result;
+		}
+	}
+}
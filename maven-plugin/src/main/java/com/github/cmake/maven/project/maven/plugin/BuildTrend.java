@@ -0,0 +1,370 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.maven.plugin.BuildHistory.Execution;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Compares the most recent durations of a phase against the durations that preceded them.
+ * <p>
+ * Executions are only compared to executions of the same goal, in the same module, on hosts with the same
+ * fingerprint. Executions whose process failed, or that did no work (e.g. ninja had nothing to rebuild), are
+ * ignored. Executions that report the number of rebuilt edges are further divided into workloads whose edge
+ * counts lie between consecutive powers of two, so that clean builds are not compared against incremental
+ * builds. The last {@code window} durations of each phase are compared against up to {@code baselineSize}
+ * durations that precede them using a one-sided Mann-Whitney U test, which makes no assumption about the
+ * distribution of the durations and is not thrown off by a few outliers.
+ */
+public final class BuildTrend
+{
+	/**
+	 * The artifactId of the module.
+	 */
+	public final String module;
+	/**
+	 * The goal (e.g. {@code cmake:compile}).
+	 */
+	public final String goal;
+	/**
+	 * The fingerprint of the host.
+	 */
+	public final String host;
+	/**
+	 * The range of rebuilt edges of the executions (e.g. {@code 512-1023 rebuilt edges}), or {@code null} if
+	 * the goal does not report rebuilt edges.
+	 */
+	public final String workload;
+	/**
+	 * The path of the phase (e.g. {@code cmake:compile > build}).
+	 */
+	public final String phase;
+	/**
+	 * The time that the first execution of the recent window ended, in milliseconds since the epoch.
+	 */
+	public final long recentSince;
+	/**
+	 * The median duration of the baseline window, in milliseconds.
+	 */
+	public final double baselineMedian;
+	/**
+	 * The median duration of the recent window, in milliseconds.
+	 */
+	public final double recentMedian;
+	/**
+	 * The probability of observing recent durations at least this much longer than the baseline if the
+	 * phase did not actually slow down.
+	 */
+	public final double pValue;
+	/**
+	 * The median of each window of consecutive durations, oldest first.
+	 */
+	public final List<Double> rollingMedians;
+	/**
+	 * A map from the name of each quantity of work to its median in the baseline window.
+	 */
+	public final Map<String, Double> baselineCounts;
+	/**
+	 * A map from the name of each quantity of work to its median in the recent window.
+	 */
+	public final Map<String, Double> recentCounts;
+	private final int baselineSize;
+	private final int recentSize;
+
+	/**
+	 * Compares the recent durations of each phase against their baseline.
+	 *
+	 * @param executions   the executions, oldest first
+	 * @param window       the number of recent executions to compare against the baseline. This is also the
+	 *                     size of the window that rolling medians are computed over.
+	 * @param baselineSize the maximum number of executions before the recent window to compare against
+	 * @return the trend of each phase that ran at least {@code 2 * window} times in the same workload
+	 * @throws NullPointerException     if {@code executions} is null
+	 * @throws IllegalArgumentException if {@code window} is less than 1, or {@code baselineSize} is less than
+	 *                                  {@code window}
+	 */
+	public static List<BuildTrend> analyze(List<Execution> executions, int window, int baselineSize)
+	{
+		if (executions == null)
+			throw new NullPointerException("executions may not be null");
+		if (window < 1)
+			throw new IllegalArgumentException("window must be positive: " + window);
+		if (baselineSize < window)
+		{
+			throw new IllegalArgumentException("baselineSize (" + baselineSize + ") may not be less than " +
+				"window (" + window + ")");
+		}
+		Map<List<String>, List<Execution>> groups = new LinkedHashMap<>();
+		for (Execution execution : executions)
+		{
+			if (!execution.succeeded || execution.counts.containsValue(0L))
+				continue;
+			groups.computeIfAbsent(Arrays.asList(execution.module, execution.goal, execution.host,
+				getWorkload(execution)), key -> new ArrayList<>()).add(execution);
+		}
+		List<BuildTrend> result = new ArrayList<>();
+		for (Entry<List<String>, List<Execution>> entry : groups.entrySet())
+		{
+			String workload = entry.getKey().get(3);
+			List<Execution> group = entry.getValue();
+			Set<String> phases = new LinkedHashSet<>();
+			for (Execution execution : group)
+				phases.addAll(execution.durations.keySet());
+			for (String phase : phases)
+			{
+				List<Execution> phaseExecutions = new ArrayList<>();
+				for (Execution execution : group)
+					if (execution.durations.containsKey(phase))
+						phaseExecutions.add(execution);
+				// The baseline must be at least as large as the recent window for the test to be meaningful
+				if (phaseExecutions.size() < 2 * window)
+					continue;
+				int recentStart = phaseExecutions.size() - window;
+				int baselineStart = Math.max(0, recentStart - baselineSize);
+				List<Double> rollingMedians = getRollingMedians(phaseExecutions, phase, window);
+				result.add(new BuildTrend(workload, phase, phaseExecutions.subList(baselineStart, recentStart),
+					phaseExecutions.subList(recentStart, phaseExecutions.size()), rollingMedians));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param execution an execution that did some work
+	 * @return the range of rebuilt edges that the execution falls into ({@code null} if the execution does
+	 * not report rebuilt edges)
+	 */
+	private static String getWorkload(Execution execution)
+	{
+		Long edges = execution.counts.get(BuildHistory.REBUILT_EDGES);
+		if (edges == null || edges <= 0)
+			return null;
+		long low = Long.highestOneBit(edges);
+		long high = low * 2 - 1;
+		if (low == high)
+			return low + " rebuilt edges";
+		return low + "-" + high + " rebuilt edges";
+	}
+
+	/**
+	 * @param executions the executions of a phase, oldest first
+	 * @param phase      the path of the phase
+	 * @param window     the number of durations in each window
+	 * @return the median of each window of consecutive durations, oldest first
+	 */
+	private static List<Double> getRollingMedians(List<Execution> executions, String phase, int window)
+	{
+		List<Double> result = new ArrayList<>();
+		for (int end = window; end <= executions.size(); ++end)
+			result.add(median(getDurations(executions.subList(end - window, end), phase)));
+		return result;
+	}
+
+	/**
+	 * @param workload the range of rebuilt edges of the executions ({@code null} if unknown)
+	 * @param phase    the path of the phase
+	 * @param baseline the executions of the baseline window, oldest first
+	 * @param recent   the executions of the recent window, oldest first
+	 * @param rolling  the median of each window of consecutive durations, oldest first
+	 */
+	private BuildTrend(String workload, String phase, List<Execution> baseline, List<Execution> recent,
+		List<Double> rolling)
+	{
+		Execution first = recent.get(0);
+		this.module = first.module;
+		this.goal = first.goal;
+		this.host = first.host;
+		this.workload = workload;
+		this.phase = phase;
+		this.recentSince = first.time;
+		List<Double> baselineDurations = getDurations(baseline, phase);
+		List<Double> recentDurations = getDurations(recent, phase);
+		this.baselineMedian = median(baselineDurations);
+		this.recentMedian = median(recentDurations);
+		this.pValue = getPValue(baselineDurations, recentDurations);
+		this.rollingMedians = Collections.unmodifiableList(rolling);
+		this.baselineCounts = Collections.unmodifiableMap(getMedianCounts(baseline));
+		this.recentCounts = Collections.unmodifiableMap(getMedianCounts(recent));
+		this.baselineSize = baseline.size();
+		this.recentSize = recent.size();
+	}
+
+	/**
+	 * @param executions executions
+	 * @param phase      the path of a phase
+	 * @return the duration of the phase in each execution, in milliseconds
+	 */
+	private static List<Double> getDurations(List<Execution> executions, String phase)
+	{
+		List<Double> result = new ArrayList<>(executions.size());
+		for (Execution execution : executions)
+			result.add(execution.durations.get(phase).doubleValue());
+		return result;
+	}
+
+	/**
+	 * @param executions executions
+	 * @return a map from the name of each quantity of work to its median
+	 */
+	private static Map<String, Double> getMedianCounts(List<Execution> executions)
+	{
+		Map<String, List<Double>> nameToValues = new LinkedHashMap<>();
+		for (Execution execution : executions)
+		{
+			for (Entry<String, Long> count : execution.counts.entrySet())
+			{
+				nameToValues.computeIfAbsent(count.getKey(), key -> new ArrayList<>()).
+					add(count.getValue().doubleValue());
+			}
+		}
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (Entry<String, List<Double>> entry : nameToValues.entrySet())
+			result.put(entry.getKey(), median(entry.getValue()));
+		return result;
+	}
+
+	/**
+	 * @param values values
+	 * @return the median of the values ({@code 0} if {@code values} is empty)
+	 */
+	static double median(List<Double> values)
+	{
+		if (values.isEmpty())
+			return 0;
+		List<Double> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		int middle = sorted.size() / 2;
+		if (sorted.size() % 2 == 1)
+			return sorted.get(middle);
+		return (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+	}
+
+	/**
+	 * Tests whether {@code recent} tends to be larger than {@code baseline} using a one-sided Mann-Whitney U
+	 * test. The p-value is approximated using the normal distribution, with corrections for ties and
+	 * continuity.
+	 *
+	 * @param baseline the baseline sample
+	 * @param recent   the recent sample
+	 * @return the p-value of the test ({@code 1} if either sample is empty or all values are equal)
+	 */
+	static double getPValue(List<Double> baseline, List<Double> recent)
+	{
+		int recentCount = recent.size();
+		int baselineCount = baseline.size();
+		int total = recentCount + baselineCount;
+		if (recentCount == 0 || baselineCount == 0)
+			return 1;
+		// [0] = value, [1] = 1 if the value belongs to the recent sample
+		double[][] values = new double[total][];
+		for (int i = 0; i < baselineCount; ++i)
+			values[i] = new double[]{baseline.get(i), 0};
+		for (int i = 0; i < recentCount; ++i)
+			values[baselineCount + i] = new double[]{recent.get(i), 1};
+		Arrays.sort(values, (first, second) -> Double.compare(first[0], second[0]));
+
+		double recentRankSum = 0;
+		double tieCorrection = 0;
+		for (int start = 0; start < total; )
+		{
+			int end = start + 1;
+			while (end < total && values[end][0] == values[start][0])
+				++end;
+			// Tied values share the average of the ranks they span (ranks are 1-based)
+			double rank = (start + 1 + end) / 2.0;
+			for (int i = start; i < end; ++i)
+				recentRankSum += rank * values[i][1];
+			double ties = end - start;
+			tieCorrection += ties * ties * ties - ties;
+			start = end;
+		}
+		double u = recentRankSum - recentCount * (recentCount + 1) / 2.0;
+		double mean = recentCount * (double) baselineCount / 2;
+		double variance = recentCount * (double) baselineCount / 12 *
+			((total + 1) - tieCorrection / (total * (total - 1.0)));
+		if (variance <= 0)
+			return 1;
+		double z = (u - mean - 0.5) / Math.sqrt(variance);
+		return 1 - getNormalCdf(z);
+	}
+
+	/**
+	 * @param z a value
+	 * @return the probability that a standard normal variable is less than or equal to {@code z}
+	 */
+	private static double getNormalCdf(double z)
+	{
+		// Abramowitz and Stegun, formula 7.1.26 (maximum error 1.5e-7)
+		double x = Math.abs(z) / Math.sqrt(2);
+		double t = 1 / (1 + 0.3275911 * x);
+		double polynomial = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 +
+			t * 1.061405429))));
+		double erf = 1 - polynomial * Math.exp(-x * x);
+		if (z < 0)
+			return (1 - erf) / 2;
+		return (1 + erf) / 2;
+	}
+
+	/**
+	 * @return the change from the baseline median to the recent median, in percent
+	 */
+	public double getChange()
+	{
+		if (baselineMedian == 0)
+			return 0;
+		return (recentMedian - baselineMedian) / baselineMedian * 100;
+	}
+
+	/**
+	 * @param significance    the maximum p-value of a regression
+	 * @param minimumChange   the minimum increase of the median of a regression, in percent
+	 * @param minimumIncrease the minimum increase of the median of a regression, in milliseconds
+	 * @return {@code true} if the phase slowed down significantly
+	 */
+	public boolean isRegression(double significance, double minimumChange, long minimumIncrease)
+	{
+		return pValue < significance && getChange() >= minimumChange &&
+			recentMedian - baselineMedian >= minimumIncrease;
+	}
+
+	/**
+	 * @return the trend, in a form that can be serialized to JSON
+	 */
+	public Map<String, Object> toMetrics()
+	{
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("module", module);
+		result.put("goal", goal);
+		result.put("host", host);
+		result.put("workload", workload);
+		result.put("phase", phase);
+		result.put("recentSince", Instant.ofEpochMilli(recentSince).toString());
+		result.put("baselineExecutions", baselineSize);
+		result.put("recentExecutions", recentSize);
+		result.put("baselineMedianMillis", baselineMedian);
+		result.put("recentMedianMillis", recentMedian);
+		result.put("changePercent", getChange());
+		result.put("pValue", pValue);
+		result.put("baselineCounts", baselineCounts);
+		result.put("recentCounts", recentCounts);
+		result.put("rollingMediansMillis", rollingMedians);
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		String result = phase + " of " + module + " on " + host;
+		if (workload != null)
+			result += " (" + workload + ")";
+		return result + ": " + baselineMedian + "ms -> " + recentMedian + "ms";
+	}
+}
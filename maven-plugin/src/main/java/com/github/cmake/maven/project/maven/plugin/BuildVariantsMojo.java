@@ -0,0 +1,342 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Goal which configures and builds several variants of the same sources (e.g. Debug, Release and
+ * AddressSanitizer builds) concurrently.
+ * <p>
+ * Variants that only differ in their build configuration share a build directory that uses a multi-config
+ * generator, so they are configured once and built by a single build tool invocation. Independent build
+ * directories are configured and built concurrently, and the parallelism budget is divided among them.
+ */
+@Mojo(name = "build-variants", defaultPhase = LifecyclePhase.COMPILE)
+public class BuildVariantsMojo extends CmakeMojo
+{
+	/**
+	 * The directory containing CMakeLists.txt.
+	 */
+	@Parameter(required = true)
+	private File sourcePath;
+	/**
+	 * The directory that contains the build directory of each variant.
+	 */
+	@Parameter(required = true)
+	private File targetPath;
+	/**
+	 * The variants to build.
+	 */
+	@Parameter(required = true)
+	private List<Variant> variants;
+	/**
+	 * The multi-config generator to use for variants that do not specify a generator ({@code none} if
+	 * every variant should be configured separately). Ninja generators are only used if {@code ninja} is on
+	 * the {@code PATH} or {@code CMAKE_MAKE_PROGRAM} is specified. Variants are configured separately if
+	 * cmake does not support the generator (Ninja Multi-Config requires CMake 3.17 or newer).
+	 */
+	@Parameter(property = "cmake.multiConfigGenerator", defaultValue = "Ninja Multi-Config")
+	private String multiConfigGenerator;
+	/**
+	 * The maximum number of concurrent jobs across all variants ({@code 0} for the number of processors).
+	 */
+	@Parameter(property = "cmake.parallelism", defaultValue = "0")
+	private int parallelism;
+	/**
+	 * The path of the ninja executable that Ninja generators should use ({@code null} to let cmake look it
+	 * up).
+	 */
+	private String ninjaPath;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public BuildVariantsMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		try (Span goalSpan = startTracing("build-variants"))
+		{
+			if (!sourcePath.exists())
+				throw new MojoExecutionException("sourcePath does not exist: " + sourcePath.getAbsolutePath());
+			validateVariants();
+
+			downloadBinariesIfNecessary();
+
+			ProcessBuilder environment = new ProcessBuilder();
+			overrideEnvironmentVariables(environment);
+			String cmakePath = getBinaryPath("cmake", environment).toString();
+
+			List<VariantGroup> groups = VariantGroup.group(variants, getMultiConfigGenerator(environment));
+			int budget = parallelism;
+			if (budget <= 0)
+				budget = Runtime.getRuntime().availableProcessors();
+			int jobs = Math.max(1, budget / groups.size());
+
+			Log log = getLog();
+			if (log.isInfoEnabled())
+			{
+				for (VariantGroup group : groups)
+				{
+					String generator = group.generator;
+					if (generator == null)
+						generator = "the default generator";
+					File buildDirectory = new File(targetPath, group.getSubdirectory());
+					log.info("Building " + group.variants + " in " + buildDirectory + " using " + generator +
+						" with " + jobs + " jobs");
+				}
+			}
+
+			List<Map<String, Object>> results;
+			try (Span span = trace("configure and build variants"))
+			{
+				results = buildGroups(groups, cmakePath, jobs);
+			}
+			logSummary(results);
+			Map<String, Object> metrics = new LinkedHashMap<>();
+			metrics.put("parallelism", budget);
+			metrics.put("jobsPerGroup", jobs);
+			metrics.put("groups", results);
+			Metrics.write(Metrics.getDirectory(getBuildDirectory()).resolve("build-variants.json"), metrics);
+
+			List<String> failed = new ArrayList<>();
+			for (Map<String, Object> result : results)
+				if (!(Boolean) result.get("success"))
+					failed.add((String) result.get("name"));
+			if (!failed.isEmpty())
+				throw new MojoExecutionException("The following variants failed: " + failed);
+		}
+		catch (InterruptedException | IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+	}
+
+	/**
+	 * @throws MojoExecutionException if a variant does not have a name, or two variants share a name or a
+	 *                                build directory
+	 */
+	private void validateVariants() throws MojoExecutionException
+	{
+		if (variants.isEmpty())
+			throw new MojoExecutionException("variants may not be empty");
+		Set<String> names = new HashSet<>();
+		Set<String> subdirectories = new HashSet<>();
+		for (Variant variant : variants)
+		{
+			String name = variant.getName();
+			if (name == null || name.trim().isEmpty())
+				throw new MojoExecutionException("Every variant must have a name");
+			if (!names.add(name))
+				throw new MojoExecutionException("Duplicate variant name: " + name);
+			if (!subdirectories.add(variant.getSubdirectory()))
+			{
+				throw new MojoExecutionException("Variant " + name + " shares a subdirectory with another " +
+					"variant: " + variant.getSubdirectory());
+			}
+		}
+	}
+
+	/**
+	 * @param environment a process builder whose environment will be used to run cmake
+	 * @return the multi-config generator to group variants under ({@code null} if variants should not be
+	 * grouped)
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private String getMultiConfigGenerator(ProcessBuilder environment) throws IOException, InterruptedException
+	{
+		if (multiConfigGenerator == null || multiConfigGenerator.trim().isEmpty() ||
+			multiConfigGenerator.equals("none"))
+		{
+			return null;
+		}
+		CMakeCapabilities capabilities = getCapabilities(environment);
+		if (capabilities != null && !capabilities.hasGenerator(multiConfigGenerator))
+		{
+			getLog().info("CMake " + capabilities + " does not support the \"" + multiConfigGenerator +
+				"\" generator. Configuring each variant separately.");
+			return null;
+		}
+		if (!multiConfigGenerator.startsWith("Ninja"))
+			return multiConfigGenerator;
+		for (Variant variant : variants)
+			for (String option : variant.getOptions())
+				if (option.startsWith("-DCMAKE_MAKE_PROGRAM"))
+					return multiConfigGenerator;
+		try
+		{
+			// The bundled ninja is not on the PATH
+			ninjaPath = getBinaryPath("ninja", environment).toString().replace('\\', '/');
+			return multiConfigGenerator;
+		}
+		catch (FileNotFoundException e)
+		{
+			// Fall through
+		}
+		getLog().info("ninja was not found on the PATH. Configuring each variant separately.");
+		return null;
+	}
+
+	/**
+	 * Configures and builds variant groups concurrently.
+	 *
+	 * @param groups    the variant groups
+	 * @param cmakePath the path of the cmake executable
+	 * @param jobs      the number of concurrent jobs of each build
+	 * @return the result of each group
+	 * @throws IOException          if an error occurs while building a group
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<Map<String, Object>> buildGroups(List<VariantGroup> groups, String cmakePath, int jobs)
+		throws IOException, InterruptedException
+	{
+		List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+		for (VariantGroup group : groups)
+			tasks.add(() -> buildGroup(group, cmakePath, jobs));
+		return invokeConcurrently(tasks, "cmake-variant");
+	}
+
+	/**
+	 * Configures and builds a variant group.
+	 *
+	 * @param group     the variant group
+	 * @param cmakePath the path of the cmake executable
+	 * @param jobs      the number of concurrent jobs of the build
+	 * @return the result of the group
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private Map<String, Object> buildGroup(VariantGroup group, String cmakePath, int jobs)
+		throws IOException, InterruptedException
+	{
+		String name = group.getName();
+		File buildDirectory = new File(targetPath, group.getSubdirectory()).getAbsoluteFile();
+		if (!buildDirectory.exists() && !buildDirectory.mkdirs())
+			throw new IOException("Cannot create " + buildDirectory);
+		Path logFile = Metrics.getDirectory(getBuildDirectory()).resolve("variants").resolve(name + ".log");
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("name", name);
+		List<String> variantNames = new ArrayList<>();
+		for (Variant variant : group.variants)
+			variantNames.add(variant.getName());
+		result.put("variants", variantNames);
+		result.put("generator", group.generator);
+		result.put("buildDirectory", buildDirectory.getPath());
+		result.put("log", logFile.toAbsolutePath().toString());
+		try (PrefixedLog log = new PrefixedLog(getLog(), name, logFile))
+		{
+			ProcessBuilder configure = new ProcessBuilder().directory(buildDirectory);
+			overrideEnvironmentVariables(configure);
+			configure.command().add(cmakePath);
+			configure.command().addAll(group.getConfigureArguments());
+			if (ninjaPath != null && group.generator != null && group.generator.startsWith("Ninja"))
+				configure.command().add("-DCMAKE_MAKE_PROGRAM=" + ninjaPath);
+			addOptions(configure);
+			configure.command().add(sourcePath.getAbsolutePath());
+			if (log.isDebugEnabled())
+				log.debug("Command-line: " + configure.command());
+
+			long start = System.nanoTime();
+			int exitCode = waitFor(configure, "variant-" + name + "-configure", log);
+			result.put("configureSeconds", (System.nanoTime() - start) / 1_000_000_000.0);
+			if (exitCode != 0)
+			{
+				log.error("Configure failed with exit code " + exitCode);
+				result.put("success", false);
+				result.put("failedStep", "configure");
+				return result;
+			}
+
+			ProcessBuilder build = new ProcessBuilder().directory(buildDirectory);
+			overrideEnvironmentVariables(build);
+			Collections.addAll(build.command(), cmakePath, "--build", buildDirectory.getPath(), "--parallel",
+				String.valueOf(jobs));
+			build.command().addAll(group.getBuildArguments());
+			if (log.isDebugEnabled())
+				log.debug("Command-line: " + build.command());
+
+			start = System.nanoTime();
+			exitCode = waitFor(build, "variant-" + name + "-build", log);
+			result.put("buildSeconds", (System.nanoTime() - start) / 1_000_000_000.0);
+			if (exitCode != 0)
+			{
+				log.error("Build failed with exit code " + exitCode);
+				result.put("success", false);
+				result.put("failedStep", "build");
+				return result;
+			}
+			result.put("success", true);
+			return result;
+		}
+	}
+
+	/**
+	 * Logs the outcome of each variant group.
+	 *
+	 * @param results the result of each group
+	 */
+	private void logSummary(List<Map<String, Object>> results)
+	{
+		Log log = getLog();
+		if (!log.isInfoEnabled())
+			return;
+		log.info("Variant summary (configure, build, status):");
+		for (Map<String, Object> result : results)
+		{
+			String status;
+			if ((Boolean) result.get("success"))
+				status = "SUCCESS";
+			else
+				status = "FAILED (" + result.get("failedStep") + "), see " + result.get("log");
+			log.info(String.format(Locale.ENGLISH, "%10s %10s  %-20s %s",
+				formatSeconds(result.get("configureSeconds")), formatSeconds(result.get("buildSeconds")),
+				result.get("name"), status));
+		}
+	}
+
+	/**
+	 * @param seconds a duration in seconds ({@code null} if the step did not run)
+	 * @return the formatted duration
+	 */
+	private static String formatSeconds(Object seconds)
+	{
+		if (seconds == null)
+			return "-";
+		return String.format(Locale.ENGLISH, "%.3fs", (Double) seconds);
+	}
+}
@@ -0,0 +1,168 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The entries of a build directory's {@code CMakeCache.txt}.
+ */
+public final class CMakeCache
+{
+	/**
+	 * The name of the cache file, relative to the build directory.
+	 */
+	public static final String FILENAME = "CMakeCache.txt";
+	private final Map<String, String> entries;
+	private final Map<String, String> types;
+	private final Map<String, String> helpStrings;
+
+	/**
+	 * Reads the cache of a build directory.
+	 *
+	 * @param buildDirectory the build directory
+	 * @return an empty cache if the build directory has not been configured
+	 * @throws IOException if an error occurs while reading the file
+	 */
+	public static CMakeCache read(Path buildDirectory) throws IOException
+	{
+		Path file = buildDirectory.resolve(FILENAME);
+		if (Files.notExists(file))
+			return new CMakeCache(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		Map<String, String> entries = new LinkedHashMap<>();
+		Map<String, String> types = new HashMap<>();
+		Map<String, String> helpStrings = new HashMap<>();
+		StringBuilder helpString = new StringBuilder();
+		for (String line : lines)
+		{
+			if (line.startsWith("//"))
+			{
+				// The help string of the next entry
+				if (helpString.length() > 0)
+					helpString.append(' ');
+				helpString.append(line.substring(2));
+				continue;
+			}
+			if (line.isEmpty() || line.startsWith("#"))
+			{
+				helpString.setLength(0);
+				continue;
+			}
+			// Lines have the form KEY:TYPE=VALUE
+			int equals = line.indexOf('=');
+			if (equals == -1)
+				continue;
+			String key = line.substring(0, equals);
+			String type = "UNINITIALIZED";
+			int colon = key.lastIndexOf(':');
+			if (colon != -1)
+			{
+				type = key.substring(colon + 1);
+				key = key.substring(0, colon);
+			}
+			entries.put(key, line.substring(equals + 1));
+			types.put(key, type);
+			helpStrings.put(key, helpString.toString());
+			helpString.setLength(0);
+		}
+		return new CMakeCache(entries, types, helpStrings);
+	}
+
+	/**
+	 * Reads the cache from the File API {@code cache-v2} object. Unlike {@code CMakeCache.txt}, the reply
+	 * describes the cache as it was at the end of the configure step that wrote it.
+	 *
+	 * @param replyFile the {@code cache-v2} reply file
+	 * @return the cache
+	 * @throws IOException if an error occurs while reading the reply
+	 */
+	public static CMakeCache readReply(Path replyFile) throws IOException
+	{
+		JsonNode root = Metrics.getMapper().readTree(replyFile.toFile());
+		Map<String, String> entries = new LinkedHashMap<>();
+		Map<String, String> types = new HashMap<>();
+		Map<String, String> helpStrings = new HashMap<>();
+		for (JsonNode entry : root.path("entries"))
+		{
+			String key = entry.path("name").asText();
+			entries.put(key, entry.path("value").asText());
+			types.put(key, entry.path("type").asText());
+			String helpString = "";
+			for (JsonNode property : entry.path("properties"))
+				if (property.path("name").asText().equals("HELPSTRING"))
+					helpString = property.path("value").asText();
+			helpStrings.put(key, helpString);
+		}
+		return new CMakeCache(entries, types, helpStrings);
+	}
+
+	/**
+	 * @param entries     a map from each variable name to its value
+	 * @param types       a map from each variable name to its type
+	 * @param helpStrings a map from each variable name to its help string
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	private CMakeCache(Map<String, String> entries, Map<String, String> types, Map<String, String> helpStrings)
+	{
+		assert (entries != null) : "entries may not be null";
+		assert (types != null) : "types may not be null";
+		assert (helpStrings != null) : "helpStrings may not be null";
+		this.entries = Collections.unmodifiableMap(entries);
+		this.types = types;
+		this.helpStrings = helpStrings;
+	}
+
+	/**
+	 * @return {@code true} if the build directory has not been configured
+	 */
+	public boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @param name the name of a cache variable
+	 * @return the value of the variable, or {@code null} if it is not set
+	 */
+	public String get(String name)
+	{
+		return entries.get(name);
+	}
+
+	/**
+	 * @return a map from each variable name to its value
+	 */
+	public Map<String, String> getEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * @param name the name of a cache variable
+	 * @return the type of the variable (e.g. {@code FILEPATH}, {@code INTERNAL}), or {@code null} if it is
+	 * not set
+	 */
+	public String getType(String name)
+	{
+		return types.get(name);
+	}
+
+	/**
+	 * @param name the name of a cache variable
+	 * @return the help string of the variable, or {@code null} if it is not set
+	 */
+	public String getHelpString(String name)
+	{
+		return helpStrings.get(name);
+	}
+}
@@ -0,0 +1,96 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The output of {@code cmake -E capabilities}: the version of cmake and the generators it supports.
+ */
+public final class CMakeCapabilities
+{
+	/**
+	 * The major version number.
+	 */
+	public final int major;
+	/**
+	 * The minor version number.
+	 */
+	public final int minor;
+	/**
+	 * The patch version number.
+	 */
+	public final int patch;
+	/**
+	 * The full version (e.g. {@code 3.31.5} or {@code 3.31.20250101-g1234abc}).
+	 */
+	public final String version;
+	/**
+	 * The raw output of {@code cmake -E capabilities}.
+	 */
+	public final JsonNode json;
+
+	/**
+	 * @param json the output of {@code cmake -E capabilities}
+	 * @return the capabilities
+	 * @throws NullPointerException     if {@code json} is null
+	 * @throws IllegalArgumentException if {@code json} does not contain a version
+	 */
+	public static CMakeCapabilities parse(JsonNode json)
+	{
+		if (json == null)
+			throw new NullPointerException("json may not be null");
+		JsonNode version = json.path("version");
+		if (!version.path("major").isInt() || !version.path("minor").isInt())
+			throw new IllegalArgumentException("json does not contain a version: " + json);
+		return new CMakeCapabilities(version.path("major").asInt(), version.path("minor").asInt(),
+			version.path("patch").asInt(), version.path("string").asText(), json);
+	}
+
+	/**
+	 * @param major   the major version number
+	 * @param minor   the minor version number
+	 * @param patch   the patch version number
+	 * @param version the full version
+	 * @param json    the raw output of {@code cmake -E capabilities}
+	 * @throws AssertionError if {@code version} or {@code json} are null
+	 */
+	private CMakeCapabilities(int major, int minor, int patch, String version, JsonNode json)
+	{
+		assert (version != null) : "version may not be null";
+		assert (json != null) : "json may not be null";
+		this.major = major;
+		this.minor = minor;
+		this.patch = patch;
+		this.version = version;
+		this.json = json;
+	}
+
+	/**
+	 * @param major a major version number
+	 * @param minor a minor version number
+	 * @return {@code true} if this version of cmake is {@code major.minor} or newer
+	 */
+	public boolean isAtLeast(int major, int minor)
+	{
+		if (this.major != major)
+			return this.major > major;
+		return this.minor >= minor;
+	}
+
+	/**
+	 * @param name the name of a generator (e.g. {@code Ninja Multi-Config})
+	 * @return {@code true} if cmake supports the generator
+	 */
+	public boolean hasGenerator(String name)
+	{
+		for (JsonNode generator : json.path("generators"))
+			if (generator.path("name").asText().equals(name))
+				return true;
+		return false;
+	}
+
+	@Override
+	public String toString()
+	{
+		return version;
+	}
+}
@@ -0,0 +1,284 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The presets that are defined by {@code CMakePresets.json}, {@code CMakeUserPresets.json} and the files
+ * they include.
+ * <p>
+ * Presets are executed by cmake itself ({@code cmake --preset}, {@code cmake --build --preset},
+ * {@code ctest --preset}). This class only resolves the fields that the plugin needs to schedule them: the
+ * configure preset that a build or test preset refers to, and the binary directory of each configure
+ * preset. Inherited fields are resolved the same way as cmake: a preset's own value takes precedence,
+ * followed by the presets listed in {@code inherits}, in order.
+ */
+public final class CMakePresets
+{
+	/**
+	 * The kind of configure presets.
+	 */
+	public static final String CONFIGURE = "configurePresets";
+	/**
+	 * The kind of build presets.
+	 */
+	public static final String BUILD = "buildPresets";
+	/**
+	 * The kind of test presets.
+	 */
+	public static final String TEST = "testPresets";
+	/**
+	 * The kinds of presets that the plugin schedules.
+	 */
+	private static final List<String> KINDS = Collections.unmodifiableList(Arrays.asList(CONFIGURE, BUILD,
+		TEST));
+	/**
+	 * Matches {@code ${macro}} and {@code $env{NAME}} macros.
+	 */
+	private static final Pattern MACRO = Pattern.compile("\\$(env)?\\{([^}]*)}");
+	private final Path sourceDirectory;
+	/**
+	 * A map from each kind of preset to a map from each preset name to its JSON definition.
+	 */
+	private final Map<String, Map<String, JsonNode>> kindToPresets;
+
+	/**
+	 * Reads the presets of a project.
+	 *
+	 * @param sourceDirectory the directory that contains {@code CMakePresets.json}
+	 * @return the presets
+	 * @throws IOException if neither {@code CMakePresets.json} nor {@code CMakeUserPresets.json} exist, or
+	 *                     an error occurs while reading them
+	 */
+	public static CMakePresets read(Path sourceDirectory) throws IOException
+	{
+		Map<String, Map<String, JsonNode>> kindToPresets = new HashMap<>();
+		for (String kind : KINDS)
+			kindToPresets.put(kind, new LinkedHashMap<>());
+		Set<Path> visited = new HashSet<>();
+		boolean found = false;
+		for (String name : Arrays.asList("CMakePresets.json", "CMakeUserPresets.json"))
+		{
+			Path file = sourceDirectory.resolve(name);
+			if (Files.notExists(file))
+				continue;
+			found = true;
+			readFile(file, kindToPresets, visited);
+		}
+		if (!found)
+		{
+			throw new IOException("Neither CMakePresets.json nor CMakeUserPresets.json exist in " +
+				sourceDirectory);
+		}
+		return new CMakePresets(sourceDirectory, kindToPresets);
+	}
+
+	/**
+	 * Reads a presets file and the files that it includes.
+	 *
+	 * @param file          the file
+	 * @param kindToPresets the presets that were read so far
+	 * @param visited       the files that were read so far
+	 * @throws IOException if an error occurs while reading the files
+	 */
+	private static void readFile(Path file, Map<String, Map<String, JsonNode>> kindToPresets,
+		Set<Path> visited) throws IOException
+	{
+		Path normalized = file.toAbsolutePath().normalize();
+		// CMakeUserPresets.json implicitly includes CMakePresets.json, and a file may be included more than
+		// once
+		if (!visited.add(normalized))
+			return;
+		JsonNode root = Metrics.getMapper().readTree(normalized.toFile());
+		if (root == null || !root.isObject())
+			throw new IOException(file + " does not contain a JSON object");
+		for (JsonNode include : root.path("include"))
+			readFile(normalized.getParent().resolve(include.asText()), kindToPresets, visited);
+		for (String kind : KINDS)
+		{
+			Map<String, JsonNode> nameToPreset = kindToPresets.get(kind);
+			for (JsonNode preset : root.path(kind))
+			{
+				String name = preset.path("name").asText();
+				if (name.isEmpty())
+					throw new IOException(file + " contains a preset without a name");
+				if (nameToPreset.put(name, preset) != null)
+					throw new IOException("Duplicate " + kind + " entry \"" + name + "\" in " + file);
+			}
+		}
+	}
+
+	/**
+	 * @param sourceDirectory the directory that contains {@code CMakePresets.json}
+	 * @param kindToPresets   a map from each kind of preset to a map from each preset name to its JSON
+	 *                        definition
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	private CMakePresets(Path sourceDirectory, Map<String, Map<String, JsonNode>> kindToPresets)
+	{
+		assert (sourceDirectory != null) : "sourceDirectory may not be null";
+		assert (kindToPresets != null) : "kindToPresets may not be null";
+		this.sourceDirectory = sourceDirectory;
+		this.kindToPresets = kindToPresets;
+	}
+
+	/**
+	 * @param kind the kind of preset ({@link #CONFIGURE}, {@link #BUILD} or {@link #TEST})
+	 * @return the names of the presets that may be run directly, excluding hidden presets
+	 */
+	public Set<String> getNames(String kind)
+	{
+		Set<String> result = new LinkedHashSet<>();
+		for (Map.Entry<String, JsonNode> entry : getPresets(kind).entrySet())
+			if (!entry.getValue().path("hidden").asBoolean(false))
+				result.add(entry.getKey());
+		return result;
+	}
+
+	/**
+	 * @param kind the kind of preset
+	 * @return a map from each preset name to its JSON definition
+	 * @throws IllegalArgumentException if {@code kind} is unsupported
+	 */
+	private Map<String, JsonNode> getPresets(String kind)
+	{
+		Map<String, JsonNode> result = kindToPresets.get(kind);
+		if (result == null)
+			throw new IllegalArgumentException("Unsupported kind: " + kind);
+		return result;
+	}
+
+	/**
+	 * Returns the value of a preset's field, taking inheritance into account.
+	 *
+	 * @param kind  the kind of preset
+	 * @param name  the name of the preset
+	 * @param field the name of the field
+	 * @return {@code null} if neither the preset nor its ancestors define the field
+	 * @throws IllegalArgumentException if the preset, or one of its ancestors, does not exist or inherits
+	 *                                  from itself
+	 */
+	public String resolve(String kind, String name, String field)
+	{
+		return resolve(kind, name, field, new ArrayList<>());
+	}
+
+	/**
+	 * @param kind  the kind of preset
+	 * @param name  the name of the preset
+	 * @param field the name of the field
+	 * @param path  the presets that inherit from this preset, used to detect cycles
+	 * @return {@code null} if neither the preset nor its ancestors define the field
+	 * @throws IllegalArgumentException if the preset, or one of its ancestors, does not exist or inherits
+	 *                                  from itself
+	 */
+	private String resolve(String kind, String name, String field, List<String> path)
+	{
+		JsonNode preset = getPresets(kind).get(name);
+		if (preset == null)
+			throw new IllegalArgumentException("No such " + kind + " entry: " + name);
+		if (path.contains(name))
+			throw new IllegalArgumentException("Cyclic inheritance in " + kind + ": " + path + " -> " + name);
+		JsonNode value = preset.get(field);
+		if (value != null && !value.isNull())
+			return value.asText();
+		path.add(name);
+		try
+		{
+			JsonNode inherits = preset.path("inherits");
+			List<String> parents = new ArrayList<>();
+			if (inherits.isTextual())
+				parents.add(inherits.asText());
+			else
+			{
+				for (JsonNode parent : inherits)
+					parents.add(parent.asText());
+			}
+			for (String parent : parents)
+			{
+				String result = resolve(kind, parent, field, path);
+				if (result != null)
+					return result;
+			}
+			return null;
+		}
+		finally
+		{
+			path.remove(path.size() - 1);
+		}
+	}
+
+	/**
+	 * @param kind the kind of preset ({@link #BUILD} or {@link #TEST})
+	 * @param name the name of the preset
+	 * @return the name of the configure preset that the preset builds or tests
+	 * @throws IllegalArgumentException if the preset does not exist or does not specify a configure preset
+	 */
+	public String getConfigurePreset(String kind, String name)
+	{
+		String result = resolve(kind, name, "configurePreset");
+		if (result == null)
+			throw new IllegalArgumentException(kind + " entry " + name + " does not specify a configurePreset");
+		return result;
+	}
+
+	/**
+	 * Returns the binary directory of a configure preset. Macros that cannot be expanded without running
+	 * cmake are left as-is, which is sufficient to tell apart presets that use different directories.
+	 *
+	 * @param name the name of the configure preset
+	 * @return the absolute path of the binary directory ({@code null} if the preset does not specify one)
+	 * @throws IllegalArgumentException if the preset does not exist
+	 */
+	public Path getBinaryDirectory(String name)
+	{
+		String binaryDir = resolve(CONFIGURE, name, "binaryDir");
+		if (binaryDir == null)
+			return null;
+		Map<String, String> macros = new HashMap<>();
+		Path absoluteSource = sourceDirectory.toAbsolutePath().normalize();
+		macros.put("sourceDir", absoluteSource.toString());
+		Path sourceParent = absoluteSource.getParent();
+		if (sourceParent != null)
+			macros.put("sourceParentDir", sourceParent.toString());
+		macros.put("sourceDirName", String.valueOf(absoluteSource.getFileName()));
+		macros.put("presetName", name);
+		String generator = resolve(CONFIGURE, name, "generator");
+		if (generator != null)
+			macros.put("generator", generator);
+		macros.put("dollar", "$");
+
+		Matcher matcher = MACRO.matcher(binaryDir);
+		StringBuffer expanded = new StringBuffer();
+		while (matcher.find())
+		{
+			String value;
+			if (matcher.group(1) != null)
+				value = System.getenv(matcher.group(2));
+			else
+				value = macros.get(matcher.group(2));
+			if (value == null)
+				value = matcher.group();
+			matcher.appendReplacement(expanded, Matcher.quoteReplacement(value));
+		}
+		matcher.appendTail(expanded);
+		return absoluteSource.resolve(Paths.get(expanded.toString())).normalize();
+	}
+}
@@ -0,0 +1,205 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A summary of the trace that {@code cmake --profiling-format=google-trace} writes.
+ * <p>
+ * CMake writes one complete event per command invocation when the command returns, so the commands
+ * invoked by a command precede it in the trace. This allows exclusive times to be computed in a single
+ * pass without holding the entire trace in memory.
+ */
+public final class CMakeProfile
+{
+	/**
+	 * The commands whose first argument identifies what they operate on.
+	 */
+	private static final List<String> COMMANDS_WITH_SUBJECT = Arrays.asList("include", "find_package",
+		"add_subdirectory", "try_compile", "try_run");
+	/**
+	 * A map from each command (and its subject, if any) to its statistics.
+	 */
+	private final Map<String, Entry> keyToEntry;
+	/**
+	 * The time spent in top-level commands, in microseconds.
+	 */
+	public final long totalMicros;
+
+	/**
+	 * Parses a trace.
+	 *
+	 * @param file the trace
+	 * @return the summary of the trace
+	 * @throws IOException if an error occurs while reading the trace
+	 */
+	public static CMakeProfile parse(Path file) throws IOException
+	{
+		Map<String, Entry> keyToEntry = new HashMap<>();
+		// Completed invocations whose caller has not been read yet
+		Deque<long[]> pending = new ArrayDeque<>();
+		try (JsonParser parser = Metrics.getMapper().getFactory().createParser(file.toFile()))
+		{
+			if (parser.nextToken() != JsonToken.START_ARRAY)
+				throw new IOException(file + " does not contain a JSON array");
+			while (parser.nextToken() == JsonToken.START_OBJECT)
+			{
+				JsonNode event = parser.readValueAsTree();
+				if (!"X".equals(event.path("ph").asText()))
+					continue;
+				long start = event.path("ts").asLong();
+				long duration = event.path("dur").asLong();
+				long end = start + duration;
+
+				// Invocations that lie within this one were made by it, directly or indirectly. Only the
+				// direct callees remain on the stack because each caller removes its own callees.
+				long callees = 0;
+				while (!pending.isEmpty())
+				{
+					long[] callee = pending.peek();
+					if (callee[0] < start || callee[1] > end)
+						break;
+					pending.pop();
+					callees += callee[1] - callee[0];
+				}
+				pending.push(new long[]{start, end});
+
+				String key = getKey(event.path("name").asText(), event.path("args").path("functionArgs").
+					asText());
+				Entry entry = keyToEntry.computeIfAbsent(key, Entry::new);
+				++entry.count;
+				entry.inclusiveMicros += duration;
+				entry.exclusiveMicros += Math.max(0, duration - callees);
+			}
+		}
+		long totalMicros = 0;
+		for (long[] invocation : pending)
+			totalMicros += invocation[1] - invocation[0];
+		return new CMakeProfile(keyToEntry, totalMicros);
+	}
+
+	/**
+	 * @param command   the name of a command
+	 * @param arguments the arguments of the command
+	 * @return the key that the command's statistics are aggregated under
+	 */
+	private static String getKey(String command, String arguments)
+	{
+		String name = command.toLowerCase(Locale.ENGLISH);
+		if (!COMMANDS_WITH_SUBJECT.contains(name))
+			return name;
+		String subject = arguments.trim();
+		int space = subject.indexOf(' ');
+		if (space != -1)
+			subject = subject.substring(0, space);
+		return name + "(" + subject + ")";
+	}
+
+	/**
+	 * @param keyToEntry  a map from each command (and its subject, if any) to its statistics
+	 * @param totalMicros the time spent in top-level commands, in microseconds
+	 * @throws AssertionError if {@code keyToEntry} is null
+	 */
+	private CMakeProfile(Map<String, Entry> keyToEntry, long totalMicros)
+	{
+		assert (keyToEntry != null) : "keyToEntry may not be null";
+		this.keyToEntry = keyToEntry;
+		this.totalMicros = totalMicros;
+	}
+
+	/**
+	 * @return the statistics of each command
+	 */
+	public Collection<Entry> getEntries()
+	{
+		return keyToEntry.values();
+	}
+
+	/**
+	 * Returns the slowest invocations of a command.
+	 *
+	 * @param command the name of the command (e.g. {@code find_package})
+	 * @param count   the maximum number of entries to return
+	 * @return the entries of the command, sorted by descending inclusive time
+	 */
+	public List<Entry> getSlowest(String command, int count)
+	{
+		List<Entry> result = new ArrayList<>();
+		String prefix = command + "(";
+		for (Entry entry : keyToEntry.values())
+			if (entry.key.equals(command) || entry.key.startsWith(prefix))
+				result.add(entry);
+		result.sort(Comparator.comparingLong((Entry entry) -> entry.inclusiveMicros).reversed());
+		return result.subList(0, Math.min(count, result.size()));
+	}
+
+	/**
+	 * Returns the commands that spent the most time executing their own code, as opposed to the commands
+	 * they invoked.
+	 *
+	 * @param count the maximum number of entries to return
+	 * @return the entries, sorted by descending exclusive time
+	 */
+	public List<Entry> getHotspots(int count)
+	{
+		List<Entry> result = new ArrayList<>(keyToEntry.values());
+		result.sort(Comparator.comparingLong((Entry entry) -> entry.exclusiveMicros).reversed());
+		return result.subList(0, Math.min(count, result.size()));
+	}
+
+	/**
+	 * The statistics of a command.
+	 */
+	public static final class Entry
+	{
+		/**
+		 * The name of the command, followed by its subject in parentheses for commands such as
+		 * {@code include} and {@code find_package}.
+		 */
+		public final String key;
+		/**
+		 * The number of times the command was invoked.
+		 */
+		public int count;
+		/**
+		 * The time spent in the command and the commands it invoked, in microseconds.
+		 */
+		public long inclusiveMicros;
+		/**
+		 * The time spent in the command excluding the commands it invoked, in microseconds.
+		 */
+		public long exclusiveMicros;
+
+		/**
+		 * @param key the name of the command and its subject
+		 * @throws AssertionError if {@code key} is null
+		 */
+		private Entry(String key)
+		{
+			assert (key != null) : "key may not be null";
+			this.key = key;
+		}
+
+		@Override
+		public String toString()
+		{
+			return key + " (" + count + " calls, inclusive: " + inclusiveMicros + " µs, exclusive: " +
+				exclusiveMicros + " µs)";
+		}
+	}
+}
@@ -1,6 +1,15 @@
 package com.github.cmake.maven.project.maven.plugin;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Mojos;
 import com.github.cmake.maven.project.common.Platform;
+import com.github.cmake.maven.project.common.Platform.OperatingSystem;
+import com.github.cmake.maven.project.common.ProcessTreeSampler;
+import com.github.cmake.maven.project.common.ProcessTreeStatistics;
+import com.github.cmake.maven.project.common.Tracer;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import com.github.cmake.maven.project.maven.plugin.CMakeProfile.Entry;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
@@ -16,11 +25,28 @@ import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
 import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
 import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public abstract class CmakeMojo extends AbstractMojo
@@ -47,11 +73,75 @@ public abstract class CmakeMojo extends AbstractMojo
 	 */
 	@Parameter
 	private List<String> options;
+	/**
+	 * {@code true} if the phase durations of the {@code generate}, {@code compile}, {@code test} and
+	 * {@code build} goals should be appended to {@link #historyFile}.
+	 */
+	@Parameter(property = "cmake.history", defaultValue = "true")
+	private boolean history;
+	/**
+	 * The file that the build history is appended to. The file is kept outside the build directory so that
+	 * it survives {@code mvn clean}.
+	 */
+	@Parameter(property = "cmake.historyFile",
+		defaultValue = "${user.home}/.cache/cmake-maven-plugin/history/${project.groupId}/" +
+			"${project.artifactId}.jsonl")
+	private File historyFile;
+	/**
+	 * {@code true} if the Ninja generator should be used, along with the ninja executable that is bundled
+	 * with the downloaded cmake binaries, when no generator is specified. The build directory keeps its
+	 * generator if it was already configured using a different one. On Windows, Ninja is only selected if
+	 * the Visual Studio developer environment ({@code VCINSTALLDIR}) is set up.
+	 */
+	@Parameter(property = "cmake.bundledNinja", defaultValue = "true")
+	private boolean bundledNinja;
+	/**
+	 * {@code true} if cmake should profile the configure step and the slowest commands should be logged.
+	 * The raw trace is written to {@code cmake-metrics/cmake-profile.json}. Requires CMake 3.18 or newer.
+	 */
+	@Parameter(property = "cmake.profile", defaultValue = "false")
+	private boolean profile;
+	/**
+	 * The number of commands to log per category when {@link #profile} is set.
+	 */
+	@Parameter(property = "cmake.profileEntries", defaultValue = "10")
+	private int profileEntries;
+	/**
+	 * {@code true} if the results of compiler detection and {@code CheckXXX} probes should be shared
+	 * between fresh build directories that use the same toolchain.
+	 */
+	@Parameter(property = "cmake.toolchainCache", defaultValue = "false")
+	private boolean toolchainCache;
+	/**
+	 * The directory that contains the toolchain cache.
+	 */
+	@Parameter(property = "cmake.toolchainCacheDirectory",
+		defaultValue = "${user.home}/.cache/cmake-maven-plugin/toolchains")
+	private File toolchainCacheDirectory;
+	/**
+	 * {@code true} if the sources downloaded by {@code FetchContent_MakeAvailable()} should be shared
+	 * between build directories. Requires CMake 3.24 or newer.
+	 */
+	@Parameter(property = "cmake.fetchContentCache", defaultValue = "false")
+	private boolean fetchContentCache;
+	/**
+	 * The directory that contains the FetchContent cache.
+	 */
+	@Parameter(property = "cmake.fetchContentCacheDirectory",
+		defaultValue = "${user.home}/.cache/cmake-maven-plugin/fetchcontent")
+	private File fetchContentCacheDirectory;
+	/**
+	 * The maximum size of the FetchContent cache, in megabytes. The least recently used entries are removed
+	 * after each configure step until the cache fits. Entries used by the current build are never removed.
+	 */
+	@Parameter(property = "cmake.fetchContentCacheSize", defaultValue = "10240")
+	private long fetchContentCacheSize;
 
 	private final MavenProject project;
 	private final BuildPluginManager pluginManager;
 	private final MavenSession session;
 	private final Platform platform = Platform.detected();
+	private Tracer tracer;
 
 	/**
 	 * Creates a new instance.
@@ -68,6 +158,70 @@ public abstract class CmakeMojo extends AbstractMojo
 		this.session = session;
 	}
 
+	/**
+	 * Starts timing the phases of this mojo.
+	 *
+	 * @param goal the name of the goal (e.g. {@code compile})
+	 * @return the outermost phase, which must be closed when the mojo ends
+	 */
+	protected Span startTracing(String goal)
+	{
+		String name = "cmake:" + goal;
+		tracer = new Tracer(session, project, name, getLog());
+		return tracer.start(name);
+	}
+
+	/**
+	 * Starts a phase of this mojo.
+	 *
+	 * @param name the name of the phase
+	 * @return the phase, which must be closed when it ends ({@code null} if {@link #startTracing(String)}
+	 * was not invoked, which try-with-resources accepts)
+	 */
+	protected Span trace(String name)
+	{
+		if (tracer == null)
+			return null;
+		return tracer.start(name);
+	}
+
+	/**
+	 * @return the file that the build history is appended to
+	 */
+	protected Path getHistoryFile()
+	{
+		return historyFile.toPath();
+	}
+
+	/**
+	 * Appends the duration of each phase of this mojo to the build history. Does nothing if tracing was not
+	 * started. Errors are logged, but do not fail the build.
+	 *
+	 * @param succeeded {@code true} if the process that the goal launched succeeded
+	 * @param counts    a map from the name of each quantity of work that the goal did (e.g.
+	 *                  {@link BuildHistory#REBUILT_EDGES}) to its value
+	 */
+	protected void recordHistory(boolean succeeded, Map<String, Long> counts)
+	{
+		if (!history || tracer == null)
+			return;
+		Map<String, Long> durations = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : tracer.getDurations().entrySet())
+			durations.put(entry.getKey(), entry.getValue() / 1000);
+		BuildHistory.Execution execution = new BuildHistory.Execution(System.currentTimeMillis(),
+			project.getArtifactId(), tracer.getGoal(), succeeded, BuildHistory.getHostFingerprint(), durations,
+			counts);
+		Path file = getHistoryFile();
+		try
+		{
+			BuildHistory.append(file, execution);
+		}
+		catch (IOException e)
+		{
+			getLog().warn("Could not append to " + file, e);
+		}
+	}
+
 	/**
 	 * Downloads cmake if necessary.
 	 *
@@ -79,8 +233,74 @@ public abstract class CmakeMojo extends AbstractMojo
 		log.debug("downloadBinaries: " + downloadBinaries);
 		if (!downloadBinaries)
 			return;
-		Path outputDirectory = Paths.get(project.getBuild().getDirectory(), "dependency/cmake");
-		downloadBinaries(outputDirectory);
+		Path outputDirectory = getBinariesDirectory();
+		Future<Path> prefetch = PrefetchMojo.getPrefetch(session, outputDirectory);
+		if (prefetch != null)
+		{
+			try (Span span = trace("await prefetched binaries"))
+			{
+				await(prefetch);
+				return;
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not prefetch the binaries. Downloading them again.", e);
+				PrefetchMojo.removePrefetch(session, outputDirectory, prefetch);
+			}
+			catch (InterruptedException e)
+			{
+				throw new MojoExecutionException("", e);
+			}
+		}
+		try (Span span = trace("download binaries"))
+		{
+			downloadBinaries(outputDirectory);
+		}
+	}
+
+	/**
+	 * @return {@code true} if this plugin should download and unpack cmake binaries
+	 */
+	protected boolean isDownloadBinaries()
+	{
+		return downloadBinaries;
+	}
+
+	/**
+	 * @return the directory that the cmake binaries are downloaded into
+	 */
+	protected Path getBinariesDirectory()
+	{
+		return Paths.get(project.getBuild().getDirectory(), "dependency/cmake").toAbsolutePath();
+	}
+
+	/**
+	 * @return the project being built
+	 */
+	protected MavenProject getProject()
+	{
+		return project;
+	}
+
+	/**
+	 * @return the current build session
+	 */
+	protected MavenSession getSession()
+	{
+		return session;
+	}
+
+	/**
+	 * Returns what cmake reported about a build directory through the File API. The model is shared by all
+	 * goals of the session until cmake reconfigures the build directory.
+	 *
+	 * @param buildDirectory the build directory
+	 * @return {@code null} if cmake did not write any replies
+	 * @throws IOException if an error occurs while reading the reply index
+	 */
+	protected BuildModel getBuildModel(Path buildDirectory) throws IOException
+	{
+		return BuildModel.get(session, buildDirectory);
 	}
 
 	/**
@@ -94,7 +314,7 @@ public abstract class CmakeMojo extends AbstractMojo
 	}
 
 	/**
-	 * Downloads cmake.
+	 * Downloads cmake. The jar is only extracted if it changed since it was last extracted.
 	 *
 	 * @param outputDirectory the directory to download into
 	 * @throws MojoExecutionException if the download fails
@@ -106,23 +326,47 @@ public abstract class CmakeMojo extends AbstractMojo
 		PluginDescriptor pluginDescriptor = (PluginDescriptor) getPluginContext().get("pluginDescriptor");
 		String groupId = pluginDescriptor.getGroupId();
 		String version = pluginDescriptor.getVersion();
-		String binariesArtifact = "cmake-binaries";
+		String binariesArtifact = PrefetchMojo.BINARIES_ARTIFACT;
+		String jarName = binariesArtifact + "-" + platform.getClassifier() + ".jar";
 		Element groupIdElement = new Element("groupId", groupId);
 		Element artifactIdElement = new Element("artifactId", binariesArtifact);
 		Element versionElement = new Element("version", version);
 		Element classifierElement = new Element("classifier", platform.getClassifier());
-		Element outputDirectoryElement = new Element("outputDirectory", outputDirectory.toString());
+		Element outputDirectoryElement = new Element("outputDirectory", outputDirectory.getParent().toString());
+		Element destFileNameElement = new Element("destFileName", jarName);
 		Element artifactItemElement = new Element("artifactItem", groupIdElement, artifactIdElement,
-			versionElement, classifierElement, outputDirectoryElement);
+			versionElement, classifierElement, outputDirectoryElement, destFileNameElement);
 		Element artifactItemsItem = new Element("artifactItems", artifactItemElement);
 		Xpp3Dom configuration = MojoExecutor.configuration(artifactItemsItem);
 		ExecutionEnvironment environment = MojoExecutor.executionEnvironment(project, session, pluginManager);
 		Plugin dependencyPlugin = MojoExecutor.plugin("org.apache.maven.plugins",
 			"maven-dependency-plugin", "3.6.1");
-		MojoExecutor.executeMojo(dependencyPlugin, "unpack", configuration, environment);
+		MojoExecutor.executeMojo(dependencyPlugin, "copy", configuration, environment);
+
+		Path jar = outputDirectory.resolveSibling(jarName);
+		try
+		{
+			if (BinariesArchive.isExtracted(jar, outputDirectory))
+				return;
+			long start = System.nanoTime();
+			long bytes = BinariesArchive.extract(jar, outputDirectory);
+			Log log = getLog();
+			if (log.isInfoEnabled())
+			{
+				double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+				log.info(String.format(Locale.ENGLISH, "Extracted %.1f MB in %.3fs", bytes / (1024.0 * 1024),
+					seconds));
+			}
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("Could not extract " + jar, e);
+		}
 	}
 
 	/**
+	 * Returns the path of a binary. Binaries are looked up once per session.
+	 *
 	 * @param filename       the filename of the binary
 	 * @param processBuilder the {@code ProcessBuilder}
 	 * @return the command-line arguments for running the binary
@@ -130,21 +374,67 @@ public abstract class CmakeMojo extends AbstractMojo
 	 */
 	public Path getBinaryPath(String filename, ProcessBuilder processBuilder) throws FileNotFoundException
 	{
-		Log log = getLog();
+		Path result = getToolRegistry(processBuilder).getPath(filename);
+		getLog().info("Executing " + result);
+		return result;
+	}
+
+	/**
+	 * Returns the version of cmake and the generators it supports. cmake is probed once per session.
+	 *
+	 * @param processBuilder a {@code ProcessBuilder} whose environment will be used to run cmake
+	 * @return {@code null} if the capabilities of cmake are unknown
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected CMakeCapabilities getCapabilities(ProcessBuilder processBuilder)
+		throws IOException, InterruptedException
+	{
+		return getToolRegistry(processBuilder).getCapabilities(processBuilder.environment(), getLog());
+	}
+
+	/**
+	 * @param processBuilder a {@code ProcessBuilder} whose environment will be used to run cmake
+	 * @param major          a major version number
+	 * @param minor          a minor version number
+	 * @return {@code true} if cmake is version {@code major.minor} or newer, or its version is unknown
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected boolean isCMakeAtLeast(ProcessBuilder processBuilder, int major, int minor)
+		throws IOException, InterruptedException
+	{
+		CMakeCapabilities capabilities = getCapabilities(processBuilder);
+		return capabilities == null || capabilities.isAtLeast(major, minor);
+	}
+
+	/**
+	 * @param processBuilder the {@code ProcessBuilder}
+	 * @return the registry of the binaries that the process can run
+	 */
+	private ToolRegistry getToolRegistry(ProcessBuilder processBuilder)
+	{
 		Path cmakeDir = getCmakeDir();
-		if (cmakeDir == null)
+		String path = platform.getEnvironment(processBuilder, "PATH");
+		if (cmakeDir == null && path == null)
 		{
-			log.info("Executing " + filename + " on PATH");
-			String path = platform.getEnvironment(processBuilder, "PATH");
-			if (path == null)
-			{
-				throw new IllegalArgumentException("PATH not found\n" +
-					"env: " + processBuilder.environment());
-			}
-			return platform.getExecutableOnPath(filename, path);
+			throw new IllegalArgumentException("PATH not found\n" +
+				"env: " + processBuilder.environment());
 		}
-		Path result = cmakeDir.resolve(filename + platform.getExecutableSuffix());
-		log.info("Executing " + result);
+		return ToolRegistry.get(session, cmakeDir, path);
+	}
+
+	/**
+	 * @return the ninja executable that is bundled with the downloaded cmake binaries ({@code null} if
+	 * binaries are not downloaded, or they do not contain ninja)
+	 */
+	protected Path getBundledNinja()
+	{
+		if (!downloadBinaries)
+			return null;
+		Path result = getCmakeDir().resolve("ninja" + platform.getExecutableSuffix());
+		if (!Files.isExecutable(result))
+			return null;
 		return result;
 	}
 
@@ -167,6 +457,482 @@ public abstract class CmakeMojo extends AbstractMojo
 		return Paths.get(cmakeDir);
 	}
 
+	/**
+	 * Launches and waits for a process to complete, then logs the resources consumed by the process and its
+	 * descendants and writes them to {@code cmake-metrics/<goal>.json}.
+	 *
+	 * @param processBuilder the process builder
+	 * @param goal           the name of the goal that launched the process
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected int waitFor(ProcessBuilder processBuilder, String goal) throws IOException, InterruptedException
+	{
+		return waitFor(processBuilder, goal, getLog());
+	}
+
+	/**
+	 * Launches and waits for a process to complete, then logs the resources consumed by the process and its
+	 * descendants and writes them to {@code cmake-metrics/<goal>.json}.
+	 *
+	 * @param processBuilder the process builder
+	 * @param goal           the name of the goal that launched the process
+	 * @param log            the log to write the output of the process to
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected int waitFor(ProcessBuilder processBuilder, String goal, Log log)
+		throws IOException, InterruptedException
+	{
+		ProcessTreeSampler sampler = new ProcessTreeSampler();
+		int result = Mojos.waitFor(processBuilder, log, sampler);
+		ProcessTreeStatistics statistics = sampler.getStatistics();
+		if (log.isInfoEnabled())
+			log.info("Resources consumed by " + goal + ": " + statistics);
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("goal", goal);
+		metrics.put("command", processBuilder.command());
+		metrics.put("exitCode", result);
+		metrics.put("resources", statistics);
+		Metrics.write(Metrics.getDirectory(getBuildDirectory()).resolve(goal + ".json"), metrics);
+		return result;
+	}
+
+	/**
+	 * Configures a project. The command-line is extended with the generator, the profiling options,
+	 * {@link #addOptions(ProcessBuilder) options}, the bundled ninja, the FetchContent provider and the seeded
+	 * toolchain cache, in that order. After a successful configure, the toolchain cache is captured and the
+	 * FetchContent cache is trimmed.
+	 *
+	 * @param processBuilder the cmake process, whose command-line contains the cmake executable and any
+	 *                       options of the goal, and whose working directory is the build directory
+	 * @param sourcePath     the directory containing CMakeLists.txt
+	 * @param generator      the generator to use ({@code null} or empty to let cmake or the bundled ninja
+	 *                       decide)
+	 * @param goal           the name under which the resources consumed by cmake are recorded
+	 * @return the exit code of cmake
+	 * @throws NullPointerException if {@code processBuilder}, {@code sourcePath} or {@code goal} are null
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected int configure(ProcessBuilder processBuilder, File sourcePath, String generator, String goal)
+		throws IOException, InterruptedException
+	{
+		if (processBuilder == null)
+			throw new NullPointerException("processBuilder may not be null");
+		if (sourcePath == null)
+			throw new NullPointerException("sourcePath may not be null");
+		if (goal == null)
+			throw new NullPointerException("goal may not be null");
+		Path buildDirectory = processBuilder.directory().toPath().toAbsolutePath();
+		Log log = getLog();
+		boolean profileEnabled = profile;
+		if (profile && !isCMakeAtLeast(processBuilder, 3, 18))
+		{
+			log.warn("profile requires CMake 3.18 or newer. Ignoring.");
+			profileEnabled = false;
+		}
+		boolean fetchContentCacheEnabled = fetchContentCache;
+		if (fetchContentCache && !isCMakeAtLeast(processBuilder, 3, 24))
+		{
+			log.warn("fetchContentCache requires CMake 3.24 or newer. Ignoring.");
+			fetchContentCacheEnabled = false;
+		}
+
+		boolean generatorSpecified = generator != null && !generator.trim().isEmpty();
+		if (generatorSpecified)
+			Collections.addAll(processBuilder.command(), "-G", generator);
+
+		Path profileFile = Metrics.getDirectory(getBuildDirectory()).resolve("cmake-profile.json").
+			toAbsolutePath();
+		if (profileEnabled)
+		{
+			Files.createDirectories(profileFile.getParent());
+			Files.deleteIfExists(profileFile);
+			Collections.addAll(processBuilder.command(), "--profiling-format=google-trace",
+				"--profiling-output=" + profileFile);
+		}
+
+		addOptions(processBuilder);
+		if (!generatorSpecified && bundledNinja)
+			addBundledNinja(processBuilder, buildDirectory);
+		if (fetchContentCacheEnabled)
+			addFetchContentProvider(processBuilder.command());
+
+		// CMake only detects the toolchain in fresh build directories
+		String toolchainKey = null;
+		String probesKey = null;
+		ToolchainCache cache = null;
+		if (toolchainCache && CMakeCache.read(buildDirectory).isEmpty())
+		{
+			try (Span span = trace("seed toolchain cache"))
+			{
+				CMakeCapabilities capabilities = getCapabilities(processBuilder);
+				String cmakeVersion;
+				if (capabilities == null)
+					cmakeVersion = null;
+				else
+					cmakeVersion = capabilities.version;
+				toolchainKey = ToolchainCache.getKey(processBuilder.command(), processBuilder.environment(),
+					buildDirectory, platform.getClassifier(), cmakeVersion);
+				probesKey = ToolchainCache.getProbesKey(sourcePath.toPath(), processBuilder.command());
+				cache = new ToolchainCache(toolchainCacheDirectory.toPath(), log);
+				Path initialCache = cache.seed(toolchainKey, probesKey, buildDirectory);
+				if (initialCache != null)
+					Collections.addAll(processBuilder.command(), "-C", initialCache.toString());
+			}
+		}
+		processBuilder.command().add(sourcePath.getAbsolutePath());
+		FileApi.writeQuery(buildDirectory, FileApi.CODEMODEL, FileApi.CACHE, FileApi.TOOLCHAINS,
+			FileApi.CMAKE_FILES);
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("sourcePath: " + sourcePath);
+			log.debug("targetPath: " + buildDirectory);
+			log.debug("Environment: " + processBuilder.environment());
+			log.debug("Command-line: " + processBuilder.command());
+		}
+		int result;
+		try (Span span = trace("configure"))
+		{
+			result = waitFor(processBuilder, goal);
+		}
+		if (profileEnabled && Files.exists(profileFile))
+		{
+			try (Span span = trace("profile summary"))
+			{
+				reportProfile(profileFile);
+			}
+		}
+		if (result != 0)
+			return result;
+		if (cache != null)
+		{
+			try (Span span = trace("capture toolchain cache"))
+			{
+				cache.capture(toolchainKey, probesKey, buildDirectory);
+			}
+		}
+		if (fetchContentCacheEnabled)
+		{
+			try (Span span = trace("evict fetchcontent cache"))
+			{
+				FetchContentCache fetchContent = new FetchContentCache(fetchContentCacheDirectory.toPath(),
+					log);
+				// Entries used by this build were touched after the session started
+				long freedBytes = fetchContent.evict(fetchContentCacheSize * 1024 * 1024,
+					session.getRequest().getStartTime().getTime());
+				if (freedBytes > 0 && log.isInfoEnabled())
+				{
+					log.info("Evicted " + freedBytes / (1024 * 1024) + " MB from the FetchContent cache at " +
+						fetchContent.getDirectory());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Selects the Ninja generator and the bundled ninja executable, unless the command-line or environment
+	 * already chooses a generator or the build directory uses a different generator.
+	 *
+	 * @param processBuilder the cmake process
+	 * @param buildDirectory the build directory
+	 * @throws IOException if an error occurs while reading the cache of the build directory
+	 */
+	private void addBundledNinja(ProcessBuilder processBuilder, Path buildDirectory) throws IOException
+	{
+		Path ninja = getBundledNinja();
+		if (ninja == null)
+			return;
+		List<String> command = processBuilder.command();
+		for (String argument : command)
+		{
+			// Platforms (-A) and toolsets (-T) are only supported by Visual Studio and Xcode generators
+			if (argument.startsWith("-G") || argument.startsWith("-A") || argument.startsWith("-T") ||
+				argument.startsWith("-DCMAKE_MAKE_PROGRAM") || argument.startsWith("--preset"))
+			{
+				return;
+			}
+		}
+		if (platform.getEnvironment(processBuilder, "CMAKE_GENERATOR") != null)
+			return;
+		// Unlike Visual Studio generators, Ninja expects the compiler to be on the PATH
+		if (platform.operatingSystem == OperatingSystem.WINDOWS &&
+			platform.getEnvironment(processBuilder, "VCINSTALLDIR") == null)
+		{
+			return;
+		}
+		Log log = getLog();
+		// cmake refuses to change the generator of an existing build directory
+		String existingGenerator = CMakeCache.read(buildDirectory).get("CMAKE_GENERATOR");
+		if (existingGenerator != null && !existingGenerator.equals("Ninja"))
+		{
+			if (log.isDebugEnabled())
+				log.debug("Not using the bundled ninja. The build directory uses " + existingGenerator);
+			return;
+		}
+		Collections.addAll(command, "-G", "Ninja", "-DCMAKE_MAKE_PROGRAM=" +
+			ninja.toString().replace('\\', '/'));
+		if (log.isInfoEnabled())
+			log.info("Using the Ninja generator with " + ninja);
+	}
+
+	/**
+	 * Routes {@code FetchContent_MakeAvailable()} through the FetchContent cache.
+	 *
+	 * @param command the cmake command-line
+	 * @throws IOException if an error occurs while writing the dependency provider
+	 */
+	private void addFetchContentProvider(List<String> command) throws IOException
+	{
+		Path provider = Paths.get(getBuildDirectory(), "cmake-fetchcontent-provider.cmake").toAbsolutePath();
+		FetchContentCache.writeProvider(provider);
+		String providerPath = provider.toString().replace('\\', '/');
+		command.add("-DCMAKE_MAVEN_FETCHCONTENT_CACHE=" + fetchContentCacheDirectory.getAbsolutePath().
+			replace('\\', '/'));
+
+		// Preserve any top-level includes that the user specified
+		String option = "-DCMAKE_PROJECT_TOP_LEVEL_INCLUDES";
+		for (int i = command.size() - 1; i >= 0; --i)
+		{
+			String argument = command.get(i);
+			int equals = argument.indexOf('=');
+			if (equals == -1 || !argument.startsWith(option))
+				continue;
+			String name = argument.substring(0, equals);
+			// Accept an optional type, such as -DCMAKE_PROJECT_TOP_LEVEL_INCLUDES:STRING=...
+			if (!name.equals(option) && !name.startsWith(option + ":"))
+				continue;
+			String value = argument.substring(equals + 1);
+			if (value.isEmpty())
+				command.set(i, name + "=" + providerPath);
+			else
+				command.set(i, argument + ";" + providerPath);
+			return;
+		}
+		command.add(option + "=" + providerPath);
+	}
+
+	/**
+	 * Logs the slowest commands of the configure step and writes them to
+	 * {@code cmake-metrics/cmake-profile-summary.json}.
+	 *
+	 * @param profileFile the trace written by cmake
+	 * @throws IOException if an error occurs while reading the trace or writing the summary
+	 */
+	private void reportProfile(Path profileFile) throws IOException
+	{
+		CMakeProfile cmakeProfile = CMakeProfile.parse(profileFile);
+		Map<String, List<Entry>> categoryToEntries = new LinkedHashMap<>();
+		categoryToEntries.put("include", cmakeProfile.getSlowest("include", profileEntries));
+		categoryToEntries.put("find_package", cmakeProfile.getSlowest("find_package", profileEntries));
+		categoryToEntries.put("try_compile", cmakeProfile.getSlowest("try_compile", profileEntries));
+		categoryToEntries.put("try_run", cmakeProfile.getSlowest("try_run", profileEntries));
+		categoryToEntries.put("exclusive", cmakeProfile.getHotspots(profileEntries));
+
+		Log log = getLog();
+		if (log.isInfoEnabled())
+		{
+			log.info(String.format(Locale.ENGLISH, "CMake spent %.3fs configuring", cmakeProfile.totalMicros /
+				1_000_000.0));
+			for (Map.Entry<String, List<Entry>> category : categoryToEntries.entrySet())
+			{
+				List<Entry> entries = category.getValue();
+				if (entries.isEmpty())
+					continue;
+				if (category.getKey().equals("exclusive"))
+					log.info("Commands with the highest exclusive time (inclusive, exclusive, calls):");
+				else
+					log.info("Slowest " + category.getKey() + "() calls (inclusive, exclusive, calls):");
+				for (Entry entry : entries)
+				{
+					log.info(String.format(Locale.ENGLISH, "%10.3fs %10.3fs %6d  %s",
+						entry.inclusiveMicros / 1_000_000.0, entry.exclusiveMicros / 1_000_000.0, entry.count,
+						entry.key));
+				}
+			}
+		}
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("totalSeconds", cmakeProfile.totalMicros / 1_000_000.0);
+		metrics.put("slowest", categoryToEntries);
+		metrics.put("commands", cmakeProfile.getHotspots(Integer.MAX_VALUE));
+		Path summaryFile = profileFile.resolveSibling("cmake-profile-summary.json");
+		Metrics.write(summaryFile, metrics);
+		if (log.isDebugEnabled())
+			log.debug("Wrote the configure profile summary to " + summaryFile);
+	}
+
+	/**
+	 * Runs tasks concurrently, one thread per task, and waits for all of them to complete.
+	 *
+	 * @param <T>        the type of value returned by the tasks
+	 * @param tasks      the tasks to run
+	 * @param threadName the prefix of the names of the threads
+	 * @return the value returned by each task, in the same order as {@code tasks}
+	 * @throws IOException          if a task throws {@code IOException}
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected <T> List<T> invokeConcurrently(List<Callable<T>> tasks, String threadName)
+		throws IOException, InterruptedException
+	{
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, tasks.size()), runnable ->
+		{
+			Thread thread = new Thread(runnable, threadName + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try
+		{
+			List<Future<T>> futures = new ArrayList<>();
+			for (Callable<T> task : tasks)
+				futures.add(executor.submit(task));
+			List<T> results = new ArrayList<>();
+			for (Future<T> future : futures)
+				results.add(await(future));
+			return results;
+		}
+		finally
+		{
+			// Interrupting the threads stops reading the output of the processes they launched
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for a task to complete.
+	 *
+	 * @param <T>    the type of value returned by the task
+	 * @param future the result of the task
+	 * @return the value returned by the task
+	 * @throws IOException          if the task throws {@code IOException}
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected static <T> T await(Future<T> future) throws IOException, InterruptedException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof InterruptedException)
+				throw (InterruptedException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new AssertionError(cause);
+		}
+	}
+
+	/**
+	 * Runs a ninja subtool ({@code ninja -t <tool>}) in a build directory and parses its output.
+	 *
+	 * @param <T>            the type of the parsed output
+	 * @param cache          the cache of the build directory
+	 * @param buildDirectory the build directory
+	 * @param tool           the name of the subtool
+	 * @param parser         parses the output of the subtool
+	 * @return {@code null} if ninja could not be located or the subtool failed
+	 * @throws IOException          if an error occurs while running ninja
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected <T> T runNinjaTool(CMakeCache cache, File buildDirectory, String tool, OutputParser<T> parser)
+		throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		String ninja = cache.get("CMAKE_MAKE_PROGRAM");
+		if (ninja == null || ninja.isEmpty())
+		{
+			log.warn("CMAKE_MAKE_PROGRAM is not set, cannot run \"ninja -t " + tool + "\"");
+			return null;
+		}
+		ProcessBuilder processBuilder = new ProcessBuilder(ninja, "-C", buildDirectory.getPath(), "-t", tool);
+		overrideEnvironmentVariables(processBuilder);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		Process process = processBuilder.start();
+		process.getOutputStream().close();
+		T result;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(),
+			Charset.defaultCharset())))
+		{
+			result = parser.parse(in);
+		}
+		int exitCode = process.waitFor();
+		if (exitCode != 0)
+		{
+			log.warn("\"ninja -t " + tool + "\" returned " + exitCode);
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Lists the tests of a build directory using {@code ctest --show-only=json-v1}.
+	 *
+	 * @param buildDirectory the build directory
+	 * @param ctestPath      the path of the ctest executable
+	 * @param config         the build configuration ({@code null} if the generator is single-config)
+	 * @return {@code null} if ctest failed
+	 * @throws IOException          if an error occurs while running ctest
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected JsonNode listTests(File buildDirectory, String ctestPath, String config)
+		throws IOException, InterruptedException
+	{
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(buildDirectory);
+		overrideEnvironmentVariables(processBuilder);
+		Collections.addAll(processBuilder.command(), ctestPath, "--show-only=json-v1");
+		if (config != null)
+			Collections.addAll(processBuilder.command(), "--build-config", config);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Log log = getLog();
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		Process process = processBuilder.start();
+		process.getOutputStream().close();
+		JsonNode result;
+		try (InputStream in = process.getInputStream())
+		{
+			result = Metrics.getMapper().readTree(in);
+		}
+		int exitCode = process.waitFor();
+		if (exitCode != 0 || result == null)
+		{
+			log.warn("\"ctest --show-only=json-v1\" returned " + exitCode);
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the output of a process.
+	 *
+	 * @param <T> the type of the parsed output
+	 */
+	@FunctionalInterface
+	protected interface OutputParser<T>
+	{
+		/**
+		 * @param in the output of the process
+		 * @return the parsed output
+		 * @throws IOException if an error occurs while reading the output
+		 */
+		T parse(BufferedReader in) throws IOException;
+	}
+
 	/**
 	 * Adds command-line options to the processBuilder.
 	 *
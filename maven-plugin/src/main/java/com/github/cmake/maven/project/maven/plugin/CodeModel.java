@@ -0,0 +1,334 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The targets of one build configuration, as described by the File API {@code codemodel-v2} object.
+ * <p>
+ * The code model lists every target up-front, but the details of each target (its sources, artifacts and
+ * dependencies) are stored in a separate reply file. Those files are only read when a target is first
+ * requested, so goals that need a handful of targets do not pay for parsing the entire project.
+ */
+public final class CodeModel
+{
+	/**
+	 * The top-level build directory.
+	 */
+	public final Path buildDirectory;
+	/**
+	 * The top-level source directory.
+	 */
+	public final Path sourceDirectory;
+	/**
+	 * The name of the build configuration (empty for single-config generators without a build type).
+	 */
+	public final String config;
+	/**
+	 * The directory that contains the reply files.
+	 */
+	private final Path replyDirectory;
+	/**
+	 * A map from each target's id to its reply file, in the order that cmake listed them.
+	 */
+	private final Map<String, String> idToJsonFile;
+	/**
+	 * A map from each target's name to its id, in the order that cmake listed them.
+	 */
+	private final Map<String, String> nameToId;
+	/**
+	 * The targets that have been read so far.
+	 */
+	private final Map<String, Target> idToTarget = new HashMap<>();
+	/**
+	 * A map from each artifact to the target that produces it ({@code null} until first used).
+	 */
+	private Map<Path, Target> artifactToTarget;
+
+	/**
+	 * Reads the code model.
+	 *
+	 * @param replyFile the {@code codemodel-v2} reply file
+	 * @param config    the build configuration to read ({@code null} to read the first configuration)
+	 * @return the code model
+	 * @throws IOException if an error occurs while reading the reply, or it does not contain {@code config}
+	 */
+	public static CodeModel read(Path replyFile, String config) throws IOException
+	{
+		JsonNode root = Metrics.getMapper().readTree(replyFile.toFile());
+		Path buildDirectory = Paths.get(root.path("paths").path("build").asText());
+		Path sourceDirectory = Paths.get(root.path("paths").path("source").asText());
+		JsonNode configuration = null;
+		List<String> names = new ArrayList<>();
+		for (JsonNode candidate : root.path("configurations"))
+		{
+			String name = candidate.path("name").asText();
+			names.add(name);
+			if (configuration == null && (config == null || config.equals(name)))
+				configuration = candidate;
+		}
+		if (configuration == null)
+		{
+			throw new IOException(replyFile + " does not contain configuration " + config + ". Found: " +
+				names);
+		}
+
+		Map<String, String> idToJsonFile = new LinkedHashMap<>();
+		Map<String, String> nameToId = new LinkedHashMap<>();
+		for (JsonNode reference : configuration.path("targets"))
+		{
+			String id = reference.path("id").asText();
+			idToJsonFile.put(id, reference.path("jsonFile").asText());
+			nameToId.put(reference.path("name").asText(), id);
+		}
+		return new CodeModel(buildDirectory, sourceDirectory, configuration.path("name").asText(),
+			replyFile.getParent(), idToJsonFile, nameToId);
+	}
+
+	/**
+	 * @param buildDirectory  the top-level build directory
+	 * @param sourceDirectory the top-level source directory
+	 * @param config          the name of the build configuration
+	 * @param replyDirectory  the directory that contains the reply files
+	 * @param idToJsonFile    a map from each target's id to its reply file
+	 * @param nameToId        a map from each target's name to its id
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	private CodeModel(Path buildDirectory, Path sourceDirectory, String config, Path replyDirectory,
+		Map<String, String> idToJsonFile, Map<String, String> nameToId)
+	{
+		assert (buildDirectory != null) : "buildDirectory may not be null";
+		assert (sourceDirectory != null) : "sourceDirectory may not be null";
+		assert (config != null) : "config may not be null";
+		assert (replyDirectory != null) : "replyDirectory may not be null";
+		assert (idToJsonFile != null) : "idToJsonFile may not be null";
+		assert (nameToId != null) : "nameToId may not be null";
+		this.buildDirectory = buildDirectory;
+		this.sourceDirectory = sourceDirectory;
+		this.config = config;
+		this.replyDirectory = replyDirectory;
+		this.idToJsonFile = idToJsonFile;
+		this.nameToId = nameToId;
+	}
+
+	/**
+	 * @return the names of the targets, in the order that cmake listed them
+	 */
+	public List<String> getTargetNames()
+	{
+		return new ArrayList<>(nameToId.keySet());
+	}
+
+	/**
+	 * @param name the name of a target
+	 * @return the target ({@code null} if there is no such target)
+	 * @throws IOException if an error occurs while reading the target
+	 */
+	public Target getTargetByName(String name) throws IOException
+	{
+		String id = nameToId.get(name);
+		if (id == null)
+			return null;
+		return getTarget(id);
+	}
+
+	/**
+	 * @param id the id of a target
+	 * @return the target ({@code null} if there is no such target)
+	 * @throws IOException if an error occurs while reading the target
+	 */
+	public synchronized Target getTarget(String id) throws IOException
+	{
+		Target target = idToTarget.get(id);
+		if (target != null)
+			return target;
+		String jsonFile = idToJsonFile.get(id);
+		if (jsonFile == null)
+			return null;
+		JsonNode node = Metrics.getMapper().readTree(replyDirectory.resolve(jsonFile).toFile());
+		List<String> dependencies = new ArrayList<>();
+		for (JsonNode dependency : node.path("dependencies"))
+			dependencies.add(dependency.path("id").asText());
+		List<Path> artifacts = new ArrayList<>();
+		for (JsonNode artifact : node.path("artifacts"))
+			artifacts.add(buildDirectory.resolve(artifact.path("path").asText()).normalize());
+		List<Path> sources = new ArrayList<>();
+		for (JsonNode source : node.path("sources"))
+		{
+			// Skip files that cmake generates, such as precompiled headers and unity sources
+			if (source.path("isGenerated").asBoolean())
+				continue;
+			sources.add(sourceDirectory.resolve(source.path("path").asText()).normalize());
+		}
+		target = new Target(id, node.path("name").asText(), node.path("type").asText(), dependencies,
+			artifacts, sources);
+		idToTarget.put(id, target);
+		return target;
+	}
+
+	/**
+	 * Returns all targets. This reads the reply file of every target.
+	 *
+	 * @return the targets, in the order that cmake listed them
+	 * @throws IOException if an error occurs while reading the targets
+	 */
+	public List<Target> getTargets() throws IOException
+	{
+		List<Target> result = new ArrayList<>(idToJsonFile.size());
+		for (String id : idToJsonFile.keySet())
+			result.add(getTarget(id));
+		return result;
+	}
+
+	/**
+	 * @param artifact the path of a file
+	 * @return the target that produces the file ({@code null} if none)
+	 * @throws IOException if an error occurs while reading the targets
+	 */
+	public synchronized Target getTargetByArtifact(Path artifact) throws IOException
+	{
+		if (artifactToTarget == null)
+		{
+			Map<Path, Target> map = new HashMap<>();
+			for (Target target : getTargets())
+				for (Path path : target.artifacts)
+					map.putIfAbsent(path, target);
+			artifactToTarget = map;
+		}
+		return artifactToTarget.get(artifact.toAbsolutePath().normalize());
+	}
+
+	/**
+	 * @return the targets, ordered such that every target comes after its dependencies
+	 * @throws IOException if an error occurs while reading the targets
+	 */
+	public List<Target> getTopologicalOrder() throws IOException
+	{
+		List<Target> result = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		for (Target target : getTargets())
+			visit(target, visited, result);
+		return result;
+	}
+
+	/**
+	 * Adds a target to a topological order after its dependencies.
+	 *
+	 * @param target  the target
+	 * @param visited the ids of the targets that were visited
+	 * @param result  the topological order
+	 * @throws IOException if an error occurs while reading the targets
+	 */
+	private void visit(Target target, Set<String> visited, List<Target> result) throws IOException
+	{
+		// CMake rejects cyclic dependencies between targets, so marking targets on entry is sufficient
+		if (!visited.add(target.id))
+			return;
+		for (String dependency : target.dependencies)
+		{
+			Target dependencyTarget = getTarget(dependency);
+			if (dependencyTarget != null)
+				visit(dependencyTarget, visited, result);
+		}
+		result.add(target);
+	}
+
+	/**
+	 * @param targets a set of targets
+	 * @return the targets and their transitive dependencies
+	 * @throws IOException if an error occurs while reading the targets
+	 */
+	public Set<Target> getClosure(Set<Target> targets) throws IOException
+	{
+		Set<Target> result = new HashSet<>();
+		List<Target> pending = new ArrayList<>(targets);
+		while (!pending.isEmpty())
+		{
+			Target target = pending.remove(pending.size() - 1);
+			if (!result.add(target))
+				continue;
+			for (String dependency : target.dependencies)
+			{
+				Target dependencyTarget = getTarget(dependency);
+				if (dependencyTarget != null)
+					pending.add(dependencyTarget);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A build target.
+	 */
+	public static final class Target
+	{
+		/**
+		 * The unique identifier of the target.
+		 */
+		public final String id;
+		/**
+		 * The name of the target.
+		 */
+		public final String name;
+		/**
+		 * The type of the target (e.g. {@code EXECUTABLE}, {@code STATIC_LIBRARY}, {@code UTILITY}).
+		 */
+		public final String type;
+		/**
+		 * The ids of the targets that this target depends on.
+		 */
+		public final List<String> dependencies;
+		/**
+		 * The absolute paths of the files that the target produces.
+		 */
+		public final List<Path> artifacts;
+		/**
+		 * The absolute paths of the target's source files, excluding files that cmake generates.
+		 */
+		public final List<Path> sources;
+
+		/**
+		 * @param id           the unique identifier of the target
+		 * @param name         the name of the target
+		 * @param type         the type of the target
+		 * @param dependencies the ids of the targets that this target depends on
+		 * @param artifacts    the absolute paths of the files that the target produces
+		 * @param sources      the absolute paths of the target's source files
+		 * @throws AssertionError if any of the arguments are null
+		 */
+		public Target(String id, String name, String type, List<String> dependencies, List<Path> artifacts,
+			List<Path> sources)
+		{
+			assert (id != null) : "id may not be null";
+			assert (name != null) : "name may not be null";
+			assert (type != null) : "type may not be null";
+			assert (dependencies != null) : "dependencies may not be null";
+			assert (artifacts != null) : "artifacts may not be null";
+			assert (sources != null) : "sources may not be null";
+			this.id = id;
+			this.name = name;
+			this.type = type;
+			this.dependencies = Collections.unmodifiableList(dependencies);
+			this.artifacts = Collections.unmodifiableList(artifacts);
+			this.sources = Collections.unmodifiableList(sources);
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+}
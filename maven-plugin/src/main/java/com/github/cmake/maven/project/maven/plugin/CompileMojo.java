@@ -13,7 +13,9 @@
  */
 package com.github.cmake.maven.project.maven.plugin;
 
-import com.github.cmake.maven.project.common.Mojos;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import com.github.cmake.maven.project.maven.plugin.NinjaLog.Edge;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -26,7 +28,13 @@ import org.apache.maven.project.MavenProject;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Goal which compiles project files generated by CMake.
@@ -51,6 +59,17 @@ public class CompileMojo extends CmakeMojo
 	 */
 	@Parameter(required = true)
 	private File projectDirectory;
+	/**
+	 * {@code true} if builds that use a Ninja generator should be analyzed using {@code .ninja_log}. The
+	 * analysis is written to {@code cmake-metrics/ninja.json} and {@code cmake-metrics/ninja-trace.json}.
+	 */
+	@Parameter(property = "cmake.ninjaReport", defaultValue = "true")
+	private boolean ninjaReport;
+	/**
+	 * The number of slowest translation units to log.
+	 */
+	@Parameter(property = "cmake.slowestCompilations", defaultValue = "10")
+	private int slowestCompilations;
 
 	/**
 	 * Creates a new instance.
@@ -69,7 +88,9 @@ public class CompileMojo extends CmakeMojo
 	public void execute()
 		throws MojoExecutionException
 	{
-		try
+		boolean succeeded = false;
+		Map<String, Long> counts = new LinkedHashMap<>();
+		try (Span goalSpan = startTracing("compile"))
 		{
 			if (!projectDirectory.exists())
 				throw new MojoExecutionException(projectDirectory.getAbsolutePath() + " does not exist");
@@ -100,13 +121,126 @@ public class CompileMojo extends CmakeMojo
 				log.debug("Environment: " + processBuilder.environment());
 				log.debug("Command-line: " + processBuilder.command());
 			}
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			CMakeCache cache = CMakeCache.read(projectDirectory.toPath());
+			Path ninjaLog = null;
+			NinjaLog.Position ninjaLogPosition = null;
+			if (ninjaReport && isNinja(cache))
+			{
+				ninjaLog = projectDirectory.toPath().resolve(NinjaLog.FILENAME);
+				ninjaLogPosition = NinjaLog.Position.of(ninjaLog);
+			}
+			int returnCode;
+			try (Span span = trace("build"))
+			{
+				returnCode = waitFor(processBuilder, "compile");
+			}
+			if (ninjaLog != null)
+			{
+				try (Span span = trace("ninja report"))
+				{
+					Integer rebuiltEdges = reportNinjaBuild(cache, ninjaLog, ninjaLogPosition);
+					if (rebuiltEdges != null)
+						counts.put(BuildHistory.REBUILT_EDGES, rebuiltEdges.longValue());
+				}
+			}
 			if (returnCode != 0)
 				throw new MojoExecutionException("Return code: " + returnCode);
+			succeeded = true;
 		}
 		catch (InterruptedException | IOException e)
 		{
 			throw new MojoExecutionException("", e);
 		}
+		finally
+		{
+			recordHistory(succeeded, counts);
+		}
+	}
+
+	/**
+	 * @param cache the cache of the build directory
+	 * @return {@code true} if the build directory was generated by a Ninja generator
+	 */
+	private static boolean isNinja(CMakeCache cache)
+	{
+		String generator = cache.get("CMAKE_GENERATOR");
+		return generator != null && generator.startsWith("Ninja");
+	}
+
+	/**
+	 * Logs the slowest translation units, the parallelism and the critical path of the edges that ninja
+	 * appended to its log, and writes them to the metrics directory.
+	 *
+	 * @param cache    the cache of the build directory
+	 * @param file     the ninja log
+	 * @param position the end of the log before the build
+	 * @return the number of edges that ninja ran ({@code null} if unknown)
+	 * @throws IOException          if an error occurs while reading the log or writing the metrics
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private Integer reportNinjaBuild(CMakeCache cache, Path file, NinjaLog.Position position)
+		throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		if (Files.notExists(file))
+			return null;
+		if (!position.isAppendedTo(file))
+		{
+			// Ninja recompacts the log before building if it contains too many stale entries. The start
+			// and end times of the entries it kept are relative to earlier invocations, so they cannot be
+			// mixed with the current build.
+			log.info("Skipping the ninja report because " + file + " was recompacted");
+			return null;
+		}
+		NinjaLog ninjaLog = NinjaLog.read(file, position.offset);
+		if (ninjaLog.edges.isEmpty())
+		{
+			log.debug("ninja did not run any edges");
+			return 0;
+		}
+		NinjaGraph graph = runNinjaTool(cache, projectDirectory, "graph", NinjaGraph::parse);
+		List<Edge> criticalPath;
+		if (graph == null)
+			criticalPath = null;
+		else
+			criticalPath = graph.getCriticalPath(ninjaLog);
+		NinjaBuildReport report = new NinjaBuildReport(ninjaLog, criticalPath);
+
+		if (log.isInfoEnabled())
+		{
+			log.info(String.format(Locale.ENGLISH, "ninja ran %d edges: %s of CPU time in %s (%.1f jobs " +
+					"in parallel on average)", ninjaLog.edges.size(), formatMillis(ninjaLog.getCpuMillis()),
+				formatMillis(ninjaLog.getWallMillis()), report.getParallelism()));
+			List<Edge> slowest = report.getSlowestCompilations(slowestCompilations);
+			if (!slowest.isEmpty())
+			{
+				log.info("Slowest translation units:");
+				for (Edge edge : slowest)
+					log.info(String.format("%10s  %s", formatMillis(edge.getDuration()), edge.getName()));
+			}
+			if (criticalPath != null && !criticalPath.isEmpty())
+			{
+				log.info("Critical path (" + formatMillis(report.getCriticalPathMillis()) + "):");
+				for (Edge edge : criticalPath)
+					log.info(String.format("%10s  %s", formatMillis(edge.getDuration()), edge.getName()));
+			}
+		}
+
+		Path metricsDirectory = Metrics.getDirectory(getBuildDirectory());
+		Metrics.write(metricsDirectory.resolve("ninja.json"), report.toMetrics(slowestCompilations));
+		Path traceFile = metricsDirectory.resolve("ninja-trace.json");
+		Metrics.write(traceFile, report.toChromeTrace());
+		if (log.isDebugEnabled())
+			log.debug("Wrote ninja trace to " + traceFile);
+		return ninjaLog.edges.size();
+	}
+
+	/**
+	 * @param millis a duration in milliseconds
+	 * @return the formatted duration
+	 */
+	private static String formatMillis(long millis)
+	{
+		return String.format(Locale.ENGLISH, "%.3fs", millis / 1000.0);
 	}
 }
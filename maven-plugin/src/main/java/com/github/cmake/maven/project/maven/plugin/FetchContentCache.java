@@ -0,0 +1,299 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A machine-level cache of the sources that CMake's {@code FetchContent} module downloads.
+ * <p>
+ * The cache is populated by a dependency provider ({@code fetchcontent-provider.cmake}) that cmake loads
+ * through {@code CMAKE_PROJECT_TOP_LEVEL_INCLUDES}. Each dependency is stored in
+ * {@code <name>-<hash>/src}, where the hash is derived from the arguments that were passed to
+ * {@code FetchContent_Declare()}. An entry is populated while holding the file lock
+ * {@code <name>-<hash>.lock} and is marked complete by creating {@code <name>-<hash>/.complete}, whose
+ * modification time is updated every time the entry is used. Build directories that reference the same
+ * declaration share the same sources, so they must not modify them.
+ * <p>
+ * CMake uses {@code fcntl()} locks on POSIX systems and {@code LockFileEx()} on Windows, which are the
+ * same locks that {@link FileChannel#lock()} acquires. This class uses them to avoid evicting entries that
+ * a concurrent cmake process is populating.
+ */
+public final class FetchContentCache
+{
+	/**
+	 * The name of the file that marks an entry as complete.
+	 */
+	private static final String COMPLETE = ".complete";
+	/**
+	 * The suffix of the lock that guards each entry.
+	 */
+	private static final String LOCK_SUFFIX = ".lock";
+	/**
+	 * The classpath resource that contains the dependency provider.
+	 */
+	private static final String PROVIDER = "/fetchcontent-provider.cmake";
+	private final Path directory;
+	private final Log log;
+
+	/**
+	 * @param directory the directory that contains the cache
+	 * @param log       the logger to write to
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	public FetchContentCache(Path directory, Log log)
+	{
+		if (directory == null)
+			throw new NullPointerException("directory may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		this.directory = directory;
+		this.log = log;
+	}
+
+	/**
+	 * @return the directory that contains the cache
+	 */
+	public Path getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Writes the dependency provider to a file. The file is left untouched if it is already up-to-date
+	 * because cmake reruns the configure step whenever one of its input files is modified.
+	 *
+	 * @param target the path of the file
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	public static void writeProvider(Path target) throws IOException
+	{
+		byte[] content;
+		try (InputStream in = FetchContentCache.class.getResourceAsStream(PROVIDER))
+		{
+			if (in == null)
+				throw new IOException("Missing resource: " + PROVIDER);
+			content = readAll(in);
+		}
+		if (Files.exists(target) && Arrays.equals(Files.readAllBytes(target), content))
+			return;
+		Files.createDirectories(target.getParent());
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		Files.write(temporary, content);
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param in a stream
+	 * @return the remaining bytes of the stream
+	 * @throws IOException if an error occurs while reading the stream
+	 */
+	private static byte[] readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		while (true)
+		{
+			int count = in.read(buffer);
+			if (count == -1)
+				break;
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache fits within a size limit. Incomplete entries
+	 * left behind by interrupted downloads are always removed. Entries that are locked by another process,
+	 * or that were used at or after {@code protectedSince}, are never removed.
+	 *
+	 * @param maxBytes       the maximum size of the cache, in bytes
+	 * @param protectedSince the time (in milliseconds since the epoch) after which entries are considered to
+	 *                       be in use by the current build
+	 * @return the number of bytes that were freed
+	 * @throws IOException if an error occurs while reading or deleting entries
+	 */
+	public long evict(long maxBytes, long protectedSince) throws IOException
+	{
+		if (!Files.isDirectory(directory))
+			return 0;
+		List<Entry> entries = new ArrayList<>();
+		long totalBytes = 0;
+		long freedBytes = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory))
+		{
+			for (Path path : stream)
+			{
+				Path complete = path.resolve(COMPLETE);
+				long size = getSize(path);
+				if (!Files.exists(complete))
+				{
+					// Interrupted download, or an entry that is being populated right now
+					if (delete(path))
+						freedBytes += size;
+					else
+						totalBytes += size;
+					continue;
+				}
+				entries.add(new Entry(path, Files.getLastModifiedTime(complete).toMillis(), size));
+				totalBytes += size;
+			}
+		}
+		entries.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+		for (Entry entry : entries)
+		{
+			if (totalBytes <= maxBytes)
+				break;
+			if (entry.lastUsed >= protectedSince)
+				continue;
+			if (!delete(entry.path))
+				continue;
+			log.info("Evicted " + entry.path + " from the FetchContent cache");
+			totalBytes -= entry.size;
+			freedBytes += entry.size;
+		}
+		if (totalBytes > maxBytes)
+		{
+			log.warn("The FetchContent cache (" + (totalBytes / 1024 / 1024) + " MiB) exceeds its maximum size (" +
+				(maxBytes / 1024 / 1024) + " MiB) because the remaining entries are in use");
+		}
+		return freedBytes;
+	}
+
+	/**
+	 * Deletes an entry if no other process holds its lock.
+	 *
+	 * @param entry the directory of the entry
+	 * @return {@code false} if the entry is locked by another process
+	 * @throws IOException if an error occurs while deleting the entry
+	 */
+	private boolean delete(Path entry) throws IOException
+	{
+		Path lockFile = entry.resolveSibling(entry.getFileName() + LOCK_SUFFIX);
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE))
+		{
+			FileLock lock;
+			try
+			{
+				lock = channel.tryLock();
+			}
+			catch (OverlappingFileLockException e)
+			{
+				lock = null;
+			}
+			if (lock == null)
+				return false;
+			try
+			{
+				deleteRecursively(entry);
+			}
+			finally
+			{
+				lock.release();
+			}
+		}
+		// The lock file is left in place, because deleting it could allow two processes to lock different
+		// files with the same name
+		return true;
+	}
+
+	/**
+	 * @param path a directory
+	 * @return the total size of the files in the directory, in bytes
+	 * @throws IOException if an error occurs while reading the directory
+	 */
+	private static long getSize(Path path) throws IOException
+	{
+		long[] result = new long[1];
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+			{
+				result[0] += attributes.size();
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException
+			{
+				// Files may be removed by a concurrent cmake process
+				if (e instanceof NoSuchFileException)
+					return FileVisitResult.CONTINUE;
+				throw e;
+			}
+		});
+		return result[0];
+	}
+
+	/**
+	 * @param path a directory to delete
+	 * @throws IOException if an error occurs while deleting the directory
+	 */
+	private static void deleteRecursively(Path path) throws IOException
+	{
+		if (!Files.exists(path))
+			return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException
+			{
+				// git marks its object files as read-only, which prevents their deletion on Windows
+				file.toFile().setWritable(true);
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException
+			{
+				if (e != null)
+					throw e;
+				Files.delete(directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * A complete entry.
+	 */
+	private static final class Entry
+	{
+		public final Path path;
+		public final long lastUsed;
+		public final long size;
+
+		/**
+		 * @param path     the directory of the entry
+		 * @param lastUsed the last time the entry was used, in milliseconds since the epoch
+		 * @param size     the size of the entry, in bytes
+		 */
+		Entry(Path path, long lastUsed, long size)
+		{
+			this.path = path;
+			this.lastUsed = lastUsed;
+			this.size = size;
+		}
+	}
+}
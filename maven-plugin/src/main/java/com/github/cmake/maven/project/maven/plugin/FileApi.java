@@ -0,0 +1,134 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Helper functions for the CMake File API ({@code <build>/.cmake/api/v1}), which cmake uses to describe the
+ * build system it generated.
+ * <p>
+ * Queries are written before cmake runs; cmake writes the corresponding replies at the end of every
+ * configure step. See {@code cmake-file-api(7)}.
+ */
+public final class FileApi
+{
+	/**
+	 * The name of the client directory that the plugin's queries are written to.
+	 */
+	private static final String CLIENT = "client-cmake-maven-plugin";
+	/**
+	 * The kind of object that describes the targets of the build system.
+	 */
+	public static final String CODEMODEL = "codemodel-v2";
+	/**
+	 * The kind of object that describes the entries of {@code CMakeCache.txt}.
+	 */
+	public static final String CACHE = "cache-v2";
+	/**
+	 * The kind of object that describes the compilers of each enabled language. Requires CMake 3.20 or newer.
+	 */
+	public static final String TOOLCHAINS = "toolchains-v1";
+	/**
+	 * The kind of object that describes the files that cmake read while configuring the project.
+	 */
+	public static final String CMAKE_FILES = "cmakeFiles-v1";
+
+	/**
+	 * Requests objects from cmake using stateless queries. Existing queries are left untouched so that
+	 * cmake does not consider its inputs to have changed.
+	 *
+	 * @param buildDirectory the build directory
+	 * @param kinds          the kinds and major versions of the objects (e.g. {@code codemodel-v2})
+	 * @throws IOException if an error occurs while writing the queries
+	 */
+	public static void writeQuery(Path buildDirectory, String... kinds) throws IOException
+	{
+		Path queryDirectory = buildDirectory.resolve(".cmake/api/v1/query").resolve(CLIENT);
+		Files.createDirectories(queryDirectory);
+		for (String kind : kinds)
+		{
+			Path query = queryDirectory.resolve(kind);
+			if (Files.notExists(query))
+				Files.createFile(query);
+		}
+	}
+
+	/**
+	 * Returns the file that contains an object that was written in response to the plugin's query.
+	 *
+	 * @param buildDirectory the build directory
+	 * @param kind           the kind and major version of the object (e.g. {@code codemodel-v2})
+	 * @return {@code null} if cmake did not reply to the query (e.g. because the project was never configured
+	 * or the cmake version does not support the object)
+	 * @throws IOException if an error occurs while reading the reply index
+	 */
+	public static Path getReply(Path buildDirectory, String kind) throws IOException
+	{
+		Path index = getLatestIndex(buildDirectory);
+		if (index == null)
+			return null;
+		return getReplies(index).get(kind);
+	}
+
+	/**
+	 * @param buildDirectory the build directory
+	 * @return the index file written by the most recent cmake run ({@code null} if there is none)
+	 * @throws IOException if an error occurs while listing the reply directory
+	 */
+	public static Path getLatestIndex(Path buildDirectory) throws IOException
+	{
+		Path replyDirectory = buildDirectory.resolve(".cmake/api/v1/reply");
+		if (!Files.isDirectory(replyDirectory))
+			return null;
+		// Index files are named after the time they were written, so the last one in lexicographic order
+		// is the most recent
+		Path result = null;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(replyDirectory, "index-*.json"))
+		{
+			for (Path path : stream)
+			{
+				String name = path.getFileName().toString();
+				if (result == null || name.compareTo(result.getFileName().toString()) > 0)
+					result = path;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param index a reply index file
+	 * @return a map from the kind and major version of each object that cmake wrote in response to the
+	 * plugin's queries to the file that contains it
+	 * @throws IOException if an error occurs while reading the index
+	 */
+	public static Map<String, Path> getReplies(Path index) throws IOException
+	{
+		JsonNode root = Metrics.getMapper().readTree(index.toFile());
+		Map<String, Path> result = new HashMap<>();
+		Iterator<Map.Entry<String, JsonNode>> replies = root.path("reply").path(CLIENT).fields();
+		while (replies.hasNext())
+		{
+			Map.Entry<String, JsonNode> reply = replies.next();
+			// Objects that cmake does not support are replied to with an "error" instead of a "jsonFile"
+			String jsonFile = reply.getValue().path("jsonFile").asText(null);
+			if (jsonFile != null)
+				result.put(reply.getKey(), index.resolveSibling(jsonFile));
+		}
+		return result;
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private FileApi()
+	{
+	}
+}
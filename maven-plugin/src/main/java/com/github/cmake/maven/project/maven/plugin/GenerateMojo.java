@@ -13,7 +13,7 @@
  */
 package com.github.cmake.maven.project.maven.plugin;
 
-import com.github.cmake.maven.project.common.Mojos;
+import com.github.cmake.maven.project.common.Tracer.Span;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -69,7 +69,8 @@ public class GenerateMojo extends CmakeMojo
 	public void execute()
 		throws MojoExecutionException
 	{
-		try
+		boolean succeeded = false;
+		try (Span goalSpan = startTracing("generate"))
 		{
 			if (!sourcePath.exists())
 				throw new MojoExecutionException("sourcePath does not exist: " + sourcePath.getAbsolutePath());
@@ -80,31 +81,50 @@ public class GenerateMojo extends CmakeMojo
 
 			ProcessBuilder processBuilder = new ProcessBuilder().directory(targetPath);
 			overrideEnvironmentVariables(processBuilder);
-
 			String cmakePath = getBinaryPath("cmake", processBuilder).toString();
 			processBuilder.command().add(cmakePath);
-
-			if (generator != null && !generator.trim().isEmpty())
-				Collections.addAll(processBuilder.command(), "-G", generator);
-
-			addOptions(processBuilder);
-			processBuilder.command().add(sourcePath.getAbsolutePath());
-
-			Log log = getLog();
-			if (log.isDebugEnabled())
-			{
-				log.debug("sourcePath: " + sourcePath);
-				log.debug("targetPath: " + targetPath);
-				log.debug("Environment: " + processBuilder.environment());
-				log.debug("Command-line: " + processBuilder.command());
-			}
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			int returnCode = configure(processBuilder, sourcePath, generator, "generate");
 			if (returnCode != 0)
 				throw new MojoExecutionException("Return code: " + returnCode);
+			succeeded = true;
+			try (Span span = trace("read file api"))
+			{
+				readBuildModel();
+			}
 		}
 		catch (InterruptedException | IOException e)
 		{
 			throw new MojoExecutionException("", e);
 		}
+		finally
+		{
+			recordHistory(succeeded, Collections.emptyMap());
+		}
+	}
+
+	/**
+	 * Reads the replies that cmake wrote to the File API queries, so that later goals of the session can
+	 * look up targets and artifacts without parsing them again.
+	 *
+	 * @throws IOException if an error occurs while reading the replies
+	 */
+	private void readBuildModel() throws IOException
+	{
+		Log log = getLog();
+		BuildModel model = getBuildModel(targetPath.toPath());
+		CodeModel codeModel = null;
+		if (model != null)
+			codeModel = model.getCodeModel(null);
+		if (codeModel == null)
+		{
+			log.warn("cmake did not write a code model. CMake 3.14 or newer is required to look up targets.");
+			return;
+		}
+		if (log.isDebugEnabled())
+		{
+			log.debug("Targets: " + codeModel.getTargetNames());
+			for (BuildModel.Toolchain toolchain : model.getToolchains())
+				log.debug("Toolchain: " + toolchain);
+		}
 	}
-}
\ No newline at end of file
+}
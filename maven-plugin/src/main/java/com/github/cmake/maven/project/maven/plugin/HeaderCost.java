@@ -0,0 +1,42 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+/**
+ * The cost of modifying a header.
+ */
+public final class HeaderCost
+{
+	/**
+	 * The path of the header, as reported by ninja.
+	 */
+	public final String header;
+	/**
+	 * The number of translation units that include the header.
+	 */
+	public final int translationUnits;
+	/**
+	 * The time it takes to recompile the translation units that include the header, in CPU-seconds.
+	 */
+	public final double cpuSeconds;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param header           the path of the header, as reported by ninja
+	 * @param translationUnits the number of translation units that include the header
+	 * @param cpuSeconds       the time it takes to recompile the translation units that include the header
+	 * @throws AssertionError if {@code header} is null
+	 */
+	public HeaderCost(String header, int translationUnits, double cpuSeconds)
+	{
+		assert (header != null) : "header may not be null";
+		this.header = header;
+		this.translationUnits = translationUnits;
+		this.cpuSeconds = cpuSeconds;
+	}
+
+	@Override
+	public String toString()
+	{
+		return header + " (" + translationUnits + " translation units, " + cpuSeconds + "s)";
+	}
+}
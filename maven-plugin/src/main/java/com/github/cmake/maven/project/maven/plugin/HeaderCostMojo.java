@@ -0,0 +1,157 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Goal which ranks headers by the cost of modifying them: the number of translation units that include
+ * each header, weighted by the time it took to compile them. Requires a Ninja generator.
+ */
+@Mojo(name = "header-cost", defaultPhase = LifecyclePhase.PROCESS_CLASSES)
+public class HeaderCostMojo extends CmakeMojo
+{
+	/**
+	 * The directory containing the project file.
+	 */
+	@Parameter(required = true)
+	private File projectDirectory;
+	/**
+	 * The number of headers to log.
+	 */
+	@Parameter(property = "cmake.headerCount", defaultValue = "20")
+	private int headerCount;
+	/**
+	 * {@code true} if headers outside the source and build directories (e.g. system headers) should be
+	 * included in the report.
+	 */
+	@Parameter(property = "cmake.includeSystemHeaders", defaultValue = "false")
+	private boolean includeSystemHeaders;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public HeaderCostMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		try (Span goalSpan = startTracing("header-cost"))
+		{
+			Path buildDirectory = projectDirectory.toPath();
+			CMakeCache cache = CMakeCache.read(buildDirectory);
+			String generator = cache.get("CMAKE_GENERATOR");
+			if (generator == null || !generator.startsWith("Ninja"))
+			{
+				throw new MojoExecutionException("The header cost report requires a Ninja generator. " +
+					projectDirectory.getAbsolutePath() + " was generated by: " + generator);
+			}
+			Path logFile = buildDirectory.resolve(NinjaLog.FILENAME);
+			if (Files.notExists(logFile))
+				throw new MojoExecutionException(logFile + " does not exist. Run the compile goal first.");
+
+			NinjaDeps deps;
+			try (Span span = trace("ninja deps"))
+			{
+				deps = runNinjaTool(cache, projectDirectory, "deps", NinjaDeps::parse);
+			}
+			if (deps == null)
+				throw new MojoExecutionException("Could not read the ninja deps database");
+			NinjaLog log = NinjaLog.read(logFile, 0).getLatest();
+			List<HeaderCost> costs = deps.getHeaderCosts(log, getHeaderFilter(cache, buildDirectory));
+			report(costs);
+		}
+		catch (InterruptedException | IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+	}
+
+	/**
+	 * @param cache          the cache of the build directory
+	 * @param buildDirectory the build directory
+	 * @return returns {@code true} if a header should be included in the report
+	 */
+	private Predicate<String> getHeaderFilter(CMakeCache cache, Path buildDirectory)
+	{
+		if (includeSystemHeaders)
+			return header -> true;
+		List<Path> roots = new ArrayList<>();
+		Path absoluteBuildDirectory = buildDirectory.toAbsolutePath().normalize();
+		roots.add(absoluteBuildDirectory);
+		String sourceDirectory = cache.get("CMAKE_HOME_DIRECTORY");
+		if (sourceDirectory != null)
+			roots.add(Paths.get(sourceDirectory).toAbsolutePath().normalize());
+		return header ->
+		{
+			// Relative paths are relative to the build directory
+			Path path = absoluteBuildDirectory.resolve(header).normalize();
+			for (Path root : roots)
+				if (path.startsWith(root))
+					return true;
+			return false;
+		};
+	}
+
+	/**
+	 * Logs the most expensive headers and writes all of them to {@code cmake-metrics/header-cost.json}.
+	 *
+	 * @param costs the cost of each header, most expensive first
+	 * @throws IOException if an error occurs while writing the metrics
+	 */
+	private void report(List<HeaderCost> costs) throws IOException
+	{
+		Log log = getLog();
+		if (log.isInfoEnabled())
+		{
+			if (costs.isEmpty())
+				log.info("No headers found in the ninja deps database");
+			else
+			{
+				log.info("Most expensive headers (CPU-seconds to recompile dependents, translation units):");
+				for (HeaderCost cost : costs.subList(0, Math.min(headerCount, costs.size())))
+				{
+					log.info(String.format(Locale.ENGLISH, "%10.3fs  %6d  %s", cost.cpuSeconds,
+						cost.translationUnits, cost.header));
+				}
+			}
+		}
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("projectDirectory", projectDirectory.getAbsolutePath());
+		metrics.put("headers", costs);
+		Path metricsFile = Metrics.getDirectory(getBuildDirectory()).resolve("header-cost.json");
+		Metrics.write(metricsFile, metrics);
+		if (log.isDebugEnabled())
+			log.debug("Wrote header costs to " + metricsFile);
+	}
+}
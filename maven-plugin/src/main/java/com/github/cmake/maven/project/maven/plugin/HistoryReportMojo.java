@@ -0,0 +1,190 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Goal which reports how the durations of the {@code generate}, {@code compile} and {@code test} goals
+ * evolved over the build history, and flags phases that slowed down significantly.
+ * <p>
+ * The rolling median of each phase is logged, and the durations of the last {@link #historyWindow}
+ * executions are compared against the {@link #historyBaseline} executions that preceded them. All trends
+ * are written to {@code cmake-metrics/build-history.json}.
+ */
+@Mojo(name = "history-report", defaultPhase = LifecyclePhase.VERIFY)
+public class HistoryReportMojo extends CmakeMojo
+{
+	/**
+	 * The number of recent executions to compare against the baseline. This is also the size of the window
+	 * that rolling medians are computed over.
+	 */
+	@Parameter(property = "cmake.historyWindow", defaultValue = "5")
+	private int historyWindow;
+	/**
+	 * The maximum number of executions, before the recent window, that make up the baseline.
+	 */
+	@Parameter(property = "cmake.historyBaseline", defaultValue = "20")
+	private int historyBaseline;
+	/**
+	 * The maximum p-value of a regression. Lower values report fewer false alarms, but require larger
+	 * slowdowns or more executions to detect a regression.
+	 */
+	@Parameter(property = "cmake.historySignificance", defaultValue = "0.01")
+	private double historySignificance;
+	/**
+	 * The minimum increase of the median duration of a regression, in percent.
+	 */
+	@Parameter(property = "cmake.historyMinimumChange", defaultValue = "10")
+	private double historyMinimumChange;
+	/**
+	 * The minimum increase of the median duration of a regression, in milliseconds. Prevents short phases
+	 * from being reported because of a few milliseconds of jitter.
+	 */
+	@Parameter(property = "cmake.historyMinimumIncrease", defaultValue = "1000")
+	private long historyMinimumIncrease;
+	/**
+	 * {@code true} if the build should fail when a regression is detected.
+	 */
+	@Parameter(property = "cmake.failOnRegression", defaultValue = "false")
+	private boolean failOnRegression;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public HistoryReportMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		if (historyWindow < 1)
+			throw new MojoExecutionException("historyWindow must be positive: " + historyWindow);
+		if (historyBaseline < historyWindow)
+		{
+			throw new MojoExecutionException("historyBaseline (" + historyBaseline + ") may not be less than " +
+				"historyWindow (" + historyWindow + ")");
+		}
+		List<BuildTrend> regressions = new ArrayList<>();
+		try (Span goalSpan = startTracing("history-report"))
+		{
+			Path historyFile = getHistoryFile();
+			List<BuildHistory.Execution> executions;
+			try (Span span = trace("read history"))
+			{
+				executions = BuildHistory.read(historyFile);
+			}
+			List<BuildTrend> trends = BuildTrend.analyze(executions, historyWindow, historyBaseline);
+			for (BuildTrend trend : trends)
+				if (trend.isRegression(historySignificance, historyMinimumChange, historyMinimumIncrease))
+					regressions.add(trend);
+			report(historyFile, executions.size(), trends, regressions);
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+		if (!regressions.isEmpty() && failOnRegression)
+			throw new MojoExecutionException(regressions.size() + " phase(s) slowed down significantly");
+	}
+
+	/**
+	 * Logs the rolling median of each goal and the regressions, and writes all trends to
+	 * {@code cmake-metrics/build-history.json}.
+	 *
+	 * @param historyFile    the history file
+	 * @param executionCount the number of executions in the history
+	 * @param trends         the trend of each phase
+	 * @param regressions    the trends that are regressions
+	 * @throws IOException if an error occurs while writing the metrics
+	 */
+	private void report(Path historyFile, int executionCount, List<BuildTrend> trends,
+		List<BuildTrend> regressions) throws IOException
+	{
+		Log log = getLog();
+		if (trends.isEmpty())
+		{
+			if (log.isInfoEnabled())
+			{
+				log.info("Not enough history to detect regressions in " + historyFile + " (" + executionCount +
+					" executions). Each goal must run at least " + 2 * historyWindow + " times on the same " +
+					"host.");
+			}
+		}
+		else if (log.isInfoEnabled())
+		{
+			log.info("Median duration of the baseline and the last " + historyWindow + " executions:");
+			for (BuildTrend trend : trends)
+			{
+				// Nested phases are only logged if they regressed
+				if (!trend.phase.equals(trend.goal))
+					continue;
+				log.info(String.format(Locale.ENGLISH, "  %-24s %-20s %10.3fs %10.3fs %+7.1f%%  (%s)",
+					trend.module, trend.goal, trend.baselineMedian / 1000, trend.recentMedian / 1000,
+					trend.getChange(), getDescription(trend)));
+			}
+		}
+		for (BuildTrend trend : regressions)
+		{
+			log.warn(String.format(Locale.ENGLISH, "%s of %s slowed down from %.3fs to %.3fs (%+.1f%%, " +
+					"p=%.4f) on %s. Work done: %s -> %s", trend.phase, trend.module,
+				trend.baselineMedian / 1000, trend.recentMedian / 1000, trend.getChange(), trend.pValue,
+				getDescription(trend), trend.baselineCounts, trend.recentCounts));
+		}
+
+		List<Map<String, Object>> trendMetrics = new ArrayList<>(trends.size());
+		for (BuildTrend trend : trends)
+		{
+			Map<String, Object> metrics = trend.toMetrics();
+			metrics.put("regression", regressions.contains(trend));
+			trendMetrics.add(metrics);
+		}
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("historyFile", historyFile.toString());
+		metrics.put("executions", executionCount);
+		metrics.put("window", historyWindow);
+		metrics.put("baseline", historyBaseline);
+		metrics.put("significance", historySignificance);
+		metrics.put("regressions", regressions.size());
+		metrics.put("trends", trendMetrics);
+		Path metricsFile = Metrics.getDirectory(getBuildDirectory()).resolve("build-history.json");
+		Metrics.write(metricsFile, metrics);
+		if (log.isDebugEnabled())
+			log.debug("Wrote the build history report to " + metricsFile);
+	}
+
+	/**
+	 * @param trend a trend
+	 * @return the host and workload of the trend
+	 */
+	private static String getDescription(BuildTrend trend)
+	{
+		if (trend.workload == null)
+			return trend.host;
+		return trend.host + ", " + trend.workload;
+	}
+}
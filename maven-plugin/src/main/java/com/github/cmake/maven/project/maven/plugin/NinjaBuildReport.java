@@ -0,0 +1,165 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.maven.plugin.NinjaLog.Edge;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarizes the edges that a ninja invocation ran.
+ */
+public final class NinjaBuildReport
+{
+	private final NinjaLog log;
+	private final List<Edge> criticalPath;
+
+	/**
+	 * Creates a new report.
+	 *
+	 * @param log          the edges that ran
+	 * @param criticalPath the edges on the critical path ({@code null} if unknown)
+	 * @throws AssertionError if {@code log} is null
+	 */
+	public NinjaBuildReport(NinjaLog log, List<Edge> criticalPath)
+	{
+		assert (log != null) : "log may not be null";
+		this.log = log;
+		this.criticalPath = criticalPath;
+	}
+
+	/**
+	 * @param count the maximum number of edges to return
+	 * @return the slowest compilations, slowest first
+	 */
+	public List<Edge> getSlowestCompilations(int count)
+	{
+		List<Edge> result = new ArrayList<>();
+		for (Edge edge : log.edges)
+			if (edge.isCompilation())
+				result.add(edge);
+		result.sort(Comparator.comparingLong(Edge::getDuration).reversed());
+		return result.subList(0, Math.min(count, result.size()));
+	}
+
+	/**
+	 * Returns the average number of edges that ran concurrently.
+	 *
+	 * @return the sum of the edge durations divided by the wall-clock time of the build
+	 */
+	public double getParallelism()
+	{
+		long wallMillis = log.getWallMillis();
+		if (wallMillis == 0)
+			return 0;
+		return (double) log.getCpuMillis() / wallMillis;
+	}
+
+	/**
+	 * @return the edges on the critical path, in the order that they ran, or {@code null} if unknown
+	 */
+	public List<Edge> getCriticalPath()
+	{
+		return criticalPath;
+	}
+
+	/**
+	 * @return the sum of the durations of the edges on the critical path, in milliseconds
+	 */
+	public long getCriticalPathMillis()
+	{
+		if (criticalPath == null)
+			return 0;
+		long result = 0;
+		for (Edge edge : criticalPath)
+			result += edge.getDuration();
+		return result;
+	}
+
+	/**
+	 * Returns the metrics of the build.
+	 *
+	 * @param slowestCount the number of slowest compilations to include
+	 * @return the metrics of the build
+	 */
+	public Map<String, Object> toMetrics(int slowestCount)
+	{
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("edges", log.edges.size());
+		result.put("cpuSeconds", log.getCpuMillis() / 1000.0);
+		result.put("wallSeconds", log.getWallMillis() / 1000.0);
+		result.put("parallelism", getParallelism());
+		List<Map<String, Object>> slowest = new ArrayList<>();
+		for (Edge edge : getSlowestCompilations(slowestCount))
+			slowest.add(toMetrics(edge));
+		result.put("slowestCompilations", slowest);
+		if (criticalPath != null)
+		{
+			Map<String, Object> path = new LinkedHashMap<>();
+			path.put("seconds", getCriticalPathMillis() / 1000.0);
+			List<Map<String, Object>> edges = new ArrayList<>();
+			for (Edge edge : criticalPath)
+				edges.add(toMetrics(edge));
+			path.put("edges", edges);
+			result.put("criticalPath", path);
+		}
+		return result;
+	}
+
+	/**
+	 * @param edge an edge
+	 * @return the metrics of the edge
+	 */
+	private static Map<String, Object> toMetrics(Edge edge)
+	{
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("outputs", edge.outputs);
+		result.put("seconds", edge.getDuration() / 1000.0);
+		return result;
+	}
+
+	/**
+	 * Returns the edges in the
+	 * <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Chrome
+	 * trace event format</a>. Each edge is assigned to the first "thread" that is idle when it starts, so
+	 * the number of threads approximates the number of parallel jobs.
+	 *
+	 * @return the trace
+	 */
+	public Map<String, Object> toChromeTrace()
+	{
+		List<Edge> edges = new ArrayList<>(log.edges);
+		edges.sort(Comparator.comparingLong((Edge edge) -> edge.start).thenComparingLong(edge -> edge.end));
+		List<Long> threadEnds = new ArrayList<>();
+		List<Map<String, Object>> events = new ArrayList<>();
+		for (Edge edge : edges)
+		{
+			int thread = 0;
+			while (thread < threadEnds.size() && threadEnds.get(thread) > edge.start)
+				++thread;
+			if (thread == threadEnds.size())
+				threadEnds.add(edge.end);
+			else
+				threadEnds.set(thread, edge.end);
+
+			Map<String, Object> event = new LinkedHashMap<>();
+			event.put("name", edge.getName());
+			event.put("cat", "targets");
+			event.put("ph", "X");
+			event.put("ts", edge.start * 1000);
+			event.put("dur", edge.getDuration() * 1000);
+			event.put("pid", 0);
+			event.put("tid", thread);
+			Map<String, Object> args = new LinkedHashMap<>();
+			args.put("outputs", edge.outputs);
+			event.put("args", args);
+			events.add(event);
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("traceEvents", events);
+		result.put("displayTimeUnit", "ms");
+		return result;
+	}
+}
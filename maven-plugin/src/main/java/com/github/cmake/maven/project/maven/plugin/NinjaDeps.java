@@ -0,0 +1,146 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The implicit dependencies that compilers reported to ninja, as printed by {@code ninja -t deps}.
+ * <p>
+ * Each output is printed on its own line, followed by one indented line per dependency and a blank line:
+ * <pre>
+ * CMakeFiles/app.dir/main.cpp.o: #deps 2, deps mtime 1700000000000000000 (VALID)
+ *     ../main.cpp
+ *     ../main.h
+ * </pre>
+ */
+public final class NinjaDeps
+{
+	private static final Pattern OUTPUT = Pattern.compile("^(.+): #deps \\d+, deps mtime \\d+ \\((\\w+)\\)$");
+	/**
+	 * A map from each output to the files that it depends on.
+	 */
+	public final Map<String, List<String>> outputToDependencies;
+
+	/**
+	 * Parses the output of {@code ninja -t deps}.
+	 *
+	 * @param in the output of {@code ninja -t deps}
+	 * @return the dependencies
+	 * @throws IOException if an error occurs while reading the output
+	 */
+	public static NinjaDeps parse(BufferedReader in) throws IOException
+	{
+		Map<String, List<String>> outputToDependencies = new LinkedHashMap<>();
+		List<String> dependencies = null;
+		while (true)
+		{
+			String line = in.readLine();
+			if (line == null)
+				break;
+			if (line.isEmpty())
+			{
+				dependencies = null;
+				continue;
+			}
+			if (dependencies != null && Character.isWhitespace(line.charAt(0)))
+			{
+				dependencies.add(line.trim());
+				continue;
+			}
+			Matcher matcher = OUTPUT.matcher(line);
+			if (!matcher.find())
+				continue;
+			dependencies = new ArrayList<>();
+			outputToDependencies.put(matcher.group(1), dependencies);
+		}
+		return new NinjaDeps(outputToDependencies);
+	}
+
+	/**
+	 * @param outputToDependencies a map from each output to the files that it depends on
+	 * @throws AssertionError if {@code outputToDependencies} is null
+	 */
+	NinjaDeps(Map<String, List<String>> outputToDependencies)
+	{
+		assert (outputToDependencies != null) : "outputToDependencies may not be null";
+		this.outputToDependencies = Collections.unmodifiableMap(outputToDependencies);
+	}
+
+	/**
+	 * Returns the cost of modifying each header: the number of translation units that include it and the
+	 * time it takes to recompile them.
+	 *
+	 * @param log           the latest build of each output
+	 * @param includeHeader returns {@code true} if a header should be included in the report
+	 * @return the cost of each header, most expensive first
+	 */
+	public List<HeaderCost> getHeaderCosts(NinjaLog log, Predicate<String> includeHeader)
+	{
+		Map<String, Long> outputToDuration = new HashMap<>();
+		for (NinjaLog.Edge edge : log.edges)
+			for (String output : edge.outputs)
+				outputToDuration.put(output, edge.getDuration());
+
+		Map<String, long[]> headerToCost = new HashMap<>();
+		for (Entry<String, List<String>> entry : outputToDependencies.entrySet())
+		{
+			long duration = outputToDuration.getOrDefault(entry.getKey(), 0L);
+			for (String dependency : entry.getValue())
+			{
+				if (isSource(dependency) || !includeHeader.test(dependency))
+					continue;
+				// [0] = translation units, [1] = milliseconds
+				long[] cost = headerToCost.computeIfAbsent(dependency, key -> new long[2]);
+				++cost[0];
+				cost[1] += duration;
+			}
+		}
+		List<HeaderCost> result = new ArrayList<>(headerToCost.size());
+		for (Entry<String, long[]> entry : headerToCost.entrySet())
+		{
+			long[] cost = entry.getValue();
+			result.add(new HeaderCost(entry.getKey(), (int) cost[0], cost[1] / 1000.0));
+		}
+		result.sort(Comparator.comparingDouble((HeaderCost cost) -> cost.cpuSeconds).reversed().
+			thenComparing(Comparator.comparingInt((HeaderCost cost) -> cost.translationUnits).reversed()).
+			thenComparing(cost -> cost.header));
+		return result;
+	}
+
+	/**
+	 * @param path the path of a dependency
+	 * @return {@code true} if the dependency is the translation unit being compiled rather than a header
+	 */
+	private static boolean isSource(String path)
+	{
+		int dot = path.lastIndexOf('.');
+		if (dot == -1)
+			return false;
+		switch (path.substring(dot + 1))
+		{
+			case "c":
+			case "cc":
+			case "cpp":
+			case "cxx":
+			case "c++":
+			case "C":
+			case "m":
+			case "mm":
+			case "cu":
+				return true;
+			default:
+				return false;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.maven.plugin.NinjaLog.Edge;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The dependency graph of a ninja build, as printed by {@code ninja -t graph}.
+ */
+public final class NinjaGraph
+{
+	/**
+	 * A node declaration: {@code "0x1234" [label="path", ...]}.
+	 */
+	private static final Pattern NODE = Pattern.compile("^\"([^\"]+)\" \\[label=\"((?:[^\"\\\\]|\\\\.)*)\"(.*)]$");
+	/**
+	 * A dependency: {@code "0x1234" -> "0x5678" [...]}.
+	 */
+	private static final Pattern ARROW = Pattern.compile("^\"([^\"]+)\" -> \"([^\"]+)\"");
+	private final Map<String, Set<String>> outputToInputs;
+
+	/**
+	 * Parses the output of {@code ninja -t graph}.
+	 * <p>
+	 * Build edges with a single input and a single output are printed as an arrow from the input to the
+	 * output. Other edges are printed as an ellipse node with arrows from each input to the ellipse, and
+	 * from the ellipse to each output.
+	 *
+	 * @param in the output of {@code ninja -t graph}
+	 * @return the graph
+	 * @throws IOException if an error occurs while reading the output
+	 */
+	public static NinjaGraph parse(BufferedReader in) throws IOException
+	{
+		Map<String, String> idToPath = new HashMap<>();
+		Set<String> edgeIds = new HashSet<>();
+		List<String[]> arrows = new ArrayList<>();
+		while (true)
+		{
+			String line = in.readLine();
+			if (line == null)
+				break;
+			Matcher matcher = ARROW.matcher(line);
+			if (matcher.find())
+			{
+				arrows.add(new String[]{matcher.group(1), matcher.group(2)});
+				continue;
+			}
+			matcher = NODE.matcher(line);
+			if (!matcher.find())
+				continue;
+			String id = matcher.group(1);
+			if (matcher.group(3).contains("shape=ellipse"))
+				edgeIds.add(id);
+			else
+				idToPath.put(id, matcher.group(2).replace("\\\"", "\"").replace("\\\\", "\\"));
+		}
+
+		Map<String, Set<String>> outputToInputs = new HashMap<>();
+		Map<String, Set<String>> edgeToInputs = new HashMap<>();
+		Map<String, Set<String>> edgeToOutputs = new HashMap<>();
+		for (String[] arrow : arrows)
+		{
+			String from = arrow[0];
+			String to = arrow[1];
+			if (edgeIds.contains(to))
+				edgeToInputs.computeIfAbsent(to, key -> new LinkedHashSet<>()).add(idToPath.get(from));
+			else if (edgeIds.contains(from))
+				edgeToOutputs.computeIfAbsent(from, key -> new LinkedHashSet<>()).add(idToPath.get(to));
+			else
+			{
+				outputToInputs.computeIfAbsent(idToPath.get(to), key -> new LinkedHashSet<>()).
+					add(idToPath.get(from));
+			}
+		}
+		for (Entry<String, Set<String>> entry : edgeToOutputs.entrySet())
+		{
+			Set<String> inputs = edgeToInputs.getOrDefault(entry.getKey(), Collections.emptySet());
+			for (String output : entry.getValue())
+				outputToInputs.computeIfAbsent(output, key -> new LinkedHashSet<>()).addAll(inputs);
+		}
+		outputToInputs.remove(null);
+		for (Set<String> inputs : outputToInputs.values())
+			inputs.remove(null);
+		return new NinjaGraph(outputToInputs);
+	}
+
+	/**
+	 * @param outputToInputs a map from each output to the files that it depends on
+	 * @throws AssertionError if {@code outputToInputs} is null
+	 */
+	NinjaGraph(Map<String, Set<String>> outputToInputs)
+	{
+		assert (outputToInputs != null) : "outputToInputs may not be null";
+		this.outputToInputs = outputToInputs;
+	}
+
+	/**
+	 * @param output the path of an output
+	 * @return the files that the output depends on directly
+	 */
+	public Set<String> getInputs(String output)
+	{
+		return outputToInputs.getOrDefault(output, Collections.emptySet());
+	}
+
+	/**
+	 * Returns the critical path of a build: the chain of dependent edges with the longest total duration.
+	 * Files that were not rebuilt contribute no time but still connect the edges that depend on them.
+	 *
+	 * @param log the edges that were built
+	 * @return the edges on the critical path, in the order that they ran
+	 */
+	public List<Edge> getCriticalPath(NinjaLog log)
+	{
+		Map<String, Edge> outputToEdge = new HashMap<>();
+		for (Edge edge : log.edges)
+			for (String output : edge.outputs)
+				outputToEdge.put(output, edge);
+
+		// The longest path ending at each file, computed in post-order without recursion because build
+		// graphs can be deeper than the thread's stack.
+		Map<String, Long> cost = new HashMap<>();
+		Map<String, String> predecessor = new HashMap<>();
+		Set<String> visiting = new HashSet<>();
+		String bestEnd = null;
+		long bestCost = -1;
+		for (String root : outputToEdge.keySet())
+		{
+			Deque<String> stack = new ArrayDeque<>();
+			stack.push(root);
+			while (!stack.isEmpty())
+			{
+				String node = stack.peek();
+				if (cost.containsKey(node))
+				{
+					stack.pop();
+					continue;
+				}
+				if (visiting.add(node))
+				{
+					for (String input : getInputs(node))
+						if (!cost.containsKey(input) && !visiting.contains(input))
+							stack.push(input);
+					continue;
+				}
+				stack.pop();
+				visiting.remove(node);
+				long longestInput = 0;
+				String longestPredecessor = null;
+				for (String input : getInputs(node))
+				{
+					Long inputCost = cost.get(input);
+					if (inputCost != null && inputCost > longestInput)
+					{
+						longestInput = inputCost;
+						longestPredecessor = input;
+					}
+				}
+				Edge edge = outputToEdge.get(node);
+				long nodeCost = longestInput;
+				if (edge != null)
+					nodeCost += edge.getDuration();
+				cost.put(node, nodeCost);
+				if (longestPredecessor != null)
+					predecessor.put(node, longestPredecessor);
+				if (edge != null && nodeCost > bestCost)
+				{
+					bestCost = nodeCost;
+					bestEnd = node;
+				}
+			}
+		}
+
+		List<Edge> result = new ArrayList<>();
+		for (String node = bestEnd; node != null; node = predecessor.get(node))
+		{
+			Edge edge = outputToEdge.get(node);
+			if (edge != null && (result.isEmpty() || result.get(result.size() - 1) != edge))
+				result.add(edge);
+		}
+		Collections.reverse(result);
+		return result;
+	}
+}
@@ -0,0 +1,316 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The edges recorded in a {@code .ninja_log} file.
+ * <p>
+ * Each line of the log has the form {@code <start ms>\t<end ms>\t<mtime>\t<output>\t<command hash>}. The
+ * start and end times are relative to the start of the ninja invocation that ran the edge. Edges with
+ * multiple outputs are logged once per output and are merged back into a single {@link Edge}.
+ */
+public final class NinjaLog
+{
+	/**
+	 * The name of the log file, relative to the build directory.
+	 */
+	public static final String FILENAME = ".ninja_log";
+	/**
+	 * The edges in the log, in the order that they were logged.
+	 */
+	public final List<Edge> edges;
+
+	/**
+	 * Reads the edges that were appended to a log after an offset.
+	 *
+	 * @param file   the log file
+	 * @param offset the number of bytes to skip ({@code 0} to read the entire log)
+	 * @return the edges after the offset
+	 * @throws IOException if an error occurs while reading the log
+	 */
+	public static NinjaLog read(Path file, long offset) throws IOException
+	{
+		Map<String, Edge> keyToEdge = new LinkedHashMap<>();
+		try (SeekableByteChannel channel = Files.newByteChannel(file);
+		     BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(
+			     channel.position(offset)), StandardCharsets.UTF_8)))
+		{
+			while (true)
+			{
+				String line = in.readLine();
+				if (line == null)
+					break;
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] columns = line.split("\t");
+				if (columns.length < 5)
+					continue;
+				long start;
+				long end;
+				long mtime;
+				try
+				{
+					start = Long.parseLong(columns[0]);
+					end = Long.parseLong(columns[1]);
+					mtime = Long.parseLong(columns[2]);
+				}
+				catch (NumberFormatException e)
+				{
+					// Truncated or corrupt line
+					continue;
+				}
+				String output = columns[3];
+				String hash = columns[4];
+				String key = start + "\t" + end + "\t" + hash;
+				Edge edge = keyToEdge.get(key);
+				if (edge == null)
+				{
+					edge = new Edge(start, end, mtime);
+					keyToEdge.put(key, edge);
+				}
+				edge.outputs.add(output);
+			}
+		}
+		return new NinjaLog(new ArrayList<>(keyToEdge.values()));
+	}
+
+	/**
+	 * The end of a log before a build. Ninja recompacts the log before building if it contains too many stale
+	 * entries, by writing a new file and renaming it over the old one. The new file may grow past the old
+	 * size during the build, so the size alone does not reveal that the offset no longer marks the start of
+	 * the build.
+	 */
+	public static final class Position
+	{
+		/**
+		 * The number of bytes at the end of the log that are compared to detect rewrites.
+		 */
+		private static final int TAIL_SIZE = 256;
+		/**
+		 * The size of the log.
+		 */
+		public final long offset;
+		/**
+		 * The file key of the log ({@code null} if the file system does not provide one).
+		 */
+		private final Object fileKey;
+		/**
+		 * The bytes that precede the offset.
+		 */
+		private final byte[] tail;
+
+		/**
+		 * Records the end of a log.
+		 *
+		 * @param file the log file
+		 * @return the end of the log ({@code offset} is {@code 0} if the file does not exist)
+		 * @throws NullPointerException if {@code file} is null
+		 * @throws IOException          if an error occurs while reading the log
+		 */
+		public static Position of(Path file) throws IOException
+		{
+			if (file == null)
+				throw new NullPointerException("file may not be null");
+			if (Files.notExists(file))
+				return new Position(0, null, new byte[0]);
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			long offset = attributes.size();
+			return new Position(offset, attributes.fileKey(), readTail(file, offset));
+		}
+
+		/**
+		 * @param file   a file
+		 * @param offset an offset in the file
+		 * @return up to {@link #TAIL_SIZE} bytes that precede the offset ({@code null} if the file is shorter
+		 * than {@code offset})
+		 * @throws IOException if an error occurs while reading the file
+		 */
+		private static byte[] readTail(Path file, long offset) throws IOException
+		{
+			int length = (int) Math.min(TAIL_SIZE, offset);
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			try (SeekableByteChannel channel = Files.newByteChannel(file))
+			{
+				if (channel.size() < offset)
+					return null;
+				channel.position(offset - length);
+				while (buffer.hasRemaining())
+					if (channel.read(buffer) < 0)
+						return null;
+			}
+			return buffer.array();
+		}
+
+		/**
+		 * @param offset  the size of the log
+		 * @param fileKey the file key of the log
+		 * @param tail    the bytes that precede the offset
+		 */
+		private Position(long offset, Object fileKey, byte[] tail)
+		{
+			this.offset = offset;
+			this.fileKey = fileKey;
+			this.tail = tail;
+		}
+
+		/**
+		 * @param file the log file
+		 * @return {@code true} if the log still contains the same bytes before the offset, and everything
+		 * after the offset was appended since the position was recorded
+		 * @throws IOException if an error occurs while reading the log
+		 */
+		public boolean isAppendedTo(Path file) throws IOException
+		{
+			if (Files.notExists(file))
+				return false;
+			if (offset == 0)
+				return true;
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (fileKey != null && !Objects.equals(fileKey, attributes.fileKey()))
+				return false;
+			// Windows does not provide file keys, so the content is compared as well
+			return Arrays.equals(tail, readTail(file, offset));
+		}
+	}
+
+	/**
+	 * Returns the edges of the latest build of each output. Use this on logs that span multiple ninja
+	 * invocations.
+	 *
+	 * @return the edges of the latest build of each output
+	 */
+	public NinjaLog getLatest()
+	{
+		Map<String, Edge> outputToEdge = new LinkedHashMap<>();
+		for (Edge edge : edges)
+			for (String output : edge.outputs)
+				outputToEdge.put(output, edge);
+		// Edge does not override equals(), so duplicates are detected by identity
+		return new NinjaLog(new ArrayList<>(new LinkedHashSet<>(outputToEdge.values())));
+	}
+
+	/**
+	 * @param edges the edges in the log
+	 * @throws AssertionError if {@code edges} is null
+	 */
+	NinjaLog(List<Edge> edges)
+	{
+		assert (edges != null) : "edges may not be null";
+		this.edges = Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * @return the sum of the durations of all edges, in milliseconds
+	 */
+	public long getCpuMillis()
+	{
+		long result = 0;
+		for (Edge edge : edges)
+			result += edge.getDuration();
+		return result;
+	}
+
+	/**
+	 * @return the time between the start of the first edge and the end of the last edge, in milliseconds
+	 */
+	public long getWallMillis()
+	{
+		if (edges.isEmpty())
+			return 0;
+		long start = Long.MAX_VALUE;
+		long end = Long.MIN_VALUE;
+		for (Edge edge : edges)
+		{
+			start = Math.min(start, edge.start);
+			end = Math.max(end, edge.end);
+		}
+		return end - start;
+	}
+
+	/**
+	 * A build edge: a single command that produced one or more outputs.
+	 */
+	public static final class Edge
+	{
+		/**
+		 * The time the command started, in milliseconds since the start of the ninja invocation.
+		 */
+		public final long start;
+		/**
+		 * The time the command ended, in milliseconds since the start of the ninja invocation.
+		 */
+		public final long end;
+		/**
+		 * The modification time that ninja recorded for the outputs.
+		 */
+		public final long mtime;
+		/**
+		 * The outputs of the command.
+		 */
+		public final List<String> outputs = new ArrayList<>(1);
+
+		/**
+		 * Creates a new edge.
+		 *
+		 * @param start the time the command started, in milliseconds since the start of the ninja invocation
+		 * @param end   the time the command ended, in milliseconds since the start of the ninja invocation
+		 * @param mtime the modification time that ninja recorded for the outputs
+		 */
+		Edge(long start, long end, long mtime)
+		{
+			this.start = start;
+			this.end = end;
+			this.mtime = mtime;
+		}
+
+		/**
+		 * @return the duration of the command, in milliseconds
+		 */
+		public long getDuration()
+		{
+			return end - start;
+		}
+
+		/**
+		 * @return the first output of the command
+		 */
+		public String getName()
+		{
+			return outputs.get(0);
+		}
+
+		/**
+		 * @return {@code true} if the command compiled a translation unit into an object file
+		 */
+		public boolean isCompilation()
+		{
+			for (String output : outputs)
+				if (output.endsWith(".o") || output.endsWith(".obj"))
+					return true;
+			return false;
+		}
+
+		@Override
+		public String toString()
+		{
+			return getName() + " (" + getDuration() + " ms)";
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Platform;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Goal which starts downloading and extracting the cmake binaries in the background.
+ * <p>
+ * The goal is bound to the {@code validate} phase and returns immediately. The binaries are resolved and
+ * extracted on a daemon thread while Maven runs the phases that precede {@code generate-resources}, and the
+ * goals that need cmake wait for the thread instead of downloading the binaries themselves. If the thread
+ * fails, those goals log a warning and download the binaries as usual.
+ */
+@Mojo(name = "prefetch", defaultPhase = LifecyclePhase.VALIDATE, threadSafe = true)
+public class PrefetchMojo extends CmakeMojo
+{
+	/**
+	 * The artifactId of the cmake binaries.
+	 */
+	static final String BINARIES_ARTIFACT = "cmake-binaries";
+	/**
+	 * The session data key of the map from each binaries directory to the thread that prepares it.
+	 */
+	private static final String PREFETCHES_KEY = PrefetchMojo.class.getName() + ".prefetches";
+	private final RepositorySystem repositorySystem;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project          an instance of {@code MavenProject}
+	 * @param session          an instance of {@code MavenSession}
+	 * @param pluginManager    an instance of {@code PluginManager}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 */
+	@Inject
+	public PrefetchMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager,
+		RepositorySystem repositorySystem)
+	{
+		super(project, session, pluginManager);
+		this.repositorySystem = repositorySystem;
+	}
+
+	/**
+	 * Returns the thread that is preparing a binaries directory.
+	 *
+	 * @param session         the Maven session
+	 * @param outputDirectory the directory that the binaries are extracted into
+	 * @return {@code null} if the {@code prefetch} goal did not run for the directory
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	@SuppressWarnings("unchecked")
+	static Future<Path> getPrefetch(MavenSession session, Path outputDirectory)
+	{
+		if (outputDirectory == null)
+			throw new NullPointerException("outputDirectory may not be null");
+		Object result = getPrefetches(session).get(outputDirectory.toString());
+		if (result instanceof Future)
+			return (Future<Path>) result;
+		return null;
+	}
+
+	/**
+	 * Forgets about a thread that failed to prepare a binaries directory, so that subsequent goals do not wait
+	 * for it.
+	 *
+	 * @param session         the Maven session
+	 * @param outputDirectory the directory that the binaries are extracted into
+	 * @param prefetch        the thread that failed
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	static void removePrefetch(MavenSession session, Path outputDirectory, Future<Path> prefetch)
+	{
+		if (outputDirectory == null)
+			throw new NullPointerException("outputDirectory may not be null");
+		if (prefetch == null)
+			throw new NullPointerException("prefetch may not be null");
+		getPrefetches(session).remove(outputDirectory.toString(), prefetch);
+	}
+
+	/**
+	 * @param session the Maven session
+	 * @return a map from each binaries directory to the thread that prepares it
+	 * @throws NullPointerException if {@code session} is null
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> getPrefetches(MavenSession session)
+	{
+		if (session == null)
+			throw new NullPointerException("session may not be null");
+		SessionData data = session.getRepositorySession().getData();
+		data.set(PREFETCHES_KEY, null, new ConcurrentHashMap<>());
+		return (Map<String, Object>) data.get(PREFETCHES_KEY);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		Log log = getLog();
+		if (!isDownloadBinaries())
+		{
+			log.debug("downloadBinaries: false");
+			return;
+		}
+		Path outputDirectory = getBinariesDirectory();
+		PluginDescriptor pluginDescriptor = (PluginDescriptor) getPluginContext().get("pluginDescriptor");
+		String classifier = Platform.detected().getClassifier();
+		Artifact artifact = new DefaultArtifact(pluginDescriptor.getGroupId(), BINARIES_ARTIFACT, classifier,
+			"jar", pluginDescriptor.getVersion());
+		Path jar = outputDirectory.resolveSibling(BINARIES_ARTIFACT + "-" + classifier + ".jar");
+		MavenSession session = getSession();
+		RepositorySystemSession repositorySession = session.getRepositorySession();
+		List<RemoteRepository> repositories = getProject().getRemoteProjectRepositories();
+
+		FutureTask<Path> task = new FutureTask<>(() ->
+		{
+			// Resolving the artifact from the session's repositories also finds it in the reactor
+			ArtifactRequest request = new ArtifactRequest(artifact, repositories, null);
+			Path resolved;
+			try
+			{
+				resolved = repositorySystem.resolveArtifact(repositorySession, request).getArtifact().getFile().
+					toPath();
+			}
+			catch (ArtifactResolutionException e)
+			{
+				throw new IOException(e);
+			}
+			copyIfChanged(resolved, jar);
+			if (!BinariesArchive.isExtracted(jar, outputDirectory))
+				BinariesArchive.extract(jar, outputDirectory);
+			return outputDirectory;
+		});
+		if (getPrefetches(session).putIfAbsent(outputDirectory.toString(), task) != null)
+		{
+			log.debug("The binaries are already being prefetched");
+			return;
+		}
+		Thread thread = new Thread(task, "cmake-prefetch");
+		// Do not prevent Maven from exiting if the build fails before the binaries are needed
+		thread.setDaemon(true);
+		thread.start();
+		if (log.isInfoEnabled())
+			log.info("Prefetching binaries to " + outputDirectory);
+	}
+
+	/**
+	 * Copies a file unless the target has the same size and modification time.
+	 *
+	 * @param source the file to copy
+	 * @param target the file to copy to
+	 * @throws IOException if an error occurs while copying the file
+	 */
+	private static void copyIfChanged(Path source, Path target) throws IOException
+	{
+		if (Files.exists(target) && Files.size(target) == Files.size(source) &&
+			Files.getLastModifiedTime(target).equals(Files.getLastModifiedTime(source)))
+		{
+			return;
+		}
+		Files.createDirectories(target.getParent());
+		Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+	}
+}
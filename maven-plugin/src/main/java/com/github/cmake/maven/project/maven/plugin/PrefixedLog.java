@@ -0,0 +1,187 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A log that prefixes every message with the name of a task, and copies it to a file so the complete output
+ * of each task can be read without the interleaved output of concurrent tasks.
+ */
+final class PrefixedLog implements Log, AutoCloseable
+{
+	private final Log delegate;
+	private final String prefix;
+	private final BufferedWriter file;
+
+	/**
+	 * @param delegate the log to forward messages to
+	 * @param name     the name of the task
+	 * @param file     the file to copy messages to
+	 * @throws IOException if the file cannot be created
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	PrefixedLog(Log delegate, String name, Path file) throws IOException
+	{
+		assert (delegate != null) : "delegate may not be null";
+		assert (name != null) : "name may not be null";
+		assert (file != null) : "file may not be null";
+		this.delegate = delegate;
+		this.prefix = "[" + name + "] ";
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.file = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Copies a message to the file.
+	 *
+	 * @param level   the level of the message
+	 * @param content the message ({@code null} if absent)
+	 * @param error   the exception ({@code null} if absent)
+	 */
+	private synchronized void write(String level, CharSequence content, Throwable error)
+	{
+		try
+		{
+			file.write("[" + level + "] ");
+			if (content != null)
+				file.write(content.toString());
+			file.newLine();
+			if (error != null)
+			{
+				StringWriter stackTrace = new StringWriter();
+				error.printStackTrace(new PrintWriter(stackTrace));
+				file.write(stackTrace.toString());
+			}
+		}
+		catch (IOException e)
+		{
+			delegate.warn("Could not write to the log file of " + prefix.trim(), e);
+		}
+	}
+
+	/**
+	 * @param content a message
+	 * @return the message, prefixed with the name of the task
+	 */
+	private String prefix(CharSequence content)
+	{
+		if (content == null)
+			return prefix;
+		return prefix + content;
+	}
+
+	@Override
+	public boolean isDebugEnabled()
+	{
+		return delegate.isDebugEnabled();
+	}
+
+	@Override
+	public void debug(CharSequence content)
+	{
+		debug(content, null);
+	}
+
+	@Override
+	public void debug(CharSequence content, Throwable error)
+	{
+		if (!delegate.isDebugEnabled())
+			return;
+		write("DEBUG", content, error);
+		delegate.debug(prefix(content), error);
+	}
+
+	@Override
+	public void debug(Throwable error)
+	{
+		debug(null, error);
+	}
+
+	@Override
+	public boolean isInfoEnabled()
+	{
+		return delegate.isInfoEnabled();
+	}
+
+	@Override
+	public void info(CharSequence content)
+	{
+		info(content, null);
+	}
+
+	@Override
+	public void info(CharSequence content, Throwable error)
+	{
+		write("INFO", content, error);
+		delegate.info(prefix(content), error);
+	}
+
+	@Override
+	public void info(Throwable error)
+	{
+		info(null, error);
+	}
+
+	@Override
+	public boolean isWarnEnabled()
+	{
+		return delegate.isWarnEnabled();
+	}
+
+	@Override
+	public void warn(CharSequence content)
+	{
+		warn(content, null);
+	}
+
+	@Override
+	public void warn(CharSequence content, Throwable error)
+	{
+		write("WARNING", content, error);
+		delegate.warn(prefix(content), error);
+	}
+
+	@Override
+	public void warn(Throwable error)
+	{
+		warn(null, error);
+	}
+
+	@Override
+	public boolean isErrorEnabled()
+	{
+		return delegate.isErrorEnabled();
+	}
+
+	@Override
+	public void error(CharSequence content)
+	{
+		error(content, null);
+	}
+
+	@Override
+	public void error(CharSequence content, Throwable error)
+	{
+		write("ERROR", content, error);
+		delegate.error(prefix(content), error);
+	}
+
+	@Override
+	public void error(Throwable error)
+	{
+		error(null, error);
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		file.close();
+	}
+}
@@ -0,0 +1,445 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Goal which runs the configure, build and test presets that are defined by {@code CMakePresets.json} and
+ * {@code CMakeUserPresets.json}.
+ * <p>
+ * Each selected configure preset is configured once, followed by the build presets and then the test
+ * presets that refer to it. Configure presets that use different binary directories are independent, so
+ * they (and their build and test presets) run concurrently. Requires CMake 3.21 or newer.
+ */
+@Mojo(name = "presets", defaultPhase = LifecyclePhase.COMPILE)
+public class PresetsMojo extends CmakeMojo
+{
+	/**
+	 * The directory containing {@code CMakePresets.json}.
+	 */
+	@Parameter(defaultValue = "${project.basedir}", required = true)
+	private File sourcePath;
+	/**
+	 * The configure presets to run. Configure presets that are referenced by {@link #buildPresets} or
+	 * {@link #testPresets} are run even if they are not listed.
+	 */
+	@Parameter(property = "cmake.configurePresets")
+	private List<String> configurePresets;
+	/**
+	 * The build presets to run.
+	 */
+	@Parameter(property = "cmake.buildPresets")
+	private List<String> buildPresets;
+	/**
+	 * The test presets to run.
+	 */
+	@Parameter(property = "cmake.testPresets")
+	private List<String> testPresets;
+	/**
+	 * The maximum number of concurrent jobs across all binary directories ({@code 0} for the number of
+	 * processors). If presets run in more than one binary directory, the budget is divided among them,
+	 * overriding the {@code jobs} of the build and test presets.
+	 */
+	@Parameter(property = "cmake.parallelism", defaultValue = "0")
+	private int parallelism;
+	/**
+	 * {@code true} if tests should be skipped.
+	 */
+	@Parameter(property = "skipTests", defaultValue = "false")
+	private boolean skipTests;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public PresetsMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		try (Span goalSpan = startTracing("presets"))
+		{
+			if (!sourcePath.isDirectory())
+			{
+				throw new MojoExecutionException("sourcePath must be a directory: " +
+					sourcePath.getAbsolutePath());
+			}
+			CMakePresets presets = CMakePresets.read(sourcePath.toPath());
+
+			List<String> tests;
+			if (skipTests)
+				tests = Collections.emptyList();
+			else
+				tests = nonEmpty(testPresets);
+			List<String> builds = nonEmpty(buildPresets);
+			List<Chain> chains;
+			try
+			{
+				chains = getChains(presets, nonEmpty(configurePresets), builds, tests);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new MojoExecutionException(e.getMessage(), e);
+			}
+			if (chains.isEmpty())
+				throw new MojoExecutionException("No presets were selected");
+
+			downloadBinariesIfNecessary();
+
+			ProcessBuilder environment = new ProcessBuilder();
+			overrideEnvironmentVariables(environment);
+			String cmakePath = getBinaryPath("cmake", environment).toString();
+			String ctestPath = null;
+			if (!tests.isEmpty())
+				ctestPath = getBinaryPath("ctest", environment).toString();
+			if (!isCMakeAtLeast(environment, 3, 21))
+				throw new MojoExecutionException("The presets goal requires CMake 3.21 or newer");
+
+			int budget = parallelism;
+			if (budget <= 0)
+				budget = Runtime.getRuntime().availableProcessors();
+			// A single binary directory keeps the jobs that its presets specify
+			int jobs;
+			if (chains.size() > 1)
+				jobs = Math.max(1, budget / chains.size());
+			else
+				jobs = 0;
+
+			Log log = getLog();
+			List<Callable<List<Map<String, Object>>>> tasks = new ArrayList<>();
+			for (Chain chain : chains)
+			{
+				if (log.isInfoEnabled())
+				{
+					String binaryDirectory;
+					if (chain.binaryDirectory == null)
+						binaryDirectory = sourcePath.getAbsolutePath();
+					else
+						binaryDirectory = chain.binaryDirectory.toString();
+					log.info("Running " + chain.configureToBuilds.keySet() + " in " + binaryDirectory);
+				}
+				String finalCtestPath = ctestPath;
+				tasks.add(() -> runChain(chain, cmakePath, finalCtestPath, jobs));
+			}
+			List<Map<String, Object>> results = new ArrayList<>();
+			try (Span span = trace("run presets"))
+			{
+				for (List<Map<String, Object>> chainResults : invokeConcurrently(tasks, "cmake-preset"))
+					results.addAll(chainResults);
+			}
+			logSummary(results);
+			Map<String, Object> metrics = new LinkedHashMap<>();
+			metrics.put("parallelism", budget);
+			metrics.put("binaryDirectories", chains.size());
+			metrics.put("presets", results);
+			Metrics.write(Metrics.getDirectory(getBuildDirectory()).resolve("presets.json"), metrics);
+
+			List<String> failed = new ArrayList<>();
+			for (Map<String, Object> result : results)
+				if (!result.get("status").equals("success"))
+					failed.add(result.get("kind") + " " + result.get("name"));
+			if (!failed.isEmpty())
+				throw new MojoExecutionException("The following presets did not succeed: " + failed);
+		}
+		catch (InterruptedException | IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+	}
+
+	/**
+	 * @param values a list of values
+	 * @return the values, excluding undefined Maven properties
+	 */
+	private static List<String> nonEmpty(List<String> values)
+	{
+		List<String> result = new ArrayList<>();
+		if (values == null)
+			return result;
+		for (String value : values)
+			if (value != null && !value.trim().isEmpty())
+				result.add(value.trim());
+		return result;
+	}
+
+	/**
+	 * Groups presets by binary directory.
+	 *
+	 * @param presets    the presets of the project
+	 * @param configures the configure presets that were selected
+	 * @param builds     the build presets that were selected
+	 * @param tests      the test presets that were selected
+	 * @return the presets that run in each binary directory
+	 * @throws IllegalArgumentException if a preset does not exist or is hidden
+	 */
+	private static List<Chain> getChains(CMakePresets presets, List<String> configures, List<String> builds,
+		List<String> tests)
+	{
+		Set<String> allConfigures = new LinkedHashSet<>(configures);
+		for (String build : builds)
+			allConfigures.add(presets.getConfigurePreset(CMakePresets.BUILD, build));
+		for (String test : tests)
+			allConfigures.add(presets.getConfigurePreset(CMakePresets.TEST, test));
+		requireVisible(presets, CMakePresets.CONFIGURE, allConfigures);
+		requireVisible(presets, CMakePresets.BUILD, builds);
+		requireVisible(presets, CMakePresets.TEST, tests);
+
+		Map<String, Chain> binaryDirectoryToChain = new LinkedHashMap<>();
+		for (String configure : allConfigures)
+		{
+			// Presets without a binaryDir are configured in the current directory, so they cannot run
+			// concurrently with each other
+			Path binaryDirectory = presets.getBinaryDirectory(configure);
+			String key = String.valueOf(binaryDirectory);
+			Chain chain = binaryDirectoryToChain.computeIfAbsent(key, k -> new Chain(binaryDirectory));
+			chain.configureToBuilds.put(configure, new ArrayList<>());
+			chain.configureToTests.put(configure, new ArrayList<>());
+		}
+		for (Chain chain : binaryDirectoryToChain.values())
+		{
+			for (String build : builds)
+			{
+				List<String> chainBuilds = chain.configureToBuilds.get(presets.getConfigurePreset(
+					CMakePresets.BUILD, build));
+				if (chainBuilds != null)
+					chainBuilds.add(build);
+			}
+			for (String test : tests)
+			{
+				List<String> chainTests = chain.configureToTests.get(presets.getConfigurePreset(
+					CMakePresets.TEST, test));
+				if (chainTests != null)
+					chainTests.add(test);
+			}
+		}
+		return new ArrayList<>(binaryDirectoryToChain.values());
+	}
+
+	/**
+	 * @param presets the presets of the project
+	 * @param kind    the kind of preset
+	 * @param names   the names of presets
+	 * @throws IllegalArgumentException if a preset does not exist or is hidden
+	 */
+	private static void requireVisible(CMakePresets presets, String kind, Iterable<String> names)
+	{
+		Set<String> visible = presets.getNames(kind);
+		for (String name : names)
+			if (!visible.contains(name))
+				throw new IllegalArgumentException("No such " + kind + " entry (or it is hidden): " + name);
+	}
+
+	/**
+	 * Runs the presets of a binary directory, in order.
+	 *
+	 * @param chain     the presets of the binary directory
+	 * @param cmakePath the path of the cmake executable
+	 * @param ctestPath the path of the ctest executable ({@code null} if there are no test presets)
+	 * @param jobs      the number of concurrent jobs of each build or test preset ({@code 0} to use the value
+	 *                  specified by the preset)
+	 * @return the result of each preset
+	 * @throws IOException          if an error occurs while running cmake
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<Map<String, Object>> runChain(Chain chain, String cmakePath, String ctestPath, int jobs)
+		throws IOException, InterruptedException
+	{
+		List<Map<String, Object>> results = new ArrayList<>();
+		for (String configure : chain.configureToBuilds.keySet())
+		{
+			List<String> command = new ArrayList<>();
+			Collections.addAll(command, cmakePath, "--preset", configure);
+			ProcessBuilder processBuilder = new ProcessBuilder(command);
+			addOptions(processBuilder);
+			Map<String, Object> configureResult = runPreset(CMakePresets.CONFIGURE, configure, processBuilder);
+			results.add(configureResult);
+			boolean configured = configureResult.get("status").equals("success");
+
+			boolean built = configured;
+			for (String build : chain.configureToBuilds.get(configure))
+			{
+				if (!configured)
+				{
+					results.add(skip(CMakePresets.BUILD, build));
+					continue;
+				}
+				command = new ArrayList<>();
+				Collections.addAll(command, cmakePath, "--build", "--preset", build);
+				if (jobs > 0)
+					Collections.addAll(command, "--parallel", String.valueOf(jobs));
+				Map<String, Object> result = runPreset(CMakePresets.BUILD, build, new ProcessBuilder(command));
+				results.add(result);
+				if (!result.get("status").equals("success"))
+					built = false;
+			}
+			for (String test : chain.configureToTests.get(configure))
+			{
+				if (!built)
+				{
+					results.add(skip(CMakePresets.TEST, test));
+					continue;
+				}
+				Path junit = new File(getBuildDirectory(), "surefire-reports").toPath().
+					resolve("TEST-ctest-" + test + ".xml").toAbsolutePath();
+				Files.createDirectories(junit.getParent());
+				command = new ArrayList<>();
+				Collections.addAll(command, ctestPath, "--preset", test, "--output-junit", junit.toString());
+				if (jobs > 0)
+					Collections.addAll(command, "--parallel", String.valueOf(jobs));
+				Map<String, Object> result = runPreset(CMakePresets.TEST, test, new ProcessBuilder(command));
+				result.put("junit", junit.toString());
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Runs a preset.
+	 *
+	 * @param kind           the kind of preset
+	 * @param name           the name of the preset
+	 * @param processBuilder the command that runs the preset
+	 * @return the result of the preset
+	 * @throws IOException          if an error occurs while running the preset
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private Map<String, Object> runPreset(String kind, String name, ProcessBuilder processBuilder)
+		throws IOException, InterruptedException
+	{
+		// Presets are located relative to the current directory
+		processBuilder.directory(sourcePath);
+		overrideEnvironmentVariables(processBuilder);
+		String kindName = getKindName(kind);
+		String taskName = kindName + "-" + name;
+		Path logFile = Metrics.getDirectory(getBuildDirectory()).resolve("presets").resolve(taskName + ".log");
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("kind", kindName);
+		result.put("name", name);
+		result.put("log", logFile.toAbsolutePath().toString());
+		try (PrefixedLog log = new PrefixedLog(getLog(), name, logFile))
+		{
+			if (log.isDebugEnabled())
+				log.debug("Command-line: " + processBuilder.command());
+			long start = System.nanoTime();
+			int exitCode = waitFor(processBuilder, "preset-" + taskName, log);
+			result.put("seconds", (System.nanoTime() - start) / 1_000_000_000.0);
+			result.put("exitCode", exitCode);
+			if (exitCode == 0)
+				result.put("status", "success");
+			else
+				result.put("status", "failed");
+		}
+		return result;
+	}
+
+	/**
+	 * @param kind the kind of preset
+	 * @param name the name of the preset
+	 * @return the result of a preset that was skipped because the preset it depends on failed
+	 */
+	private static Map<String, Object> skip(String kind, String name)
+	{
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("kind", getKindName(kind));
+		result.put("name", name);
+		result.put("status", "skipped");
+		return result;
+	}
+
+	/**
+	 * @param kind the kind of preset
+	 * @return the name of the kind that is displayed to users ({@code configure}, {@code build} or
+	 * {@code test})
+	 */
+	private static String getKindName(String kind)
+	{
+		return kind.substring(0, kind.length() - "Presets".length());
+	}
+
+	/**
+	 * Logs the outcome of each preset.
+	 *
+	 * @param results the result of each preset
+	 */
+	private void logSummary(List<Map<String, Object>> results)
+	{
+		Log log = getLog();
+		if (!log.isInfoEnabled())
+			return;
+		log.info("Preset summary (time, kind, name, status):");
+		for (Map<String, Object> result : results)
+		{
+			String time;
+			Object seconds = result.get("seconds");
+			if (seconds == null)
+				time = "-";
+			else
+				time = String.format(Locale.ENGLISH, "%.3fs", (Double) seconds);
+			String status = ((String) result.get("status")).toUpperCase(Locale.ENGLISH);
+			if (status.equals("FAILED"))
+				status += ", see " + result.get("log");
+			log.info(String.format(Locale.ENGLISH, "%10s  %-9s  %-20s %s", time, result.get("kind"),
+				result.get("name"), status));
+		}
+	}
+
+	/**
+	 * The presets that run in the same binary directory, and therefore one at a time.
+	 */
+	private static final class Chain
+	{
+		/**
+		 * The binary directory ({@code null} if the configure presets do not specify one).
+		 */
+		public final Path binaryDirectory;
+		/**
+		 * A map from each configure preset to the build presets that refer to it.
+		 */
+		public final Map<String, List<String>> configureToBuilds = new LinkedHashMap<>();
+		/**
+		 * A map from each configure preset to the test presets that refer to it.
+		 */
+		public final Map<String, List<String>> configureToTests = new LinkedHashMap<>();
+
+		/**
+		 * @param binaryDirectory the binary directory ({@code null} if the configure presets do not specify
+		 *                        one)
+		 */
+		Chain(Path binaryDirectory)
+		{
+			this.binaryDirectory = binaryDirectory;
+		}
+	}
+}
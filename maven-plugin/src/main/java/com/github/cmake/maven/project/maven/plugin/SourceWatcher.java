@@ -0,0 +1,208 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory tree for modified files.
+ * <p>
+ * Editors and version control tools tend to modify many files in quick succession, so events are collected
+ * until the tree has been quiet for a while. Directories that are created while watching are watched as
+ * well. Hidden directories (such as {@code .git}) and editor backup files are ignored.
+ */
+public final class SourceWatcher implements AutoCloseable
+{
+	private final WatchService service;
+	/**
+	 * The directories that are not watched, along with their contents.
+	 */
+	private final List<Path> excluded;
+	/**
+	 * The number of milliseconds that the tree must be quiet before changes are reported.
+	 */
+	private final long debounceMillis;
+	/**
+	 * A map from each registered key to the directory it watches.
+	 */
+	private final Map<WatchKey, Path> keyToDirectory = new HashMap<>();
+
+	/**
+	 * Starts watching a directory tree.
+	 *
+	 * @param root           the root of the tree
+	 * @param excluded       directories that should not be watched (e.g. a build directory inside the tree)
+	 * @param debounceMillis the number of milliseconds that the tree must be quiet before changes are
+	 *                       reported
+	 * @throws NullPointerException     if {@code root} or {@code excluded} are null
+	 * @throws IllegalArgumentException if {@code debounceMillis} is negative
+	 * @throws IOException              if an error occurs while registering the directories
+	 */
+	public SourceWatcher(Path root, Collection<Path> excluded, long debounceMillis) throws IOException
+	{
+		if (root == null)
+			throw new NullPointerException("root may not be null");
+		if (excluded == null)
+			throw new NullPointerException("excluded may not be null");
+		if (debounceMillis < 0)
+			throw new IllegalArgumentException("debounceMillis may not be negative: " + debounceMillis);
+		this.excluded = new ArrayList<>();
+		for (Path directory : excluded)
+			this.excluded.add(directory.toAbsolutePath().normalize());
+		this.debounceMillis = debounceMillis;
+		this.service = FileSystems.getDefault().newWatchService();
+		try
+		{
+			register(root.toAbsolutePath().normalize(), null);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			service.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Watches a directory and its subdirectories.
+	 *
+	 * @param directory the directory
+	 * @param files     the set to add the files in the directory to ({@code null} if they should not be
+	 *                  reported)
+	 * @throws IOException if an error occurs while registering the directories
+	 */
+	private void register(Path directory, Set<Path> files) throws IOException
+	{
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+				throws IOException
+			{
+				if (!dir.equals(directory) && isIgnored(dir))
+					return FileVisitResult.SKIP_SUBTREE;
+				WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+				keyToDirectory.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+			{
+				// Files may have been added to a new directory before it was registered
+				if (files != null && !isIgnored(file))
+					files.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e)
+			{
+				// The file was deleted while the tree was being walked
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * @param path a file or directory
+	 * @return {@code true} if changes to the path should be ignored
+	 */
+	private boolean isIgnored(Path path)
+	{
+		for (Path directory : excluded)
+			if (path.startsWith(directory))
+				return true;
+		String name = path.getFileName().toString();
+		if (Files.isDirectory(path))
+			return name.startsWith(".");
+		// Editor swap, backup and lock files
+		return name.endsWith("~") || name.endsWith(".swp") || name.endsWith(".swx") || name.startsWith(".#") ||
+			(name.startsWith("#") && name.endsWith("#"));
+	}
+
+	/**
+	 * Blocks until files change and the tree has been quiet for the debounce period.
+	 *
+	 * @return the absolute paths of the files that were created, modified or deleted, in sorted order
+	 * ({@code null} if events were lost and the caller should assume that any file could have changed)
+	 * @throws InterruptedException if the thread was interrupted
+	 * @throws IOException          if an error occurs while registering new directories
+	 */
+	public Set<Path> awaitChanges() throws InterruptedException, IOException
+	{
+		while (true)
+		{
+			Set<Path> files = new TreeSet<>();
+			boolean overflow = process(service.take(), files);
+			while (true)
+			{
+				WatchKey key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+				if (key == null)
+					break;
+				overflow |= process(key, files);
+			}
+			if (overflow)
+				return null;
+			if (!files.isEmpty())
+				return files;
+			// Only ignored files changed
+		}
+	}
+
+	/**
+	 * Collects the events of a key.
+	 *
+	 * @param key   the key
+	 * @param files the set to add changed files to
+	 * @return {@code true} if events were lost
+	 * @throws IOException if an error occurs while registering new directories
+	 */
+	private boolean process(WatchKey key, Set<Path> files) throws IOException
+	{
+		Path directory = keyToDirectory.get(key);
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents())
+		{
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				overflow = true;
+				continue;
+			}
+			if (directory == null)
+				continue;
+			Path path = directory.resolve((Path) event.context());
+			if (isIgnored(path))
+				continue;
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+				register(path, files);
+			else if (!Files.isDirectory(path))
+				files.add(path);
+		}
+		if (!key.reset())
+			keyToDirectory.remove(key);
+		return overflow;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		service.close();
+	}
+}
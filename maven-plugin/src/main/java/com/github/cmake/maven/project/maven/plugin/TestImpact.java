@@ -0,0 +1,350 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.maven.plugin.CodeModel.Target;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The tests that are affected by a set of changed files.
+ * <p>
+ * Changed files are mapped to the targets that compile them, using the sources listed by the code model and
+ * the headers that compilers reported to ninja. A target is affected if it, or any of its transitive
+ * dependencies, changed. A test is affected if its command-line refers to the artifact of an affected
+ * target or to a changed file. Tests that must run before an affected test ({@code DEPENDS}) are affected
+ * as well, and tests whose command-line does not refer to any target always run because it is unknown what
+ * they exercise.
+ * <p>
+ * If the mapping is uncertain, the analysis selects the full suite instead. This happens when a CMake input
+ * changed, or when a changed file in the source directory is not used by any target or test.
+ */
+public final class TestImpact
+{
+	/**
+	 * Matches the directory that CMake's Makefile and Ninja generators write a target's object files to.
+	 */
+	private static final Pattern OBJECT_DIRECTORY = Pattern.compile("(?:^|/)CMakeFiles/([^/]+)\\.dir/");
+	/**
+	 * The names of the tests to run, in the order that ctest listed them ({@code null} if the full suite must
+	 * run).
+	 */
+	public final List<String> tests;
+	/**
+	 * The names of the affected targets.
+	 */
+	public final Set<String> targets;
+	/**
+	 * The reason that the full suite must run ({@code null} if {@link #tests} is set).
+	 */
+	public final String reason;
+
+	/**
+	 * Determines which tests are affected by a set of changed files.
+	 *
+	 * @param codeModel    the code model of the build configuration
+	 * @param deps         the dependencies that compilers reported to ninja ({@code null} if unavailable)
+	 * @param ctestInfo    the output of {@code ctest --show-only=json-v1}
+	 * @param changedFiles the absolute paths of the files that changed
+	 * @param cmakeInputs  the absolute paths of the files that cmake read while configuring the project
+	 * @return the affected tests
+	 * @throws NullPointerException if any of the arguments except for {@code deps} are null
+	 * @throws IOException          if an error occurs while reading the code model
+	 */
+	public static TestImpact analyze(CodeModel codeModel, NinjaDeps deps, JsonNode ctestInfo,
+		Collection<Path> changedFiles, Collection<Path> cmakeInputs) throws IOException
+	{
+		if (codeModel == null)
+			throw new NullPointerException("codeModel may not be null");
+		if (ctestInfo == null)
+			throw new NullPointerException("ctestInfo may not be null");
+		if (changedFiles == null)
+			throw new NullPointerException("changedFiles may not be null");
+		if (cmakeInputs == null)
+			throw new NullPointerException("cmakeInputs may not be null");
+		Set<Path> changed = new HashSet<>();
+		for (Path file : changedFiles)
+			changed.add(file.toAbsolutePath().normalize());
+		Set<Path> cmakeInputSet = new HashSet<>();
+		for (Path file : cmakeInputs)
+			cmakeInputSet.add(file.toAbsolutePath().normalize());
+		for (Path file : changed)
+		{
+			if (cmakeInputSet.contains(file) || isCMakeFile(file))
+				return fullSuite("CMake input changed: " + file);
+		}
+
+		Map<Path, Set<Target>> fileToTargets = getFileToTargets(codeModel, deps);
+		Set<Path> referencedByTests = new HashSet<>();
+		for (JsonNode test : ctestInfo.path("tests"))
+			for (JsonNode argument : test.path("command"))
+				referencedByTests.add(toPath(argument.asText()));
+
+		Set<Target> changedTargets = new HashSet<>();
+		for (Path file : changed)
+		{
+			Set<Target> targets = fileToTargets.get(file);
+			if (targets != null)
+				changedTargets.addAll(targets);
+			else if (file.startsWith(codeModel.sourceDirectory) && !referencedByTests.contains(file))
+				return fullSuite(file + " is not used by any target or test");
+			// Files outside the source directory that no target depends on are not part of the build
+		}
+		Set<Target> affected = getDependents(codeModel, changedTargets);
+
+		Map<String, JsonNode> nameToTest = new HashMap<>();
+		Set<String> selected = new HashSet<>();
+		for (JsonNode test : ctestInfo.path("tests"))
+		{
+			String name = test.path("name").asText();
+			nameToTest.put(name, test);
+			boolean mapped = false;
+			for (JsonNode argument : test.path("command"))
+			{
+				Target target = TestPlan.getTarget(codeModel, argument.asText());
+				if (target != null)
+				{
+					mapped = true;
+					if (affected.contains(target))
+						selected.add(name);
+				}
+				else if (changed.contains(toPath(argument.asText())))
+					selected.add(name);
+			}
+			if (!mapped)
+				selected.add(name);
+		}
+
+		// Run the tests that the selected tests depend on
+		List<String> pending = new ArrayList<>(selected);
+		while (!pending.isEmpty())
+		{
+			JsonNode test = nameToTest.get(pending.remove(pending.size() - 1));
+			if (test == null)
+				continue;
+			for (String dependency : getDependsProperty(test))
+				if (selected.add(dependency))
+					pending.add(dependency);
+		}
+
+		List<String> tests = new ArrayList<>();
+		for (JsonNode test : ctestInfo.path("tests"))
+		{
+			String name = test.path("name").asText();
+			if (selected.contains(name))
+				tests.add(name);
+		}
+		Set<String> targetNames = new TreeSet<>();
+		for (Target target : affected)
+			targetNames.add(target.name);
+		return new TestImpact(tests, targetNames, null);
+	}
+
+	/**
+	 * @param reason the reason that the full suite must run
+	 * @return an analysis that selects the full suite
+	 */
+	private static TestImpact fullSuite(String reason)
+	{
+		return new TestImpact(null, Collections.emptySet(), reason);
+	}
+
+	/**
+	 * @param file the absolute path of a file
+	 * @return {@code true} if the file is a CMake script
+	 */
+	static boolean isCMakeFile(Path file)
+	{
+		String name = file.getFileName().toString();
+		return name.equals("CMakeLists.txt") || name.endsWith(".cmake") || name.equals("CMakePresets.json") ||
+			name.equals("CMakeUserPresets.json");
+	}
+
+	/**
+	 * @param codeModel the code model
+	 * @param deps      the dependencies that compilers reported to ninja ({@code null} if unavailable)
+	 * @return a map from the absolute path of each file to the targets that compile it
+	 * @throws IOException if an error occurs while reading the code model
+	 */
+	private static Map<Path, Set<Target>> getFileToTargets(CodeModel codeModel, NinjaDeps deps)
+		throws IOException
+	{
+		Map<Path, Set<Target>> result = new HashMap<>();
+		for (Target target : codeModel.getTargets())
+			for (Path source : target.sources)
+				result.computeIfAbsent(source, key -> new HashSet<>()).add(target);
+		if (deps == null)
+			return result;
+		for (Entry<String, List<String>> entry : deps.outputToDependencies.entrySet())
+		{
+			Matcher matcher = OBJECT_DIRECTORY.matcher(entry.getKey().replace('\\', '/'));
+			if (!matcher.find())
+				continue;
+			Target target = codeModel.getTargetByName(matcher.group(1));
+			if (target == null)
+				continue;
+			// Relative paths are relative to the build directory
+			for (String dependency : entry.getValue())
+			{
+				Path path = codeModel.buildDirectory.resolve(dependency).normalize();
+				result.computeIfAbsent(path, key -> new HashSet<>()).add(target);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param codeModel the code model
+	 * @param targets   a set of targets
+	 * @return the targets and every target that transitively depends on them
+	 * @throws IOException if an error occurs while reading the code model
+	 */
+	private static Set<Target> getDependents(CodeModel codeModel, Set<Target> targets) throws IOException
+	{
+		Map<String, List<Target>> idToDependents = new HashMap<>();
+		for (Target target : codeModel.getTargets())
+			for (String dependency : target.dependencies)
+				idToDependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(target);
+		Set<Target> result = new HashSet<>();
+		List<Target> pending = new ArrayList<>(targets);
+		while (!pending.isEmpty())
+		{
+			Target target = pending.remove(pending.size() - 1);
+			if (result.add(target))
+				pending.addAll(idToDependents.getOrDefault(target.id, Collections.emptyList()));
+		}
+		return result;
+	}
+
+	/**
+	 * @param test a test listed by {@code ctest --show-only=json-v1}
+	 * @return the names of the tests that must run before the test
+	 */
+	private static List<String> getDependsProperty(JsonNode test)
+	{
+		List<String> result = new ArrayList<>();
+		for (JsonNode property : test.path("properties"))
+		{
+			if (!property.path("name").asText().equals("DEPENDS"))
+				continue;
+			for (JsonNode value : property.path("value"))
+				result.add(value.asText());
+		}
+		return result;
+	}
+
+	/**
+	 * @param argument a command-line argument
+	 * @return the normalized path that the argument refers to ({@code null} if it is not an absolute path)
+	 */
+	private static Path toPath(String argument)
+	{
+		Path path;
+		try
+		{
+			path = Paths.get(argument);
+		}
+		catch (InvalidPathException e)
+		{
+			return null;
+		}
+		if (!path.isAbsolute())
+			return null;
+		return path.normalize();
+	}
+
+	/**
+	 * Returns the files whose changes the analysis can detect: the sources of every target, the headers that
+	 * compilers reported to ninja and the project's CMake inputs.
+	 *
+	 * @param codeModel   the code model of the build configuration
+	 * @param deps        the dependencies that compilers reported to ninja ({@code null} if unavailable)
+	 * @param cmakeInputs the files that cmake read while configuring the project
+	 * @return the absolute paths of the files ({@code null} if {@code deps} is null, because headers that are
+	 * not listed among the sources of a target cannot be enumerated)
+	 * @throws IOException if an error occurs while reading the code model
+	 */
+	public static Set<Path> getInputs(CodeModel codeModel, NinjaDeps deps, Collection<Path> cmakeInputs)
+		throws IOException
+	{
+		if (deps == null)
+			return null;
+		Set<Path> result = new LinkedHashSet<>(getFileToTargets(codeModel, deps).keySet());
+		result.addAll(cmakeInputs);
+		return result;
+	}
+
+	/**
+	 * Returns the size and last-modified time of files, so that later builds can detect which files changed.
+	 *
+	 * @param files the files
+	 * @return a map from the absolute path of each file to its fingerprint (files that do not exist are
+	 * omitted)
+	 * @throws IOException if an error occurs while reading the attributes of a file
+	 */
+	public static Map<String, String> fingerprint(Collection<Path> files) throws IOException
+	{
+		Map<String, String> result = new TreeMap<>();
+		for (Path file : files)
+		{
+			if (Files.notExists(file))
+				continue;
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			result.put(file.toAbsolutePath().normalize().toString(), attributes.size() + ":" +
+				attributes.lastModifiedTime().toMillis());
+		}
+		return result;
+	}
+
+	/**
+	 * @param baseline the fingerprints at the time of the last successful test run
+	 * @param current  the current fingerprints
+	 * @return the files that were added, removed or modified since the baseline
+	 */
+	public static Set<Path> getChangedFiles(Map<String, String> baseline, Map<String, String> current)
+	{
+		Set<Path> result = new HashSet<>();
+		for (Entry<String, String> entry : baseline.entrySet())
+			if (!entry.getValue().equals(current.get(entry.getKey())))
+				result.add(Paths.get(entry.getKey()));
+		for (String file : current.keySet())
+			if (!baseline.containsKey(file))
+				result.add(Paths.get(file));
+		return result;
+	}
+
+	/**
+	 * @param tests   the names of the tests to run ({@code null} if the full suite must run)
+	 * @param targets the names of the affected targets
+	 * @param reason  the reason that the full suite must run ({@code null} if {@code tests} is set)
+	 * @throws AssertionError if {@code targets} is null
+	 */
+	private TestImpact(List<String> tests, Set<String> targets, String reason)
+	{
+		assert (targets != null) : "targets may not be null";
+		if (tests == null)
+			this.tests = null;
+		else
+			this.tests = Collections.unmodifiableList(tests);
+		this.targets = Collections.unmodifiableSet(targets);
+		this.reason = reason;
+	}
+}
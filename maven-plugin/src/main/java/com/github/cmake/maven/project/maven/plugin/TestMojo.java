@@ -13,7 +13,13 @@
  */
 package com.github.cmake.maven.project.maven.plugin;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
 import com.github.cmake.maven.project.common.Mojos;
+import com.github.cmake.maven.project.common.Platform;
+import com.github.cmake.maven.project.common.Platform.OperatingSystem;
+import com.github.cmake.maven.project.common.Tracer.Span;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -22,11 +28,16 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import javax.inject.Inject;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.BufferedReader;
@@ -35,8 +46,28 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Goal which runs CMake/CTest tests.
@@ -83,6 +114,38 @@ public class TestMojo extends CmakeMojo
 	 */
 	@Parameter(property = "dashboard")
 	private String dashboard;
+	/**
+	 * The number of slowest tests to log. {@code 0} disables the report.
+	 */
+	@Parameter(property = "ctest.slowestTests", defaultValue = "10")
+	private int slowestTests;
+	/**
+	 * The maximum number of seconds that tests with a given label may take. The build fails if any test
+	 * exceeds the budget of one of its labels.
+	 */
+	@Parameter
+	private Map<String, String> testTimeBudgets;
+	/**
+	 * {@code true} if the CPU time and peak resident set size of each test should be measured. Tests are
+	 * wrapped by a launcher script through the {@code CMAKE_TEST_LAUNCHER} cache variable, which requires
+	 * CMake 3.29 or newer. Only supported on Linux.
+	 */
+	@Parameter(property = "ctest.measureResources", defaultValue = "false")
+	private boolean measureResources;
+	/**
+	 * {@code true} if only the tests that are affected by changed files should run. Changes are detected
+	 * relative to {@link #changedSince} if it is set, or relative to the last successful test run otherwise.
+	 * The full suite runs whenever the affected tests cannot be determined reliably. Requires the File API
+	 * queries written by the {@code generate} goal.
+	 */
+	@Parameter(property = "ctest.affectedTestsOnly", defaultValue = "false")
+	private boolean affectedTestsOnly;
+	/**
+	 * The git revision (e.g. {@code origin/main}) that changed files are detected against when
+	 * {@link #affectedTestsOnly} is set. Uncommitted and untracked files count as changed.
+	 */
+	@Parameter(property = "ctest.changedSince")
+	private String changedSince;
 
 	/**
 	 * Creates a new instance.
@@ -123,12 +186,55 @@ public class TestMojo extends CmakeMojo
 		if (threadCount == 0)
 			threadCount = Runtime.getRuntime().availableProcessors();
 
-		try
+		boolean succeeded = false;
+		Map<String, Long> counts = new LinkedHashMap<>();
+		try (Span goalSpan = startTracing("test"))
 		{
 			downloadBinariesIfNecessary();
 
+			Path launcher;
+			try (Span span = trace("configure launcher"))
+			{
+				launcher = configureLauncher();
+			}
+
+			List<String> affectedTests = null;
+			Map<String, String> fingerprints = new TreeMap<>();
+			if (affectedTestsOnly)
+			{
+				try (Span span = trace("test impact"))
+				{
+					affectedTests = getAffectedTests(fingerprints);
+				}
+				if (affectedTests != null && affectedTests.isEmpty())
+				{
+					if (log.isInfoEnabled())
+						log.info("No tests are affected by the changes.");
+					// CI expects a report and metrics from every run, even if it is empty
+					try (Span span = trace("junit report"))
+					{
+						writeEmptyReport();
+					}
+					try (Span span = trace("test metrics"))
+					{
+						writeMetrics(new TestResults(Collections.emptyList()));
+					}
+					writeImpactBaseline(fingerprints);
+					succeeded = true;
+					counts.put(BuildHistory.TESTS_RUN, 0L);
+					return;
+				}
+			}
+
 			ProcessBuilder processBuilder = new ProcessBuilder().directory(buildDirectory);
 			overrideEnvironmentVariables(processBuilder);
+			Path resourcesDirectory = getMetricsDirectory().resolve("test-resources");
+			if (launcher != null)
+			{
+				deleteRecursively(resourcesDirectory);
+				Files.createDirectories(resourcesDirectory);
+				processBuilder.environment().put("CMAKE_MAVEN_TEST_RESOURCES", resourcesDirectory.toString());
+			}
 
 			String ctestPath = getBinaryPath("ctest", processBuilder).toString();
 			processBuilder.command().add(ctestPath);
@@ -140,6 +246,12 @@ public class TestMojo extends CmakeMojo
 			if (config != null)
 				Collections.addAll(processBuilder.command(), "--build-config", config);
 
+			if (affectedTests != null)
+			{
+				Collections.addAll(processBuilder.command(), "--tests-regex",
+					TestPlan.getTestRegex(affectedTests));
+			}
+
 			// If set, this will post results to a pre-configured dashboard
 			if (dashboard != null)
 				Collections.addAll(processBuilder.command(), "-D", dashboard);
@@ -155,7 +267,12 @@ public class TestMojo extends CmakeMojo
 			}
 
 			// Run the ctest suite of tests
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			int returnCode;
+			try (Span span = trace("ctest"))
+			{
+				returnCode = Mojos.waitFor(processBuilder, getLog());
+			}
+			Span reportSpan = trace("junit report");
 
 			// Convert ctest xml output to junit xml for better integration
 			InputStream stream = TestMojo.class.getResourceAsStream("/ctest2junit.xsl");
@@ -166,34 +283,559 @@ public class TestMojo extends CmakeMojo
 			// Read the ctest TAG file to find out what current run was called
 			File tagFile = new File(buildDirectory, "/Testing/TAG");
 			Charset charset = Charset.defaultCharset();
-			StreamSource source = getStreamSource(tagFile, charset);
-			File reportsDir = new File(getBuildDirectory(), "surefire-reports");
-			File xmlReport = new File(reportsDir, "CTestResults.xml");
-			StreamResult result = new StreamResult(xmlReport);
-
-			// We have to create if there aren't other Surefire tests
-			if (!reportsDir.exists())
-				if (!reportsDir.mkdirs())
-					throw new IOException("Couldn't create " + reportsDir);
+			File testXml = getTestXml(tagFile, charset);
+			TestResults testResults = TestResults.parse(testXml.toPath());
+			counts.put(BuildHistory.TESTS_RUN, (long) testResults.tests.size());
+			if (launcher != null)
+			{
+				Map<String, TestResourceUsage> resources = TestResourceUsage.match(testResults.tests,
+					TestResourceUsage.readAll(resourcesDirectory), launcher.toString());
+				Path resourcesXml = writeResourceMetrics(resources);
+				// Exposes the resources as JUnit properties
+				transformer.setParameter("resources", resourcesXml.toUri().toString());
+			}
+			StreamSource source = new StreamSource(testXml);
+			StreamResult result = new StreamResult(getReportFile());
 
 			// Transform CTest output into Surefire style test output
 			transformer.transform(source, result);
+			reportSpan.close();
+
+			try (Span span = trace("test metrics"))
+			{
+				writeMetrics(testResults);
+			}
+			Map<TestResult, Double> overBudget = testResults.getOverBudget(getTestTimeBudgets());
+			for (Entry<TestResult, Double> entry : overBudget.entrySet())
+			{
+				TestResult test = entry.getKey();
+				log.error("Test " + test.name + " took " + formatSeconds(test.time) + ", exceeding its budget of " +
+					formatSeconds(entry.getValue()));
+			}
 
-			if (returnCode != 0)
+			if (returnCode == 0 && overBudget.isEmpty() && affectedTestsOnly)
+				writeImpactBaseline(fingerprints);
+			// Tests that exceeded their budget still ran to completion, so their durations are recorded
+			succeeded = returnCode == 0;
+			if (returnCode != 0 || !overBudget.isEmpty())
 			{
 				if (ignoreTestFailure)
 					log.warn("ignoreTestFailure is true. Ignoring failure");
-				else
+				else if (returnCode != 0)
 					throw new MojoExecutionException("Return code: " + returnCode);
+				else
+					throw new MojoExecutionException(overBudget.size() + " test(s) exceeded their time budget");
 			}
 		}
-		catch (InterruptedException | IOException | TransformerException e)
+		catch (InterruptedException | IOException | TransformerException | ParserConfigurationException e)
 		{
 			throw new MojoExecutionException(e.getMessage(), e);
 		}
+		finally
+		{
+			recordHistory(succeeded, counts);
+		}
 	}
 
-	private StreamSource getStreamSource(File tagFile, Charset charset) throws IOException
+	/**
+	 * Determines which tests are affected by the files that changed.
+	 *
+	 * @param fingerprints updated with the fingerprints of the project's inputs
+	 * @return the names of the affected tests ({@code null} if all tests should run)
+	 * @throws IOException          if an error occurs while reading the build directory
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<String> getAffectedTests(Map<String, String> fingerprints)
+		throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		BuildModel model = getBuildModel(buildDirectory.toPath());
+		CodeModel codeModel = null;
+		try
+		{
+			if (model != null)
+				codeModel = model.getCodeModel(config);
+		}
+		catch (IOException e)
+		{
+			log.warn("Running all tests. Could not read the code model: " + e.getMessage());
+			return null;
+		}
+		if (codeModel == null)
+		{
+			log.warn("Running all tests. cmake did not write a code model; run the generate goal first.");
+			return null;
+		}
+		List<Path> cmakeInputs = model.getCMakeInputs();
+		if (cmakeInputs == null)
+			cmakeInputs = Collections.emptyList();
+		CMakeCache cache = CMakeCache.read(buildDirectory.toPath());
+		NinjaDeps deps = null;
+		String generator = cache.get("CMAKE_GENERATOR");
+		// Without the headers that compilers reported, changes to headers make the analysis uncertain
+		if (generator != null && generator.startsWith("Ninja"))
+			deps = runNinjaTool(cache, buildDirectory, "deps", NinjaDeps::parse);
+		Set<Path> inputs = TestImpact.getInputs(codeModel, deps, cmakeInputs);
+		if (inputs != null)
+			fingerprints.putAll(TestImpact.fingerprint(inputs));
+
+		Set<Path> changedFiles;
+		if (changedSince != null && !changedSince.trim().isEmpty())
+		{
+			changedFiles = getChangedFilesSince(changedSince.trim(), codeModel.sourceDirectory);
+			if (changedFiles == null)
+			{
+				log.warn("Running all tests. Could not list the files that changed since " + changedSince);
+				return null;
+			}
+		}
+		else
+		{
+			if (inputs == null)
+			{
+				// Edits to headers that no target lists as a source would go unnoticed
+				log.warn("Running all tests. Changed headers cannot be detected without a Ninja generator " +
+					"unless changedSince is set.");
+				return null;
+			}
+			Path baselineFile = getImpactBaselineFile();
+			if (Files.notExists(baselineFile))
+			{
+				if (log.isInfoEnabled())
+					log.info("Running all tests. There is no record of a previous successful run.");
+				return null;
+			}
+			Map<String, String> baseline = Metrics.getMapper().readValue(baselineFile.toFile(),
+				new TypeReference<Map<String, String>>()
+				{
+				});
+			changedFiles = TestImpact.getChangedFiles(baseline, fingerprints);
+		}
+
+		String ctestPath = getBinaryPath("ctest", new ProcessBuilder()).toString();
+		JsonNode ctestInfo = listTests(buildDirectory, ctestPath, config);
+		if (ctestInfo == null)
+		{
+			log.warn("Running all tests.");
+			return null;
+		}
+		TestImpact impact = TestImpact.analyze(codeModel, deps, ctestInfo, changedFiles, cmakeInputs);
+		if (impact.tests == null)
+		{
+			if (log.isInfoEnabled())
+				log.info("Running all tests. " + impact.reason);
+			return null;
+		}
+		if (log.isInfoEnabled())
+		{
+			log.info(changedFiles.size() + " changed file(s) affect " + impact.targets.size() + " target(s) " +
+				"and " + impact.tests.size() + " of " + ctestInfo.path("tests").size() + " test(s)");
+		}
+		if (log.isDebugEnabled())
+		{
+			log.debug("Changed files: " + changedFiles);
+			log.debug("Affected targets: " + impact.targets);
+			log.debug("Affected tests: " + impact.tests);
+		}
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		List<String> changedFileNames = new ArrayList<>();
+		for (Path file : changedFiles)
+			changedFileNames.add(file.toString());
+		Collections.sort(changedFileNames);
+		metrics.put("changedFiles", changedFileNames);
+		metrics.put("targets", impact.targets);
+		metrics.put("tests", impact.tests);
+		metrics.put("totalTests", ctestInfo.path("tests").size());
+		Metrics.write(getMetricsDirectory().resolve("test-impact.json"), metrics);
+		return impact.tests;
+	}
+
+	/**
+	 * Lists the files that changed since a git revision, including uncommitted and untracked files.
+	 *
+	 * @param revision        the git revision
+	 * @param sourceDirectory a directory in the git working tree
+	 * @return the absolute paths of the files ({@code null} if git failed)
+	 * @throws IOException          if an error occurs while running git
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private Set<Path> getChangedFilesSince(String revision, Path sourceDirectory)
+		throws IOException, InterruptedException
+	{
+		String topLevel = runGit(sourceDirectory, "rev-parse", "--show-toplevel");
+		if (topLevel == null)
+			return null;
+		// Both commands list paths relative to the top-level directory of the working tree
+		String modified = runGit(sourceDirectory, "diff", "--name-only", "-z", revision, "--");
+		if (modified == null)
+			return null;
+		String untracked = runGit(sourceDirectory, "ls-files", "--others", "--exclude-standard", "--full-name",
+			"-z");
+		if (untracked == null)
+			return null;
+		Path root = Paths.get(topLevel.trim());
+		Set<Path> result = new HashSet<>();
+		for (String file : (modified + untracked).split("\0"))
+			if (!file.isEmpty())
+				result.add(root.resolve(file).normalize());
+		return result;
+	}
+
+	/**
+	 * Runs git.
+	 *
+	 * @param directory the directory to run git in
+	 * @param arguments the arguments to pass to git
+	 * @return the output of git ({@code null} if git could not be run or failed)
+	 * @throws IOException          if an error occurs while reading the output
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private String runGit(Path directory, String... arguments) throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(directory.toFile());
+		processBuilder.command().add("git");
+		Collections.addAll(processBuilder.command(), arguments);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		Process process;
+		try
+		{
+			process = processBuilder.start();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not run git: " + e.getMessage());
+			return null;
+		}
+		process.getOutputStream().close();
+		StringBuilder output = new StringBuilder();
+		try (Reader in = new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))
+		{
+			char[] buffer = new char[8192];
+			while (true)
+			{
+				int count = in.read(buffer);
+				if (count == -1)
+					break;
+				output.append(buffer, 0, count);
+			}
+		}
+		int exitCode = process.waitFor();
+		if (exitCode != 0)
+		{
+			log.warn("\"git " + String.join(" ", arguments) + "\" returned " + exitCode);
+			return null;
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Records the inputs of a successful test run, so that the next run only needs to run the tests that
+	 * are affected by the files that changed since.
+	 *
+	 * @param fingerprints the fingerprints of the project's inputs (empty if unavailable)
+	 * @throws IOException if an error occurs while writing the baseline
+	 */
+	private void writeImpactBaseline(Map<String, String> fingerprints) throws IOException
+	{
+		if (fingerprints.isEmpty())
+			return;
+		Path baselineFile = getImpactBaselineFile();
+		Metrics.write(baselineFile, fingerprints);
+		if (getLog().isInfoEnabled())
+			getLog().info("Updated the test impact baseline at " + baselineFile);
+	}
+
+	/**
+	 * @return the JUnit report that the ctest results are converted to
+	 * @throws IOException if an error occurs while creating the reports directory
+	 */
+	private File getReportFile() throws IOException
+	{
+		File reportsDir = new File(getBuildDirectory(), "surefire-reports");
+		// We have to create if there aren't other Surefire tests
+		if (!reportsDir.exists())
+			if (!reportsDir.mkdirs())
+				throw new IOException("Couldn't create " + reportsDir);
+		return new File(reportsDir, "CTestResults.xml");
+	}
+
+	/**
+	 * Writes a JUnit report without any tests, replacing the report of the previous run.
+	 *
+	 * @throws IOException if an error occurs while writing the report
+	 */
+	private void writeEmptyReport() throws IOException
+	{
+		String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<testsuite name=\"ctest\" time=\"0\" tests=\"0\" failures=\"0\" skipped=\"0\" disabled=\"0\"/>\n";
+		Files.write(getReportFile().toPath(), report.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the file that contains the fingerprints of the inputs of the last successful test run
+	 */
+	private Path getImpactBaselineFile()
+	{
+		return getMetricsDirectory().resolve("test-impact-baseline.json");
+	}
+
+	/**
+	 * Points {@code CMAKE_TEST_LAUNCHER} at the resource-measuring launcher if {@link #measureResources} is
+	 * set, or removes the launcher from a previous run otherwise. The build directory is only
+	 * reconfigured if the cache variable needs to change.
+	 *
+	 * @return the path of the launcher, or {@code null} if resources are not measured
+	 * @throws IOException            if an I/O error occurs
+	 * @throws InterruptedException   if the thread was interrupted
+	 * @throws MojoExecutionException if cmake fails
+	 */
+	private Path configureLauncher() throws IOException, InterruptedException, MojoExecutionException
+	{
+		Log log = getLog();
+		Path launcher = getMetricsDirectory().resolve("ctest-launcher.sh").toAbsolutePath();
+		String existingLauncher = CMakeCache.read(buildDirectory.toPath()).get("CMAKE_TEST_LAUNCHER");
+		ProcessBuilder processBuilder = new ProcessBuilder().directory(buildDirectory);
+		overrideEnvironmentVariables(processBuilder);
+		processBuilder.command().add(getBinaryPath("cmake", processBuilder).toString());
+
+		boolean supported = Platform.detected().operatingSystem == OperatingSystem.LINUX;
+		if (measureResources && !supported)
+			log.warn("measureResources is only supported on Linux. Ignoring.");
+		else if (measureResources && !isCMakeAtLeast(processBuilder, 3, 29))
+		{
+			log.warn("measureResources requires CMake 3.29 or newer. Ignoring.");
+			supported = false;
+		}
+		Path result;
+		if (measureResources && supported)
+		{
+			Files.createDirectories(launcher.getParent());
+			try (InputStream in = TestMojo.class.getResourceAsStream("/ctest-launcher.sh"))
+			{
+				Files.copy(in, launcher, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (!launcher.toFile().setExecutable(true))
+				throw new IOException("Could not make " + launcher + " executable");
+			if (launcher.toString().equals(existingLauncher))
+				return launcher;
+			processBuilder.command().add("-DCMAKE_TEST_LAUNCHER=" + launcher);
+			result = launcher;
+		}
+		else
+		{
+			if (!launcher.toString().equals(existingLauncher))
+				return null;
+			processBuilder.command().add("-UCMAKE_TEST_LAUNCHER");
+			result = null;
+		}
+		processBuilder.command().add(buildDirectory.getAbsolutePath());
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		int returnCode = Mojos.waitFor(processBuilder, log);
+		if (returnCode != 0)
+			throw new MojoExecutionException("Return code: " + returnCode);
+		return result;
+	}
+
+	/**
+	 * Logs the tests that consumed the most resources, and writes the resource usage of each test to
+	 * {@code cmake-metrics/test-resources.json} and {@code cmake-metrics/test-resources.xml}.
+	 *
+	 * @param resources a map from the name of each test to the resources it consumed
+	 * @return the path of the XML file
+	 * @throws IOException                  if an error occurs while writing the metrics
+	 * @throws ParserConfigurationException if the XML file could not be created
+	 * @throws TransformerException         if the XML file could not be written
+	 */
+	private Path writeResourceMetrics(Map<String, TestResourceUsage> resources)
+		throws IOException, ParserConfigurationException, TransformerException
+	{
+		Log log = getLog();
+		if (slowestTests > 0 && !resources.isEmpty() && log.isInfoEnabled())
+		{
+			List<Entry<String, TestResourceUsage>> entries = new ArrayList<>(resources.entrySet());
+			entries.sort(Comparator.comparingDouble((Entry<String, TestResourceUsage> entry) ->
+				entry.getValue().getCpuTime()).reversed());
+			log.info("Most CPU-intensive tests:");
+			for (Entry<String, TestResourceUsage> entry : entries.subList(0, Math.min(slowestTests,
+				entries.size())))
+			{
+				TestResourceUsage usage = entry.getValue();
+				log.info(String.format("%10s  user %10s  sys %10s  %s", formatSeconds(usage.getCpuTime()),
+					formatSeconds(usage.userTime), formatSeconds(usage.systemTime), entry.getKey()));
+			}
+			entries.sort(Comparator.comparingLong((Entry<String, TestResourceUsage> entry) ->
+				entry.getValue().maxRssKb).reversed());
+			log.info("Most memory-intensive tests:");
+			for (Entry<String, TestResourceUsage> entry : entries.subList(0, Math.min(slowestTests,
+				entries.size())))
+			{
+				log.info(String.format(Locale.ENGLISH, "%10d KB  %s", entry.getValue().maxRssKb,
+					entry.getKey()));
+			}
+		}
+
+		double userTime = 0;
+		double systemTime = 0;
+		long maxRssKb = 0;
+		for (TestResourceUsage usage : resources.values())
+		{
+			userTime += usage.userTime;
+			systemTime += usage.systemTime;
+			maxRssKb = Math.max(maxRssKb, usage.maxRssKb);
+		}
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("userTime", userTime);
+		metrics.put("systemTime", systemTime);
+		metrics.put("maxRssKb", maxRssKb);
+		metrics.put("tests", resources);
+		Path metricsDirectory = getMetricsDirectory();
+		Metrics.write(metricsDirectory.resolve("test-resources.json"), metrics);
+
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		Element root = document.createElement("tests");
+		document.appendChild(root);
+		for (Entry<String, TestResourceUsage> entry : resources.entrySet())
+		{
+			TestResourceUsage usage = entry.getValue();
+			Element test = document.createElement("test");
+			test.setAttribute("name", entry.getKey());
+			test.setAttribute("userTime", Double.toString(usage.userTime));
+			test.setAttribute("systemTime", Double.toString(usage.systemTime));
+			test.setAttribute("maxRssKb", Long.toString(usage.maxRssKb));
+			root.appendChild(test);
+		}
+		Path result = metricsDirectory.resolve("test-resources.xml");
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document),
+			new StreamResult(result.toFile()));
+		return result;
+	}
+
+	/**
+	 * @return the directory that metrics are written to
+	 */
+	private Path getMetricsDirectory()
+	{
+		return Metrics.getDirectory(getBuildDirectory());
+	}
+
+	/**
+	 * Deletes a directory and its contents.
+	 *
+	 * @param directory the directory to delete
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void deleteRecursively(Path directory) throws IOException
+	{
+		if (Files.notExists(directory))
+			return;
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+			{
+				if (e != null)
+					throw e;
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Returns the time budget of each test label.
+	 *
+	 * @return a map from each label to the maximum number of seconds that tests with that label may take
+	 * @throws MojoExecutionException if a budget is not a number
+	 */
+	private Map<String, Double> getTestTimeBudgets() throws MojoExecutionException
+	{
+		if (testTimeBudgets == null)
+			return Collections.emptyMap();
+		Map<String, Double> result = new HashMap<>();
+		for (Entry<String, String> entry : testTimeBudgets.entrySet())
+		{
+			String value = entry.getValue();
+			if (value == null || value.trim().isEmpty())
+				continue;
+			try
+			{
+				result.put(entry.getKey(), Double.parseDouble(value.trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new MojoExecutionException("testTimeBudgets." + entry.getKey() + " must be a number of " +
+					"seconds: " + value, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Logs the slowest tests and the distribution of test durations, and writes the results to
+	 * {@code cmake-metrics/tests.json}.
+	 *
+	 * @param testResults the test results
+	 * @throws IOException if an error occurs while writing the metrics
+	 */
+	private void writeMetrics(TestResults testResults) throws IOException
+	{
+		Map<String, Double> percentiles = testResults.getPercentiles();
+		Log log = getLog();
+		if (slowestTests > 0 && !testResults.tests.isEmpty() && log.isInfoEnabled())
+		{
+			log.info("Slowest tests:");
+			for (TestResult test : testResults.getSlowest(slowestTests))
+				log.info(String.format("%10s  %-7s  %s", formatSeconds(test.time), test.status, test.name));
+			StringBuilder distribution = new StringBuilder("Test durations:");
+			for (Entry<String, Double> entry : percentiles.entrySet())
+			{
+				distribution.append(' ').append(entry.getKey()).append('=').
+					append(formatSeconds(entry.getValue()));
+			}
+			log.info(distribution.toString());
+		}
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("buildDirectory", buildDirectory.getAbsolutePath());
+		metrics.put("count", testResults.tests.size());
+		metrics.put("totalTime", testResults.getTotalTime());
+		metrics.put("percentiles", percentiles);
+		metrics.put("tests", testResults.tests);
+		Path metricsFile = getMetricsDirectory().resolve("tests.json");
+		Metrics.write(metricsFile, metrics);
+		if (log.isDebugEnabled())
+			log.debug("Wrote test metrics to " + metricsFile);
+	}
+
+	/**
+	 * @param seconds a duration in seconds
+	 * @return the formatted duration
+	 */
+	private static String formatSeconds(double seconds)
+	{
+		return String.format(Locale.ENGLISH, "%.3fs", seconds);
+	}
+
+	/**
+	 * Returns the {@code Test.xml} file of the current ctest run.
+	 *
+	 * @param tagFile the ctest {@code TAG} file
+	 * @param charset the character set of the {@code TAG} file
+	 * @return the {@code Test.xml} file
+	 * @throws IOException if the {@code TAG} file could not be read
+	 */
+	private File getTestXml(File tagFile, Charset charset) throws IOException
 	{
 		FileInputStream fis = new FileInputStream(tagFile);
 		InputStreamReader isr = new InputStreamReader(fis, charset);
@@ -213,7 +855,6 @@ public class TestMojo extends CmakeMojo
 
 		// Get the current run's test data for reformatting
 		String xmlTestFilePath = "/Testing/" + tag + "/Test.xml";
-		File xmlSource = new File(buildDirectory, xmlTestFilePath);
-		return new StreamSource(xmlSource);
+		return new File(buildDirectory, xmlTestFilePath);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.maven.plugin.CodeModel.Target;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups ctest tests into batches that can run as soon as the targets they need are built.
+ * <p>
+ * A test needs the targets whose artifacts appear on its command-line (the test executable, and any
+ * {@code $<TARGET_FILE:...>} arguments). Tests that need the same targets form a batch. Batches are ordered
+ * by the position of their targets in a topological order of the build graph, so that each build
+ * invocation reuses the dependencies built by the previous ones. Tests whose command-line does not refer to
+ * any target run last, after the entire project has been built.
+ */
+public final class TestPlan
+{
+	/**
+	 * The batches, in the order that they should be dispatched. The last batch needs the entire project
+	 * (its {@link Batch#targets} are empty) and only exists if some tests could not be mapped to a target.
+	 */
+	public final List<Batch> batches;
+
+	/**
+	 * Creates a plan.
+	 *
+	 * @param codeModel the code model of the build configuration
+	 * @param ctestInfo the output of {@code ctest --show-only=json-v1}
+	 * @return the plan
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an error occurs while reading the code model
+	 */
+	public static TestPlan create(CodeModel codeModel, JsonNode ctestInfo) throws IOException
+	{
+		if (codeModel == null)
+			throw new NullPointerException("codeModel may not be null");
+		if (ctestInfo == null)
+			throw new NullPointerException("ctestInfo may not be null");
+		Map<String, Integer> idToPosition = new HashMap<>();
+		for (Target target : codeModel.getTopologicalOrder())
+			idToPosition.put(target.id, idToPosition.size());
+
+		Map<Set<Target>, List<String>> targetsToTests = new LinkedHashMap<>();
+		List<String> unmapped = new ArrayList<>();
+		for (JsonNode test : ctestInfo.path("tests"))
+		{
+			String name = test.path("name").asText();
+			Set<Target> targets = new LinkedHashSet<>();
+			for (JsonNode argument : test.path("command"))
+			{
+				Target target = getTarget(codeModel, argument.asText());
+				if (target != null)
+					targets.add(target);
+			}
+			if (targets.isEmpty())
+				unmapped.add(name);
+			else
+				targetsToTests.computeIfAbsent(targets, k -> new ArrayList<>()).add(name);
+		}
+
+		List<Batch> batches = new ArrayList<>();
+		for (Map.Entry<Set<Target>, List<String>> entry : targetsToTests.entrySet())
+		{
+			int position = 0;
+			for (Target target : entry.getKey())
+				position = Math.max(position, idToPosition.get(target.id));
+			batches.add(new Batch(entry.getKey(), codeModel.getClosure(entry.getKey()), entry.getValue(),
+				position));
+		}
+		batches.sort(Comparator.comparingInt(batch -> batch.position));
+		if (!unmapped.isEmpty())
+		{
+			batches.add(new Batch(Collections.emptySet(), Collections.emptySet(), unmapped,
+				Integer.MAX_VALUE));
+		}
+		return new TestPlan(batches);
+	}
+
+	/**
+	 * @param codeModel the code model
+	 * @param argument  an argument of a test's command-line
+	 * @return the target that produces the file that the argument refers to ({@code null} if none)
+	 * @throws IOException if an error occurs while reading the code model
+	 */
+	static Target getTarget(CodeModel codeModel, String argument) throws IOException
+	{
+		if (argument.isEmpty())
+			return null;
+		Path path;
+		try
+		{
+			path = Paths.get(argument);
+		}
+		catch (InvalidPathException e)
+		{
+			return null;
+		}
+		if (!path.isAbsolute())
+			return null;
+		return codeModel.getTargetByArtifact(path);
+	}
+
+	/**
+	 * @param tests the names of tests
+	 * @return a ctest regular expression that matches exactly the tests
+	 */
+	public static String getTestRegex(Collection<String> tests)
+	{
+		StringBuilder result = new StringBuilder("^(");
+		boolean first = true;
+		for (String test : tests)
+		{
+			if (!first)
+				result.append('|');
+			first = false;
+			for (char c : test.toCharArray())
+			{
+				if ("\\^$.|?*+()[]{}".indexOf(c) != -1)
+					result.append('\\');
+				result.append(c);
+			}
+		}
+		return result.append(")$").toString();
+	}
+
+	/**
+	 * @param batches the batches, in the order that they should be dispatched
+	 * @throws AssertionError if {@code batches} is null
+	 */
+	private TestPlan(List<Batch> batches)
+	{
+		assert (batches != null) : "batches may not be null";
+		this.batches = Collections.unmodifiableList(batches);
+	}
+
+	/**
+	 * Tests that need the same targets.
+	 */
+	public static final class Batch
+	{
+		/**
+		 * The targets that must be built before the tests can run (empty if the entire project must be
+		 * built).
+		 */
+		public final Set<Target> targets;
+		/**
+		 * The targets and their transitive dependencies, all of which are built along with the targets.
+		 */
+		public final Set<Target> closure;
+		/**
+		 * The names of the tests.
+		 */
+		public final List<String> tests;
+		/**
+		 * The position of the batch's last target in the topological order of the build graph.
+		 */
+		private final int position;
+
+		/**
+		 * @param targets  the targets that must be built before the tests can run
+		 * @param closure  the targets and their transitive dependencies
+		 * @param tests    the names of the tests
+		 * @param position the position of the batch's last target in the topological order of the build
+		 *                 graph
+		 * @throws AssertionError if {@code targets}, {@code closure} or {@code tests} are null
+		 */
+		private Batch(Set<Target> targets, Set<Target> closure, List<String> tests, int position)
+		{
+			assert (targets != null) : "targets may not be null";
+			assert (closure != null) : "closure may not be null";
+			assert (tests != null) : "tests may not be null";
+			this.targets = Collections.unmodifiableSet(targets);
+			this.closure = Collections.unmodifiableSet(closure);
+			this.tests = Collections.unmodifiableList(tests);
+			this.position = position;
+		}
+
+		/**
+		 * @return a ctest regular expression that matches exactly the tests in this batch
+		 */
+		public String getTestRegex()
+		{
+			return TestPlan.getTestRegex(tests);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "targets: " + targets + ", tests: " + tests;
+		}
+	}
+}
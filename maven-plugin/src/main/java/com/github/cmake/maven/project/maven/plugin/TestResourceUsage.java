@@ -0,0 +1,195 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The resources consumed by a single test, as recorded by {@code ctest-launcher.sh}.
+ */
+public final class TestResourceUsage
+{
+	/**
+	 * The format of the {@code times} builtin: {@code <minutes>m<seconds>s <minutes>m<seconds>s}.
+	 */
+	private static final Pattern TIMES = Pattern.compile("(\\d+)m([\\d.]+)s\\s+(\\d+)m([\\d.]+)s");
+	/**
+	 * The user CPU time of the test and its descendants, in seconds.
+	 */
+	public final double userTime;
+	/**
+	 * The system CPU time of the test and its descendants, in seconds.
+	 */
+	public final double systemTime;
+	/**
+	 * The peak resident set size of the test process, in kilobytes. Child processes are only included if the
+	 * launcher measured the test using GNU time, and then only the largest one. {@code 0} if the test exited
+	 * before it could be sampled.
+	 */
+	public final long maxRssKb;
+	/**
+	 * The command that was run.
+	 */
+	@JsonIgnore
+	public final String command;
+
+	/**
+	 * Reads the records that the launcher wrote to a directory.
+	 *
+	 * @param directory the directory that the launcher wrote to
+	 * @return the resource usage of each test that ran through the launcher
+	 * @throws IOException if an error occurs while reading the records
+	 */
+	public static List<TestResourceUsage> readAll(Path directory) throws IOException
+	{
+		List<TestResourceUsage> result = new ArrayList<>();
+		if (Files.notExists(directory))
+			return result;
+		try (DirectoryStream<Path> records = Files.newDirectoryStream(directory, "*.txt"))
+		{
+			for (Path record : records)
+				result.add(read(record));
+		}
+		return result;
+	}
+
+	/**
+	 * @param record a record written by the launcher
+	 * @return the resource usage in the record
+	 * @throws IOException if the record could not be read or is malformed
+	 */
+	private static TestResourceUsage read(Path record) throws IOException
+	{
+		String content = new String(Files.readAllBytes(record), StandardCharsets.UTF_8);
+		Map<String, String> values = new HashMap<>();
+		int start = 0;
+		while (start < content.length())
+		{
+			int equals = content.indexOf('=', start);
+			if (equals == -1)
+				break;
+			String key = content.substring(start, equals);
+			if (key.equals("command"))
+			{
+				// The command is always last and may span multiple lines
+				String command = content.substring(equals + 1);
+				if (command.endsWith("\n"))
+					command = command.substring(0, command.length() - 1);
+				values.put(key, command);
+				break;
+			}
+			int end = content.indexOf('\n', equals);
+			if (end == -1)
+				end = content.length();
+			values.put(key, content.substring(equals + 1, end));
+			start = end + 1;
+		}
+
+		String command = values.get("command");
+		if (command == null)
+			throw new IOException("Missing command in " + record);
+		double userTime = 0;
+		double systemTime = 0;
+		Matcher matcher = TIMES.matcher(values.getOrDefault("cpu", ""));
+		if (matcher.find())
+		{
+			userTime = Integer.parseInt(matcher.group(1)) * 60 + Double.parseDouble(matcher.group(2));
+			systemTime = Integer.parseInt(matcher.group(3)) * 60 + Double.parseDouble(matcher.group(4));
+		}
+		long maxRssKb;
+		try
+		{
+			maxRssKb = Long.parseLong(values.getOrDefault("maxRssKb", "0").trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Invalid maxRssKb in " + record, e);
+		}
+		return new TestResourceUsage(userTime, systemTime, maxRssKb, command);
+	}
+
+	/**
+	 * Associates the launcher records with the tests that produced them.
+	 * <p>
+	 * The launcher does not know the name of the test it is running, so records are matched to tests by
+	 * their command-line. If several tests have the same command-line, the records are assigned to them
+	 * in an arbitrary order.
+	 *
+	 * @param tests    the test results
+	 * @param usages   the launcher records
+	 * @param launcher the path of the launcher
+	 * @return a map from the name of each test to the resources it consumed
+	 */
+	public static Map<String, TestResourceUsage> match(List<TestResult> tests, List<TestResourceUsage> usages,
+		String launcher)
+	{
+		Map<String, Deque<TestResourceUsage>> commandToUsages = new HashMap<>();
+		for (TestResourceUsage usage : usages)
+		{
+			commandToUsages.computeIfAbsent(normalize(usage.command), key -> new ArrayDeque<>()).
+				add(usage);
+		}
+		String normalizedLauncher = normalize(launcher);
+		Map<String, TestResourceUsage> result = new LinkedHashMap<>();
+		for (TestResult test : tests)
+		{
+			String command = normalize(test.commandLine);
+			if (!command.startsWith(normalizedLauncher))
+				continue;
+			command = command.substring(normalizedLauncher.length()).trim();
+			Deque<TestResourceUsage> candidates = commandToUsages.get(command);
+			if (candidates == null || candidates.isEmpty())
+				continue;
+			result.put(test.name, candidates.removeFirst());
+		}
+		return result;
+	}
+
+	/**
+	 * @param command a command-line
+	 * @return the command-line without quotes and with consecutive whitespace collapsed
+	 */
+	private static String normalize(String command)
+	{
+		return command.replace("\"", "").replaceAll("\\s+", " ").trim();
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param userTime   the user CPU time of the test and its descendants, in seconds
+	 * @param systemTime the system CPU time of the test and its descendants, in seconds
+	 * @param maxRssKb   the peak resident set size of the test process, in kilobytes
+	 * @param command    the command that was run
+	 * @throws AssertionError if {@code command} is null
+	 */
+	TestResourceUsage(double userTime, double systemTime, long maxRssKb, String command)
+	{
+		assert (command != null) : "command may not be null";
+		this.userTime = userTime;
+		this.systemTime = systemTime;
+		this.maxRssKb = maxRssKb;
+		this.command = command;
+	}
+
+	/**
+	 * @return the total CPU time of the test and its descendants, in seconds
+	 */
+	public double getCpuTime()
+	{
+		return userTime + systemTime;
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a single ctest test.
+ */
+public final class TestResult
+{
+	/**
+	 * The name of the test.
+	 */
+	public final String name;
+	/**
+	 * The status reported by ctest ({@code passed}, {@code failed} or {@code notrun}).
+	 */
+	public final String status;
+	/**
+	 * The wall-clock time of the test, in seconds.
+	 */
+	public final double time;
+	/**
+	 * The labels associated with the test.
+	 */
+	public final List<String> labels;
+	/**
+	 * The command-line that ran the test.
+	 */
+	public final String commandLine;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param name        the name of the test
+	 * @param status      the status reported by ctest
+	 * @param time        the wall-clock time of the test, in seconds
+	 * @param labels      the labels associated with the test
+	 * @param commandLine the command-line that ran the test
+	 * @throws AssertionError if {@code name}, {@code status}, {@code labels} or {@code commandLine} are null
+	 */
+	public TestResult(String name, String status, double time, List<String> labels, String commandLine)
+	{
+		assert (name != null) : "name may not be null";
+		assert (status != null) : "status may not be null";
+		assert (labels != null) : "labels may not be null";
+		assert (commandLine != null) : "commandLine may not be null";
+		this.name = name;
+		this.status = status;
+		this.time = time;
+		this.labels = Collections.unmodifiableList(labels);
+		this.commandLine = commandLine;
+	}
+
+	@Override
+	public String toString()
+	{
+		return name + " (" + status + ", " + time + "s)";
+	}
+}
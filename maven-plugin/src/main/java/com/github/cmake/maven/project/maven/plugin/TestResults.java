@@ -0,0 +1,213 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The results of a ctest run, as recorded in {@code Testing/<TAG>/Test.xml}.
+ */
+public final class TestResults
+{
+	/**
+	 * The percentiles that are reported for the test durations.
+	 */
+	private static final double[] PERCENTILES = {50, 90, 95, 99, 100};
+	/**
+	 * The test results, in the order that ctest reported them.
+	 */
+	public final List<TestResult> tests;
+
+	/**
+	 * Parses the results of a ctest run.
+	 *
+	 * @param testXml the {@code Test.xml} file generated by ctest
+	 * @return the test results
+	 * @throws IOException if an error occurs while reading the file
+	 */
+	public static TestResults parse(Path testXml) throws IOException
+	{
+		Document document;
+		try
+		{
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(false);
+			document = factory.newDocumentBuilder().parse(testXml.toFile());
+		}
+		catch (ParserConfigurationException | SAXException e)
+		{
+			throw new IOException("Could not parse " + testXml, e);
+		}
+		List<TestResult> tests = new ArrayList<>();
+		for (Element testing : getChildren(document.getDocumentElement(), "Testing"))
+		{
+			for (Element test : getChildren(testing, "Test"))
+			{
+				// Testing/TestList also contains <Test> elements, but those have no "Status" attribute
+				String status = test.getAttribute("Status");
+				if (status.isEmpty())
+					continue;
+				String name = getChildText(test, "Name");
+				String commandLine = getChildText(test, "FullCommandLine");
+				double time = 0;
+				for (Element results : getChildren(test, "Results"))
+				{
+					for (Element measurement : getChildren(results, "NamedMeasurement"))
+					{
+						if (measurement.getAttribute("name").equals("Execution Time"))
+						{
+							try
+							{
+								time = Double.parseDouble(getChildText(measurement, "Value").trim());
+							}
+							catch (NumberFormatException e)
+							{
+								throw new IOException("Invalid execution time for test " + name + " in " + testXml, e);
+							}
+						}
+					}
+				}
+				List<String> labels = new ArrayList<>();
+				for (Element labelsElement : getChildren(test, "Labels"))
+					for (Element label : getChildren(labelsElement, "Label"))
+						labels.add(label.getTextContent().trim());
+				tests.add(new TestResult(name, status, time, labels, commandLine));
+			}
+		}
+		return new TestResults(tests);
+	}
+
+	/**
+	 * @param parent an element
+	 * @param name   the name of the child elements
+	 * @return the child elements with the specified name
+	 */
+	private static List<Element> getChildren(Element parent, String name)
+	{
+		List<Element> result = new ArrayList<>();
+		NodeList children = parent.getChildNodes();
+		for (int i = 0; i < children.getLength(); ++i)
+		{
+			Node child = children.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(name))
+				result.add((Element) child);
+		}
+		return result;
+	}
+
+	/**
+	 * @param parent an element
+	 * @param name   the name of the child element
+	 * @return the text of the first child element with the specified name, or an empty string if there is
+	 * no such element
+	 */
+	private static String getChildText(Element parent, String name)
+	{
+		List<Element> children = getChildren(parent, name);
+		if (children.isEmpty())
+			return "";
+		return children.get(0).getTextContent();
+	}
+
+	/**
+	 * @param tests the test results
+	 * @throws AssertionError if {@code tests} is null
+	 */
+	TestResults(List<TestResult> tests)
+	{
+		assert (tests != null) : "tests may not be null";
+		this.tests = Collections.unmodifiableList(tests);
+	}
+
+	/**
+	 * Returns the slowest tests.
+	 *
+	 * @param count the maximum number of tests to return
+	 * @return the slowest tests, slowest first
+	 */
+	public List<TestResult> getSlowest(int count)
+	{
+		List<TestResult> sorted = new ArrayList<>(tests);
+		sorted.sort(Comparator.comparingDouble((TestResult test) -> test.time).reversed());
+		return sorted.subList(0, Math.min(count, sorted.size()));
+	}
+
+	/**
+	 * Returns the distribution of the test durations.
+	 *
+	 * @return a map from each percentile name (e.g. {@code p50}) to the test duration at that percentile, in
+	 * seconds
+	 */
+	public Map<String, Double> getPercentiles()
+	{
+		List<Double> durations = new ArrayList<>(tests.size());
+		for (TestResult test : tests)
+			durations.add(test.time);
+		Collections.sort(durations);
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (double percentile : PERCENTILES)
+		{
+			String name;
+			if (percentile == 100)
+				name = "max";
+			else
+				name = "p" + (int) percentile;
+			result.put(name, Metrics.percentile(durations, percentile));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the tests that exceeded their time budget.
+	 *
+	 * @param budgets a map from each label to the maximum number of seconds that tests with that label may
+	 *                take
+	 * @return a map from each test that exceeded its budget to the budget, in seconds
+	 */
+	public Map<TestResult, Double> getOverBudget(Map<String, Double> budgets)
+	{
+		Map<TestResult, Double> result = new LinkedHashMap<>();
+		for (TestResult test : tests)
+		{
+			for (Entry<String, Double> entry : budgets.entrySet())
+			{
+				if (!test.labels.contains(entry.getKey()))
+					continue;
+				double budget = entry.getValue();
+				if (test.time <= budget)
+					continue;
+				// Report the tightest budget that was exceeded
+				Double existing = result.get(test);
+				if (existing == null || budget < existing)
+					result.put(test, budget);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the total wall-clock time of all tests, in seconds
+	 */
+	public double getTotalTime()
+	{
+		double result = 0;
+		for (TestResult test : tests)
+			result += test.time;
+		return result;
+	}
+}
@@ -0,0 +1,190 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.common.Platform;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.SessionData;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The locations of the cmake executables and the capabilities of cmake.
+ * <p>
+ * Registries are shared by all goals and modules of a Maven session, so that each executable is looked up
+ * once, instead of scanning the {@code PATH} on every goal, and cmake is probed at most once per location.
+ */
+public final class ToolRegistry
+{
+	/**
+	 * The session data key of the map from each location to its registry.
+	 */
+	private static final String REGISTRIES_KEY = ToolRegistry.class.getName() + ".registries";
+	/**
+	 * The executables that are part of the cmake distribution.
+	 */
+	private static final List<String> CMAKE_TOOLS = Arrays.asList("cmake", "ctest", "cpack");
+	/**
+	 * The directory containing the cmake executables ({@code null} if they are on the {@code PATH}).
+	 */
+	private final Path cmakeDirectory;
+	/**
+	 * The {@code PATH} environment variable ({@code null} if it is not set).
+	 */
+	private final String path;
+	/**
+	 * A map from the name of each executable that was looked up to its path.
+	 */
+	private final Map<String, Path> nameToPath = new ConcurrentHashMap<>();
+	/**
+	 * {@code true} if {@link #capabilities} was probed.
+	 */
+	private boolean capabilitiesProbed;
+	/**
+	 * The capabilities of cmake ({@code null} if unknown).
+	 */
+	private CMakeCapabilities capabilities;
+
+	/**
+	 * Returns the registry of a location.
+	 *
+	 * @param session        the Maven session
+	 * @param cmakeDirectory the directory containing the cmake executables ({@code null} if they are on the
+	 *                       {@code PATH})
+	 * @param path           the {@code PATH} environment variable ({@code null} if it is not set)
+	 * @return the registry
+	 * @throws NullPointerException if {@code session} is null
+	 */
+	@SuppressWarnings("unchecked")
+	public static ToolRegistry get(MavenSession session, Path cmakeDirectory, String path)
+	{
+		if (session == null)
+			throw new NullPointerException("session may not be null");
+		SessionData data = session.getRepositorySession().getData();
+		data.set(REGISTRIES_KEY, null, new ConcurrentHashMap<>());
+		Map<String, Object> keyToRegistry = (Map<String, Object>) data.get(REGISTRIES_KEY);
+		Path directory;
+		if (cmakeDirectory == null)
+			directory = null;
+		else
+			directory = cmakeDirectory.toAbsolutePath().normalize();
+		String key = directory + "\n" + path;
+		// A different version of the plugin may have stored a registry that this class loader cannot use
+		Object cached = keyToRegistry.get(key);
+		if (cached instanceof ToolRegistry)
+			return (ToolRegistry) cached;
+		ToolRegistry registry = new ToolRegistry(directory, path);
+		keyToRegistry.put(key, registry);
+		return registry;
+	}
+
+	/**
+	 * @param cmakeDirectory the directory containing the cmake executables ({@code null} if they are on the
+	 *                       {@code PATH})
+	 * @param path           the {@code PATH} environment variable ({@code null} if it is not set)
+	 */
+	private ToolRegistry(Path cmakeDirectory, String path)
+	{
+		this.cmakeDirectory = cmakeDirectory;
+		this.path = path;
+	}
+
+	/**
+	 * Returns the path of an executable. Executables that are not part of the cmake distribution (e.g.
+	 * {@code ninja}) are looked up on the {@code PATH} if the cmake directory does not contain them.
+	 *
+	 * @param name the name of the executable, without a suffix (e.g. {@code ctest})
+	 * @return the path of the executable
+	 * @throws NullPointerException  if {@code name} is null
+	 * @throws FileNotFoundException if the executable could not be found
+	 */
+	public Path getPath(String name) throws FileNotFoundException
+	{
+		if (name == null)
+			throw new NullPointerException("name may not be null");
+		Path result = nameToPath.get(name);
+		if (result != null)
+			return result;
+		Platform platform = Platform.detected();
+		if (cmakeDirectory != null)
+		{
+			Path candidate = cmakeDirectory.resolve(name + platform.getExecutableSuffix());
+			if (CMAKE_TOOLS.contains(name) || Files.isExecutable(candidate))
+				result = candidate;
+		}
+		if (result == null)
+		{
+			if (path == null)
+				throw new FileNotFoundException(name + " not found. PATH is not set.");
+			result = platform.getExecutableOnPath(name, path);
+		}
+		nameToPath.put(name, result);
+		return result;
+	}
+
+	/**
+	 * Returns the output of {@code cmake -E capabilities}. cmake only runs the first time this method is
+	 * invoked.
+	 *
+	 * @param environment the environment to run cmake with
+	 * @param log         the log to write warnings to
+	 * @return {@code null} if cmake does not support the command (CMake 3.6 and older) or failed
+	 * @throws NullPointerException  if any of the arguments are null
+	 * @throws FileNotFoundException if cmake could not be found
+	 * @throws IOException           if an error occurs while running cmake
+	 * @throws InterruptedException  if the thread was interrupted
+	 */
+	public synchronized CMakeCapabilities getCapabilities(Map<String, String> environment, Log log)
+		throws IOException, InterruptedException
+	{
+		if (environment == null)
+			throw new NullPointerException("environment may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		if (capabilitiesProbed)
+			return capabilities;
+		ProcessBuilder processBuilder = new ProcessBuilder(getPath("cmake").toString(), "-E", "capabilities");
+		processBuilder.environment().clear();
+		processBuilder.environment().putAll(environment);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		Process process = processBuilder.start();
+		process.getOutputStream().close();
+		JsonNode json;
+		try (InputStream in = process.getInputStream())
+		{
+			json = Metrics.getMapper().readTree(in);
+		}
+		catch (JsonProcessingException e)
+		{
+			json = null;
+		}
+		int exitCode = process.waitFor();
+		capabilitiesProbed = true;
+		try
+		{
+			if (exitCode == 0 && json != null)
+				capabilities = CMakeCapabilities.parse(json);
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Leave the capabilities unknown
+		}
+		if (capabilities == null)
+			log.warn("\"cmake -E capabilities\" returned " + exitCode + ". The version of cmake is unknown.");
+		else if (log.isInfoEnabled())
+			log.info("Found CMake " + capabilities);
+		return capabilities;
+	}
+}
@@ -0,0 +1,686 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.github.cmake.maven.project.common.Metrics;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A machine-level cache of the results of CMake's compiler detection and {@code CheckXXX} probes.
+ * <p>
+ * When CMake configures a build directory, it identifies each compiler and records the results in
+ * {@code CMakeFiles/<cmake version>/CMake<LANG>Compiler.cmake}. Build directories that already contain
+ * these files skip compiler identification, ABI detection and the compiler sanity check. The results of
+ * {@code check_include_file()}, {@code check_symbol_exists()} and similar modules are stored as
+ * {@code INTERNAL} cache variables and are skipped if the variable is already set.
+ * <p>
+ * After a successful configure, these files and variables are captured under a key derived from the
+ * toolchain inputs (the cmake version, the generator, the {@code CMAKE_*} options, the contents of the
+ * toolchain file and the compiler environment variables). Fresh build directories with the same key are
+ * seeded with the captured files, and the captured variables are passed to cmake as an initial cache
+ * ({@code -C}). Entries are discarded if any of the captured tools (compilers, archivers, linkers) was
+ * modified since it was captured, which covers compiler upgrades.
+ * <p>
+ * Compiler detection results are shared by all projects that use the toolchain. {@code CheckXXX} results
+ * are only shared between builds of the same source directory with the same definitions, because unrelated
+ * projects may use the same result variable for different probes. Only successful probes are cached, so a
+ * probe that failed runs again in the next fresh build directory. Entries are read and updated while
+ * holding the file lock {@code <key>.lock}.
+ */
+public final class ToolchainCache
+{
+	/**
+	 * The name of the file that describes an entry.
+	 */
+	private static final String METADATA = "toolchain.json";
+	/**
+	 * The name of the initial cache that is generated in the build directory.
+	 */
+	private static final String INITIAL_CACHE = "toolchain-cache.cmake";
+	/**
+	 * The environment variables that affect the choice of compiler or its flags.
+	 */
+	private static final List<String> ENVIRONMENT = Arrays.asList("ASM", "ASMFLAGS", "CC", "CFLAGS",
+		"CUDACXX", "CUDAFLAGS", "CUDAHOSTCXX", "CXX", "CXXFLAGS", "FC", "FFLAGS", "HIPCXX", "HIPFLAGS",
+		"LDFLAGS", "MACOSX_DEPLOYMENT_TARGET", "OBJC", "OBJCFLAGS", "OBJCXX", "OBJCXXFLAGS", "PATH", "RC",
+		"RCFLAGS", "SDKROOT");
+	/**
+	 * The cache variables that CMake sets to the path of a tool while detecting compilers.
+	 */
+	private static final Pattern TOOL = Pattern.compile("CMAKE_(\\w+_COMPILER(_AR|_RANLIB)?|AR|RANLIB|" +
+		"LINKER|NM|OBJCOPY|OBJDUMP|STRIP|READELF|ADDR2LINE|DLLTOOL|MT)");
+	/**
+	 * The files that CMake writes after detecting the target system and compilers.
+	 */
+	private static final Pattern DETECTION_FILE = Pattern.compile("CMakeSystem\\.cmake|" +
+		"CMake\\w+Compiler\\.cmake");
+	/**
+	 * The definitions that the plugin adds to the command-line. Their values are paths that differ between
+	 * modules and plugin versions, but do not affect the toolchain.
+	 */
+	private static final Pattern PLUGIN_DEFINITION = Pattern.compile("-D(CMAKE_MAKE_PROGRAM|" +
+		"CMAKE_PROJECT_TOP_LEVEL_INCLUDES|CMAKE_MAVEN_\\w+)[:=].*");
+	/**
+	 * The definition of the toolchain file.
+	 */
+	private static final Pattern TOOLCHAIN_FILE = Pattern.compile("-DCMAKE_TOOLCHAIN_FILE(:\\w+)?=(.*)");
+	/**
+	 * The values that CMake treats as false, in addition to the empty string and values ending in
+	 * {@code -NOTFOUND}.
+	 */
+	private static final List<String> FALSE_CONSTANTS = Arrays.asList("0", "OFF", "NO", "FALSE", "N", "IGNORE",
+		"NOTFOUND");
+	/**
+	 * The suffix of the lock that guards each entry.
+	 */
+	private static final String LOCK_SUFFIX = ".lock";
+	/**
+	 * A map from the lock file of each entry to the monitor that serializes access to it within this JVM.
+	 * {@link FileChannel#lock()} throws {@code OverlappingFileLockException} if another thread of the same JVM
+	 * holds the lock.
+	 */
+	private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+	private final Path directory;
+	private final Log log;
+
+	/**
+	 * Returns the key of a toolchain. The key depends on the contents of the toolchain file, but not on the
+	 * files that the toolchain file includes.
+	 *
+	 * @param command          the cmake command-line, excluding the source directory
+	 * @param environment      the environment of the cmake process
+	 * @param workingDirectory the directory that cmake runs in, which relative toolchain files are resolved
+	 *                         against
+	 * @param platform         the classifier of the current platform
+	 * @param cmakeVersion     the version of cmake ({@code null} if unknown, in which case the key depends on
+	 *                         the path and modification time of the cmake executable)
+	 * @return the key of the toolchain
+	 * @throws IOException if the cmake executable or the toolchain file cannot be read
+	 */
+	public static String getKey(List<String> command, Map<String, String> environment, Path workingDirectory,
+		String platform, String cmakeVersion) throws IOException
+	{
+		StringBuilder inputs = new StringBuilder();
+		inputs.append("platform=").append(platform).append('\n');
+		if (cmakeVersion != null)
+			inputs.append("cmake=").append(cmakeVersion).append('\n');
+		else
+		{
+			Path cmake = Paths.get(command.get(0));
+			inputs.append("cmake=").append(cmake).append(' ').append(getFingerprint(cmake)).append('\n');
+		}
+		String toolchainFile = environment.get("CMAKE_TOOLCHAIN_FILE");
+		List<String> arguments = command.subList(1, command.size());
+		for (int i = 0; i < arguments.size(); ++i)
+		{
+			String argument = arguments.get(i);
+			// Project-specific definitions do not affect the toolchain
+			if (argument.startsWith("-D") && !argument.startsWith("-DCMAKE_"))
+				continue;
+			if (PLUGIN_DEFINITION.matcher(argument).matches() || argument.startsWith("--profiling-"))
+				continue;
+			inputs.append("argument=").append(argument).append('\n');
+			Matcher matcher = TOOLCHAIN_FILE.matcher(argument);
+			if (matcher.matches())
+				toolchainFile = matcher.group(2);
+			else if (argument.startsWith("--toolchain="))
+				toolchainFile = argument.substring("--toolchain=".length());
+			else if (argument.equals("--toolchain") && i + 1 < arguments.size())
+				toolchainFile = arguments.get(i + 1);
+		}
+		for (Map.Entry<String, String> entry : new TreeMap<>(environment).entrySet())
+		{
+			String name = entry.getKey();
+			if (ENVIRONMENT.contains(name) || name.startsWith("CMAKE_"))
+				inputs.append("env:").append(name).append('=').append(entry.getValue()).append('\n');
+		}
+		if (toolchainFile != null && !toolchainFile.isEmpty())
+		{
+			// Editing the toolchain file may change the compilers or their flags
+			Path path = workingDirectory.resolve(toolchainFile);
+			if (Files.exists(path))
+				inputs.append("toolchainFile=").append(hash(Files.readAllBytes(path))).append('\n');
+		}
+		return hash(inputs.toString());
+	}
+
+	/**
+	 * Returns the key of the {@code CheckXXX} results of a project. The results are only shared between
+	 * builds of the same source directory with the same project-specific definitions, because the
+	 * definitions may change the flags or dependencies that the probes use.
+	 *
+	 * @param project the source directory of the project
+	 * @param command the cmake command-line, excluding the source directory
+	 * @return the key of the probe results
+	 */
+	public static String getProbesKey(Path project, List<String> command)
+	{
+		StringBuilder inputs = new StringBuilder();
+		inputs.append("project=").append(project.toAbsolutePath().normalize()).append('\n');
+		for (String argument : command.subList(1, command.size()))
+		{
+			if ((argument.startsWith("-D") || argument.startsWith("-U")) &&
+				!PLUGIN_DEFINITION.matcher(argument).matches())
+			{
+				inputs.append("definition=").append(argument).append('\n');
+			}
+		}
+		return hash(inputs.toString());
+	}
+
+	/**
+	 * @param value a string
+	 * @return the first 16 bytes of the SHA-256 hash of the string, in hexadecimal
+	 */
+	private static String hash(String value)
+	{
+		return hash(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param value a sequence of bytes
+	 * @return the first 16 bytes of the SHA-256 hash of the bytes, in hexadecimal
+	 */
+	private static String hash(byte[] value)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(value);
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < 16; ++i)
+				result.append(String.format("%02x", hash[i]));
+			return result.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * @param file a file
+	 * @return a string that changes if the file is replaced or modified
+	 * @throws IOException if the file cannot be read
+	 */
+	private static String getFingerprint(Path file) throws IOException
+	{
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		return attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param directory the directory that contains the cache entries
+	 * @param log       the logger
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	public ToolchainCache(Path directory, Log log)
+	{
+		assert (directory != null) : "directory may not be null";
+		assert (log != null) : "log may not be null";
+		this.directory = directory;
+		this.log = log;
+	}
+
+	/**
+	 * Seeds a fresh build directory with the results of an earlier configure.
+	 *
+	 * @param key            the key of the toolchain
+	 * @param probesKey      the {@link #getProbesKey(Path, List) key} of the probe results of the project
+	 * @param buildDirectory the build directory
+	 * @return the initial cache to pass to cmake using {@code -C}, or {@code null} if the cache does not
+	 * contain the toolchain
+	 * @throws IOException if an error occurs while reading the cache or writing to the build directory
+	 */
+	public Path seed(String key, String probesKey, Path buildDirectory) throws IOException
+	{
+		return withLock(key, () -> seedLocked(key, probesKey, buildDirectory));
+	}
+
+	/**
+	 * Seeds a fresh build directory while holding the lock of the entry.
+	 *
+	 * @param key            the key of the toolchain
+	 * @param probesKey      the key of the probe results of the project
+	 * @param buildDirectory the build directory
+	 * @return the initial cache to pass to cmake using {@code -C}, or {@code null} if the cache does not
+	 * contain the toolchain
+	 * @throws IOException if an error occurs while reading the cache or writing to the build directory
+	 */
+	private Path seedLocked(String key, String probesKey, Path buildDirectory) throws IOException
+	{
+		Path entry = directory.resolve(key);
+		Path metadataFile = entry.resolve(METADATA);
+		if (Files.notExists(metadataFile))
+		{
+			log.info("Toolchain cache miss: " + key);
+			return null;
+		}
+		Metadata metadata = Metrics.getMapper().readValue(metadataFile.toFile(), Metadata.class);
+		for (Map.Entry<String, String> tool : metadata.tools.entrySet())
+		{
+			Path path = Paths.get(tool.getKey());
+			if (Files.notExists(path) || !getFingerprint(path).equals(tool.getValue()))
+			{
+				log.info("Discarding toolchain cache " + key + " because " + path + " changed");
+				deleteRecursively(entry);
+				return null;
+			}
+		}
+
+		Path source = entry.resolve("CMakeFiles");
+		Path target = buildDirectory.resolve("CMakeFiles");
+		if (Files.exists(source))
+		{
+			Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+				{
+					Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+				{
+					Path targetFile = target.resolve(source.relativize(file).toString());
+					if (Files.notExists(targetFile))
+						Files.copy(file, targetFile);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+
+		List<CacheEntry> entries = new ArrayList<>(metadata.entries);
+		entries.addAll(readProbes(entry, probesKey).entries);
+		StringBuilder initialCache = new StringBuilder("# Generated by cmake-maven-plugin from toolchain " +
+			"cache " + key + "\n");
+		for (CacheEntry cacheEntry : entries)
+		{
+			initialCache.append("set(").append(cacheEntry.name).append(" \"").
+				append(escape(cacheEntry.value)).append("\" CACHE ").append(cacheEntry.type).append(" \"").
+				append(escape(cacheEntry.helpString)).append("\")\n");
+		}
+		Files.createDirectories(target);
+		Path result = target.resolve(INITIAL_CACHE).toAbsolutePath();
+		Files.write(result, initialCache.toString().getBytes(StandardCharsets.UTF_8));
+		if (log.isInfoEnabled())
+		{
+			log.info("Toolchain cache hit: " + key + " (" + entries.size() + " cache variables, " +
+				"languages: " + metadata.languages + ")");
+		}
+		return result;
+	}
+
+	/**
+	 * @param entry     the directory of an entry
+	 * @param probesKey the key of the probe results of a project
+	 * @return the file that contains the probe results of the project
+	 */
+	private static Path getProbesFile(Path entry, String probesKey)
+	{
+		return entry.resolve("probes").resolve(probesKey + ".json");
+	}
+
+	/**
+	 * @param entry     the directory of an entry
+	 * @param probesKey the key of the probe results of a project
+	 * @return the probe results of the project (empty if none were captured)
+	 * @throws IOException if an error occurs while reading the probe results
+	 */
+	private static Probes readProbes(Path entry, String probesKey) throws IOException
+	{
+		Path probesFile = getProbesFile(entry, probesKey);
+		if (Files.notExists(probesFile))
+			return new Probes();
+		return Metrics.getMapper().readValue(probesFile.toFile(), Probes.class);
+	}
+
+	/**
+	 * Runs an action while holding the lock of an entry.
+	 *
+	 * @param key    the key of the entry
+	 * @param action the action to run
+	 * @param <T>    the type of value returned by the action
+	 * @return the value returned by the action
+	 * @throws IOException if an error occurs while locking the entry or running the action
+	 */
+	private <T> T withLock(String key, LockedAction<T> action) throws IOException
+	{
+		Files.createDirectories(directory);
+		Path lockFile = directory.resolve(key + LOCK_SUFFIX).toAbsolutePath();
+		synchronized (MONITORS.computeIfAbsent(lockFile, path -> new Object()))
+		{
+			try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+			     FileLock ignored = channel.lock())
+			{
+				return action.run();
+			}
+		}
+	}
+
+	/**
+	 * @param value a string
+	 * @return the string escaped for use in a quoted CMake argument
+	 */
+	private static String escape(String value)
+	{
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("$", "\\$");
+	}
+
+	/**
+	 * Adds the results of a successful configure to the cache. Compiler detection results that are already
+	 * cached are kept. Probe results are replaced by the values of the build directory, and probes that
+	 * failed are not cached, so that they run again in fresh build directories.
+	 *
+	 * @param key            the key of the toolchain
+	 * @param probesKey      the {@link #getProbesKey(Path, List) key} of the probe results of the project
+	 * @param buildDirectory the build directory
+	 * @throws IOException if an error occurs while reading the build directory or writing the cache
+	 */
+	public void capture(String key, String probesKey, Path buildDirectory) throws IOException
+	{
+		CMakeCache cache = CMakeCache.read(buildDirectory);
+		Path versionDirectory = getVersionDirectory(buildDirectory.resolve("CMakeFiles"));
+		if (cache.isEmpty() || versionDirectory == null)
+			return;
+		withLock(key, () ->
+		{
+			captureLocked(key, probesKey, cache, versionDirectory);
+			return null;
+		});
+	}
+
+	/**
+	 * Adds the results of a successful configure to the cache while holding the lock of the entry.
+	 *
+	 * @param key              the key of the toolchain
+	 * @param probesKey        the key of the probe results of the project
+	 * @param cache            the cache of the build directory
+	 * @param versionDirectory the {@code CMakeFiles/<cmake version>} directory of the build directory
+	 * @throws IOException if an error occurs while reading the build directory or writing the cache
+	 */
+	private void captureLocked(String key, String probesKey, CMakeCache cache, Path versionDirectory)
+		throws IOException
+	{
+		Path entry = directory.resolve(key);
+		Path metadataFile = entry.resolve(METADATA);
+		Metadata metadata;
+		if (Files.exists(metadataFile))
+			metadata = Metrics.getMapper().readValue(metadataFile.toFile(), Metadata.class);
+		else
+			metadata = new Metadata();
+		Probes probes = readProbes(entry, probesKey);
+		int oldSize = metadata.entries.size() + metadata.languages.size();
+
+		// Copy the detection results
+		Path targetDirectory = entry.resolve("CMakeFiles").resolve(versionDirectory.getFileName().toString());
+		Files.createDirectories(targetDirectory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(versionDirectory))
+		{
+			for (Path file : files)
+			{
+				String name = file.getFileName().toString();
+				if (!DETECTION_FILE.matcher(name).matches())
+					continue;
+				Path target = targetDirectory.resolve(name);
+				if (Files.exists(target))
+					continue;
+				// Other builds may read the entry concurrently, so files are replaced atomically
+				Path temp = Files.createTempFile(targetDirectory, name, ".tmp");
+				try
+				{
+					Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				}
+				finally
+				{
+					Files.deleteIfExists(temp);
+				}
+				if (!name.equals("CMakeSystem.cmake"))
+				{
+					String language = name.substring("CMake".length(), name.length() - "Compiler.cmake".length());
+					metadata.languages.add(language);
+				}
+			}
+		}
+
+		// Capture tool paths and probe results
+		List<String> cachedNames = new ArrayList<>();
+		for (CacheEntry cacheEntry : metadata.entries)
+			cachedNames.add(cacheEntry.name);
+		Probes newProbes = new Probes();
+		for (Map.Entry<String, String> variable : cache.getEntries().entrySet())
+		{
+			String name = variable.getKey();
+			if (cachedNames.contains(name))
+				continue;
+			String type = cache.getType(name);
+			String helpString = cache.getHelpString(name);
+			String value = variable.getValue();
+			if (type.equals("FILEPATH") && TOOL.matcher(name).matches() && !value.isEmpty())
+			{
+				Path tool = Paths.get(value);
+				if (Files.notExists(tool))
+					continue;
+				metadata.tools.put(tool.toString(), getFingerprint(tool));
+				metadata.entries.add(new CacheEntry(name, type, value, helpString));
+			}
+			else if (type.equals("INTERNAL") && isProbeResult(helpString) && !isFalse(value))
+			{
+				// A failed probe may succeed after the user installs a dependency or changes the flags
+				newProbes.entries.add(new CacheEntry(name, type, value, helpString));
+			}
+		}
+		boolean metadataChanged = metadata.entries.size() + metadata.languages.size() != oldSize;
+		boolean probesChanged = !newProbes.getValues().equals(probes.getValues());
+		if (metadataChanged)
+			Metrics.write(metadataFile, metadata);
+		if (probesChanged)
+			Metrics.write(getProbesFile(entry, probesKey), newProbes);
+		if ((metadataChanged || probesChanged) && log.isInfoEnabled())
+		{
+			log.info("Updated toolchain cache " + key + " (" + metadata.entries.size() + " toolchain " +
+				"variables, " + newProbes.entries.size() + " probe results, languages: " + metadata.languages +
+				")");
+		}
+	}
+
+	/**
+	 * @param helpString the help string of an {@code INTERNAL} cache variable
+	 * @return {@code true} if the variable holds the result of a {@code CheckXXX} module
+	 */
+	private static boolean isProbeResult(String helpString)
+	{
+		// The help strings that the CheckXXX modules and try_compile()/try_run() use
+		return helpString.startsWith("Have ") || helpString.startsWith("Test ") ||
+			helpString.startsWith("Result of TRY_") || helpString.startsWith("Result of try_") ||
+			helpString.startsWith("CHECK_TYPE_SIZE");
+	}
+
+	/**
+	 * @param value the value of a cache variable
+	 * @return {@code true} if CMake treats the value as false
+	 */
+	private static boolean isFalse(String value)
+	{
+		String upperCase = value.toUpperCase(Locale.ROOT);
+		return value.isEmpty() || FALSE_CONSTANTS.contains(upperCase) || upperCase.endsWith("-NOTFOUND");
+	}
+
+	/**
+	 * @param cmakeFiles the {@code CMakeFiles} directory of a build directory
+	 * @return the {@code CMakeFiles/<cmake version>} directory, or {@code null} if it does not exist
+	 * @throws IOException if an error occurs while reading the directory
+	 */
+	private static Path getVersionDirectory(Path cmakeFiles) throws IOException
+	{
+		if (Files.notExists(cmakeFiles))
+			return null;
+		try (DirectoryStream<Path> directories = Files.newDirectoryStream(cmakeFiles))
+		{
+			for (Path candidate : directories)
+				if (Files.exists(candidate.resolve("CMakeSystem.cmake")))
+					return candidate;
+		}
+		return null;
+	}
+
+	/**
+	 * Deletes a path recursively.
+	 *
+	 * @param path the path to delete
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void deleteRecursively(Path path) throws IOException
+	{
+		if (Files.notExists(path))
+			return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				Files.deleteIfExists(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+			{
+				if (e != null)
+					throw e;
+				Files.deleteIfExists(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * The description of a cache entry.
+	 */
+	public static final class Metadata
+	{
+		/**
+		 * The languages whose compilers were detected.
+		 */
+		public List<String> languages = new ArrayList<>();
+		/**
+		 * A map from the path of each tool to its fingerprint.
+		 */
+		public Map<String, String> tools = new TreeMap<>();
+		/**
+		 * The tool variables to seed.
+		 */
+		public List<CacheEntry> entries = new ArrayList<>();
+	}
+
+	/**
+	 * The {@code CheckXXX} results of a single project.
+	 */
+	public static final class Probes
+	{
+		/**
+		 * The cache variables to seed.
+		 */
+		public List<CacheEntry> entries = new ArrayList<>();
+
+		/**
+		 * @return a map from the name of each variable to its value
+		 */
+		private Map<String, String> getValues()
+		{
+			Map<String, String> result = new TreeMap<>();
+			for (CacheEntry entry : entries)
+				result.put(entry.name, entry.value);
+			return result;
+		}
+	}
+
+	/**
+	 * An action that runs while holding the lock of an entry.
+	 *
+	 * @param <T> the type of value returned by the action
+	 */
+	@FunctionalInterface
+	private interface LockedAction<T>
+	{
+		/**
+		 * @return the value returned by the action
+		 * @throws IOException if an I/O error occurs
+		 */
+		T run() throws IOException;
+	}
+
+	/**
+	 * A cache variable.
+	 */
+	public static final class CacheEntry
+	{
+		/**
+		 * The name of the variable.
+		 */
+		public String name;
+		/**
+		 * The type of the variable.
+		 */
+		public String type;
+		/**
+		 * The value of the variable.
+		 */
+		public String value;
+		/**
+		 * The help string of the variable.
+		 */
+		public String helpString;
+
+		/**
+		 * Used by Jackson.
+		 */
+		public CacheEntry()
+		{
+		}
+
+		/**
+		 * @param name       the name of the variable
+		 * @param type       the type of the variable
+		 * @param value      the value of the variable
+		 * @param helpString the help string of the variable
+		 */
+		CacheEntry(String name, String type, String value, String helpString)
+		{
+			this.name = name;
+			this.type = type;
+			this.value = value;
+			this.helpString = helpString;
+		}
+	}
+}
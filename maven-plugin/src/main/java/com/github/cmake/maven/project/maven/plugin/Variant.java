@@ -0,0 +1,137 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A build variant, such as a Debug, Release or AddressSanitizer build of the same sources.
+ * <p>
+ * Instances are populated by Maven from the {@code <variants>} configuration of the
+ * {@code build-variants} goal.
+ */
+public final class Variant
+{
+	/**
+	 * The name of the variant.
+	 */
+	private String name;
+	/**
+	 * The build configuration (e.g. {@code Debug}, {@code Release}).
+	 */
+	private String config;
+	/**
+	 * The makefile generator to use ({@code null} to let the plugin choose).
+	 */
+	private String generator;
+	/**
+	 * The build directory, relative to {@code targetPath} ({@code null} to use the name of the variant).
+	 */
+	private String subdirectory;
+	/**
+	 * The target to build ({@code null} to build the default target).
+	 */
+	private String target;
+	/**
+	 * Additional options that are passed to cmake when configuring the variant.
+	 */
+	private List<String> options = new ArrayList<>();
+
+	/**
+	 * Creates a variant that is populated by Maven.
+	 */
+	public Variant()
+	{
+	}
+
+	/**
+	 * Creates a new variant.
+	 *
+	 * @param name         the name of the variant
+	 * @param config       the build configuration ({@code null} if unspecified)
+	 * @param generator    the makefile generator ({@code null} to let the plugin choose)
+	 * @param subdirectory the build directory, relative to {@code targetPath} ({@code null} to use
+	 *                     {@code name})
+	 * @param target       the target to build ({@code null} to build the default target)
+	 * @param options      additional options that are passed to cmake when configuring the variant
+	 * @throws NullPointerException if {@code name} or {@code options} are null
+	 */
+	public Variant(String name, String config, String generator, String subdirectory, String target,
+		List<String> options)
+	{
+		if (name == null)
+			throw new NullPointerException("name may not be null");
+		if (options == null)
+			throw new NullPointerException("options may not be null");
+		this.name = name;
+		this.config = config;
+		this.generator = generator;
+		this.subdirectory = subdirectory;
+		this.target = target;
+		this.options = new ArrayList<>(options);
+	}
+
+	/**
+	 * @return the name of the variant ({@code null} if Maven did not set it)
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return the build configuration ({@code null} if unspecified)
+	 */
+	public String getConfig()
+	{
+		return config;
+	}
+
+	/**
+	 * @return the makefile generator ({@code null} to let the plugin choose)
+	 */
+	public String getGenerator()
+	{
+		if (generator == null || generator.trim().isEmpty())
+			return null;
+		return generator;
+	}
+
+	/**
+	 * @return the build directory, relative to {@code targetPath}
+	 */
+	public String getSubdirectory()
+	{
+		if (subdirectory == null || subdirectory.trim().isEmpty())
+			return name;
+		return subdirectory;
+	}
+
+	/**
+	 * @return the target to build ({@code null} to build the default target)
+	 */
+	public String getTarget()
+	{
+		return target;
+	}
+
+	/**
+	 * @return the options that are passed to cmake when configuring the variant, excluding undefined Maven
+	 * properties
+	 */
+	public List<String> getOptions()
+	{
+		List<String> result = new ArrayList<>();
+		if (options == null)
+			return result;
+		for (String option : options)
+			if (option != null && !option.isEmpty())
+				result.add(option);
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
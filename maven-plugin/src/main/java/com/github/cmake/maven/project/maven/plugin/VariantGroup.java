@@ -0,0 +1,162 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Variants that share a build directory, and therefore a single configure step and a single build.
+ * <p>
+ * Variants that only differ in their build configuration are grouped together if a multi-config generator
+ * is available. The group is configured once with {@code CMAKE_CONFIGURATION_TYPES} listing every
+ * configuration, and {@code CMAKE_CROSS_CONFIGS} and {@code CMAKE_DEFAULT_CONFIGS} set to {@code all} so
+ * that a single invocation of Ninja Multi-Config builds every configuration under one job scheduler.
+ * Variants that configure their own subdirectory are built in that directory and are never grouped, because
+ * no two variants may share a subdirectory.
+ */
+public final class VariantGroup
+{
+	/**
+	 * The variants in the group.
+	 */
+	public final List<Variant> variants;
+	/**
+	 * The generator of the build directory ({@code null} for cmake's default generator).
+	 */
+	public final String generator;
+	/**
+	 * {@code true} if the group uses a multi-config generator.
+	 */
+	public final boolean multiConfig;
+
+	/**
+	 * Groups variants by build directory.
+	 *
+	 * @param variants             the variants
+	 * @param multiConfigGenerator the multi-config generator to group variants under ({@code null} if
+	 *                             variants should not be grouped)
+	 * @return the groups, in the order of their first variant
+	 * @throws NullPointerException if {@code variants} is null
+	 */
+	public static List<VariantGroup> group(List<Variant> variants, String multiConfigGenerator)
+	{
+		if (variants == null)
+			throw new NullPointerException("variants may not be null");
+		// Variants that select their own generator, build type or subdirectory cannot share a build directory
+		Map<List<Object>, List<Variant>> keyToVariants = new LinkedHashMap<>();
+		for (Variant variant : variants)
+		{
+			List<Object> key;
+			if (multiConfigGenerator == null || variant.getGenerator() != null || variant.getConfig() == null ||
+				!variant.getSubdirectory().equals(variant.getName()))
+			{
+				key = Collections.singletonList(variant);
+			}
+			else
+			{
+				key = Arrays.asList(variant.getOptions(), variant.getTarget());
+				List<Variant> group = keyToVariants.get(key);
+				// A configuration can only be listed once per build directory
+				if (group != null && group.stream().anyMatch(v -> v.getConfig().equals(variant.getConfig())))
+					key = Collections.singletonList(variant);
+			}
+			keyToVariants.computeIfAbsent(key, k -> new ArrayList<>()).add(variant);
+		}
+		List<VariantGroup> result = new ArrayList<>();
+		for (List<Variant> group : keyToVariants.values())
+		{
+			if (group.size() == 1)
+				result.add(new VariantGroup(group, group.get(0).getGenerator(), false));
+			else
+				result.add(new VariantGroup(group, multiConfigGenerator, true));
+		}
+		return result;
+	}
+
+	/**
+	 * @param variants    the variants in the group
+	 * @param generator   the generator of the build directory ({@code null} for cmake's default generator)
+	 * @param multiConfig {@code true} if the group uses a multi-config generator
+	 * @throws AssertionError if {@code variants} is null or empty
+	 */
+	private VariantGroup(List<Variant> variants, String generator, boolean multiConfig)
+	{
+		assert (variants != null && !variants.isEmpty()) : "variants may not be null or empty";
+		this.variants = Collections.unmodifiableList(variants);
+		this.generator = generator;
+		this.multiConfig = multiConfig;
+	}
+
+	/**
+	 * @return the name of the group
+	 */
+	public String getName()
+	{
+		StringJoiner result = new StringJoiner("+");
+		for (Variant variant : variants)
+			result.add(variant.getName());
+		return result.toString();
+	}
+
+	/**
+	 * @return the build directory, relative to {@code targetPath}. Multi-config groups only contain variants
+	 * that use their name as their subdirectory, and are built in a directory named after the group.
+	 */
+	public String getSubdirectory()
+	{
+		if (multiConfig)
+			return getName();
+		return variants.get(0).getSubdirectory();
+	}
+
+	/**
+	 * @return the arguments that are passed to cmake when configuring the group, excluding the source
+	 * directory
+	 */
+	public List<String> getConfigureArguments()
+	{
+		List<String> result = new ArrayList<>();
+		if (generator != null)
+			Collections.addAll(result, "-G", generator);
+		Variant first = variants.get(0);
+		if (multiConfig)
+		{
+			StringJoiner configs = new StringJoiner(";");
+			for (Variant variant : variants)
+				configs.add(variant.getConfig());
+			Collections.addAll(result, "-DCMAKE_CONFIGURATION_TYPES=" + configs,
+				"-DCMAKE_DEFAULT_BUILD_TYPE=" + first.getConfig(),
+				"-DCMAKE_CROSS_CONFIGS=all",
+				"-DCMAKE_DEFAULT_CONFIGS=all");
+		}
+		else if (first.getConfig() != null)
+			result.add("-DCMAKE_BUILD_TYPE=" + first.getConfig());
+		result.addAll(first.getOptions());
+		return result;
+	}
+
+	/**
+	 * @return the arguments that are passed to {@code cmake --build}, excluding the build directory
+	 */
+	public List<String> getBuildArguments()
+	{
+		List<String> result = new ArrayList<>();
+		Variant first = variants.get(0);
+		if (first.getTarget() != null)
+			Collections.addAll(result, "--target", first.getTarget());
+		// The default configurations of a multi-config group include every variant
+		if (!multiConfig && first.getConfig() != null)
+			Collections.addAll(result, "--config", first.getConfig());
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getName();
+	}
+}
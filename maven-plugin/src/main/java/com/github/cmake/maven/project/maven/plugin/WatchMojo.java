@@ -0,0 +1,351 @@
+package com.github.cmake.maven.project.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Mojos;
+import com.github.cmake.maven.project.common.Tracer.Span;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Goal which rebuilds the project whenever its sources change, until Maven is stopped.
+ * <p>
+ * The cmake executables, environment variables and options are resolved once, so each rebuild only pays
+ * for {@code cmake --build}. Bursts of file events are coalesced, the project is only reconfigured when a
+ * CMake input changes, and the tests that are affected by the changes can optionally run after each build.
+ * Run it from the command-line using {@code mvn cmake:watch}.
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends CmakeMojo
+{
+	/**
+	 * The directory containing CMakeLists.txt.
+	 */
+	@Parameter(required = true)
+	private File sourcePath;
+	/**
+	 * The output directory.
+	 */
+	@Parameter(required = true)
+	private File targetPath;
+	/**
+	 * The makefile generator to use.
+	 */
+	@Parameter
+	private String generator;
+	/**
+	 * The build configuration (e.g. {@code Debug}, {@code Release}).
+	 */
+	@Parameter
+	private String config;
+	/**
+	 * The maximum number of concurrent build jobs ({@code 0} for the number of processors).
+	 */
+	@Parameter(property = "cmake.parallelism", defaultValue = "0")
+	private int parallelism;
+	/**
+	 * The number of milliseconds that the sources must be quiet before a rebuild starts.
+	 */
+	@Parameter(property = "cmake.watch.debounce", defaultValue = "300")
+	private long debounce;
+	/**
+	 * {@code true} if the tests that are affected by the changes should run after each successful build.
+	 */
+	@Parameter(property = "cmake.watch.tests", defaultValue = "false")
+	private boolean runTests;
+
+	/**
+	 * The environment of the processes that the goal runs.
+	 */
+	private final Map<String, String> environment = new HashMap<>();
+	private Path buildDirectory;
+	private String cmakePath;
+	private String ctestPath;
+	private int budget;
+	/**
+	 * {@code true} if the project must be configured before the next build.
+	 */
+	private boolean configureNeeded;
+	/**
+	 * The files that changed since the tests last passed ({@code null} if unknown, in which case all tests
+	 * must run).
+	 */
+	private Set<Path> untestedChanges;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param session       an instance of {@code MavenSession}
+	 * @param pluginManager an instance of {@code PluginManager}
+	 */
+	@Inject
+	public WatchMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	{
+		super(project, session, pluginManager);
+	}
+
+	@Override
+	public void execute()
+		throws MojoExecutionException
+	{
+		if (!sourcePath.exists())
+			throw new MojoExecutionException("sourcePath does not exist: " + sourcePath.getAbsolutePath());
+		if (!targetPath.exists() && !targetPath.mkdirs())
+			throw new MojoExecutionException("Cannot create " + targetPath.getAbsolutePath());
+		Log log = getLog();
+		try
+		{
+			// Only the setup is traced, because the goal runs until Maven is stopped
+			try (Span goalSpan = startTracing("watch"))
+			{
+				downloadBinariesIfNecessary();
+
+				ProcessBuilder processBuilder = new ProcessBuilder();
+				overrideEnvironmentVariables(processBuilder);
+				environment.putAll(processBuilder.environment());
+				cmakePath = getBinaryPath("cmake", processBuilder).toString();
+				if (runTests)
+					ctestPath = getBinaryPath("ctest", processBuilder).toString();
+			}
+			budget = parallelism;
+			if (budget <= 0)
+				budget = Runtime.getRuntime().availableProcessors();
+			buildDirectory = targetPath.toPath().toAbsolutePath();
+			FileApi.writeQuery(buildDirectory, FileApi.CODEMODEL, FileApi.CMAKE_FILES);
+
+			// Start watching before the first build so that changes made during the build are not missed
+			List<Path> excluded = Arrays.asList(buildDirectory, Paths.get(getBuildDirectory()));
+			try (SourceWatcher watcher = new SourceWatcher(sourcePath.toPath(), excluded, debounce))
+			{
+				configureNeeded = CMakeCache.read(buildDirectory).isEmpty();
+				while (true)
+				{
+					rebuild();
+					if (log.isInfoEnabled())
+					{
+						log.info("Watching " + sourcePath.getAbsolutePath() + " for changes. Press Ctrl+C to " +
+							"stop.");
+					}
+					Set<Path> changes = watcher.awaitChanges();
+					if (changes == null)
+					{
+						log.warn("File events were lost. Rebuilding the entire project.");
+						configureNeeded = true;
+						untestedChanges = null;
+						continue;
+					}
+					if (log.isInfoEnabled())
+						log.info(changes.size() + " file(s) changed");
+					if (log.isDebugEnabled())
+						log.debug("Changed files: " + changes);
+					if (isCMakeInputChanged(changes))
+					{
+						configureNeeded = true;
+						untestedChanges = null;
+					}
+					else if (untestedChanges != null)
+						untestedChanges.addAll(changes);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			log.info("Stopped watching");
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+	}
+
+	/**
+	 * Configures (if necessary) and builds the project, and then runs the tests that are affected by the
+	 * changes since the tests last passed. Failures are logged, and the next rebuild retries the work that
+	 * failed.
+	 *
+	 * @throws IOException          if an error occurs while running cmake or ctest
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private void rebuild() throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		long start = System.nanoTime();
+		if (configureNeeded)
+		{
+			// Configure the same way as the generate goal, so that fresh build directories use the bundled
+			// ninja and the header dependencies that ninja records are available to getAffectedTests()
+			ProcessBuilder processBuilder = newProcess(cmakePath);
+			if (config != null)
+				processBuilder.command().add("-DCMAKE_BUILD_TYPE=" + config);
+			if (configure(processBuilder, sourcePath, generator, "watch-configure") != 0)
+			{
+				log.error("Configure failed");
+				return;
+			}
+			configureNeeded = false;
+		}
+
+		ProcessBuilder processBuilder = newProcess(cmakePath, "--build", buildDirectory.toString(),
+			"--parallel", String.valueOf(budget));
+		if (config != null)
+			Collections.addAll(processBuilder.command(), "--config", config);
+		if (run(processBuilder) != 0)
+		{
+			log.error(String.format(Locale.ENGLISH, "Build failed after %.3fs", getSecondsSince(start)));
+			return;
+		}
+		if (log.isInfoEnabled())
+			log.info(String.format(Locale.ENGLISH, "Build finished in %.3fs", getSecondsSince(start)));
+		if (!runTests)
+			return;
+
+		List<String> tests = null;
+		if (untestedChanges != null)
+			tests = getAffectedTests(untestedChanges);
+		if (tests != null && tests.isEmpty())
+		{
+			if (log.isInfoEnabled())
+				log.info("No tests are affected by the changes.");
+			untestedChanges.clear();
+			return;
+		}
+		processBuilder = newProcess(ctestPath, "--output-on-failure", "--parallel", String.valueOf(budget));
+		if (config != null)
+			Collections.addAll(processBuilder.command(), "--build-config", config);
+		if (tests != null)
+			Collections.addAll(processBuilder.command(), "--tests-regex", TestPlan.getTestRegex(tests));
+		int exitCode = run(processBuilder);
+		if (exitCode != 0)
+		{
+			log.error("Tests failed with return code " + exitCode);
+			return;
+		}
+		untestedChanges = new TreeSet<>();
+		if (log.isInfoEnabled())
+			log.info(String.format(Locale.ENGLISH, "Tests passed. Finished in %.3fs", getSecondsSince(start)));
+	}
+
+	/**
+	 * @param changes the files that changed
+	 * @return {@code true} if the project must be reconfigured
+	 * @throws IOException if an error occurs while reading the project's CMake inputs
+	 */
+	private boolean isCMakeInputChanged(Set<Path> changes) throws IOException
+	{
+		Set<Path> cmakeInputs = new HashSet<>();
+		BuildModel model = getBuildModel(buildDirectory);
+		if (model != null && model.getCMakeInputs() != null)
+			cmakeInputs.addAll(model.getCMakeInputs());
+		for (Path file : changes)
+			if (TestImpact.isCMakeFile(file) || cmakeInputs.contains(file))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param changes the files that changed
+	 * @return the names of the affected tests ({@code null} if all tests should run)
+	 * @throws IOException          if an error occurs while reading the build directory
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<String> getAffectedTests(Set<Path> changes) throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		BuildModel model = getBuildModel(buildDirectory);
+		CodeModel codeModel = null;
+		try
+		{
+			if (model != null)
+				codeModel = model.getCodeModel(config);
+		}
+		catch (IOException e)
+		{
+			log.warn("Running all tests. Could not read the code model: " + e.getMessage());
+			return null;
+		}
+		if (codeModel == null)
+			return null;
+		List<Path> cmakeInputs = model.getCMakeInputs();
+		if (cmakeInputs == null)
+			cmakeInputs = Collections.emptyList();
+		CMakeCache cache = CMakeCache.read(buildDirectory);
+		NinjaDeps deps = null;
+		String cacheGenerator = cache.get("CMAKE_GENERATOR");
+		if (cacheGenerator != null && cacheGenerator.startsWith("Ninja"))
+			deps = runNinjaTool(cache, buildDirectory.toFile(), "deps", NinjaDeps::parse);
+		JsonNode ctestInfo = listTests(buildDirectory.toFile(), ctestPath, config);
+		if (ctestInfo == null)
+			return null;
+		TestImpact impact = TestImpact.analyze(codeModel, deps, ctestInfo, changes, cmakeInputs);
+		if (impact.tests == null)
+		{
+			if (log.isInfoEnabled())
+				log.info("Running all tests. " + impact.reason);
+			return null;
+		}
+		if (log.isInfoEnabled())
+		{
+			log.info("Running " + impact.tests.size() + " of " + ctestInfo.path("tests").size() +
+				" test(s) affected by the changes");
+		}
+		return impact.tests;
+	}
+
+	/**
+	 * @param command the command-line
+	 * @return a process that runs in the build directory using the resolved environment
+	 */
+	private ProcessBuilder newProcess(String... command)
+	{
+		ProcessBuilder result = new ProcessBuilder(command).directory(buildDirectory.toFile());
+		result.environment().clear();
+		result.environment().putAll(environment);
+		return result;
+	}
+
+	/**
+	 * Runs a process, forwarding its output to the log.
+	 *
+	 * @param processBuilder the process
+	 * @return the exit code of the process
+	 * @throws IOException          if an error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private int run(ProcessBuilder processBuilder) throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		if (log.isDebugEnabled())
+			log.debug("Command-line: " + processBuilder.command());
+		return Mojos.waitFor(processBuilder, log);
+	}
+
+	/**
+	 * @param start a value returned by {@link System#nanoTime()}
+	 * @return the number of seconds that elapsed since {@code start}
+	 */
+	private static double getSecondsSince(long start)
+	{
+		return (System.nanoTime() - start) / 1_000_000_000.0;
+	}
+}
@@ -0,0 +1,97 @@
+#!/bin/sh
+# Runs a test and records its CPU time and peak resident set size.
+#
+# Usage: ctest-launcher.sh <command> [arguments...]
+#
+# If CMAKE_MAVEN_TEST_RESOURCES is set, the results are written to
+# $CMAKE_MAVEN_TEST_RESOURCES/<launcher pid>.txt; otherwise, the command is executed as-is.
+#
+# The CPU time includes the test's child processes. If GNU time is installed as /usr/bin/time, the peak
+# resident set size is the kernel's maximum for the test and any child process that it waited for
+# (whichever is largest, not their sum). Otherwise, the launcher samples the VmHWM of the test process every
+# 50ms, which excludes child processes and reports 0 for tests that exit before the first sample.
+if [ -z "$CMAKE_MAVEN_TEST_RESOURCES" ] || [ ! -d /proc ]; then
+	exec "$@"
+fi
+
+out="$CMAKE_MAVEN_TEST_RESOURCES/$$"
+
+# BusyBox and BSD implementations of "time" do not necessarily support -f and -o
+useTime=
+if [ -x /usr/bin/time ] && /usr/bin/time -f '%M' -o "$out.rss" true 2>/dev/null && [ -s "$out.rss" ]; then
+	useTime=1
+fi
+
+# The test runs inside a subshell that does nothing but wait for it, so "times" reports the CPU time of
+# the test and its descendants without including the sampling below. Asynchronous commands read from
+# /dev/null unless stdin is redirected explicitly.
+exec 3<&0
+(
+	if [ -n "$useTime" ]; then
+		/usr/bin/time -f '%M' -o "$out.rss" "$@" 0<&3 3<&- &
+	else
+		"$@" 0<&3 3<&- &
+	fi
+	echo "$!" > "$out.pid"
+	wait "$!"
+	exitCode=$?
+	times > "$out.times"
+	exit "$exitCode"
+) &
+subshell=$!
+exec 3<&-
+trap 'kill "$subshell" 2>/dev/null; [ -n "$pid" ] && kill "$pid" 2>/dev/null' HUP INT TERM
+
+pid=
+while [ -z "$pid" ] && kill -0 "$subshell" 2>/dev/null; do
+	read -r pid 2>/dev/null < "$out.pid"
+	[ -z "$pid" ] && sleep 0.01
+done
+
+# Sample the peak resident set size until the test exits, unless "time" measures it
+peak=0
+while [ -z "$useTime" ] && [ -n "$pid" ]; do
+	state=
+	if read -r stat 2>/dev/null < "/proc/$pid/stat"; then
+		# The state follows the command name, which is parenthesized and may contain spaces
+		rest=${stat##*) }
+		state=${rest%% *}
+	fi
+	case "$state" in
+		'' | Z | X) break ;;
+	esac
+	if [ -r "/proc/$pid/status" ]; then
+		while read -r key value unit; do
+			if [ "$key" = "VmHWM:" ]; then
+				[ "$value" -gt "$peak" ] && peak=$value
+				break
+			fi
+		done 2>/dev/null < "/proc/$pid/status"
+	fi
+	sleep 0.05
+done
+
+wait "$subshell"
+exitCode=$?
+if [ -n "$useTime" ] && [ -f "$out.rss" ]; then
+	# GNU time reports a non-zero exit status on a separate line before the format's output
+	peak=$(tail -n 1 "$out.rss")
+	case "$peak" in
+		'' | *[!0-9]*) peak=0 ;;
+	esac
+fi
+# The second line of "times" contains the user and system time of the child processes
+cpu=
+if [ -f "$out.times" ]; then
+	cpu=$(tail -n 1 "$out.times")
+fi
+# The command is written last because it may span multiple lines
+{
+	printf 'exitCode=%s\n' "$exitCode"
+	printf 'maxRssKb=%s\n' "$peak"
+	printf 'cpu=%s\n' "$cpu"
+	printf 'command=%s\n' "$*"
+} > "$out.tmp"
+rm -f "$out.pid" "$out.times" "$out.rss"
+mv "$out.tmp" "$out.txt"
+exit "$exitCode"
@@ -1,5 +1,7 @@
 <xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
 	<xsl:output method="xml" indent="yes"/>
+	<!-- Optional: the URI of an XML document containing the resources consumed by each test -->
+	<xsl:param name="resources" select="''"/>
 	<!-- convert ctest output to junit format -->
 	<!--
 	Source: https://github.com/manticoresoftware/manticoresearch/blob/master/misc/junit/ctest2junit.xsl
@@ -187,6 +189,16 @@
 		</xsl:variable>
 
 		<testcase name="{$testcasename}" classname="{$testclassname}" time="{$exectime}">
+			<xsl:if test="$resources != ''">
+				<xsl:variable name="usage" select="document($resources)/tests/test[@name = $testcasename]"/>
+				<xsl:if test="$usage">
+					<properties>
+						<property name="cpu.user" value="{$usage/@userTime}"/>
+						<property name="cpu.system" value="{$usage/@systemTime}"/>
+						<property name="memory.maxRssKb" value="{$usage/@maxRssKb}"/>
+					</properties>
+				</xsl:if>
+			</xsl:if>
 			<xsl:if test="@Status = 'passed'">
 				<system-out>
 					<xsl:value-of select="Results/Measurement/Value/text()"/>
@@ -0,0 +1,63 @@
+# Generated by cmake-maven-plugin. Shares the sources downloaded by FetchContent between build
+# directories.
+#
+# This file is injected using CMAKE_PROJECT_TOP_LEVEL_INCLUDES and requires CMake 3.24 or newer. The
+# cache directory is passed in CMAKE_MAVEN_FETCHCONTENT_CACHE. Each dependency is downloaded once into
+# <cache>/<name>-<hash of its declaration>/src while holding <cache>/<name>-<hash>.lock, and is then
+# added to the build using FETCHCONTENT_SOURCE_DIR_<NAME>. The sources must be treated as read-only
+# because other build directories use them concurrently.
+include_guard(GLOBAL)
+include(FetchContent)
+
+function(cmake_maven_fetchcontent_provider method name)
+	# Keep only the arguments that affect what is downloaded
+	set(populateArgs)
+	set(skipValue FALSE)
+	foreach(arg IN LISTS ARGN)
+		if(skipValue)
+			set(skipValue FALSE)
+		elseif(arg STREQUAL "FIND_PACKAGE_ARGS")
+			# The remaining arguments are passed to find_package()
+			break()
+		elseif(arg MATCHES "^(SOURCE_SUBDIR|SOURCE_DIR|BINARY_DIR|SUBBUILD_DIR)$")
+			set(skipValue TRUE)
+		elseif(NOT arg MATCHES "^(OVERRIDE_FIND_PACKAGE|EXCLUDE_FROM_ALL|SYSTEM)$")
+			list(APPEND populateArgs "${arg}")
+		endif()
+	endforeach()
+	if(NOT populateArgs MATCHES "(^|;)(URL|GIT_REPOSITORY|SVN_REPOSITORY|HG_REPOSITORY|CVS_REPOSITORY|DOWNLOAD_COMMAND)(;|$)")
+		# Nothing to download, fall back to the built-in implementation
+		return()
+	endif()
+
+	string(TOLOWER "${name}" lowerName)
+	string(TOUPPER "${name}" upperName)
+	string(SHA256 hash "${populateArgs}")
+	string(SUBSTRING "${hash}" 0 16 hash)
+	set(entry "${CMAKE_MAVEN_FETCHCONTENT_CACHE}/${lowerName}-${hash}")
+
+	file(MAKE_DIRECTORY "${CMAKE_MAVEN_FETCHCONTENT_CACHE}")
+	file(LOCK "${entry}.lock" GUARD FUNCTION TIMEOUT 3600)
+	if(NOT EXISTS "${entry}/.complete")
+		message(STATUS "Populating the FetchContent cache: ${entry}")
+		file(REMOVE_RECURSE "${entry}")
+		FetchContent_Populate(${lowerName}-cache
+			QUIET
+			${populateArgs}
+			SOURCE_DIR "${entry}/src"
+			BINARY_DIR "${CMAKE_BINARY_DIR}/_deps/${lowerName}-cache-build"
+			SUBBUILD_DIR "${CMAKE_BINARY_DIR}/_deps/${lowerName}-cache-subbuild")
+	else()
+		message(STATUS "Using the FetchContent cache: ${entry}")
+	endif()
+	# The modification time of the marker records when the entry was last used
+	file(TOUCH "${entry}/.complete")
+	file(LOCK "${entry}.lock" RELEASE)
+
+	# Calling FetchContent_MakeAvailable() for the same dependency uses the built-in implementation
+	set(FETCHCONTENT_SOURCE_DIR_${upperName} "${entry}/src")
+	FetchContent_MakeAvailable(${name})
+endfunction()
+
+cmake_language(SET_DEPENDENCY_PROVIDER cmake_maven_fetchcontent_provider
+	SUPPORTED_METHODS FETCHCONTENT_MAKEAVAILABLE_SERIAL)
@@ -0,0 +1,294 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.BinariesArchive;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BinariesArchiveTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void storedAndDeflatedEntries() throws IOException
+	{
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("bin/cmake", "#!/bin/sh\necho cmake\n".getBytes(StandardCharsets.UTF_8));
+		files.put("share/cmake/Modules/FindFoo.cmake",
+			"set(FOO_FOUND TRUE)\n".getBytes(StandardCharsets.UTF_8));
+		for (int method : new int[]{ZipEntry.STORED, ZipEntry.DEFLATED})
+		{
+			Path jar = temp.resolve("binaries-" + method + ".jar");
+			writeJar(jar, files, method);
+			Path target = temp.resolve("extracted-" + method);
+			// Files from a previous extraction are removed
+			Files.createDirectories(target);
+			Files.write(target.resolve("stale.txt"), new byte[1]);
+
+			long bytes = BinariesArchive.extract(jar, target);
+			assertEquals(files.get("bin/cmake").length + files.get("share/cmake/Modules/FindFoo.cmake").length,
+				bytes);
+			for (Entry<String, byte[]> entry : files.entrySet())
+				assertArrayEquals(entry.getValue(), Files.readAllBytes(target.resolve(entry.getKey())));
+			assertFalse(Files.exists(target.resolve("stale.txt")));
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+			{
+				assertTrue(Files.isExecutable(target.resolve("bin/cmake")));
+				assertFalse(Files.isExecutable(target.resolve("share/cmake/Modules/FindFoo.cmake")));
+			}
+		}
+	}
+
+	/**
+	 * Compares the time it takes to extract a tree the size of a cmake distribution from each candidate
+	 * format. Run using {@code mvn test -Dtest=BinariesArchiveTest -Dbenchmark=true}. The size of the tree
+	 * can be set using {@code -Dbenchmark.megabytes} (20 by default).
+	 *
+	 * @throws IOException if an error occurs while writing or extracting the archives
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	public void benchmark() throws IOException
+	{
+		int megabytes = Integer.getInteger("benchmark.megabytes", 20);
+		Map<String, byte[]> files = generateTree(megabytes * 1024L * 1024);
+		Path deflated = temp.resolve("deflated.jar");
+		writeJar(deflated, files, ZipEntry.DEFLATED);
+		Path stored = temp.resolve("stored.jar");
+		writeJar(stored, files, ZipEntry.STORED);
+		Path zstd = temp.resolve("binaries.tar.zst");
+		try (OutputStream out = new ZstdCompressorOutputStream(new BufferedOutputStream(
+			Files.newOutputStream(zstd)), 3))
+		{
+			writeTar(out, files);
+		}
+		Path lz4 = temp.resolve("binaries.tar.lz4");
+		try (OutputStream out = new FramedLZ4CompressorOutputStream(new BufferedOutputStream(
+			Files.newOutputStream(lz4))))
+		{
+			writeTar(out, files);
+		}
+		files.clear();
+
+		System.out.printf(Locale.ENGLISH, "%-36s %10s %10s%n", "Format", "Size (MB)", "Extract (s)");
+		report("deflated jar, streamed (current)", deflated, target ->
+		{
+			try (ArchiveInputStream<ZipArchiveEntry> in = new ZipArchiveInputStream(new BufferedInputStream(
+				Files.newInputStream(deflated))))
+			{
+				extractStream(in, target);
+			}
+		});
+		report("deflated jar, BinariesArchive", deflated, target -> BinariesArchive.extract(deflated, target));
+		report("stored jar, BinariesArchive", stored, target -> BinariesArchive.extract(stored, target));
+		report("tar.zst (level 3)", zstd, target ->
+		{
+			try (ArchiveInputStream<TarArchiveEntry> in = new TarArchiveInputStream(
+				new ZstdCompressorInputStream(new BufferedInputStream(Files.newInputStream(zstd)))))
+			{
+				extractStream(in, target);
+			}
+		});
+		report("tar.lz4 (framed)", lz4, target ->
+		{
+			try (ArchiveInputStream<TarArchiveEntry> in = new TarArchiveInputStream(
+				new FramedLZ4CompressorInputStream(new BufferedInputStream(Files.newInputStream(lz4)))))
+			{
+				extractStream(in, target);
+			}
+		});
+	}
+
+	/**
+	 * Extracts an archive three times and logs the fastest time.
+	 *
+	 * @param format    the name of the format
+	 * @param archive   the archive
+	 * @param extractor extracts the archive
+	 * @throws IOException if an error occurs while extracting the archive
+	 */
+	private void report(String format, Path archive, Extractor extractor) throws IOException
+	{
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 3; ++i)
+		{
+			Path target = Files.createTempDirectory(temp, "extract");
+			long start = System.nanoTime();
+			extractor.extract(target);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf(Locale.ENGLISH, "%-36s %10.1f %10.3f%n", format,
+			Files.size(archive) / (1024.0 * 1024), best / 1_000_000_000.0);
+	}
+
+	/**
+	 * Generates a tree that resembles a cmake distribution: a few large executables that compress moderately
+	 * and many small scripts that compress well.
+	 *
+	 * @param size the total size of the files
+	 * @return a map from the path of each file to its contents
+	 */
+	private static Map<String, byte[]> generateTree(long size)
+	{
+		Random random = new Random(0);
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		byte[] words = ("if(NOT DEFINED) set() endif() function(ARGN) message(STATUS) list(APPEND) " +
+			"string(REGEX) include() cmake_policy() # comment\n").getBytes(StandardCharsets.UTF_8);
+		long remaining = size;
+		for (int i = 0; remaining > 0; ++i)
+		{
+			byte[] contents;
+			String name;
+			if (i < 8)
+			{
+				// Machine code: random bytes interleaved with repeated runs
+				contents = new byte[(int) Math.min(remaining, size * 3 / 4 / 8)];
+				byte[] chunk = new byte[64];
+				for (int offset = 0; offset < contents.length; offset += chunk.length)
+				{
+					if (random.nextBoolean())
+						random.nextBytes(chunk);
+					else
+						Arrays.fill(chunk, (byte) random.nextInt(4));
+					int length = Math.min(chunk.length, contents.length - offset);
+					System.arraycopy(chunk, 0, contents, offset, length);
+				}
+				name = "bin/tool-" + i;
+			}
+			else
+			{
+				contents = new byte[(int) Math.min(remaining, 4096 + random.nextInt(32 * 1024))];
+				for (int offset = 0; offset < contents.length; ++offset)
+					contents[offset] = words[(offset + random.nextInt(3)) % words.length];
+				name = "share/cmake/Modules/Module" + i + ".cmake";
+			}
+			result.put(name, contents);
+			remaining -= contents.length;
+		}
+		return result;
+	}
+
+	/**
+	 * @param jar    the jar to write
+	 * @param files  a map from the path of each file to its contents
+	 * @param method the compression method of the entries
+	 * @throws IOException if an error occurs while writing the jar
+	 */
+	private static void writeJar(Path jar, Map<String, byte[]> files, int method) throws IOException
+	{
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(jar))
+		{
+			for (Entry<String, byte[]> file : files.entrySet())
+			{
+				ZipArchiveEntry entry = new ZipArchiveEntry(file.getKey());
+				entry.setMethod(method);
+				entry.setUnixMode(getMode(file.getKey()));
+				out.putArchiveEntry(entry);
+				out.write(file.getValue());
+				out.closeArchiveEntry();
+			}
+		}
+	}
+
+	/**
+	 * @param out   the stream to write the tar to
+	 * @param files a map from the path of each file to its contents
+	 * @throws IOException if an error occurs while writing the tar
+	 */
+	private static void writeTar(OutputStream out, Map<String, byte[]> files) throws IOException
+	{
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out))
+		{
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			for (Entry<String, byte[]> file : files.entrySet())
+			{
+				TarArchiveEntry entry = new TarArchiveEntry(file.getKey());
+				entry.setSize(file.getValue().length);
+				entry.setMode(getMode(file.getKey()));
+				tar.putArchiveEntry(entry);
+				tar.write(file.getValue());
+				tar.closeArchiveEntry();
+			}
+		}
+	}
+
+	/**
+	 * @param path the path of a file
+	 * @return the Unix mode of the file
+	 */
+	private static int getMode(String path)
+	{
+		if (path.startsWith("bin/"))
+			return 0755;
+		return 0644;
+	}
+
+	/**
+	 * Extracts an archive one entry at a time, the way {@code dependency:unpack} does.
+	 *
+	 * @param <E>    the type of entries in the archive
+	 * @param in     the archive
+	 * @param target the directory to extract into
+	 * @throws IOException if an error occurs while extracting the archive
+	 */
+	private static <E extends ArchiveEntry> void extractStream(ArchiveInputStream<E> in, Path target)
+		throws IOException
+	{
+		while (true)
+		{
+			E entry = in.getNextEntry();
+			if (entry == null)
+				break;
+			Path path = target.resolve(entry.getName());
+			Files.createDirectories(path.getParent());
+			Files.copy(in, path);
+		}
+	}
+
+	/**
+	 * Extracts an archive.
+	 */
+	@FunctionalInterface
+	private interface Extractor
+	{
+		/**
+		 * @param target the directory to extract into
+		 * @throws IOException if an error occurs while extracting the archive
+		 */
+		void extract(Path target) throws IOException;
+	}
+}
@@ -0,0 +1,125 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.BuildHistory;
+import com.github.cmake.maven.project.maven.plugin.BuildHistory.Execution;
+import com.github.cmake.maven.project.maven.plugin.BuildTrend;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BuildHistoryTest
+{
+	private static final String GOAL = "cmake:compile";
+	private static final String BUILD = GOAL + " > build";
+	private static final String HOST = "linux-x86_64, 16 cores, 64 GB";
+
+	@TempDir
+	Path temp;
+
+	@Test
+	public void appendAndRead() throws IOException
+	{
+		Path file = temp.resolve("history").resolve("app.jsonl");
+		BuildHistory.append(file, execution(1, 10_000, 200));
+		BuildHistory.append(file, execution(2, 11_000, 0));
+		// A build that was killed while appending
+		Files.write(file, "{\"time\":3,\"mod".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		List<Execution> executions = BuildHistory.read(file);
+		assertEquals(2, executions.size());
+		Execution first = executions.get(0);
+		assertEquals(1, first.time);
+		assertEquals("app", first.module);
+		assertEquals(GOAL, first.goal);
+		assertTrue(first.succeeded);
+		assertEquals(HOST, first.host);
+		assertEquals(10_000L, first.durations.get(BUILD).longValue());
+		assertEquals(200L, first.counts.get(BuildHistory.REBUILT_EDGES).longValue());
+		assertEquals(Collections.emptyList(), BuildHistory.read(temp.resolve("missing.jsonl")));
+	}
+
+	@Test
+	public void regression()
+	{
+		Random random = new Random(0);
+		List<Execution> executions = new ArrayList<>();
+		for (int i = 0; i < 20; ++i)
+			executions.add(execution(i, 10_000 + random.nextInt(500), 200));
+		// No-op builds do not count towards the history
+		executions.add(execution(20, 50, 0));
+
+		List<BuildTrend> trends = BuildTrend.analyze(executions, 5, 20);
+		assertEquals(2, trends.size());
+		for (BuildTrend trend : trends)
+			assertFalse(trend.isRegression(0.01, 10, 1000), trend.toString());
+
+		for (int i = 21; i < 26; ++i)
+			executions.add(execution(i, 12_000 + random.nextInt(500), 210));
+		trends = BuildTrend.analyze(executions, 5, 20);
+		BuildTrend build = null;
+		for (BuildTrend trend : trends)
+			if (trend.phase.equals(BUILD))
+				build = trend;
+		assertTrue(build.isRegression(0.01, 10, 1000), build.toString());
+		assertEquals(200.0, build.baselineCounts.get(BuildHistory.REBUILT_EDGES), 0);
+		assertEquals(210.0, build.recentCounts.get(BuildHistory.REBUILT_EDGES), 0);
+		assertEquals(21, build.rollingMedians.size());
+		// The slowdown is not large enough to be reported
+		assertFalse(build.isRegression(0.01, 25, 1000), build.toString());
+	}
+
+	@Test
+	public void cleanAndIncrementalBuilds()
+	{
+		Random random = new Random(0);
+		List<Execution> executions = new ArrayList<>();
+		for (int i = 0; i < 20; ++i)
+		{
+			if (i % 2 == 0)
+				executions.add(execution(i, 60_000 + random.nextInt(500), 1000));
+			else
+				executions.add(execution(i, 2_000 + random.nextInt(500), 3));
+		}
+		// A run of clean builds is not slower than the clean builds that preceded it
+		for (int i = 20; i < 25; ++i)
+			executions.add(execution(i, 60_000 + random.nextInt(500), 1000));
+
+		List<BuildTrend> trends = BuildTrend.analyze(executions, 5, 20);
+		assertEquals(4, trends.size());
+		for (BuildTrend trend : trends)
+			assertFalse(trend.isRegression(0.01, 10, 1000), trend.toString());
+		assertEquals("512-1023 rebuilt edges", trends.get(0).workload);
+		assertEquals(11, trends.get(0).rollingMedians.size());
+		assertEquals("2-3 rebuilt edges", trends.get(2).workload);
+	}
+
+	/**
+	 * @param time         the time that the execution ended
+	 * @param millis       the duration of the build phase
+	 * @param rebuiltEdges the number of edges that ninja rebuilt
+	 * @return an execution of the compile goal
+	 */
+	private static Execution execution(long time, long millis, long rebuiltEdges)
+	{
+		Map<String, Long> durations = new LinkedHashMap<>();
+		durations.put(BUILD, millis);
+		durations.put(GOAL, millis + 100);
+		return new Execution(time, "app", GOAL, true, HOST, durations,
+			Collections.singletonMap(BuildHistory.REBUILT_EDGES, rebuiltEdges));
+	}
+}
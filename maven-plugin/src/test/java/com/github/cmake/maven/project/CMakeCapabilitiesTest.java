@@ -0,0 +1,36 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.maven.plugin.CMakeCapabilities;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class CMakeCapabilitiesTest
+{
+	/**
+	 * An abridged {@code cmake -E capabilities} of CMake 3.21.
+	 */
+	private static final String CAPABILITIES = "{\"version\":{\"isDirty\":false,\"major\":3,\"minor\":21," +
+		"\"patch\":4,\"string\":\"3.21.4\",\"suffix\":\"\"},\"generators\":[{\"name\":\"Ninja\"," +
+		"\"platformSupport\":false,\"toolsetSupport\":false},{\"name\":\"Ninja Multi-Config\"," +
+		"\"platformSupport\":false,\"toolsetSupport\":false}],\"serverMode\":false}";
+
+	@Test
+	public void version() throws IOException
+	{
+		CMakeCapabilities capabilities = CMakeCapabilities.parse(Metrics.getMapper().readTree(CAPABILITIES));
+		assertEquals("3.21.4", capabilities.version);
+		assertTrue(capabilities.isAtLeast(3, 21));
+		assertTrue(capabilities.isAtLeast(3, 17));
+		assertTrue(capabilities.isAtLeast(2, 99));
+		assertFalse(capabilities.isAtLeast(3, 24));
+		assertFalse(capabilities.isAtLeast(4, 0));
+		assertTrue(capabilities.hasGenerator("Ninja Multi-Config"));
+		assertFalse(capabilities.hasGenerator("Xcode"));
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.CMakePresets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class CMakePresetsTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void inheritance() throws IOException
+	{
+		write("CMakePresets.json", "{\n" +
+			"  \"version\": 4,\n" +
+			"  \"include\": [\"presets/base.json\"],\n" +
+			"  \"configurePresets\": [\n" +
+			"    {\"name\": \"debug\", \"inherits\": \"base\"},\n" +
+			"    {\"name\": \"release\", \"inherits\": [\"release-dir\", \"base\"]}\n" +
+			"  ],\n" +
+			"  \"buildPresets\": [\n" +
+			"    {\"name\": \"common-build\", \"hidden\": true, \"configurePreset\": \"debug\"},\n" +
+			"    {\"name\": \"debug-build\", \"inherits\": \"common-build\"}\n" +
+			"  ]\n" +
+			"}\n");
+		write("presets/base.json", "{\n" +
+			"  \"version\": 4,\n" +
+			"  \"configurePresets\": [\n" +
+			"    {\"name\": \"base\", \"hidden\": true, \"generator\": \"Ninja\",\n" +
+			"     \"binaryDir\": \"${sourceDir}/build/${presetName}\"},\n" +
+			"    {\"name\": \"release-dir\", \"hidden\": true, \"binaryDir\": \"out/release\"}\n" +
+			"  ]\n" +
+			"}\n");
+		// CMakeUserPresets.json implicitly includes CMakePresets.json
+		write("CMakeUserPresets.json", "{\n" +
+			"  \"version\": 4,\n" +
+			"  \"include\": [\"CMakePresets.json\"],\n" +
+			"  \"testPresets\": [{\"name\": \"my-tests\", \"configurePreset\": \"release\"}]\n" +
+			"}\n");
+
+		CMakePresets presets = CMakePresets.read(temp);
+		assertEquals(new LinkedHashSet<>(Arrays.asList("debug", "release")),
+			presets.getNames(CMakePresets.CONFIGURE));
+		assertEquals("Ninja", presets.resolve(CMakePresets.CONFIGURE, "release", "generator"));
+		assertEquals(temp.toAbsolutePath().resolve("build/debug"), presets.getBinaryDirectory("debug"));
+		assertEquals(temp.toAbsolutePath().resolve("out/release"), presets.getBinaryDirectory("release"));
+		assertEquals("debug", presets.getConfigurePreset(CMakePresets.BUILD, "debug-build"));
+		assertEquals("release", presets.getConfigurePreset(CMakePresets.TEST, "my-tests"));
+	}
+
+	@Test
+	public void cyclicInheritance() throws IOException
+	{
+		write("CMakePresets.json", "{\n" +
+			"  \"version\": 3,\n" +
+			"  \"configurePresets\": [\n" +
+			"    {\"name\": \"a\", \"inherits\": \"b\"},\n" +
+			"    {\"name\": \"b\", \"inherits\": \"a\"}\n" +
+			"  ]\n" +
+			"}\n");
+		CMakePresets presets = CMakePresets.read(temp);
+		assertThrows(IllegalArgumentException.class, () -> presets.getBinaryDirectory("a"));
+	}
+
+	/**
+	 * @param name    the path of the file, relative to the source directory
+	 * @param content the content of the file
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	private void write(String name, String content) throws IOException
+	{
+		Path file = temp.resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.CMakeProfile;
+import com.github.cmake.maven.project.maven.plugin.CMakeProfile.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class CMakeProfileTest
+{
+	/**
+	 * {@code find_package(Boost)} includes a module that calls {@code try_compile}, followed by a top-level
+	 * {@code set}. Events are written when each command returns.
+	 */
+	private static final String TRACE = "[\n" +
+		"{\"cat\":\"cmake\",\"dur\":300,\"name\":\"try_compile\",\"ph\":\"X\",\"pid\":1,\"tid\":0,\"ts\":200," +
+		"\"args\":{\"functionArgs\":\"HAVE_FOO ${CMAKE_BINARY_DIR} foo.c\",\"location\":\"FindBoost.cmake:10\"}},\n" +
+		"{\"cat\":\"cmake\",\"dur\":600,\"name\":\"include\",\"ph\":\"X\",\"pid\":1,\"tid\":0,\"ts\":100," +
+		"\"args\":{\"functionArgs\":\"CheckCSourceCompiles\",\"location\":\"FindBoost.cmake:5\"}},\n" +
+		"{\"cat\":\"cmake\",\"dur\":1000,\"name\":\"find_package\",\"ph\":\"X\",\"pid\":1,\"tid\":0,\"ts\":0," +
+		"\"args\":{\"functionArgs\":\"Boost REQUIRED\",\"location\":\"CMakeLists.txt:3\"}},\n" +
+		"{\"cat\":\"cmake\",\"dur\":50,\"name\":\"set\",\"ph\":\"X\",\"pid\":1,\"tid\":0,\"ts\":1000," +
+		"\"args\":{\"functionArgs\":\"FOO 1\",\"location\":\"CMakeLists.txt:4\"}}\n" +
+		"]\n";
+
+	@Test
+	public void exclusiveTime() throws IOException
+	{
+		Path file = Files.createTempFile("cmake-profile", ".json");
+		try
+		{
+			Files.write(file, TRACE.getBytes(StandardCharsets.UTF_8));
+			CMakeProfile profile = CMakeProfile.parse(file);
+			assertEquals(1050, profile.totalMicros);
+
+			List<Entry> findPackage = profile.getSlowest("find_package", 10);
+			assertEquals(1, findPackage.size());
+			assertEquals("find_package(Boost)", findPackage.get(0).key);
+			assertEquals(1000, findPackage.get(0).inclusiveMicros);
+			assertEquals(400, findPackage.get(0).exclusiveMicros);
+
+			Entry include = profile.getSlowest("include", 1).get(0);
+			assertEquals(300, include.exclusiveMicros);
+
+			List<Entry> hotspots = profile.getHotspots(1);
+			assertEquals("find_package(Boost)", hotspots.get(0).key);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.FetchContentCache;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class FetchContentCacheTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException
+	{
+		Path oldest = createEntry("zlib-0001", 1000, 1_000);
+		Path newer = createEntry("fmt-0002", 1000, 2_000);
+		Path current = createEntry("catch2-0003", 1000, 10_000);
+
+		FetchContentCache cache = new FetchContentCache(temp, new SystemStreamLog());
+		// Entries used at or after the start of the build are never evicted, even if the limit is exceeded
+		assertEquals(2000, cache.evict(0, 5_000));
+		assertFalse(Files.exists(oldest));
+		assertFalse(Files.exists(newer));
+		assertTrue(Files.exists(current));
+	}
+
+	@Test
+	public void skipLockedEntries() throws IOException
+	{
+		Path complete = createEntry("zlib-0001", 1000, 1_000);
+		Path interrupted = Files.createDirectories(temp.resolve("fmt-0002/src"));
+		Path populating = Files.createDirectories(temp.resolve("catch2-0003/src"));
+
+		FetchContentCache cache = new FetchContentCache(temp, new SystemStreamLog());
+		try (FileChannel channel = FileChannel.open(temp.resolve("catch2-0003.lock"), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE);
+		     FileLock ignored = channel.lock())
+		{
+			cache.evict(Long.MAX_VALUE, Long.MAX_VALUE);
+		}
+		assertTrue(Files.exists(complete));
+		assertFalse(Files.exists(interrupted));
+		assertTrue(Files.exists(populating));
+	}
+
+	@Test
+	public void writeProviderOnlyWhenChanged() throws IOException
+	{
+		Path provider = temp.resolve("provider.cmake");
+		FetchContentCache.writeProvider(provider);
+		String content = new String(Files.readAllBytes(provider), StandardCharsets.UTF_8);
+		assertTrue(content.contains("SET_DEPENDENCY_PROVIDER"), content);
+
+		FileTime modified = FileTime.fromMillis(1_000);
+		Files.setLastModifiedTime(provider, modified);
+		FetchContentCache.writeProvider(provider);
+		assertEquals(modified, Files.getLastModifiedTime(provider));
+	}
+
+	/**
+	 * @param name     the name of the entry
+	 * @param size     the size of the entry's sources, in bytes
+	 * @param lastUsed the last time the entry was used, in milliseconds since the epoch
+	 * @return the directory of the entry
+	 * @throws IOException if an error occurs while creating the entry
+	 */
+	private Path createEntry(String name, int size, long lastUsed) throws IOException
+	{
+		Path entry = Files.createDirectories(temp.resolve(name).resolve("src"));
+		Files.write(entry.resolve("CMakeLists.txt"), new byte[size]);
+		Path complete = Files.createFile(entry.resolveSibling(".complete"));
+		Files.setLastModifiedTime(complete, FileTime.fromMillis(lastUsed));
+		return entry.getParent();
+	}
+}
@@ -0,0 +1,146 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.HeaderCost;
+import com.github.cmake.maven.project.maven.plugin.NinjaBuildReport;
+import com.github.cmake.maven.project.maven.plugin.NinjaDeps;
+import com.github.cmake.maven.project.maven.plugin.NinjaGraph;
+import com.github.cmake.maven.project.maven.plugin.NinjaLog;
+import com.github.cmake.maven.project.maven.plugin.NinjaLog.Edge;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class NinjaLogTest
+{
+	private static final String OLD_BUILD = "# ninja log v5\n" +
+		"0\t900\t1\tCMakeFiles/app.dir/old.cpp.o\t1111\n";
+	private static final String NEW_BUILD = "0\t1000\t2\tCMakeFiles/app.dir/a.cpp.o\taaaa\n" +
+		"0\t3000\t2\tCMakeFiles/app.dir/b.cpp.o\tbbbb\n" +
+		"3000\t3500\t2\tapp\tcccc\n" +
+		"3000\t3500\t2\tapp.map\tcccc\n";
+	private static final String GRAPH = "digraph ninja {\n" +
+		"rankdir=\"LR\"\n" +
+		"node [fontsize=10, shape=box, height=0.25]\n" +
+		"edge [fontsize=10]\n" +
+		"\"0x1\" [label=\"app\"]\n" +
+		"\"0x2\" [label=\"app.map\"]\n" +
+		"\"0x9\" [label=\"link\", shape=ellipse]\n" +
+		"\"0x9\" -> \"0x1\"\n" +
+		"\"0x9\" -> \"0x2\"\n" +
+		"\"0x3\" -> \"0x9\" [arrowhead=none]\n" +
+		"\"0x4\" -> \"0x9\" [arrowhead=none]\n" +
+		"\"0x3\" [label=\"CMakeFiles/app.dir/a.cpp.o\"]\n" +
+		"\"0x5\" -> \"0x3\" [label=\" CXX_COMPILER\"]\n" +
+		"\"0x5\" [label=\"../a.cpp\"]\n" +
+		"\"0x4\" [label=\"CMakeFiles/app.dir/b.cpp.o\"]\n" +
+		"\"0x6\" -> \"0x4\" [label=\" CXX_COMPILER\"]\n" +
+		"\"0x6\" [label=\"../b.cpp\"]\n" +
+		"}\n";
+	private static final String DEPS = "CMakeFiles/app.dir/a.cpp.o: #deps 3, deps mtime 2 (VALID)\n" +
+		"    ../a.cpp\n" +
+		"    ../common.h\n" +
+		"    /usr/include/stdio.h\n" +
+		"\n" +
+		"CMakeFiles/app.dir/b.cpp.o: #deps 3, deps mtime 2 (VALID)\n" +
+		"    ../b.cpp\n" +
+		"    ../common.h\n" +
+		"    ../b.h\n" +
+		"\n";
+
+	@Test
+	public void readFromOffset() throws IOException
+	{
+		NinjaLog log = readNewBuild();
+		assertEquals(3, log.edges.size());
+		assertEquals(Arrays.asList("app", "app.map"), log.edges.get(2).outputs);
+		assertEquals(4500, log.getCpuMillis());
+		assertEquals(3500, log.getWallMillis());
+	}
+
+	@Test
+	public void detectRecompaction() throws IOException
+	{
+		Path file = Files.createTempFile("ninja", ".log");
+		Path compacted = Files.createTempFile("ninja", ".log");
+		try
+		{
+			Files.write(file, OLD_BUILD.getBytes(StandardCharsets.UTF_8));
+			NinjaLog.Position position = NinjaLog.Position.of(file);
+			Files.write(file, NEW_BUILD.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			assertTrue(position.isAppendedTo(file));
+
+			// Ninja writes the recompacted log to a new file, which then grows past the old size
+			position = NinjaLog.Position.of(file);
+			String recompacted = "# ninja log v5\n" + NEW_BUILD + NEW_BUILD;
+			Files.write(compacted, recompacted.getBytes(StandardCharsets.UTF_8));
+			Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING);
+			assertFalse(position.isAppendedTo(file));
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(compacted);
+		}
+	}
+
+	@Test
+	public void criticalPath() throws IOException
+	{
+		NinjaLog log = readNewBuild();
+		NinjaGraph graph = NinjaGraph.parse(new BufferedReader(new StringReader(GRAPH)));
+		List<String> names = new ArrayList<>();
+		for (Edge edge : graph.getCriticalPath(log))
+			names.add(edge.getName());
+		assertEquals(Arrays.asList("CMakeFiles/app.dir/b.cpp.o", "app"), names);
+
+		NinjaBuildReport report = new NinjaBuildReport(log, graph.getCriticalPath(log));
+		assertEquals(3500, report.getCriticalPathMillis());
+		assertEquals("CMakeFiles/app.dir/b.cpp.o", report.getSlowestCompilations(1).get(0).getName());
+	}
+
+	@Test
+	public void headerCosts() throws IOException
+	{
+		NinjaLog log = readNewBuild();
+		NinjaDeps deps = NinjaDeps.parse(new BufferedReader(new StringReader(DEPS)));
+		List<HeaderCost> costs = deps.getHeaderCosts(log, header -> !header.startsWith("/usr/"));
+		assertEquals(2, costs.size());
+		assertEquals("../common.h", costs.get(0).header);
+		assertEquals(2, costs.get(0).translationUnits);
+		assertEquals(4.0, costs.get(0).cpuSeconds, 0.0001);
+		assertEquals("../b.h", costs.get(1).header);
+		assertEquals(3.0, costs.get(1).cpuSeconds, 0.0001);
+	}
+
+	/**
+	 * @return the edges of the second build in a log that spans two builds
+	 * @throws IOException if an error occurs while reading the log
+	 */
+	private NinjaLog readNewBuild() throws IOException
+	{
+		Path file = Files.createTempFile("ninja", ".log");
+		try
+		{
+			Files.write(file, (OLD_BUILD + NEW_BUILD).getBytes(StandardCharsets.UTF_8));
+			return NinjaLog.read(file, OLD_BUILD.getBytes(StandardCharsets.UTF_8).length);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.SourceWatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SourceWatcherTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void coalescesChanges() throws IOException, InterruptedException
+	{
+		Path root = temp.toRealPath();
+		Path build = Files.createDirectory(root.resolve("build"));
+		Path main = root.resolve("main.cpp");
+		write(main);
+		try (SourceWatcher watcher = new SourceWatcher(root, Collections.singleton(build), 200))
+		{
+			// Changes to the build directory and editor backup files are ignored
+			write(build.resolve("main.o"));
+			write(root.resolve("main.cpp~"));
+			write(main);
+			Path header = root.resolve("main.h");
+			write(header);
+			Set<Path> changes = watcher.awaitChanges();
+			assertEquals(new HashSet<>(Arrays.asList(main, header)), changes);
+
+			// Files in new directories are reported, and the directories are watched
+			Path library = Files.createDirectory(root.resolve("library"));
+			Path first = library.resolve("first.cpp");
+			write(first);
+			changes = watcher.awaitChanges();
+			assertTrue(changes.contains(first), changes.toString());
+
+			Path second = library.resolve("second.cpp");
+			write(second);
+			assertEquals(Collections.singleton(second), watcher.awaitChanges());
+		}
+	}
+
+	/**
+	 * @param file the file to write
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	private static void write(Path file) throws IOException
+	{
+		Files.write(file, "int value;".getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,185 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.maven.plugin.CodeModel;
+import com.github.cmake.maven.project.maven.plugin.NinjaDeps;
+import com.github.cmake.maven.project.maven.plugin.TestImpact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.cmake.maven.project.TestPlanTest.quote;
+import static com.github.cmake.maven.project.TestPlanTest.write;
+import static com.github.cmake.maven.project.TestPlanTest.writeCodeModel;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TestImpactTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void changedSource() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		CodeModel codeModel = CodeModel.read(writeCodeModel(build), null);
+
+		// Tests whose command-line does not refer to a target always run
+		TestImpact impact = analyze(build, codeModel, build.resolve("src/app.cpp"));
+		assertEquals(Arrays.asList("setup", "prepare", "app.basic", "script"), impact.tests);
+		assertEquals(new HashSet<>(Arrays.asList("app", "app_test")), impact.targets);
+
+		// Every target that transitively depends on a changed target is affected
+		impact = analyze(build, codeModel, build.resolve("src/core.cpp"));
+		assertEquals(Arrays.asList("setup", "prepare", "app.basic", "core.basic", "script"), impact.tests);
+		assertEquals(new HashSet<>(Arrays.asList("core", "app", "app_test", "core_test")), impact.targets);
+	}
+
+	@Test
+	public void changedHeader() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		CodeModel codeModel = CodeModel.read(writeCodeModel(build), null);
+
+		// Headers are mapped to the target whose object directory contains the object file, and DEPENDS
+		// pulls in the prerequisites of the selected tests transitively
+		TestImpact impact = analyze(build, codeModel, build.resolve("include/test_util.h"));
+		assertEquals(Arrays.asList("setup", "prepare", "core.basic", "script"), impact.tests);
+		assertEquals(Collections.singleton("core_test"), impact.targets);
+
+		// Without the ninja deps, a header that no target lists cannot be mapped
+		impact = TestImpact.analyze(codeModel, null, getCTestInfo(build),
+			Collections.singletonList(build.resolve("include/test_util.h")), getCMakeInputs(build));
+		assertNull(impact.tests);
+		assertTrue(impact.reason.contains("test_util.h"), impact.reason);
+
+		// Headers are only fingerprinted if the compilers reported them
+		assertTrue(TestImpact.getInputs(codeModel, getDeps(), getCMakeInputs(build)).contains(
+			build.resolve("include/test_util.h")));
+		assertNull(TestImpact.getInputs(codeModel, null, getCMakeInputs(build)));
+	}
+
+	@Test
+	public void changedCMakeInput() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		CodeModel codeModel = CodeModel.read(writeCodeModel(build), null);
+
+		TestImpact impact = analyze(build, codeModel, build.resolve("CMakeLists.txt"));
+		assertNull(impact.tests);
+		assertTrue(impact.reason.startsWith("CMake input changed"), impact.reason);
+
+		// Files that cmake read are CMake inputs regardless of their name
+		impact = analyze(build, codeModel, build.resolve("cmake/options.txt"));
+		assertNull(impact.tests);
+		assertTrue(impact.reason.startsWith("CMake input changed"), impact.reason);
+	}
+
+	@Test
+	public void unusedFile() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		CodeModel codeModel = CodeModel.read(writeCodeModel(build), null);
+
+		// A file in the source directory that nothing uses may be a source that the code model missed
+		TestImpact impact = analyze(build, codeModel, build.resolve("src/unused.cpp"));
+		assertNull(impact.tests);
+		assertTrue(impact.reason.contains("is not used by any target or test"), impact.reason);
+
+		// A file outside the source directory that nothing uses is not part of the build
+		impact = analyze(build, codeModel, build.getParent().resolve("unrelated.h"));
+		assertEquals(Collections.singletonList("script"), impact.tests);
+		assertTrue(impact.targets.isEmpty());
+	}
+
+	@Test
+	public void changedFiles() throws IOException
+	{
+		Path first = temp.resolve("first.cpp");
+		Path second = temp.resolve("second.cpp");
+		write(first, "int first;");
+		write(second, "int second;");
+		Map<String, String> baseline = TestImpact.fingerprint(Arrays.asList(first, second));
+		assertEquals(2, baseline.size());
+
+		write(second, "int second = 2;");
+		Path third = temp.resolve("third.cpp");
+		write(third, "int third;");
+		Map<String, String> current = TestImpact.fingerprint(Arrays.asList(first, second, third));
+		assertEquals(new HashSet<>(Arrays.asList(second.toAbsolutePath(), third.toAbsolutePath())),
+			TestImpact.getChangedFiles(baseline, current));
+
+		// Deleted files are changes as well
+		current = TestImpact.fingerprint(Collections.singletonList(first));
+		assertEquals(Collections.singleton(second.toAbsolutePath()), TestImpact.getChangedFiles(baseline,
+			current));
+	}
+
+	/**
+	 * @param build       the build directory
+	 * @param codeModel   the code model
+	 * @param changedFile the file that changed
+	 * @return the tests that are affected by the change
+	 * @throws IOException if an error occurs while reading the code model
+	 */
+	private static TestImpact analyze(Path build, CodeModel codeModel, Path changedFile) throws IOException
+	{
+		return TestImpact.analyze(codeModel, getDeps(), getCTestInfo(build),
+			Collections.singletonList(changedFile), getCMakeInputs(build));
+	}
+
+	/**
+	 * @return the output of {@code ninja -t deps}, in which {@code core_test} includes {@code test_util.h}
+	 * @throws IOException if an error occurs while parsing the output
+	 */
+	private static NinjaDeps getDeps() throws IOException
+	{
+		return NinjaDeps.parse(new BufferedReader(new StringReader(
+			"CMakeFiles/core_test.dir/src/core_test.cpp.o: #deps 2, deps mtime 1 (VALID)\n" +
+				"    src/core_test.cpp\n" +
+				"    include/test_util.h\n" +
+				"\n")));
+	}
+
+	/**
+	 * Returns the output of {@code ctest --show-only=json-v1}. {@code core.basic} depends on {@code prepare},
+	 * which depends on {@code setup}. {@code script} does not refer to any target.
+	 *
+	 * @param build the build directory
+	 * @return the list of tests
+	 * @throws IOException if an error occurs while parsing the list
+	 */
+	private static JsonNode getCTestInfo(Path build) throws IOException
+	{
+		return Metrics.getMapper().readTree("{\"tests\": [" +
+			"{\"name\": \"setup\", \"command\": [" + quote(build.resolve("bin/core_test")) +
+			", \"--setup\"]}," +
+			"{\"name\": \"prepare\", \"command\": [" + quote(build.resolve("bin/app_test")) +
+			", \"--prepare\"], \"properties\": [{\"name\": \"DEPENDS\", \"value\": [\"setup\"]}]}," +
+			"{\"name\": \"app.basic\", \"command\": [" + quote(build.resolve("bin/app_test")) + "]}," +
+			"{\"name\": \"core.basic\", \"command\": [" + quote(build.resolve("bin/core_test")) + "], " +
+			"\"properties\": [{\"name\": \"DEPENDS\", \"value\": [\"prepare\"]}]}," +
+			"{\"name\": \"script\", \"command\": [\"/bin/sh\", \"check.sh\"]}]}");
+	}
+
+	/**
+	 * @param build the build directory
+	 * @return the files that cmake read while configuring the project
+	 */
+	private static List<Path> getCMakeInputs(Path build)
+	{
+		return Collections.singletonList(build.resolve("cmake/options.txt"));
+	}
+}
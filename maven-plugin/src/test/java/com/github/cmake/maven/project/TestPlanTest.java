@@ -0,0 +1,176 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.cmake.maven.project.common.Metrics;
+import com.github.cmake.maven.project.maven.plugin.CMakeCache;
+import com.github.cmake.maven.project.maven.plugin.CodeModel;
+import com.github.cmake.maven.project.maven.plugin.CodeModel.Target;
+import com.github.cmake.maven.project.maven.plugin.FileApi;
+import com.github.cmake.maven.project.maven.plugin.TestPlan;
+import com.github.cmake.maven.project.maven.plugin.TestPlan.Batch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TestPlanTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void batchesFollowDependencyOrder() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		CodeModel codeModel = CodeModel.read(writeCodeModel(build), "Debug");
+
+		JsonNode ctestInfo = Metrics.getMapper().readTree("{\"tests\": [" +
+			"{\"name\": \"app.basic\", \"command\": [" + quote(build.resolve("bin/app_test")) + "]}," +
+			"{\"name\": \"core.basic\", \"command\": [" + quote(build.resolve("bin/core_test")) +
+			", \"--fast\"]}," +
+			"{\"name\": \"script\", \"command\": [\"/bin/sh\", \"check.sh\"]}]}");
+		TestPlan plan = TestPlan.create(codeModel, ctestInfo);
+		assertEquals(3, plan.batches.size());
+
+		// Targets are visited in the order that cmake listed them: core, app, app_test, core_test
+		Batch first = plan.batches.get(0);
+		assertEquals(Collections.singletonList("app.basic"), first.tests);
+		assertEquals("^(app\\.basic)$", first.getTestRegex());
+		assertEquals(3, first.closure.size());
+
+		Batch second = plan.batches.get(1);
+		assertEquals(Collections.singletonList("core.basic"), second.tests);
+		assertEquals(2, second.closure.size());
+
+		Batch last = plan.batches.get(2);
+		assertTrue(last.targets.isEmpty());
+		assertEquals(Arrays.asList("script"), last.tests);
+	}
+
+	@Test
+	public void targetsAreReadOnDemand() throws IOException
+	{
+		Path build = temp.toAbsolutePath();
+		Path replyFile = writeCodeModel(build);
+		CodeModel codeModel = CodeModel.read(replyFile, null);
+		assertEquals("Debug", codeModel.config);
+		assertEquals(Arrays.asList("app_test", "app", "core_test", "core"), codeModel.getTargetNames());
+
+		// Targets that are not requested are never read
+		Files.delete(replyFile.resolveSibling("target-app_test.json"));
+		Target core = codeModel.getTargetByName("core");
+		assertEquals("STATIC_LIBRARY", core.type);
+		assertEquals(Collections.singletonList(build.resolve("lib/libcore.a")), core.artifacts);
+		assertEquals(Collections.singletonList(build.resolve("src/core.cpp")), core.sources);
+		assertEquals(2, codeModel.getClosure(Collections.singleton(codeModel.getTargetByName("app"))).size());
+		assertNull(codeModel.getTargetByName("missing"));
+	}
+
+	@Test
+	public void cacheReply() throws IOException
+	{
+		Path reply = temp.resolve("cache-v2-1.json");
+		write(reply, "{\"kind\": \"cache\", \"entries\": [" +
+			"{\"name\": \"CMAKE_BUILD_TYPE\", \"type\": \"STRING\", \"value\": \"Debug\", \"properties\": " +
+			"[{\"name\": \"HELPSTRING\", \"value\": \"Choose the type of build.\"}]}," +
+			"{\"name\": \"CMAKE_MAKE_PROGRAM\", \"type\": \"FILEPATH\", \"value\": \"/usr/bin/ninja\", " +
+			"\"properties\": []}]}");
+		CMakeCache cache = CMakeCache.readReply(reply);
+		assertEquals("Debug", cache.get("CMAKE_BUILD_TYPE"));
+		assertEquals("Choose the type of build.", cache.getHelpString("CMAKE_BUILD_TYPE"));
+		assertEquals("FILEPATH", cache.getType("CMAKE_MAKE_PROGRAM"));
+	}
+
+	/**
+	 * Writes the reply to a {@code codemodel-v2} query. {@code app_test} depends on {@code app}, which
+	 * depends on {@code core}. {@code core_test} depends on {@code core}.
+	 *
+	 * @param build the build directory
+	 * @return the code model reply file
+	 * @throws IOException if an error occurs while writing the files
+	 */
+	static Path writeCodeModel(Path build) throws IOException
+	{
+		FileApi.writeQuery(build, FileApi.CODEMODEL);
+		assertTrue(Files.exists(build.resolve(".cmake/api/v1/query/client-cmake-maven-plugin/codemodel-v2")));
+
+		Path reply = build.resolve(".cmake/api/v1/reply");
+		write(reply.resolve("index-2024-01-01T00-00-00-0000.json"), "{\"reply\": {}}");
+		write(reply.resolve("index-2024-01-02T00-00-00-0000.json"), "{\"reply\": " +
+			"{\"client-cmake-maven-plugin\": {\"codemodel-v2\": {\"kind\": \"codemodel\", " +
+			"\"jsonFile\": \"codemodel-v2-1.json\"}, " +
+			"\"toolchains-v1\": {\"error\": \"unknown query file\"}}}}");
+		write(reply.resolve("codemodel-v2-1.json"), "{\"paths\": {\"build\": " + quote(build) + ", " +
+			"\"source\": " + quote(build) + "}, \"configurations\": [{\"name\": \"Debug\", \"targets\": [" +
+			reference("app_test") + "," + reference("app") + "," + reference("core_test") + "," +
+			reference("core") + "]}]}");
+		write(reply.resolve("target-app_test.json"), target("app_test", "EXECUTABLE", "bin/app_test", "app"));
+		write(reply.resolve("target-app.json"), target("app", "SHARED_LIBRARY", "lib/libapp.so", "core"));
+		write(reply.resolve("target-core_test.json"), target("core_test", "EXECUTABLE", "bin/core_test",
+			"core"));
+		write(reply.resolve("target-core.json"), target("core", "STATIC_LIBRARY", "lib/libcore.a", null));
+
+		Path replyFile = FileApi.getReply(build, FileApi.CODEMODEL);
+		assertEquals(reply.resolve("codemodel-v2-1.json"), replyFile);
+		assertNull(FileApi.getReply(build, FileApi.TOOLCHAINS));
+		return replyFile;
+	}
+
+	/**
+	 * @param name the name of the target
+	 * @return the JSON representation of a reference to the target in the code model
+	 */
+	private static String reference(String name)
+	{
+		return "{\"name\": \"" + name + "\", \"id\": \"" + name + "::@1\", \"jsonFile\": \"target-" + name +
+			".json\"}";
+	}
+
+	/**
+	 * @param name       the name of the target
+	 * @param type       the type of the target
+	 * @param artifact   the path of the target's artifact, relative to the build directory
+	 * @param dependency the id of the target's dependency ({@code null} if none)
+	 * @return the JSON representation of the target
+	 */
+	private static String target(String name, String type, String artifact, String dependency)
+	{
+		String dependencies = "";
+		if (dependency != null)
+			dependencies = "{\"id\": \"" + dependency + "::@1\"}";
+		return "{\"name\": \"" + name + "\", \"id\": \"" + name + "::@1\", \"type\": \"" + type + "\", " +
+			"\"artifacts\": [{\"path\": \"" + artifact + "\"}], \"dependencies\": [" + dependencies + "], " +
+			"\"sources\": [{\"path\": \"src/" + name + ".cpp\"}, {\"path\": \"gen/" + name + ".cpp\", " +
+			"\"isGenerated\": true}]}";
+	}
+
+	/**
+	 * @param path a path
+	 * @return the path as a JSON string
+	 * @throws IOException if the path cannot be serialized
+	 */
+	static String quote(Path path) throws IOException
+	{
+		return Metrics.getMapper().writeValueAsString(path.toString());
+	}
+
+	/**
+	 * @param file    a file
+	 * @param content the content of the file
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	static void write(Path file, String content) throws IOException
+	{
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
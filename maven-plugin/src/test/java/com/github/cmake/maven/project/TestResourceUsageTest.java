@@ -0,0 +1,120 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.TestResourceUsage;
+import com.github.cmake.maven.project.maven.plugin.TestResults;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TestResourceUsageTest
+{
+	private static final String LAUNCHER = "/build/ctest-launcher.sh";
+	private static final String TEST_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+		"<Site BuildName=\"Linux-c++\">\n" +
+		"  <Testing>\n" +
+		"    <Test Status=\"passed\">\n" +
+		"      <Name>first</Name>\n" +
+		"      <FullCommandLine>\"/build/ctest-launcher.sh\" \"/build/app\"  \"--seed\"</FullCommandLine>\n" +
+		"    </Test>\n" +
+		"    <Test Status=\"passed\">\n" +
+		"      <Name>second</Name>\n" +
+		"      <FullCommandLine>/build/ctest-launcher.sh /build/app --seed</FullCommandLine>\n" +
+		"    </Test>\n" +
+		"    <Test Status=\"passed\">\n" +
+		"      <Name>direct</Name>\n" +
+		"      <FullCommandLine>/build/app --seed</FullCommandLine>\n" +
+		"    </Test>\n" +
+		"  </Testing>\n" +
+		"</Site>\n";
+
+	@TempDir
+	Path temp;
+
+	@Test
+	public void read() throws IOException
+	{
+		Path directory = Files.createDirectories(temp.resolve("usage"));
+		write(directory.resolve("1.txt"), "maxRssKb=2048\ncpu=0m1.500s 1m0.250s\ncommand=/build/app --name\n" +
+			"second line\n");
+		// Records that do not have the .txt extension are ignored
+		write(directory.resolve("1.txt.times"), "0m0.000s 0m0.000s\n");
+
+		List<TestResourceUsage> usages = TestResourceUsage.readAll(directory);
+		assertEquals(1, usages.size());
+		TestResourceUsage usage = usages.get(0);
+		assertEquals(2048, usage.maxRssKb);
+		assertEquals(1.5, usage.userTime, 0.0001);
+		assertEquals(60.25, usage.systemTime, 0.0001);
+		assertEquals(61.75, usage.getCpuTime(), 0.0001);
+		// The command is always last and may span multiple lines
+		assertEquals("/build/app --name\nsecond line", usage.command);
+
+		assertEquals(Collections.emptyList(), TestResourceUsage.readAll(temp.resolve("missing")));
+	}
+
+	@Test
+	public void readMalformed() throws IOException
+	{
+		Path directory = Files.createDirectories(temp.resolve("usage"));
+		// The launcher could not measure the CPU time
+		write(directory.resolve("1.txt"), "maxRssKb=512\ncpu=\ncommand=/build/app\n");
+		TestResourceUsage usage = TestResourceUsage.readAll(directory).get(0);
+		assertEquals(0, usage.getCpuTime(), 0);
+		assertEquals(512, usage.maxRssKb);
+
+		write(directory.resolve("2.txt"), "maxRssKb=unknown\ncpu=\ncommand=/build/app\n");
+		IOException e = assertThrows(IOException.class, () -> TestResourceUsage.readAll(directory));
+		assertTrue(e.getMessage().startsWith("Invalid maxRssKb"), e.getMessage());
+
+		write(directory.resolve("2.txt"), "maxRssKb=512\ncpu=\n");
+		e = assertThrows(IOException.class, () -> TestResourceUsage.readAll(directory));
+		assertTrue(e.getMessage().startsWith("Missing command"), e.getMessage());
+	}
+
+	@Test
+	public void match() throws IOException
+	{
+		Path testXml = write(temp.resolve("Test.xml"), TEST_XML);
+		TestResults results = TestResults.parse(testXml);
+		Path directory = Files.createDirectories(temp.resolve("usage"));
+		write(directory.resolve("1.txt"), "maxRssKb=100\ncpu=\ncommand=/build/app --seed\n");
+		write(directory.resolve("2.txt"), "maxRssKb=200\ncpu=\ncommand=/build/app   --seed\n");
+		write(directory.resolve("3.txt"), "maxRssKb=300\ncpu=\ncommand=/build/other\n");
+		List<TestResourceUsage> usages = TestResourceUsage.readAll(directory);
+
+		// Quotes and consecutive whitespace are ignored, and each record is assigned to a single test
+		Map<String, TestResourceUsage> nameToUsage = TestResourceUsage.match(results.tests, usages, LAUNCHER);
+		assertEquals(Arrays.asList("first", "second"), new ArrayList<>(nameToUsage.keySet()));
+		assertNotSame(nameToUsage.get("first"), nameToUsage.get("second"));
+		assertEquals(300, nameToUsage.get("first").maxRssKb + nameToUsage.get("second").maxRssKb);
+
+		// Tests that did not run through the launcher have no record
+		assertEquals(Collections.emptyMap(), TestResourceUsage.match(results.tests.subList(2, 3), usages,
+			LAUNCHER));
+	}
+
+	/**
+	 * @param file    a file
+	 * @param content the content of the file
+	 * @return {@code file}
+	 * @throws IOException if an error occurs while writing the file
+	 */
+	private static Path write(Path file, String content) throws IOException
+	{
+		return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
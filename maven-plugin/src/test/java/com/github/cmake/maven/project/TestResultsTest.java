@@ -0,0 +1,90 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.TestResult;
+import com.github.cmake.maven.project.maven.plugin.TestResults;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class TestResultsTest
+{
+	private static final String TEST_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+		"<Site BuildName=\"Linux-c++\">\n" +
+		"  <Testing>\n" +
+		"    <TestList><Test>./fast</Test><Test>./slow</Test></TestList>\n" +
+		"    <Test Status=\"passed\">\n" +
+		"      <Name>fast</Name>\n" +
+		"      <FullCommandLine>/build/fast</FullCommandLine>\n" +
+		"      <Results>\n" +
+		"        <NamedMeasurement type=\"numeric/double\" name=\"Execution Time\"><Value>0.25</Value>" +
+		"</NamedMeasurement>\n" +
+		"      </Results>\n" +
+		"      <Labels><Label>unit</Label></Labels>\n" +
+		"    </Test>\n" +
+		"    <Test Status=\"failed\">\n" +
+		"      <Name>slow</Name>\n" +
+		"      <FullCommandLine>/build/slow --long</FullCommandLine>\n" +
+		"      <Results>\n" +
+		"        <NamedMeasurement type=\"numeric/double\" name=\"Execution Time\"><Value>4</Value>" +
+		"</NamedMeasurement>\n" +
+		"      </Results>\n" +
+		"      <Labels><Label>unit</Label><Label>integration</Label></Labels>\n" +
+		"    </Test>\n" +
+		"  </Testing>\n" +
+		"</Site>\n";
+
+	@Test
+	public void parse() throws IOException
+	{
+		TestResults results = parse(TEST_XML);
+		assertEquals(2, results.tests.size());
+		TestResult slow = results.tests.get(1);
+		assertEquals("slow", slow.name);
+		assertEquals("failed", slow.status);
+		assertEquals(4.0, slow.time);
+		assertEquals(Arrays.asList("unit", "integration"), slow.labels);
+		assertEquals("/build/slow --long", slow.commandLine);
+		assertEquals(Collections.singletonList(slow), results.getSlowest(1));
+		assertEquals(4.0, results.getPercentiles().get("max"));
+		assertEquals(0.25, results.getPercentiles().get("p50"));
+	}
+
+	/**
+	 * A test that exceeds the budgets of several labels should be reported against the tightest budget.
+	 */
+	@Test
+	public void overBudget() throws IOException
+	{
+		TestResults results = parse(TEST_XML);
+		Map<String, Double> budgets = new HashMap<>();
+		budgets.put("unit", 1.0);
+		budgets.put("integration", 2.0);
+		Map<TestResult, Double> overBudget = results.getOverBudget(budgets);
+		assertEquals(1, overBudget.size());
+		TestResult slow = results.tests.get(1);
+		assertEquals(1.0, overBudget.get(slow));
+	}
+
+	private static TestResults parse(String xml) throws IOException
+	{
+		Path testXml = Files.createTempFile("Test", ".xml");
+		try
+		{
+			Files.write(testXml, xml.getBytes(StandardCharsets.UTF_8));
+			return TestResults.parse(testXml);
+		}
+		finally
+		{
+			Files.delete(testXml);
+		}
+	}
+}
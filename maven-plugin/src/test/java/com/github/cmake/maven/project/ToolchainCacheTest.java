@@ -0,0 +1,128 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.ToolchainCache;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ToolchainCacheTest
+{
+	@TempDir
+	Path temp;
+
+	@Test
+	public void keyIgnoresProjectDefinitions() throws IOException
+	{
+		List<String> base = Arrays.asList("/usr/bin/cmake", "-G", "Ninja", "-DCMAKE_BUILD_TYPE=Release");
+		String key = ToolchainCache.getKey(base, Collections.singletonMap("CC", "gcc"), temp, "linux-x86_64",
+			"3.31.5");
+
+		List<String> withProjectOption = Arrays.asList("/opt/cmake/bin/cmake", "-G", "Ninja",
+			"-DCMAKE_BUILD_TYPE=Release", "-DBUILD_TESTS=ON", "-DCMAKE_MAKE_PROGRAM=/module/target/ninja",
+			"-DCMAKE_PROJECT_TOP_LEVEL_INCLUDES=/module/target/provider.cmake",
+			"-DCMAKE_MAVEN_FETCHCONTENT_CACHE=/home/user/.cache");
+		assertEquals(key, ToolchainCache.getKey(withProjectOption, Collections.singletonMap("CC", "gcc"),
+			temp, "linux-x86_64", "3.31.5"));
+		assertNotEquals(key, ToolchainCache.getKey(base, Collections.singletonMap("CC", "clang"),
+			temp, "linux-x86_64", "3.31.5"));
+		assertNotEquals(key, ToolchainCache.getKey(base, Collections.singletonMap("CC", "gcc"),
+			temp, "linux-x86_64", "3.31.6"));
+	}
+
+	@Test
+	public void keyDependsOnToolchainFile() throws IOException
+	{
+		Path toolchainFile = temp.resolve("toolchain.cmake");
+		Files.write(toolchainFile, "set(CMAKE_C_COMPILER gcc)\n".getBytes(StandardCharsets.UTF_8));
+		List<String> command = Arrays.asList("/usr/bin/cmake", "-DCMAKE_TOOLCHAIN_FILE=toolchain.cmake");
+		String key = ToolchainCache.getKey(command, Collections.emptyMap(), temp, "linux-x86_64", "3.31.5");
+		assertEquals(key, ToolchainCache.getKey(command, Collections.emptyMap(), temp, "linux-x86_64",
+			"3.31.5"));
+
+		Files.write(toolchainFile, "set(CMAKE_C_COMPILER clang)\n".getBytes(StandardCharsets.UTF_8));
+		assertNotEquals(key, ToolchainCache.getKey(command, Collections.emptyMap(), temp, "linux-x86_64",
+			"3.31.5"));
+	}
+
+	@Test
+	public void probesKeyDependsOnDefinitions()
+	{
+		Path project = temp.resolve("project");
+		List<String> command = Arrays.asList("/usr/bin/cmake", "-G", "Ninja", "-DBUILD_TESTS=ON",
+			"-DCMAKE_MAKE_PROGRAM=/module/target/ninja");
+		String key = ToolchainCache.getProbesKey(project, command);
+		assertEquals(key, ToolchainCache.getProbesKey(project, Arrays.asList("/usr/bin/cmake", "-G", "Ninja",
+			"-DBUILD_TESTS=ON", "-DCMAKE_MAKE_PROGRAM=/other/target/ninja")));
+		assertNotEquals(key, ToolchainCache.getProbesKey(project, Arrays.asList("/usr/bin/cmake", "-G", "Ninja",
+			"-DBUILD_TESTS=OFF", "-DCMAKE_MAKE_PROGRAM=/module/target/ninja")));
+		assertNotEquals(key, ToolchainCache.getProbesKey(temp.resolve("otherProject"), command));
+	}
+
+	@Test
+	public void captureAndSeed() throws IOException
+	{
+		Path compiler = Files.createFile(temp.resolve("cc"));
+		Path firstBuild = temp.resolve("first");
+		Files.createDirectories(firstBuild.resolve("CMakeFiles/3.31.5"));
+		Files.write(firstBuild.resolve("CMakeFiles/3.31.5/CMakeSystem.cmake"), "system".getBytes(
+			StandardCharsets.UTF_8));
+		Files.write(firstBuild.resolve("CMakeFiles/3.31.5/CMakeCCompiler.cmake"), "compiler".getBytes(
+			StandardCharsets.UTF_8));
+		String cmakeCache = "# This is the CMakeCache file.\n" +
+			"//C compiler\n" +
+			"CMAKE_C_COMPILER:FILEPATH=" + compiler + "\n" +
+			"\n" +
+			"//Have include stdio.h\n" +
+			"HAVE_STDIO_H:INTERNAL=1\n" +
+			"//Have include foo.h\n" +
+			"HAVE_FOO_H:INTERNAL=\n" +
+			"//Project option\n" +
+			"BUILD_TESTS:BOOL=ON\n";
+		Files.write(firstBuild.resolve("CMakeCache.txt"), cmakeCache.getBytes(StandardCharsets.UTF_8));
+
+		ToolchainCache cache = new ToolchainCache(temp.resolve("cache"), new SystemStreamLog());
+		String project = ToolchainCache.getProbesKey(temp.resolve("project"),
+			Collections.singletonList("cmake"));
+		cache.capture("key", project, firstBuild);
+
+		Path secondBuild = temp.resolve("second");
+		Path initialCache = cache.seed("key", project, secondBuild);
+		assertNotNull(initialCache);
+		assertTrue(Files.exists(secondBuild.resolve("CMakeFiles/3.31.5/CMakeCCompiler.cmake")));
+		String content = new String(Files.readAllBytes(initialCache), StandardCharsets.UTF_8);
+		assertTrue(content.contains("set(CMAKE_C_COMPILER \"" + compiler + "\" CACHE FILEPATH \"C compiler\")"),
+			content);
+		assertTrue(content.contains("set(HAVE_STDIO_H \"1\" CACHE INTERNAL \"Have include stdio.h\")"), content);
+		assertTrue(!content.contains("BUILD_TESTS"), content);
+		// Failed probes run again
+		assertTrue(!content.contains("HAVE_FOO_H"), content);
+
+		// Probe results are not shared with other projects
+		Path otherBuild = temp.resolve("other");
+		initialCache = cache.seed("key", ToolchainCache.getProbesKey(temp.resolve("otherProject"),
+			Collections.singletonList("cmake")), otherBuild);
+		assertNotNull(initialCache);
+		content = new String(Files.readAllBytes(initialCache), StandardCharsets.UTF_8);
+		assertTrue(content.contains("CMAKE_C_COMPILER"), content);
+		assertTrue(!content.contains("HAVE_STDIO_H"), content);
+
+		// Upgrading the compiler invalidates the entry
+		Files.setLastModifiedTime(compiler, FileTime.fromMillis(0));
+		assertNull(cache.seed("key", project, temp.resolve("third")));
+	}
+}
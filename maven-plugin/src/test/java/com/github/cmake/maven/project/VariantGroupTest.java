@@ -0,0 +1,85 @@
+package com.github.cmake.maven.project;
+
+import com.github.cmake.maven.project.maven.plugin.Variant;
+import com.github.cmake.maven.project.maven.plugin.VariantGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class VariantGroupTest
+{
+	private static final Variant DEBUG = new Variant("debug", "Debug", null, null, null,
+		Collections.emptyList());
+	private static final Variant RELEASE = new Variant("release", "Release", null, null, null,
+		Collections.emptyList());
+	private static final Variant ASAN = new Variant("asan", "Debug", null, null, null,
+		Collections.singletonList("-DCMAKE_CXX_FLAGS=-fsanitize=address"));
+
+	@Test
+	public void groupByOptions()
+	{
+		List<VariantGroup> groups = VariantGroup.group(Arrays.asList(DEBUG, RELEASE, ASAN), "Ninja Multi-Config");
+		assertEquals(2, groups.size());
+
+		VariantGroup multiConfig = groups.get(0);
+		assertTrue(multiConfig.multiConfig);
+		assertEquals("debug+release", multiConfig.getSubdirectory());
+		assertEquals(Arrays.asList("-G", "Ninja Multi-Config", "-DCMAKE_CONFIGURATION_TYPES=Debug;Release",
+			"-DCMAKE_DEFAULT_BUILD_TYPE=Debug", "-DCMAKE_CROSS_CONFIGS=all", "-DCMAKE_DEFAULT_CONFIGS=all"),
+			multiConfig.getConfigureArguments());
+		assertEquals(Collections.emptyList(), multiConfig.getBuildArguments());
+
+		VariantGroup asan = groups.get(1);
+		assertFalse(asan.multiConfig);
+		assertEquals("asan", asan.getSubdirectory());
+		assertEquals(Arrays.asList("-DCMAKE_BUILD_TYPE=Debug", "-DCMAKE_CXX_FLAGS=-fsanitize=address"),
+			asan.getConfigureArguments());
+		assertEquals(Arrays.asList("--config", "Debug"), asan.getBuildArguments());
+	}
+
+	@Test
+	public void noMultiConfigGenerator()
+	{
+		List<VariantGroup> groups = VariantGroup.group(Arrays.asList(DEBUG, RELEASE), null);
+		assertEquals(2, groups.size());
+		assertFalse(groups.get(0).multiConfig);
+		assertEquals("debug", groups.get(0).getSubdirectory());
+	}
+
+	@Test
+	public void configuredSubdirectories()
+	{
+		Variant customDebug = new Variant("debug", "Debug", null, "build-debug", null, Collections.emptyList());
+		Variant customRelease = new Variant("release", "Release", null, "build-release", null,
+			Collections.emptyList());
+		List<VariantGroup> groups = VariantGroup.group(Arrays.asList(customDebug, customRelease),
+			"Ninja Multi-Config");
+		assertEquals(2, groups.size());
+		assertFalse(groups.get(0).multiConfig);
+		assertEquals("build-debug", groups.get(0).getSubdirectory());
+		assertEquals("build-release", groups.get(1).getSubdirectory());
+
+		// A variant that configures its subdirectory is not grouped with variants that do not
+		groups = VariantGroup.group(Arrays.asList(customDebug, RELEASE), "Ninja Multi-Config");
+		assertEquals(2, groups.size());
+		assertEquals("build-debug", groups.get(0).getSubdirectory());
+		assertEquals("release", groups.get(1).getSubdirectory());
+	}
+
+	@Test
+	public void duplicateConfigurations()
+	{
+		Variant otherDebug = new Variant("debug2", "Debug", null, null, null, Collections.emptyList());
+		List<VariantGroup> groups = VariantGroup.group(Arrays.asList(DEBUG, RELEASE, otherDebug),
+			"Ninja Multi-Config");
+		assertEquals(2, groups.size());
+		assertEquals(Arrays.asList(DEBUG, RELEASE), groups.get(0).variants);
+		assertEquals(Collections.singletonList(otherDebug), groups.get(1).variants);
+	}
+}